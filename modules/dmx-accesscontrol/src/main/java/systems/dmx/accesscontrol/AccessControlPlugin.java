@@ -30,7 +30,9 @@ import systems.dmx.core.service.accesscontrol.Permissions;
 import systems.dmx.core.service.accesscontrol.SharingMode;
 import systems.dmx.core.service.event.CheckAssociationReadAccessListener;
 import systems.dmx.core.service.event.CheckAssociationWriteAccessListener;
+import systems.dmx.core.service.event.CheckAssociationsReadAccessListener;
 import systems.dmx.core.service.event.CheckTopicReadAccessListener;
+import systems.dmx.core.service.event.CheckTopicsReadAccessListener;
 import systems.dmx.core.service.event.CheckTopicWriteAccessListener;
 import systems.dmx.core.service.event.PostCreateAssociationListener;
 import systems.dmx.core.service.event.PostCreateTopicListener;
@@ -62,9 +64,13 @@ import javax.ws.rs.core.Context;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -78,8 +84,10 @@ import java.util.logging.Logger;
 @Produces("application/json")
 public class AccessControlPlugin extends PluginActivator implements AccessControlService, ConfigCustomizer,
                                                                                     CheckTopicReadAccessListener,
+                                                                                    CheckTopicsReadAccessListener,
                                                                                     CheckTopicWriteAccessListener,
                                                                                     CheckAssociationReadAccessListener,
+                                                                                    CheckAssociationsReadAccessListener,
                                                                                     CheckAssociationWriteAccessListener,
                                                                                     PreUpdateTopicListener,
                                                                                     PostCreateTopicListener,
@@ -517,6 +525,11 @@ public class AccessControlPlugin extends PluginActivator implements AccessContro
         checkReadAccess(topicId);
     }
 
+    @Override
+    public void checkTopicsReadAccess(List<Long> topicIds) {
+        retainReadables(topicIds);
+    }
+
     @Override
     public void checkTopicWriteAccess(long topicId) {
         checkWriteAccess(topicId);
@@ -533,6 +546,42 @@ public class AccessControlPlugin extends PluginActivator implements AccessContro
         checkReadAccess(roles.get(1));
     }
 
+    @Override
+    public void checkAssociationsReadAccess(List<Long> assocIds) {
+        if (!inRequestScope()) {
+            return;
+        }
+        retainReadables(assocIds);
+        //
+        // the players must be readable as well
+        Map<Long, List<RoleModel>> roles = new HashMap();
+        Set<Long> topicPlayerIds = new LinkedHashSet();
+        Set<Long> assocPlayerIds = new LinkedHashSet();
+        for (long assocId : assocIds) {
+            List<RoleModel> _roles = dmx.getRoleModels(assocId);
+            roles.put(assocId, _roles);
+            for (RoleModel role : _roles) {
+                (role instanceof AssociationRoleModel ? assocPlayerIds : topicPlayerIds).add(role.getPlayerId());
+            }
+        }
+        Set<Long> readablePlayerIds = new HashSet();
+        readablePlayerIds.addAll(retainReadables(new ArrayList(topicPlayerIds)));
+        if (!assocPlayerIds.isEmpty()) {
+            List<Long> ids = new ArrayList(assocPlayerIds);
+            checkAssociationsReadAccess(ids);       // recursion
+            readablePlayerIds.addAll(ids);
+        }
+        //
+        Iterator<Long> i = assocIds.iterator();
+        while (i.hasNext()) {
+            List<RoleModel> _roles = roles.get(i.next());
+            if (!readablePlayerIds.contains(_roles.get(0).getPlayerId()) ||
+                !readablePlayerIds.contains(_roles.get(1).getPlayerId())) {
+                i.remove();
+            }
+        }
+    }
+
     @Override
     public void checkAssociationWriteAccess(long assocId) {
         checkWriteAccess(assocId);
@@ -604,7 +653,7 @@ public class AccessControlPlugin extends PluginActivator implements AccessContro
             return;
         }
         //
-        long occupiedSpace = getOccupiedSpace(username);
+        long occupiedSpace = filesService.getOccupiedSpace(username);     // maintained by the Files plugin
         boolean quotaOK = occupiedSpace + fileSize <= diskQuota;
         //
         logger.info("### File size: " + fileSize + " bytes, " + userInfo(username) + " occupies " + occupiedSpace +
@@ -649,19 +698,6 @@ public class AccessControlPlugin extends PluginActivator implements AccessContro
         }
     }
 
-    // --- Disk quota ---
-
-    private long getOccupiedSpace(String username) {
-        long occupiedSpace = 0;
-        for (Topic fileTopic : dmx.getTopicsByType("dmx.files.file")) {
-            long fileTopicId = fileTopic.getId();
-            if (getCreator(fileTopicId).equals(username)) {
-                occupiedSpace += filesService.getFile(fileTopicId).length();
-            }
-        }
-        return occupiedSpace;
-    }
-
 
 
     // === Request Filter ===
@@ -906,6 +942,20 @@ public class AccessControlPlugin extends PluginActivator implements AccessContro
         checkAccess(Operation.READ, objectId);
     }
 
+    /**
+     * Removes the objects the current user has no READ permission for from the given list.
+     *
+     * @param   objectIds   topic IDs and/or association IDs
+     *
+     * @return  the given list
+     */
+    private List<Long> retainReadables(List<Long> objectIds) {
+        if (inRequestScope()) {
+            dmx.getAccessControl().retainPermitted(getUsername(), Operation.READ, objectIds);
+        }
+        return objectIds;
+    }
+
     /**
      * @param   objectId    a topic ID, or an association ID
      */
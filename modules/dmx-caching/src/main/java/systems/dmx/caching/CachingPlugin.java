@@ -2,9 +2,13 @@ package systems.dmx.caching;
 
 import systems.dmx.timestamps.TimestampsService;
 
+import systems.dmx.core.Association;
 import systems.dmx.core.DMXObject;
+import systems.dmx.core.RelatedObject;
 import systems.dmx.core.osgi.PluginActivator;
 import systems.dmx.core.service.Inject;
+import systems.dmx.core.service.accesscontrol.AccessControl;
+import systems.dmx.core.service.accesscontrol.Operation;
 import systems.dmx.core.service.event.ServiceRequestFilterListener;
 import systems.dmx.core.service.event.ServiceResponseFilterListener;
 import systems.dmx.core.util.JavaUtils;
@@ -18,16 +22,38 @@ import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Path;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 
 
+/**
+ * Supports the browser cache by means of conditional GET requests.
+ * <p>
+ * Responses carrying topics, associations, types, or lists of these (e.g. related topics) get an <code>ETag</code>
+ * and are marked "<code>private, max-age=0, must-revalidate</code>", that is the browser may keep them but must
+ * revalidate them on every use. The entity tag is calculated from the IDs and modification times of the returned
+ * objects (for related objects also of the relating associations), the requesting user, and the query string. So a
+ * user never receives a cached object as fetched in another user's permission context.
+ * <p>
+ * When the entity tag sent along in <code>If-None-Match</code> still matches, <code>304 Not Modified</code> is
+ * responded. For a single topic or association (<code>core/topic/{id}</code>, <code>core/association/{id}</code>)
+ * this is decided before the object is fetched. For other requests it is decided after the resource method
+ * returned but before the response is serialized.
+ * <p>
+ * Note: the modification time of an object does not reflect modifications of its child topics if these are
+ * modified on their own. This is the same limitation as with the <code>Last-Modified</code> header (see
+ * {@link TimestampsService}).
+ */
 @Path("/cache")
 public class CachingPlugin extends PluginActivator implements ServiceRequestFilterListener,
                                                               ServiceResponseFilterListener {
@@ -37,6 +63,10 @@ public class CachingPlugin extends PluginActivator implements ServiceRequestFilt
     private static String CACHABLE_PATH = "core/(topic|association)/(\\d+)";
 
     private static String HEADER_CACHE_CONTROL = "Cache-Control";
+    private static String HEADER_IF_NONE_MATCH = "If-None-Match";
+
+    private static String CACHE_CONTROL_REVALIDATE = "private, max-age=0, must-revalidate";
+    private static String CACHE_CONTROL_NO_STORE = "no-store";
 
     // ---------------------------------------------------------------------------------------------- Instance Variables
 
@@ -69,9 +99,19 @@ public class CachingPlugin extends PluginActivator implements ServiceRequestFilt
             }
             //
             long time = timestampsService.getModificationTime(objectId);
-            Response.ResponseBuilder builder = request.evaluatePreconditions(new Date(time));
+            Response.ResponseBuilder builder;
+            if (isGetOrHead(request)) {
+                // Note: a conditional GET is decided by the entity tag alone. The modification time is not sufficient
+                // as the response depends on the requesting user as well.
+                if (time == 0 || request.getHeaderValue(HEADER_IF_NONE_MATCH) == null || !isReadable(objectId)) {
+                    return;
+                }
+                builder = request.evaluatePreconditions(entityTag(request, validator(objectId, time)));
+            } else {
+                builder = request.evaluatePreconditions(new Date(time));
+            }
             if (builder != null) {
-                Response response = builder.build();
+                Response response = builder.header(HEADER_CACHE_CONTROL, CACHE_CONTROL_REVALIDATE).build();
                 Response.Status status = Response.Status.fromStatusCode(response.getStatus());
                 logger.fine("### Preconditions of request \"" + JavaUtils.requestInfo(req) +
                     "\" are not met -- Responding with " + JavaUtils.responseInfo(status));
@@ -82,10 +122,31 @@ public class CachingPlugin extends PluginActivator implements ServiceRequestFilt
 
     @Override
     public void serviceResponseFilter(ContainerResponse response) {
-        DMXObject object = responseObject(response);
-        if (object != null) {
-            setCacheControlHeader(response, "no-store");
-            // ### FIXME: support browser cache by using "max-age=0" instead (#35)
+        Collection<DMXObject> objects = responseObjects(response);
+        if (objects != null) {
+            ContainerRequest request = response.getContainerRequest();
+            if (!isGetOrHead(request) || response.getStatus() != Response.Status.OK.getStatusCode()) {
+                setCacheControlHeader(response, CACHE_CONTROL_NO_STORE);
+                return;
+            }
+            //
+            String validator = validator(objects);
+            if (validator == null) {
+                setCacheControlHeader(response, CACHE_CONTROL_NO_STORE);
+                return;
+            }
+            EntityTag entityTag = entityTag(request, validator);
+            Response.ResponseBuilder builder = request.getHeaderValue(HEADER_IF_NONE_MATCH) != null ?
+                request.evaluatePreconditions(entityTag) : null;
+            if (builder != null) {
+                // replace the response -- the objects are not serialized
+                response.setResponse(builder.header(HEADER_CACHE_CONTROL, CACHE_CONTROL_REVALIDATE).build());
+                logger.fine("### Entity of request \"" + JavaUtils.requestInfo(req) + "\" is not modified -- " +
+                    "Responding with " + JavaUtils.responseInfo(Response.Status.NOT_MODIFIED));
+            } else {
+                setHeader(response, "ETag", entityTag.toString());
+                setCacheControlHeader(response, CACHE_CONTROL_REVALIDATE);
+            }
         }
     }
 
@@ -116,12 +177,117 @@ public class CachingPlugin extends PluginActivator implements ServiceRequestFilt
 
     // ---
 
-    // ### FIXME: copy in TimestampsPlugin
-    private DMXObject responseObject(ContainerResponse response) {
+    /**
+     * Returns the objects carried by a response: a single topic, association, or type, or a collection of these.
+     *
+     * @return  the objects, or <code>null</code> if the response carries anything else.
+     */
+    private Collection<DMXObject> responseObjects(ContainerResponse response) {
         Object entity = response.getEntity();
-        return entity instanceof DMXObject ? (DMXObject) entity : null;
+        if (entity instanceof DMXObject) {
+            List<DMXObject> objects = new ArrayList();
+            objects.add((DMXObject) entity);
+            return objects;
+        } else if (entity instanceof Collection) {
+            for (Object object : (Collection) entity) {
+                if (!(object instanceof DMXObject)) {
+                    return null;
+                }
+            }
+            return (Collection<DMXObject>) entity;
+        }
+        return null;
+    }
+
+    // ---
+
+    /**
+     * Returns a string which changes whenever one of the given objects (or the relating association of a related
+     * object) is modified, or the collection changes.
+     *
+     * @return  the validator, or <code>null</code> if the modification time of an object is unknown.
+     */
+    private String validator(Collection<DMXObject> objects) {
+        List<String> validators = new ArrayList();
+        for (DMXObject object : objects) {
+            String validator = validator(object);
+            if (validator == null) {
+                return null;
+            }
+            if (object instanceof RelatedObject) {
+                Association assoc = ((RelatedObject) object).getRelatingAssociation();
+                if (assoc != null) {
+                    String assocValidator = validator(assoc);
+                    if (assocValidator == null) {
+                        return null;
+                    }
+                    validator += "/" + assocValidator;
+                }
+            }
+            validators.add(validator);
+        }
+        return validator(validators);
+    }
+
+    /**
+     * @return  the validator, or <code>null</code> if the modification time of the object is unknown.
+     */
+    private String validator(DMXObject object) {
+        long time = timestampsService.getModificationTime(object.getId());
+        return time != 0 ? validator(object.getId(), time) : null;
     }
 
+    // Note: the request filter (before the object is fetched) and the response filter must calculate the same
+    // validator for a single object. So both rely on these 2 methods.
+
+    /**
+     * Returns the validator of a single object: "{id}:{modification time}".
+     */
+    static String validator(long objectId, long time) {
+        return objectId + ":" + time;
+    }
+
+    /**
+     * Returns the validator of a collection: the validators of its objects, separated by comma. The validator of a
+     * collection of one object equals that object's validator.
+     */
+    static String validator(List<String> validators) {
+        StringBuilder validator = new StringBuilder();
+        for (String _validator : validators) {
+            if (validator.length() > 0) {
+                validator.append(',');
+            }
+            validator.append(_validator);
+        }
+        return validator.toString();
+    }
+
+    // ---
+
+    private EntityTag entityTag(ContainerRequest request, String validator) {
+        return entityTag(validator, dmx.getAccessControl().getUsername(req), request.getRequestUri().getRawQuery());
+    }
+
+    /**
+     * Calculates the entity tag of a response. Besides the objects' validator the requesting user and the query
+     * string (e.g. <code>include_childs</code>) are taken into account.
+     */
+    static EntityTag entityTag(String validator, String username, String query) {
+        return new EntityTag(JavaUtils.encodeSHA256(validator + "\n" + username + "\n" + query));
+    }
+
+    private boolean isReadable(long objectId) {
+        AccessControl ac = dmx.getAccessControl();
+        return ac.hasPermission(ac.getUsername(req), Operation.READ, objectId);
+    }
+
+    private boolean isGetOrHead(ContainerRequest request) {
+        String method = request.getMethod();
+        return method.equals("GET") || method.equals("HEAD");
+    }
+
+    // ---
+
     private void setCacheControlHeader(ContainerResponse response, String value) {
         setHeader(response, HEADER_CACHE_CONTROL, value);
     }
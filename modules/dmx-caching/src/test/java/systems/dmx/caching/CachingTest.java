@@ -8,6 +8,7 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import static java.util.Arrays.asList;
 import java.io.File;
 import java.util.Date;
 import java.util.logging.Logger;
@@ -28,6 +29,23 @@ public class CachingTest {
         assertFalse("core/topic/2695?include_childs=true".matches(CACHABLE_PATH));
     }
 
+    @Test
+    public void entityTagOfSingleObject() {
+        // the request filter calculates the tag before the object is fetched, the response filter from the
+        // returned object -- the tags must be equal, otherwise 304 Not Modified is never responded before fetching
+        String requestValidator = CachingPlugin.validator(2695, 1234567890L);
+        String responseValidator = CachingPlugin.validator(asList(CachingPlugin.validator(2695, 1234567890L)));
+        assertEquals("2695:1234567890", requestValidator);
+        assertEquals(requestValidator, responseValidator);
+        assertEquals(CachingPlugin.entityTag(requestValidator, "testuser", "include_childs=true"),
+                     CachingPlugin.entityTag(responseValidator, "testuser", "include_childs=true"));
+        //
+        assertFalse(CachingPlugin.entityTag(requestValidator, "testuser", null).equals(
+                    CachingPlugin.entityTag(requestValidator, null, null)));
+        assertEquals("2695:1234567890,2696:1234567891", CachingPlugin.validator(asList(
+            CachingPlugin.validator(2695, 1234567890L), CachingPlugin.validator(2696, 1234567891L))));
+    }
+
     @Test
     public void date() {
         logger.info("### Date(0)=" + new Date(0) + "\n          " +
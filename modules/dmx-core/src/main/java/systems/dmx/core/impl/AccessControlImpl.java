@@ -4,6 +4,7 @@ import systems.dmx.core.Association;
 import systems.dmx.core.DMXObject;
 import systems.dmx.core.RelatedTopic;
 import systems.dmx.core.Topic;
+import systems.dmx.core.impl.PermissionCache.ObjectInfo;
 import systems.dmx.core.model.AssociationModel;
 import systems.dmx.core.model.DMXObjectModel;
 import systems.dmx.core.model.SimpleValue;
@@ -19,7 +20,10 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.logging.Logger;
 
@@ -87,9 +91,35 @@ class AccessControlImpl implements AccessControl {
 
     @Override
     public boolean hasPermission(String username, Operation operation, long objectId) {
+        return hasPermission(username, operation, objectId, getScopedDecisions(username, operation));
+    }
+
+    @Override
+    public void retainPermitted(String username, Operation operation, List<Long> objectIds) {
+        Map<Long, Boolean> decisions = getScopedDecisions(username, operation);
+        if (decisions == null) {
+            decisions = new HashMap();
+        }
+        Iterator<Long> i = objectIds.iterator();
+        while (i.hasNext()) {
+            if (!hasPermission(username, operation, i.next(), decisions)) {
+                i.remove();
+            }
+        }
+    }
+
+    // ---
+
+    /**
+     * @param   decisions   the workspace decisions made so far (key: workspace ID), or <code>null</code>.
+     *                      If given, decisions are looked up there first, and new decisions are put there.
+     */
+    private boolean hasPermission(String username, Operation operation, long objectId,
+                                                                        Map<Long, Boolean> decisions) {
         String typeUri = null;
         try {
-            typeUri = getTypeUri(objectId);
+            ObjectInfo info = getObjectInfo(objectId);
+            typeUri = info.typeUri;
             //
             // Note: private topicmaps are treated special. The topicmap's workspace assignment doesn't matter here.
             // Also "operation" doesn't matter as READ/WRITE access is always granted/denied together.
@@ -97,18 +127,20 @@ class AccessControlImpl implements AccessControl {
                 return isCreator(username, objectId);
             }
             //
-            long workspaceId;
-            if (typeUri.equals("dmx.workspaces.workspace")) {
-                workspaceId = objectId;
-            } else {
-                workspaceId = getAssignedWorkspaceId(objectId);
-                if (workspaceId == -1) {
-                    // fallback when no workspace is assigned
-                    return permissionIfNoWorkspaceIsAssigned(operation, objectId, typeUri);
-                }
+            if (info.workspaceId == -1) {
+                // fallback when no workspace is assigned
+                return permissionIfNoWorkspaceIsAssigned(operation, objectId, typeUri);
             }
             //
-            return _hasPermission(username, operation, workspaceId);
+            if (decisions == null) {
+                return _hasPermission(username, operation, info.workspaceId);
+            }
+            Boolean decision = decisions.get(info.workspaceId);
+            if (decision == null) {
+                decision = _hasPermission(username, operation, info.workspaceId);
+                decisions.put(info.workspaceId, decision);
+            }
+            return decision;
         } catch (Exception e) {
             throw new RuntimeException("Checking permission for object " + objectId + " failed (typeUri=\"" + typeUri +
                 "\", " + userInfo(username) + ", operation=" + operation + ")", e);
@@ -343,6 +375,7 @@ class AccessControlImpl implements AccessControl {
                 mf.newTopicRoleModel(workspaceId, "dmx.core.child")
             );
             // store assignment property
+            // Note: this invalidates the object's permission cache entry (see StorageDecorator)
             object.setProperty(PROP_WORKSPACE_ID, workspaceId, true);   // addToIndex=true
         } catch (Exception e) {
             throw new RuntimeException("Assigning " + object + " to workspace " + workspaceId + " failed", e);
@@ -500,7 +533,24 @@ class AccessControlImpl implements AccessControl {
         }
     }
 
+    /**
+     * Decides via the permission cache, if enabled.
+     */
     private boolean _hasPermission(String username, Operation operation, long workspaceId) {
+        PermissionCache cache = pl.permissionCache;
+        if (!cache.isEnabled()) {
+            return __hasPermission(username, operation, workspaceId);
+        }
+        Boolean decision = cache.getDecision(username, operation, workspaceId);
+        if (decision == null) {
+            long generation = cache.generation();
+            decision = __hasPermission(username, operation, workspaceId);
+            cache.putDecision(username, operation, workspaceId, decision, generation);
+        }
+        return decision;
+    }
+
+    private boolean __hasPermission(String username, Operation operation, long workspaceId) {
         switch (operation) {
         case READ:
             return hasReadPermission(username, workspaceId);
@@ -511,6 +561,28 @@ class AccessControlImpl implements AccessControl {
         }
     }
 
+    /**
+     * Returns the workspace decisions (key: workspace ID) made for the given user and operation within the current
+     * read-only transaction scope. Within a read scope nothing changes, so each workspace decision is made only once
+     * per scope (that is per GET request).
+     *
+     * @return  the decisions, or <code>null</code> if no read scope is active.
+     */
+    private Map<Long, Boolean> getScopedDecisions(String username, Operation operation) {
+        ReadTransaction scope = ReadTransaction.current();
+        if (scope == null) {
+            return null;
+        }
+        String key = "dmx.accesscontrol.decisions." + operation + "." + (username != null ? "user:" + username :
+            "anonymous");
+        Map<Long, Boolean> decisions = (Map<Long, Boolean>) scope.getAttribute(key);
+        if (decisions == null) {
+            decisions = new HashMap();
+            scope.setAttribute(key, decisions);
+        }
+        return decisions;
+    }
+
     // ---
 
     /**
@@ -576,6 +648,24 @@ class AccessControlImpl implements AccessControl {
         return (String) pl.fetchProperty(workspaceId, PROP_OWNER);
     }
 
+    /**
+     * Returns the object's type URI and the ID of the workspace relevant for permission checks. For a workspace
+     * this is the workspace itself. Looked up via the permission cache, if enabled.
+     */
+    private ObjectInfo getObjectInfo(long objectId) {
+        PermissionCache cache = pl.permissionCache;
+        ObjectInfo info = cache.isEnabled() ? cache.getObjectInfo(objectId) : null;
+        if (info == null) {
+            long generation = cache.generation();
+            String typeUri = getTypeUri(objectId);
+            long workspaceId = typeUri.equals("dmx.workspaces.workspace") ? objectId :
+                getAssignedWorkspaceId(objectId);
+            info = new ObjectInfo(typeUri, workspaceId);
+            cache.putObjectInfo(objectId, info, generation);
+        }
+        return info;
+    }
+
     private String getTypeUri(long objectId) {
         // Note: direct storage access is required here
         return (String) pl.fetchProperty(objectId, "typeUri");
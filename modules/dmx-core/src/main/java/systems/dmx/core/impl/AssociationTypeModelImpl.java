@@ -5,6 +5,7 @@ import systems.dmx.core.model.AssociationTypeModel;
 import systems.dmx.core.model.SimpleValue;
 import systems.dmx.core.service.Directive;
 
+import java.util.Iterator;
 import java.util.List;
 
 
@@ -67,6 +68,16 @@ public class AssociationTypeModelImpl extends TypeModelImpl implements Associati
         return pl.fetchAssociations("typeUri", new SimpleValue(uri));
     }
 
+    @Override
+    Iterator<AssociationModelImpl> getInstanceCursor(boolean sortById) {
+        return pl.fetchAssociationCursor("typeUri", new SimpleValue(uri), sortById);
+    }
+
+    @Override
+    int countInstances() {
+        return pl.countAssociations("typeUri", new SimpleValue(uri));
+    }
+
     // ---
 
     @Override
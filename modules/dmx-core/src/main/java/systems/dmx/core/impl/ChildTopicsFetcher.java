@@ -4,7 +4,11 @@ import systems.dmx.core.model.AssociationDefinitionModel;
 import systems.dmx.core.model.ChildTopicsModel;
 import systems.dmx.core.model.DMXObjectModel;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 
 
@@ -64,8 +68,108 @@ class ChildTopicsFetcher {
         }
     }
 
+    /**
+     * Fetches the child topic models (recursively) of all the given object models and updates them in-place.
+     * <p>
+     * In contrast to {@link #fetch} the fetching is done level-wise: per composition level and assoc def one storage
+     * query is issued for all the objects at that level. So the number of storage queries is O(depth x assoc defs),
+     * regardless of the number of objects.
+     * <p>
+     * As with <code>DMXObjectModelImpl.loadChildTopics()</code> child topics already loaded are not fetched again.
+     * <p>
+     * An object may occur more than once (e.g. a topic contained twice in the given list, or an aggregated child
+     * shared by several parents). Each occurrence is filled with child topic models of its own.
+     */
+    void fetch(List<? extends DMXObjectModelImpl> objects) {
+        List<? extends DMXObjectModelImpl> level = objects;
+        while (!level.isEmpty()) {
+            List<RelatedTopicModelImpl> nextLevel = new ArrayList();
+            for (List<DMXObjectModelImpl> sameType : groupByType(level).values()) {
+                for (AssociationDefinitionModel assocDef : sameType.get(0).getType().getAssocDefs()) {
+                    fetch(sameType, assocDef, nextLevel);
+                }
+            }
+            level = nextLevel;
+        }
+    }
+
     // ------------------------------------------------------------------------------------------------- Private Methods
 
+    /**
+     * Fetches the child topic models of the given object models according to the given assoc def (not recursively)
+     * and updates them in-place. All the objects are expected to be of the same type. If several objects have the
+     * same ID each one gets a copy of the fetched child topic.
+     *
+     * @param   nextLevel   the fetched child topics are added to this list.
+     */
+    private void fetch(List<DMXObjectModelImpl> objects, AssociationDefinitionModel assocDef,
+                                                         List<RelatedTopicModelImpl> nextLevel) {
+        String assocDefUri = assocDef.getAssocDefUri();
+        try {
+            // key: object ID, value: the object instances with that ID
+            Map<Long, List<DMXObjectModelImpl>> parents = new HashMap();
+            for (DMXObjectModelImpl object : objects) {
+                if (!object.getChildTopicsModel().has(assocDefUri)) {
+                    List<DMXObjectModelImpl> instances = parents.get(object.getId());
+                    if (instances == null) {
+                        instances = new ArrayList();
+                        parents.put(object.getId(), instances);
+                    }
+                    instances.add(object);
+                }
+            }
+            if (parents.isEmpty()) {
+                return;
+            }
+            //
+            String cardinalityUri = assocDef.getChildCardinalityUri();
+            boolean one = cardinalityUri.equals("dmx.core.one");
+            if (!one && !cardinalityUri.equals("dmx.core.many")) {
+                throw new RuntimeException("\"" + cardinalityUri + "\" is an unexpected cardinality URI");
+            }
+            //
+            List<Long> parentIds = new ArrayList(parents.keySet());
+            for (RelatedTopicModelImpl childTopic : fetchChildTopics(parentIds, assocDef)) {
+                long parentId = childTopic.getRelatingAssociation().getOtherPlayerId(childTopic.getId());
+                List<DMXObjectModelImpl> instances = parents.get(parentId);
+                for (int i = 0; i < instances.size(); i++) {
+                    // Note: the instances must not share a child topic model as the models are updated in-place
+                    RelatedTopicModelImpl child = i == 0 ? childTopic : (RelatedTopicModelImpl) childTopic.clone();
+                    ChildTopicsModelImpl childTopics = instances.get(i).getChildTopicsModel();
+                    if (one) {
+                        if (childTopics.has(assocDefUri)) {
+                            throw new RuntimeException("Ambiguity: object " + parentId + " has more than one \"" +
+                                assocDefUri + "\" child topic");
+                        }
+                        childTopics.put(assocDefUri, child);
+                    } else {
+                        childTopics.add(assocDefUri, child);
+                    }
+                    nextLevel.add(child);
+                }
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Fetching the \"" + assocDefUri + "\" child topics of " + objects.size() +
+                " objects failed", e);
+        }
+    }
+
+    private Map<String, List<DMXObjectModelImpl>> groupByType(List<? extends DMXObjectModelImpl> objects) {
+        Map<String, List<DMXObjectModelImpl>> groups = new LinkedHashMap();
+        for (DMXObjectModelImpl object : objects) {
+            String typeUri = object.getTypeUri();
+            List<DMXObjectModelImpl> group = groups.get(typeUri);
+            if (group == null) {
+                group = new ArrayList();
+                groups.put(typeUri, group);
+            }
+            group.add(object);
+        }
+        return groups;
+    }
+
+    // ---
+
     /**
      * Fetches the child topic models (recursively) of the given object model and updates it in-place.
      * ### TODO: recursion is required in some cases (e.g. when fetching a topic through REST API) but is possibly
@@ -99,4 +203,13 @@ class ChildTopicsFetcher {
             assocDef.getChildTypeUri()
         );
     }
+
+    private List<RelatedTopicModelImpl> fetchChildTopics(List<Long> objectIds, AssociationDefinitionModel assocDef) {
+        return pl.fetchRelatedTopics(
+            objectIds,
+            assocDef.getInstanceLevelAssocTypeUri(),
+            "dmx.core.parent", "dmx.core.child",
+            assocDef.getChildTypeUri()
+        );
+    }
 }
@@ -19,6 +19,8 @@ import com.sun.jersey.spi.container.ContainerResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import java.util.List;
+
 
 
 /**
@@ -48,6 +50,25 @@ class CoreEvent {
         }
     };
 
+    static DMXEvent CHECK_TOPICS_READ_ACCESS = new DMXEvent(CheckTopicsReadAccessListener.class) {
+        @Override
+        public void dispatch(EventListener listener, Object... params) {
+            ((CheckTopicsReadAccessListener) listener).checkTopicsReadAccess(
+                (List<Long>) params[0]
+            );
+        }
+    };
+
+    static DMXEvent CHECK_ASSOCIATIONS_READ_ACCESS =
+                                                        new DMXEvent(CheckAssociationsReadAccessListener.class) {
+        @Override
+        public void dispatch(EventListener listener, Object... params) {
+            ((CheckAssociationsReadAccessListener) listener).checkAssociationsReadAccess(
+                (List<Long>) params[0]
+            );
+        }
+    };
+
     // ---
 
     static DMXEvent CHECK_TOPIC_WRITE_ACCESS = new DMXEvent(CheckTopicWriteAccessListener.class) {
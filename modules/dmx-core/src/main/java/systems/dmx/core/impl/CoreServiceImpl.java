@@ -21,6 +21,7 @@ import systems.dmx.core.storage.spi.DMXTransaction;
 import org.osgi.framework.BundleContext;
 
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 
 
@@ -100,6 +101,31 @@ public class CoreServiceImpl implements CoreService {
         return pl.getTopicsByType(topicTypeUri);
     }
 
+    @Override
+    public List<Topic> getTopicsByType(String topicTypeUri, int offset, int limit, boolean sortById) {
+        return pl.getTopicsByType(topicTypeUri, offset, limit, sortById);
+    }
+
+    @Override
+    public Iterable<Topic> iterateTopicsByType(String topicTypeUri, boolean sortById) {
+        return pl.iterateTopicsByType(topicTypeUri, sortById);
+    }
+
+    @Override
+    public int countTopicsByType(String topicTypeUri) {
+        return pl.countTopicsByType(topicTypeUri);
+    }
+
+    @Override
+    public int countReadableTopicsByType(String topicTypeUri) {
+        return pl.countReadableTopicsByType(topicTypeUri);
+    }
+
+    @Override
+    public int countTopicsByValue(String key, SimpleValue value) {
+        return pl.countTopics(key, value);
+    }
+
     @Override
     public List<Topic> searchTopics(String searchTerm, String fieldUri) {
         return pl.searchTopics(searchTerm, fieldUri);
@@ -166,6 +192,31 @@ public class CoreServiceImpl implements CoreService {
         return pl.getAssociationsByType(assocTypeUri);
     }
 
+    @Override
+    public List<Association> getAssociationsByType(String assocTypeUri, int offset, int limit, boolean sortById) {
+        return pl.getAssociationsByType(assocTypeUri, offset, limit, sortById);
+    }
+
+    @Override
+    public Iterable<Association> iterateAssociationsByType(String assocTypeUri, boolean sortById) {
+        return pl.iterateAssociationsByType(assocTypeUri, sortById);
+    }
+
+    @Override
+    public int countAssociationsByType(String assocTypeUri) {
+        return pl.countAssociationsByType(assocTypeUri);
+    }
+
+    @Override
+    public int countReadableAssociationsByType(String assocTypeUri) {
+        return pl.countReadableAssociationsByType(assocTypeUri);
+    }
+
+    @Override
+    public int countAssociationsByValue(String key, SimpleValue value) {
+        return pl.countAssociations(key, value);
+    }
+
     @Override
     public List<Association> getAssociations(long topic1Id, long topic2Id) {
         return pl.getAssociations(topic1Id, topic2Id);
@@ -299,6 +350,25 @@ public class CoreServiceImpl implements CoreService {
         return pl.getObject(id);
     }
 
+    @Override
+    public int countRelatedTopics(long objectId, String assocTypeUri, String myRoleTypeUri, String othersRoleTypeUri,
+                                                                                         String othersTopicTypeUri) {
+        return pl.countRelatedTopics(objectId, assocTypeUri, myRoleTypeUri, othersRoleTypeUri, othersTopicTypeUri);
+    }
+
+    @Override
+    public int countReadableRelatedTopics(long objectId, String assocTypeUri, String myRoleTypeUri,
+                                          String othersRoleTypeUri, String othersTopicTypeUri) {
+        return pl.countReadableRelatedTopics(objectId, assocTypeUri, myRoleTypeUri, othersRoleTypeUri,
+            othersTopicTypeUri);
+    }
+
+    @Override
+    public boolean hasRelatedTopics(long objectId, String assocTypeUri, String myRoleTypeUri, String othersRoleTypeUri,
+                                                                                          String othersTopicTypeUri) {
+        return pl.hasRelatedTopics(objectId, assocTypeUri, myRoleTypeUri, othersRoleTypeUri, othersTopicTypeUri);
+    }
+
 
 
     // === Plugins ===
@@ -341,6 +411,11 @@ public class CoreServiceImpl implements CoreService {
         return pl.hasProperty(id, propUri);
     }
 
+    @Override
+    public Map<Long, Map<String, Object>> getProperties(List<Long> ids, List<String> propUris) {
+        return pl.fetchProperties(ids, propUris);
+    }
+
     // ---
 
     @Override
@@ -363,6 +438,16 @@ public class CoreServiceImpl implements CoreService {
         return pl.getAssociationsByPropertyRange(propUri, from, to);
     }
 
+    @Override
+    public int countTopicsByProperty(String propUri, Object propValue) {
+        return pl.countTopicsByProperty(propUri, propValue);
+    }
+
+    @Override
+    public int countAssociationsByProperty(String propUri, Object propValue) {
+        return pl.countAssociationsByProperty(propUri, propValue);
+    }
+
     // ---
 
     @Override
@@ -408,6 +493,16 @@ public class CoreServiceImpl implements CoreService {
         return pl.beginTx();
     }
 
+    @Override
+    public void runAfterCommit(Runnable task) {
+        em.runAfterCommit(task);
+    }
+
+    @Override
+    public void runAfterCompletion(Runnable task) {
+        em.runAfterCompletion(task);
+    }
+
     // ---
 
     @Override
@@ -435,7 +530,9 @@ public class CoreServiceImpl implements CoreService {
     // Note: not part of public interface
     // Called from CoreActivator
     public void shutdown() {
+        em.shutdown();      // asynchronous listeners might still send WebSocket messages
         wsService.shutdown();
+        logger.info("Event statistics:" + em.stats());
     }
 
     // ----------------------------------------------------------------------------------------- Package Private Methods
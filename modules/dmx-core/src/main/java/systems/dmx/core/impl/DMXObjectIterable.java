@@ -8,6 +8,7 @@ import systems.dmx.core.model.DMXObjectModel;
 import systems.dmx.core.model.TopicModel;
 
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 
 
@@ -46,6 +47,25 @@ class AssociationIterable implements Iterable<Association> {
 }
 
 
+/**
+ * An iterable over a lazy cursor of topic or association models, e.g. the instances of a type.
+ * The objects are instantiated while iterating. Objects the current user has no READ permission for are skipped.
+ */
+class ReadableIterable<O extends DMXObject> implements Iterable<O> {
+
+    private Iterator<O> objects;
+
+    ReadableIterable(Iterator<? extends DMXObjectModelImpl> models, PersistenceLayer pl) {
+        this.objects = new ReadableIterator(models, pl);
+    }
+
+    @Override
+    public Iterator<O> iterator() {
+        return objects;
+    }
+}
+
+
 
 // ===
 
@@ -126,3 +146,50 @@ abstract class ObjectIterator<O extends DMXObject, M extends DMXObjectModelImpl>
 
     abstract O instantiateObject(M model);
 }
+
+
+
+class ReadableIterator<O extends DMXObject> implements Iterator<O> {
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    private Iterator<? extends DMXObjectModelImpl> models;
+    private PersistenceLayer pl;
+    private DMXObjectModelImpl nextModel;
+
+    // ---------------------------------------------------------------------------------------------------- Constructors
+
+    ReadableIterator(Iterator<? extends DMXObjectModelImpl> models, PersistenceLayer pl) {
+        this.models = models;
+        this.pl = pl;
+    }
+
+    // -------------------------------------------------------------------------------------------------- Public Methods
+
+    @Override
+    public boolean hasNext() {
+        while (nextModel == null && models.hasNext()) {
+            DMXObjectModelImpl model = models.next();
+            if (pl.hasReadAccess(model)) {
+                nextModel = model;
+            }
+        }
+        return nextModel != null;
+    }
+
+    @Override
+    public O next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("there is no next object");
+        }
+        //
+        O object = (O) nextModel.instantiate();
+        nextModel = null;
+        return object;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("removal is not supported");
+    }
+}
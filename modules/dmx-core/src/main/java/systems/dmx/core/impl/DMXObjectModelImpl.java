@@ -401,7 +401,9 @@ class DMXObjectModelImpl implements DMXObjectModel {
         try {
             logger.info("Updating " + objectInfo() + " (typeUri=\"" + typeUri + "\")");
             DMXObjectModel oldObject = clone();
-            em.fireEvent(getPreUpdateEvent(), instantiate(), updateModel);
+            if (em.hasListeners(getPreUpdateEvent())) {
+                em.fireEvent(getPreUpdateEvent(), instantiate(), updateModel);
+            }
             //
             preUpdate(updateModel);
             //
@@ -1,27 +1,88 @@
 package systems.dmx.core.impl;
 
 import systems.dmx.core.osgi.PluginContext;
+import systems.dmx.core.service.Async;
 import systems.dmx.core.service.DMXEvent;
 import systems.dmx.core.service.EventListener;
 import systems.dmx.core.service.accesscontrol.AccessControlException;
+import systems.dmx.core.storage.spi.DMXTransaction;
 
 import javax.ws.rs.WebApplicationException;
 
+import java.lang.reflect.Method;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 
 
+/**
+ * Registers event listeners and dispatches events to them.
+ * <p>
+ * Events are fired on hot paths (e.g. CHECK_TOPIC_READ_ACCESS and PRE_SEND_TOPIC for every object passed to the user).
+ * So the listeners of an event are held in an immutable array which is replaced on (un)registration (copy-on-write).
+ * Firing an event involves no locking and no allocation if there are no listeners. The fixed-arity
+ * <code>fireEvent()</code> variants avoid the varargs array in that case.
+ * <p>
+ * For each event the number of firings and the cumulative dispatch time (including nested events) are recorded.
+ * <p>
+ * Listener methods annotated with {@link Async} receive the post-create/update/delete events asynchronously. These
+ * events are queued per transaction and handed to a bounded thread pool once the transaction is committed (see
+ * {@link #wrap}). When the pool's queue is full the committing thread delivers the events itself (back-pressure).
+ * <p>
+ * Besides, arbitrary tasks can be run once the current transaction is committed (see {@link #runAfterCommit}), resp.
+ * once it is finished regardless of its outcome (see {@link #runAfterCompletion}).
+ */
 class EventManager {
 
+    // ------------------------------------------------------------------------------------------------------- Constants
+
+    private static final EventListener[] NO_LISTENERS = new EventListener[0];
+    private static final Object[] NO_PARAMS = new Object[0];
+
+    private static final int ASYNC_THREADS = Integer.getInteger("dmx.events.async_threads", 2);
+    private static final int ASYNC_QUEUE_SIZE = Integer.getInteger("dmx.events.async_queue_size", 1000);
+    private static final int ASYNC_SHUTDOWN_TIMEOUT = 10;      // in seconds
+
+    /**
+     * The events which can be delivered asynchronously.
+     */
+    private static final List<DMXEvent> ASYNC_EVENTS = Arrays.asList(
+        CoreEvent.POST_CREATE_TOPIC,    CoreEvent.POST_CREATE_ASSOCIATION,
+        CoreEvent.POST_UPDATE_TOPIC,    CoreEvent.POST_UPDATE_ASSOCIATION,
+        CoreEvent.POST_DELETE_TOPIC,    CoreEvent.POST_DELETE_ASSOCIATION
+    );
+
     // ---------------------------------------------------------------------------------------------- Instance Variables
 
     /**
-     * The registered event listeners (key: event class name, value: event listeners).
+     * The registered event listeners (key: event class name, value: event listeners and statistics).
+     * <p>
+     * Note: events are identified by class name (not by object) as an event object might be re-created when the
+     * defining plugin is redeployed.
      */
-    private Map<String, List<EventListener>> listenerRegistry = new HashMap();
+    private Map<String, Registration> listenerRegistry = new ConcurrentHashMap();
+
+    /**
+     * The asynchronous deliveries queued by the transaction of the current thread.
+     */
+    private final ThreadLocal<TransactionState> txState = new ThreadLocal();
+
+    private final ThreadPoolExecutor asyncExecutor;
+    private final AtomicLong callerRuns = new AtomicLong();     // number of deliveries run by the firing thread
+
+    private final Logger logger = Logger.getLogger(getClass().getName());
 
     // ---------------------------------------------------------------------------------------------------- Constructors
 
@@ -29,34 +90,119 @@ class EventManager {
         // Note: actually the class CoreEvent does not need to be instantiated as it contains only statics.
         // But if not instantiated OSGi apparently does not load the class at all.
         new CoreEvent();
+        //
+        this.asyncExecutor = new ThreadPoolExecutor(ASYNC_THREADS, ASYNC_THREADS, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue(ASYNC_QUEUE_SIZE), new AsyncThreadFactory(), new CallerRuns());
+        asyncExecutor.allowCoreThreadTimeOut(true);
+        logger.info("Asynchronous event delivery: threads=" + ASYNC_THREADS + ", queueSize=" + ASYNC_QUEUE_SIZE);
     }
 
     // ----------------------------------------------------------------------------------------- Package Private Methods
 
-    void addListener(DMXEvent event, EventListener listener) {
-        List<EventListener> listeners = getListeners(event);
-        if (listeners == null) {
-            listeners = new ArrayList();
-            putListeners(event, listeners);
+    synchronized void addListener(DMXEvent event, EventListener listener) {
+        Registration registration = getRegistration(event);
+        if (registration == null) {
+            registration = new Registration(event);
+            listenerRegistry.put(event.getClass().getName(), registration);
+        }
+        if (isAsync(event, listener)) {
+            registration.asyncListeners = add(registration.asyncListeners, listener);
+        } else {
+            registration.listeners = add(registration.listeners, listener);
         }
-        listeners.add(listener);
     }
 
-    void removeListener(DMXEvent event, EventListener listener) {
-        List<EventListener> listeners = getListeners(event);
-        if (!listeners.remove(listener)) {
-            throw new RuntimeException("Removing " + listener + " from " +
-                event + " event listeners failed: not found in " + listeners);
+    synchronized void removeListener(DMXEvent event, EventListener listener) {
+        Registration registration = getRegistration(event);
+        if (registration != null) {
+            int i = Arrays.asList(registration.listeners).indexOf(listener);
+            if (i != -1) {
+                registration.listeners = remove(registration.listeners, i);
+                return;
+            }
+            i = Arrays.asList(registration.asyncListeners).indexOf(listener);
+            if (i != -1) {
+                registration.asyncListeners = remove(registration.asyncListeners, i);
+                return;
+            }
         }
+        throw new RuntimeException("Removing " + listener + " from " + event + " event listeners failed: not found");
     }
 
     // ---
 
-    void fireEvent(DMXEvent event, Object... params) {
-        List<EventListener> listeners = getListeners(event);
-        if (listeners != null) {
-            for (EventListener listener : listeners) {
-                dispatchEvent(listener, event, params);
+    boolean hasListeners(DMXEvent event) {
+        Registration registration = getRegistration(event);
+        return registration != null && registration.hasListeners();
+    }
+
+    // ---
+
+    void fireEvent(DMXEvent event) {
+        Registration registration = getRegistration(event);
+        if (registration != null && registration.hasListeners()) {
+            fire(registration, event, NO_PARAMS);
+        }
+    }
+
+    void fireEvent(DMXEvent event, Object param) {
+        Registration registration = getRegistration(event);
+        if (registration != null && registration.hasListeners()) {
+            fire(registration, event, new Object[] {param});
+        }
+    }
+
+    void fireEvent(DMXEvent event, Object param1, Object param2) {
+        Registration registration = getRegistration(event);
+        if (registration != null && registration.hasListeners()) {
+            fire(registration, event, new Object[] {param1, param2});
+        }
+    }
+
+    void fireEvent(DMXEvent event, Object param1, Object param2, Object param3) {
+        Registration registration = getRegistration(event);
+        if (registration != null && registration.hasListeners()) {
+            fire(registration, event, new Object[] {param1, param2, param3});
+        }
+    }
+
+    /**
+     * Note: intentionally not a varargs method. A call with 1 argument would be ambiguous with
+     * {@link #fireEvent(DMXEvent, Object)} otherwise.
+     */
+    void fireEvent(DMXEvent event, Object[] params) {
+        Registration registration = getRegistration(event);
+        if (registration != null && registration.hasListeners()) {
+            fire(registration, event, params);
+        }
+    }
+
+    /**
+     * Fires a batch "check access" event, that is an event whose listeners remove the IDs of the objects the current
+     * user has no permission for from the given list. Listeners which implement only the single-object variant of
+     * that event are supported as well: the single-object event is dispatched to them for each remaining ID, and the
+     * IDs an AccessControlException is thrown for are removed.
+     *
+     * @param   objectIds   the IDs to check. Is modified in-place.
+     */
+    void fireBatchEvent(DMXEvent batchEvent, DMXEvent event, List<Long> objectIds) {
+        fireEvent(batchEvent, objectIds);
+        //
+        Registration registration = getRegistration(event);
+        if (registration == null) {
+            return;
+        }
+        for (EventListener listener : registration.listeners) {
+            if (batchEvent.getListenerInterface().isInstance(listener)) {
+                continue;
+            }
+            Iterator<Long> i = objectIds.iterator();
+            while (i.hasNext()) {
+                try {
+                    dispatchEvent(listener, event, i.next());
+                } catch (AccessControlException e) {
+                    i.remove();
+                }
             }
         }
     }
@@ -76,8 +222,119 @@ class EventManager {
         dispatchEvent((EventListener) pluginContext, event, params);
     }
 
+    // ---
+
+    /**
+     * Wraps a storage transaction in order to deliver the asynchronous events fired within that transaction once it
+     * is committed. If the transaction is rolled back the events are discarded. Nested transactions are supported:
+     * the events are delivered when the outermost transaction finishes.
+     */
+    DMXTransaction wrap(DMXTransaction tx) {
+        TransactionState state = txState.get();
+        if (state == null) {
+            state = new TransactionState();
+            txState.set(state);
+        }
+        state.depth++;
+        return new EventTransaction(tx, state);
+    }
+
+    /**
+     * Runs a task once the transaction of the current thread is committed. The task is run synchronously, by the
+     * committing thread, after the outermost transaction is finished. If the transaction is rolled back the task is
+     * discarded. If no transaction is open the task is run right away.
+     * <p>
+     * An exception thrown by the task is logged but not propagated (the transaction is committed already).
+     */
+    void runAfterCommit(Runnable task) {
+        TransactionState state = txState.get();
+        if (state != null) {
+            state.commitTasks.add(task);
+        } else {
+            runTask(task);
+        }
+    }
+
+    /**
+     * Runs a task once the transaction of the current thread is finished, regardless whether it is committed or
+     * rolled back, e.g. for releasing a lock which is to be held until then. The task is run synchronously, by the
+     * finishing thread, after the outermost transaction is finished (and after the after-commit tasks). If no
+     * transaction is open the task is run right away.
+     * <p>
+     * An exception thrown by the task is logged but not propagated.
+     */
+    void runAfterCompletion(Runnable task) {
+        TransactionState state = txState.get();
+        if (state != null) {
+            state.completionTasks.add(task);
+        } else {
+            runTask(task);
+        }
+    }
+
+    /**
+     * Stops the asynchronous event delivery. The events already queued are still delivered (waiting a limited time).
+     */
+    void shutdown() {
+        asyncExecutor.shutdown();
+        try {
+            if (!asyncExecutor.awaitTermination(ASYNC_SHUTDOWN_TIMEOUT, TimeUnit.SECONDS)) {
+                List<Runnable> deliveries = asyncExecutor.shutdownNow();
+                logger.warning("Asynchronous event delivery did not finish within " + ASYNC_SHUTDOWN_TIMEOUT +
+                    " seconds -- " + deliveries.size() + " queued deliveries are discarded");
+            }
+        } catch (InterruptedException e) {
+            asyncExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ---
+
+    /**
+     * Returns the statistics of the events fired so far, one line per event.
+     */
+    String stats() {
+        StringBuilder stats = new StringBuilder();
+        for (Registration registration : listenerRegistry.values()) {
+            if (registration.count.get() > 0 || registration.asyncCount.get() > 0) {
+                stats.append("\n  ").append(registration);
+            }
+        }
+        stats.append("\n  Asynchronous delivery: queued=").append(asyncExecutor.getQueue().size())
+            .append(", completed=").append(asyncExecutor.getCompletedTaskCount())
+            .append(", callerRuns=").append(callerRuns.get());
+        return stats.toString();
+    }
+
     // ------------------------------------------------------------------------------------------------- Private Methods
 
+    private void fire(Registration registration, DMXEvent event, Object[] params) {
+        EventListener[] listeners = registration.listeners;
+        if (listeners.length > 0) {
+            long startTime = System.nanoTime();
+            try {
+                for (EventListener listener : listeners) {
+                    dispatchEvent(listener, event, params);
+                }
+            } finally {
+                registration.count.incrementAndGet();
+                registration.time.addAndGet(System.nanoTime() - startTime);
+            }
+        }
+        //
+        EventListener[] asyncListeners = registration.asyncListeners;
+        if (asyncListeners.length > 0) {
+            AsyncDelivery delivery = new AsyncDelivery(registration, event, params, asyncListeners);
+            TransactionState state = txState.get();
+            if (state != null) {
+                state.deliveries.add(delivery);
+            } else {
+                asyncExecutor.execute(delivery);
+            }
+        }
+    }
+
     private void dispatchEvent(EventListener listener, DMXEvent event, Object... params) {
         try {
             event.dispatch(listener, params);
@@ -100,6 +357,74 @@ class EventManager {
 
     // ---
 
+    /**
+     * Returns true if the given listener's implementation of the given event's listener method is annotated with
+     * {@link Async}. The annotation is honored only for the events in {@link #ASYNC_EVENTS}.
+     */
+    private boolean isAsync(DMXEvent event, EventListener listener) {
+        Class<?> listenerInterface = event.getListenerInterface();
+        for (Method method : listenerInterface.getMethods()) {
+            try {
+                Method impl = listener.getClass().getMethod(method.getName(), method.getParameterTypes());
+                if (impl.isAnnotationPresent(Async.class)) {
+                    if (ASYNC_EVENTS.contains(event)) {
+                        return true;
+                    }
+                    logger.warning("@Async is not supported for " + listenerInterface.getSimpleName() +
+                        " -- " + listener + " receives the event synchronously");
+                }
+            } catch (NoSuchMethodException e) {
+                // not reachable as the listener implements the listener interface
+            }
+        }
+        return false;
+    }
+
+    private void finishTransaction(TransactionState state, boolean committed) {
+        if (!committed) {
+            state.failed = true;
+        }
+        if (--state.depth == 0) {
+            txState.remove();
+            if (!state.failed) {
+                for (AsyncDelivery delivery : state.deliveries) {
+                    asyncExecutor.execute(delivery);
+                }
+                for (Runnable task : state.commitTasks) {
+                    runTask(task);
+                }
+            }
+            for (Runnable task : state.completionTasks) {
+                runTask(task);
+            }
+        }
+    }
+
+    private void runTask(Runnable task) {
+        try {
+            task.run();
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "An error occurred in task " + task + " (run after the transaction)", e);
+        }
+    }
+
+    // ---
+
+    private static EventListener[] add(EventListener[] listeners, EventListener listener) {
+        EventListener[] _listeners = Arrays.copyOf(listeners, listeners.length + 1);
+        _listeners[_listeners.length - 1] = listener;
+        return _listeners;
+    }
+
+    private static EventListener[] remove(EventListener[] listeners, int i) {
+        EventListener[] _listeners = new EventListener[listeners.length - 1];
+        System.arraycopy(listeners, 0, _listeners, 0, i);
+        System.arraycopy(listeners, i + 1, _listeners, i, _listeners.length - i);
+        return _listeners;
+    }
+
+    // ---
+
     /**
      * Returns true if the given plugin is a listener for the given event.
      */
@@ -109,11 +434,141 @@ class EventManager {
 
     // ---
 
-    private List<EventListener> getListeners(DMXEvent event) {
+    private Registration getRegistration(DMXEvent event) {
         return listenerRegistry.get(event.getClass().getName());
     }
 
-    private void putListeners(DMXEvent event, List<EventListener> listeners) {
-        listenerRegistry.put(event.getClass().getName(), listeners);
+    // ------------------------------------------------------------------------------------------------- Private Classes
+
+    private static class Registration {
+
+        private final String eventName;
+        private volatile EventListener[] listeners = NO_LISTENERS;        // never modified, only replaced
+        private volatile EventListener[] asyncListeners = NO_LISTENERS;   // never modified, only replaced
+
+        private final AtomicLong count = new AtomicLong();  // number of firings (with at least 1 listener)
+        private final AtomicLong time = new AtomicLong();   // cumulative dispatch time (in nanoseconds)
+
+        private final AtomicLong asyncCount = new AtomicLong();     // number of asynchronous deliveries
+        private final AtomicLong asyncErrors = new AtomicLong();    // number of failed asynchronous listener calls
+
+        private Registration(DMXEvent event) {
+            this.eventName = event.getListenerInterface().getSimpleName();
+        }
+
+        private boolean hasListeners() {
+            return listeners.length > 0 || asyncListeners.length > 0;
+        }
+
+        @Override
+        public String toString() {
+            long count = this.count.get();
+            long time = this.time.get();
+            return eventName + ": listeners=" + listeners.length + ", count=" + count + ", total=" + time / 1000000 +
+                "ms, avg=" + (count > 0 ? time / count / 1000 : 0) + "us" + (asyncListeners.length > 0 ||
+                asyncCount.get() > 0 ? ", asyncListeners=" + asyncListeners.length + ", asyncCount=" + asyncCount +
+                ", asyncErrors=" + asyncErrors : "");
+        }
+    }
+
+    private static class TransactionState {
+        private int depth;
+        private boolean failed;
+        private List<AsyncDelivery> deliveries = new ArrayList();
+        private List<Runnable> commitTasks = new ArrayList();
+        private List<Runnable> completionTasks = new ArrayList();
+    }
+
+    private class EventTransaction implements DMXTransaction {
+
+        private DMXTransaction tx;
+        private TransactionState state;
+        private boolean success;
+
+        private EventTransaction(DMXTransaction tx, TransactionState state) {
+            this.tx = tx;
+            this.state = state;
+        }
+
+        @Override
+        public void success() {
+            tx.success();
+            success = true;
+        }
+
+        @Override
+        public void failure() {
+            tx.failure();
+            success = false;
+        }
+
+        @Override
+        public void finish() {
+            boolean committed = false;
+            try {
+                tx.finish();
+                committed = success;
+            } finally {
+                finishTransaction(state, committed);
+            }
+        }
+    }
+
+    /**
+     * Delivers an event to its asynchronous listeners. Errors are logged and counted but not propagated.
+     */
+    private class AsyncDelivery implements Runnable {
+
+        private Registration registration;
+        private DMXEvent event;
+        private Object[] params;
+        private EventListener[] listeners;
+
+        private AsyncDelivery(Registration registration, DMXEvent event, Object[] params, EventListener[] listeners) {
+            this.registration = registration;
+            this.event = event;
+            this.params = params;
+            this.listeners = listeners;
+        }
+
+        @Override
+        public void run() {
+            for (EventListener listener : listeners) {
+                try {
+                    event.dispatch(listener, params);
+                } catch (Throwable e) {
+                    registration.asyncErrors.incrementAndGet();
+                    logger.log(Level.SEVERE, "An error occurred in the asynchronous " +
+                        event.getListenerInterface().getSimpleName() + " of " + listener, e);
+                }
+            }
+            registration.asyncCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Back-pressure: when the queue is full the firing thread delivers the event itself.
+     */
+    private class CallerRuns extends ThreadPoolExecutor.CallerRunsPolicy {
+
+        @Override
+        public void rejectedExecution(Runnable delivery, ThreadPoolExecutor executor) {
+            if (!executor.isShutdown()) {
+                callerRuns.incrementAndGet();
+            }
+            super.rejectedExecution(delivery, executor);
+        }
+    }
+
+    private static class AsyncThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "dmx-async-events-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
     }
 }
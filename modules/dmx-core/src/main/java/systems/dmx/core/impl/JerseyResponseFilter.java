@@ -23,6 +23,7 @@ import javax.ws.rs.core.Context;
 
 import java.lang.reflect.Type;
 import java.lang.reflect.ParameterizedType;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -51,6 +52,7 @@ class JerseyResponseFilter implements ContainerResponseFilter {
 
     // ---------------------------------------------------------------------------------------------- Instance Variables
 
+    private PersistenceLayer pl;
     private EventManager em;
     private WebSocketsService ws;
 
@@ -61,8 +63,9 @@ class JerseyResponseFilter implements ContainerResponseFilter {
 
     // ---------------------------------------------------------------------------------------------------- Constructors
 
-    JerseyResponseFilter(EventManager em, WebSocketsService ws) {
-        this.em = em;
+    JerseyResponseFilter(PersistenceLayer pl, WebSocketsService ws) {
+        this.pl = pl;
+        this.em = pl.em;
         this.ws = ws;
     }
 
@@ -134,8 +137,20 @@ class JerseyResponseFilter implements ContainerResponseFilter {
     }
 
     private void loadChildTopics(Iterable<DMXObject> objects, boolean includeChilds, boolean includeAssocChilds) {
-        for (DMXObject object : objects) {
-            loadChildTopics(object, includeChilds, includeChilds);
+        if (includeChilds) {
+            // Note: the child topics of all objects are fetched level-wise, that is with one storage query per
+            // composition level and assoc def (instead of per object)
+            List<DMXObjectModelImpl> models = new ArrayList();
+            for (DMXObject object : objects) {
+                models.add(((DMXObjectImpl) object).getModel());
+            }
+            new ChildTopicsFetcher(pl).fetch(models);
+            //
+            if (includeAssocChilds) {
+                for (DMXObject object : objects) {
+                    loadRelatingAssociationChildTopics(object);
+                }
+            }
         }
     }
 
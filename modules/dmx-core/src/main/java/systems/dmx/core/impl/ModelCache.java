@@ -0,0 +1,260 @@
+package systems.dmx.core.impl;
+
+import systems.dmx.core.storage.spi.DMXTransaction;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+
+
+/**
+ * A size- and weight-bounded LRU cache of topic and association models, keyed by ID.
+ * <p>
+ * The cached models are private snapshots as fetched from the storage (no child topics). They are never handed out
+ * directly: <code>put()</code> and <code>get()</code> both operate on clones, so callers can update the returned
+ * models in-place as usual.
+ * <p>
+ * Consistency is maintained by the storage decorator: every store/delete operation invalidates the affected object.
+ * As the new value becomes visible to other threads only once the transaction is committed, the objects modified
+ * within a transaction are invalidated once more when the transaction finishes. A fetch result is only put in the
+ * cache if no invalidation took place while fetching.
+ * <p>
+ * A thread inside a write transaction sees its own uncommitted state (including objects which are created and rolled
+ * back later on). So its fetch results are never put in the cache, otherwise other threads would be served
+ * uncommitted state. Such a thread is still served from the cache though.
+ */
+class ModelCache {
+
+    // ------------------------------------------------------------------------------------------------------- Constants
+
+    private static final int OBJECT_WEIGHT = 128;   // estimated memory footprint of a model without strings (bytes)
+    private static final int ROLE_WEIGHT   = 48;    // estimated memory footprint of a role model without strings
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    private final int maxEntries;
+    private final long maxWeight;
+
+    private final Map<Long, Entry> entries = new LinkedHashMap(16, 0.75f, true);    // accessOrder=true
+    private long weight;
+    private long generation;        // incremented on every invalidation
+
+    // statistics
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    private final ThreadLocal<TransactionState> txState = new ThreadLocal();
+
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    // ---------------------------------------------------------------------------------------------------- Constructors
+
+    /**
+     * @param   maxEntries  max number of cached models. 0 disables the cache.
+     * @param   maxWeight   max estimated memory footprint of all cached models (in bytes).
+     */
+    ModelCache(int maxEntries, long maxWeight) {
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        logger.info("Model cache: " + (isEnabled() ? "maxEntries=" + maxEntries + ", maxWeight=" + maxWeight +
+            " bytes" : "disabled"));
+    }
+
+    // ----------------------------------------------------------------------------------------- Package Private Methods
+
+    boolean isEnabled() {
+        return maxEntries > 0;
+    }
+
+    /**
+     * @return  a clone of the cached model, or <code>null</code> if the object is not cached or the cached object is
+     *          not of the requested class.
+     */
+    synchronized <M extends DMXObjectModelImpl> M get(long id, Class<M> modelClass) {
+        Entry entry = entries.get(id);
+        if (entry != null && modelClass.isInstance(entry.model)) {
+            hits++;
+            return (M) entry.model.clone();
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Returns the current generation. To be called <i>before</i> fetching the model from storage. The generation
+     * is passed to {@link #put} then.
+     */
+    synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Puts a clone of the given model in the cache, provided no invalidation took place since the given generation
+     * was obtained. Otherwise the model might be stale already and is not cached.
+     * <p>
+     * If the current thread is inside a write transaction the model is not cached either, as it might reflect
+     * uncommitted state.
+     */
+    synchronized void put(DMXObjectModelImpl model, long generation) {
+        if (generation != this.generation || txState.get() != null) {
+            return;
+        }
+        remove(model.getId());
+        Entry entry = new Entry((DMXObjectModelImpl) model.clone());
+        entries.put(model.getId(), entry);
+        weight += entry.weight;
+        evict();
+    }
+
+    /**
+     * Removes the given object from the cache. To be called whenever the object is modified or deleted in storage.
+     */
+    void invalidate(long id) {
+        synchronized (this) {
+            remove(id);
+            generation++;
+            invalidations++;
+        }
+        TransactionState state = txState.get();
+        if (state != null) {
+            state.modifiedIds.add(id);
+        }
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        weight = 0;
+        generation++;
+    }
+
+    /**
+     * Wraps a storage transaction in order to invalidate the objects modified within that transaction once it
+     * finishes (regardless whether it is committed or rolled back).
+     */
+    DMXTransaction wrap(DMXTransaction tx) {
+        TransactionState state = txState.get();
+        if (state == null) {
+            state = new TransactionState();
+            txState.set(state);
+        }
+        state.depth++;
+        return new CacheTransaction(tx);
+    }
+
+    // ---
+
+    synchronized String stats() {
+        return "entries=" + entries.size() + ", weight=" + weight + " bytes, hits=" + hits + ", misses=" + misses +
+            ", evictions=" + evictions + ", invalidations=" + invalidations;
+    }
+
+    synchronized long getHits() {
+        return hits;
+    }
+
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    synchronized long getEvictions() {
+        return evictions;
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Methods
+
+    private void remove(long id) {
+        Entry entry = entries.remove(id);
+        if (entry != null) {
+            weight -= entry.weight;
+        }
+    }
+
+    private void evict() {
+        Iterator<Entry> i = entries.values().iterator();
+        while ((entries.size() > maxEntries || weight > maxWeight) && i.hasNext()) {
+            weight -= i.next().weight;
+            i.remove();
+            evictions++;
+        }
+    }
+
+    private void finishTransaction() {
+        TransactionState state = txState.get();
+        if (--state.depth == 0) {
+            txState.remove();
+            synchronized (this) {
+                for (long id : state.modifiedIds) {
+                    remove(id);
+                }
+                generation++;
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Classes
+
+    private static class Entry {
+
+        private DMXObjectModelImpl model;
+        private int weight;
+
+        private Entry(DMXObjectModelImpl model) {
+            this.model = model;
+            this.weight = weight(model);
+        }
+
+        private static int weight(DMXObjectModelImpl model) {
+            int weight = OBJECT_WEIGHT + 2 * (length(model.uri) + length(model.typeUri) +
+                (model.value != null ? length(model.value.toString()) : 0));
+            if (model instanceof AssociationModelImpl) {
+                AssociationModelImpl assoc = (AssociationModelImpl) model;
+                weight += 2 * ROLE_WEIGHT + 2 * (length(assoc.roleModel1.getRoleTypeUri()) +
+                                                 length(assoc.roleModel2.getRoleTypeUri()));
+            }
+            return weight;
+        }
+
+        private static int length(String str) {
+            return str != null ? str.length() : 0;
+        }
+    }
+
+    private static class TransactionState {
+        private int depth;
+        private Set<Long> modifiedIds = new HashSet();
+    }
+
+    private class CacheTransaction implements DMXTransaction {
+
+        private DMXTransaction tx;
+
+        private CacheTransaction(DMXTransaction tx) {
+            this.tx = tx;
+        }
+
+        @Override
+        public void success() {
+            tx.success();
+        }
+
+        @Override
+        public void failure() {
+            tx.failure();
+        }
+
+        @Override
+        public void finish() {
+            try {
+                tx.finish();
+            } finally {
+                finishTransaction();
+            }
+        }
+    }
+}
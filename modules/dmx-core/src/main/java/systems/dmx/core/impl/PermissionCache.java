@@ -0,0 +1,312 @@
+package systems.dmx.core.impl;
+
+import systems.dmx.core.service.accesscontrol.Operation;
+import systems.dmx.core.storage.spi.DMXTransaction;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+
+
+/**
+ * A size-bounded LRU cache of the facts permission checks are based on:
+ *   - per object: its type URI and the ID of the workspace it is assigned to.
+ *   - per workspace: the permission decisions made for (username, operation) pairs.
+ * <p>
+ * Consistency is maintained by the storage decorator: storing/removing the workspace assignment of an object
+ * invalidates the object's entry; storing/removing a workspace's owner, creating/deleting a membership, and
+ * changing a workspace's sharing mode invalidate the workspace's decisions. Analogous to {@link ModelCache} the
+ * invalidations are repeated once the transaction finishes, and a computation result is only put in the cache if
+ * no invalidation took place while computing.
+ * <p>
+ * A thread inside a write transaction sees its own uncommitted workspace assignments and memberships. So the object
+ * infos and decisions it computes are never put in the cache, otherwise other threads would be granted or denied
+ * access based on uncommitted state.
+ */
+class PermissionCache {
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    private final int maxEntries;
+
+    private final Map<Long, ObjectInfo> objects = new LinkedHashMap(16, 0.75f, true);           // accessOrder=true
+    private final Map<Long, Map<String, Boolean>> decisions = new LinkedHashMap(16, 0.75f, true);
+    private int decisionCount;
+    private long generation;        // incremented on every invalidation
+
+    // statistics
+    private long hits;
+    private long misses;
+
+    private final ThreadLocal<TransactionState> txState = new ThreadLocal();
+
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    // ---------------------------------------------------------------------------------------------------- Constructors
+
+    /**
+     * @param   maxEntries  max number of cached objects, and max number of cached decisions.
+     *                      0 disables the cache.
+     */
+    PermissionCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        logger.info("Permission cache: " + (isEnabled() ? "maxEntries=" + maxEntries : "disabled"));
+    }
+
+    // ----------------------------------------------------------------------------------------- Package Private Methods
+
+    boolean isEnabled() {
+        return maxEntries > 0;
+    }
+
+    /**
+     * Returns the current generation. To be called <i>before</i> computing a value to be cached.
+     */
+    synchronized long generation() {
+        return generation;
+    }
+
+    // ---
+
+    /**
+     * @return  the cached object info, or <code>null</code> if the object is not cached.
+     */
+    synchronized ObjectInfo getObjectInfo(long objectId) {
+        ObjectInfo info = objects.get(objectId);
+        count(info != null);
+        return info;
+    }
+
+    /**
+     * Puts an object info in the cache, provided no invalidation took place since the given generation was obtained
+     * and the current thread is not inside a write transaction.
+     */
+    synchronized void putObjectInfo(long objectId, ObjectInfo info, long generation) {
+        if (!isCacheable(generation)) {
+            return;
+        }
+        objects.put(objectId, info);
+        Iterator<ObjectInfo> i = objects.values().iterator();
+        while (objects.size() > maxEntries && i.hasNext()) {
+            i.next();
+            i.remove();
+        }
+    }
+
+    // ---
+
+    /**
+     * @return  the cached decision, or <code>null</code> if no decision is cached.
+     */
+    synchronized Boolean getDecision(String username, Operation operation, long workspaceId) {
+        Map<String, Boolean> _decisions = decisions.get(workspaceId);
+        Boolean decision = _decisions != null ? _decisions.get(key(username, operation)) : null;
+        count(decision != null);
+        return decision;
+    }
+
+    /**
+     * Puts a decision in the cache, provided no invalidation took place since the given generation was obtained and
+     * the current thread is not inside a write transaction.
+     */
+    synchronized void putDecision(String username, Operation operation, long workspaceId, boolean decision,
+                                                                                          long generation) {
+        if (!isCacheable(generation)) {
+            return;
+        }
+        Map<String, Boolean> _decisions = decisions.get(workspaceId);
+        if (_decisions == null) {
+            _decisions = new HashMap();
+            decisions.put(workspaceId, _decisions);
+        }
+        if (_decisions.put(key(username, operation), decision) == null) {
+            decisionCount++;
+        }
+        // evict least recently used workspaces
+        Iterator<Map<String, Boolean>> i = decisions.values().iterator();
+        while (decisionCount > maxEntries && i.hasNext()) {
+            decisionCount -= i.next().size();
+            i.remove();
+        }
+    }
+
+    // ---
+
+    /**
+     * Removes the object info of the given object from the cache. To be called whenever the object's type or
+     * workspace assignment is changed, and when the object is deleted.
+     */
+    void invalidateObject(long objectId) {
+        synchronized (this) {
+            objects.remove(objectId);
+            generation++;
+        }
+        TransactionState state = txState.get();
+        if (state != null) {
+            state.objectIds.add(objectId);
+        }
+    }
+
+    /**
+     * Removes the decisions made for the given workspace from the cache. To be called whenever the workspace's
+     * owner, sharing mode, or memberships are changed, and when the workspace is deleted.
+     */
+    void invalidateWorkspace(long workspaceId) {
+        synchronized (this) {
+            removeDecisions(workspaceId);
+            generation++;
+        }
+        TransactionState state = txState.get();
+        if (state != null) {
+            state.workspaceIds.add(workspaceId);
+        }
+    }
+
+    void clear() {
+        _clear();
+        TransactionState state = txState.get();
+        if (state != null) {
+            state.cleared = true;
+        }
+    }
+
+    /**
+     * Wraps a storage transaction in order to repeat the invalidations made within that transaction once it
+     * finishes (regardless whether it is committed or rolled back).
+     */
+    DMXTransaction wrap(DMXTransaction tx) {
+        TransactionState state = txState.get();
+        if (state == null) {
+            state = new TransactionState();
+            txState.set(state);
+        }
+        state.depth++;
+        return new CacheTransaction(tx);
+    }
+
+    // ---
+
+    synchronized String stats() {
+        return "objects=" + objects.size() + ", decisions=" + decisionCount + ", hits=" + hits + ", misses=" +
+            misses;
+    }
+
+    synchronized long getHits() {
+        return hits;
+    }
+
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Methods
+
+    private boolean isCacheable(long generation) {
+        return isEnabled() && generation == this.generation && txState.get() == null;
+    }
+
+    private void count(boolean hit) {
+        if (hit) {
+            hits++;
+        } else {
+            misses++;
+        }
+    }
+
+    private synchronized void _clear() {
+        objects.clear();
+        decisions.clear();
+        decisionCount = 0;
+        generation++;
+    }
+
+    private void removeDecisions(long workspaceId) {
+        Map<String, Boolean> _decisions = decisions.remove(workspaceId);
+        if (_decisions != null) {
+            decisionCount -= _decisions.size();
+        }
+    }
+
+    private String key(String username, Operation operation) {
+        // Note: usernames can't contain a line break. null represents <anonymous>.
+        return operation + "\n" + (username != null ? username : "");
+    }
+
+    private void finishTransaction() {
+        TransactionState state = txState.get();
+        if (--state.depth == 0) {
+            txState.remove();
+            if (state.cleared) {
+                _clear();
+                return;
+            }
+            synchronized (this) {
+                for (long objectId : state.objectIds) {
+                    objects.remove(objectId);
+                }
+                for (long workspaceId : state.workspaceIds) {
+                    removeDecisions(workspaceId);
+                }
+                generation++;
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Classes
+
+    private static class TransactionState {
+        private int depth;
+        private boolean cleared;
+        private Set<Long> objectIds = new HashSet();
+        private Set<Long> workspaceIds = new HashSet();
+    }
+
+    private class CacheTransaction implements DMXTransaction {
+
+        private DMXTransaction tx;
+
+        private CacheTransaction(DMXTransaction tx) {
+            this.tx = tx;
+        }
+
+        @Override
+        public void success() {
+            tx.success();
+        }
+
+        @Override
+        public void failure() {
+            tx.failure();
+        }
+
+        @Override
+        public void finish() {
+            try {
+                tx.finish();
+            } finally {
+                finishTransaction();
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------- Nested Classes
+
+    /**
+     * The permission relevant facts of an object.
+     */
+    static class ObjectInfo {
+
+        final String typeUri;
+        final long workspaceId;     // -1 if the object is not assigned to any workspace
+
+        ObjectInfo(String typeUri, long workspaceId) {
+            this.typeUri = typeUri;
+            this.workspaceId = workspaceId;
+        }
+    }
+}
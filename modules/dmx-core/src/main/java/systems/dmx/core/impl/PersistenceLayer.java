@@ -11,10 +11,13 @@ import systems.dmx.core.model.SimpleValue;
 import systems.dmx.core.model.TopicModel;
 import systems.dmx.core.service.accesscontrol.AccessControlException;
 import systems.dmx.core.storage.spi.DMXStorage;
+import systems.dmx.core.storage.spi.DMXTransaction;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.logging.Logger;
 
 
@@ -37,6 +40,8 @@ public final class PersistenceLayer extends StorageDecorator {
     private static final String URI_PREFIX_ASSOCIATION_TYPE = "domain.project.assoc_type_";
     private static final String URI_PREFIX_ROLE_TYPE        = "domain.project.role_type_";
 
+    private static final int READ_CHECK_BATCH_SIZE = 1000;     // number of objects checked for READ access at once
+
     // ---------------------------------------------------------------------------------------------- Instance Variables
 
     TypeStorage typeStorage;
@@ -111,6 +116,27 @@ public final class PersistenceLayer extends StorageDecorator {
         }
     }
 
+    List<Topic> getTopicsByType(String topicTypeUri, int offset, int limit, boolean sortById) {
+        try {
+            return page(_getTopicType(topicTypeUri).getInstanceCursor(sortById), offset, limit);
+        } catch (Exception e) {
+            throw new RuntimeException("Fetching topics by type failed (topicTypeUri=\"" + topicTypeUri +
+                "\", offset=" + offset + ", limit=" + limit + ", sortById=" + sortById + ")", e);
+        }
+    }
+
+    Iterable<Topic> iterateTopicsByType(String topicTypeUri, boolean sortById) {
+        return new ReadableIterable<Topic>(_getTopicType(topicTypeUri).getInstanceCursor(sortById), this);
+    }
+
+    int countTopicsByType(String topicTypeUri) {
+        return _getTopicType(topicTypeUri).countInstances();
+    }
+
+    int countReadableTopicsByType(String topicTypeUri) {
+        return countReadables(_getTopicType(topicTypeUri).getInstanceCursor(false));
+    }
+
     List<Topic> searchTopics(String searchTerm, String fieldUri) {
         try {
             return checkReadAccessAndInstantiate(queryTopics(fieldUri, new SimpleValue(searchTerm)));
@@ -294,6 +320,27 @@ public final class PersistenceLayer extends StorageDecorator {
         }
     }
 
+    List<Association> getAssociationsByType(String assocTypeUri, int offset, int limit, boolean sortById) {
+        try {
+            return page(_getAssociationType(assocTypeUri).getInstanceCursor(sortById), offset, limit);
+        } catch (Exception e) {
+            throw new RuntimeException("Fetching associations by type failed (assocTypeUri=\"" + assocTypeUri +
+                "\", offset=" + offset + ", limit=" + limit + ", sortById=" + sortById + ")", e);
+        }
+    }
+
+    Iterable<Association> iterateAssociationsByType(String assocTypeUri, boolean sortById) {
+        return new ReadableIterable<Association>(_getAssociationType(assocTypeUri).getInstanceCursor(sortById), this);
+    }
+
+    int countAssociationsByType(String assocTypeUri) {
+        return _getAssociationType(assocTypeUri).countInstances();
+    }
+
+    int countReadableAssociationsByType(String assocTypeUri) {
+        return countReadables(_getAssociationType(assocTypeUri).getInstanceCursor(false));
+    }
+
     List<Association> getAssociations(long topic1Id, long topic2Id) {
         return getAssociations(null, topic1Id, topic2Id);   // assocTypeUri=null
     }
@@ -710,6 +757,11 @@ public final class PersistenceLayer extends StorageDecorator {
             othersTopicTypeUri));
     }
 
+    int countReadableRelatedTopics(long objectId, String assocTypeUri, String myRoleTypeUri,
+                                   String othersRoleTypeUri, String othersTopicTypeUri) {
+        return getRelatedTopics(objectId, assocTypeUri, myRoleTypeUri, othersRoleTypeUri, othersTopicTypeUri).size();
+    }
+
 
 
     // === Properties ===
@@ -749,18 +801,97 @@ public final class PersistenceLayer extends StorageDecorator {
         return instantiate(filterReadables(models));
     }
 
+    /**
+     * Returns a page of the given objects the current user has READ permission for.
+     * <p>
+     * The objects are checked in batches of {@link #READ_CHECK_BATCH_SIZE}, see {@link #filterReadables}. Only the
+     * objects of the page are instantiated; the skipped ones are not.
+     *
+     * @param   offset  the number of (readable) objects to skip.
+     * @param   limit   the max number of objects to return. 0 means no limit.
+     */
+    private <O> List<O> page(Iterator<? extends DMXObjectModelImpl> models, int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Illegal paging parameters (offset=" + offset + ", limit=" + limit +
+                ")");
+        }
+        List<DMXObjectModelImpl> page = new ArrayList();
+        List<DMXObjectModelImpl> batch = new ArrayList();
+        int skip = offset;
+        while ((limit == 0 || page.size() < limit) && models.hasNext()) {
+            batch.add(models.next());
+            if (batch.size() == READ_CHECK_BATCH_SIZE || !models.hasNext()) {
+                for (DMXObjectModelImpl model : filterReadables(batch)) {
+                    if (skip > 0) {
+                        skip--;
+                    } else if (limit == 0 || page.size() < limit) {
+                        page.add(model);
+                    }
+                }
+                batch.clear();
+            }
+        }
+        return instantiate(page);
+    }
+
     // ---
 
+    /**
+     * Removes the objects the current user has no READ permission for from the given list.
+     * <p>
+     * The check is performed in batches (see {@link CoreEvent#CHECK_TOPICS_READ_ACCESS} and
+     * {@link CoreEvent#CHECK_ASSOCIATIONS_READ_ACCESS}) so listeners can make each workspace decision only once.
+     */
     private <M extends DMXObjectModelImpl> List<M> filterReadables(List<M> models) {
+        if (models.isEmpty()) {
+            return models;
+        }
+        List<Long> topicIds = new ArrayList();
+        List<Long> assocIds = new ArrayList();
+        for (DMXObjectModelImpl model : models) {
+            if (model instanceof AssociationModelImpl) {
+                assocIds.add(model.getId());
+            } else {
+                topicIds.add(model.getId());
+            }
+        }
+        Set<Long> readableIds = new HashSet();
+        if (!topicIds.isEmpty()) {
+            em.fireBatchEvent(CoreEvent.CHECK_TOPICS_READ_ACCESS, CoreEvent.CHECK_TOPIC_READ_ACCESS, topicIds);
+            readableIds.addAll(topicIds);
+        }
+        if (!assocIds.isEmpty()) {
+            em.fireBatchEvent(CoreEvent.CHECK_ASSOCIATIONS_READ_ACCESS, CoreEvent.CHECK_ASSOCIATION_READ_ACCESS,
+                assocIds);
+            readableIds.addAll(assocIds);
+        }
+        //
         Iterator<? extends DMXObjectModelImpl> i = models.iterator();
         while (i.hasNext()) {
-            if (!hasReadAccess(i.next())) {
+            if (!readableIds.contains(i.next().getId())) {
                 i.remove();
             }
         }
         return models;
     }
 
+    /**
+     * Counts the objects the current user has READ permission for. The objects are checked in batches of
+     * {@link #READ_CHECK_BATCH_SIZE}, see {@link #filterReadables}.
+     */
+    private int countReadables(Iterator<? extends DMXObjectModelImpl> models) {
+        int count = 0;
+        List<DMXObjectModelImpl> batch = new ArrayList();
+        while (models.hasNext()) {
+            batch.add(models.next());
+            if (batch.size() == READ_CHECK_BATCH_SIZE || !models.hasNext()) {
+                count += filterReadables(batch).size();
+                batch.clear();
+            }
+        }
+        return count;
+    }
+
     boolean hasReadAccess(DMXObjectModelImpl model) {
         try {
             checkReadAccess(model);
@@ -812,6 +943,19 @@ public final class PersistenceLayer extends StorageDecorator {
 
 
 
+    // === DB ===
+
+    /**
+     * Begins a transaction. The asynchronous events fired within that transaction are delivered once it is
+     * committed (see {@link EventManager#wrap}).
+     */
+    @Override
+    DMXTransaction beginTx() {
+        return em.wrap(super.beginTx());
+    }
+
+
+
     // === Instantiation ===
 
     // ### TODO: move to kernel utils
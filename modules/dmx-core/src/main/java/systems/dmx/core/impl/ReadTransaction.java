@@ -0,0 +1,85 @@
+package systems.dmx.core.impl;
+
+import systems.dmx.core.storage.spi.DMXTransaction;
+
+import java.util.HashMap;
+import java.util.Map;
+
+
+
+/**
+ * A read-only transaction scope.
+ * <p>
+ * No storage transaction is opened: reading needs no locks and there is nothing to commit. Writing within a read
+ * scope fails (unless a regular transaction is opened for it).
+ * <p>
+ * A read scope is bound to the current thread. Per-scope caches can be attached to it as attributes. As nothing is
+ * written within the scope the cached values remain valid until the scope finishes. (If a regular transaction is
+ * opened within the scope nevertheless, the attributes are dropped, see {@link #clearAttributes}.)
+ */
+class ReadTransaction implements DMXTransaction {
+
+    // ------------------------------------------------------------------------------------------------- Class Variables
+
+    private static final ThreadLocal<ReadTransaction> current = new ThreadLocal();
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    private final ReadTransaction outer;
+    private final Map<String, Object> attributes = new HashMap();
+
+    // ---------------------------------------------------------------------------------------------------- Constructors
+
+    ReadTransaction() {
+        this.outer = current.get();
+        current.set(this);
+    }
+
+    // -------------------------------------------------------------------------------------------------- Public Methods
+
+    @Override
+    public void success() {
+    }
+
+    @Override
+    public void failure() {
+    }
+
+    @Override
+    public void finish() {
+        if (outer != null) {
+            current.set(outer);
+        } else {
+            current.remove();
+        }
+    }
+
+    // ----------------------------------------------------------------------------------------- Package Private Methods
+
+    /**
+     * @return  the read scope bound to the current thread, or <code>null</code> if there is none.
+     */
+    static ReadTransaction current() {
+        return current.get();
+    }
+
+    Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    void setAttribute(String name, Object value) {
+        attributes.put(name, value);
+    }
+
+    /**
+     * Drops the attributes of the read scope(s) bound to the current thread (if any). To be called when a regular
+     * transaction begins within a read scope, as the cached values might get outdated then.
+     */
+    static void clearAttributes() {
+        ReadTransaction tx = current.get();
+        while (tx != null) {
+            tx.attributes.clear();
+            tx = tx.outer;
+        }
+    }
+}
@@ -9,21 +9,41 @@ import systems.dmx.core.storage.spi.DMXStorage;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 
 
 
 /**
  * A thin convenience layer above vendor specific storage.
- * 2 responsibilites:
+ * 3 responsibilites:
  *  - Adapts public storage API to Core internal API (type casting).
  *  - Adds fetch-single calls on top of fetch-multiple calls and performs sanity checks.
+ *  - Caches topic and association models fetched by ID (see {@link ModelCache}).
+ *  - Keeps the permission cache consistent (see {@link PermissionCache}).
  */
 class StorageDecorator {
 
+    // ------------------------------------------------------------------------------------------------------- Constants
+
+    private static final int MODEL_CACHE_MAX_ENTRIES = Integer.getInteger("dmx.storage.model_cache.max_entries",
+        10000);
+    private static final long MODEL_CACHE_MAX_WEIGHT = Long.getLong("dmx.storage.model_cache.max_weight", 16) *
+        1024 * 1024;    // MB -> bytes
+    private static final int PERMISSION_CACHE_MAX_ENTRIES = Integer.getInteger(
+        "dmx.storage.permission_cache.max_entries", 10000);
+
+    // Permission relevant type and property URIs ### TODO: copies in AccessControlImpl.java
+    private static final String TYPE_MEMBERSHIP   = "dmx.accesscontrol.membership";
+    private static final String PROP_OWNER        = "dmx.accesscontrol.owner";
+    private static final String PROP_WORKSPACE_ID = "dmx.workspaces.workspace_id";
+
     // ---------------------------------------------------------------------------------------------- Instance Variables
 
     private final DMXStorage storage;
+    private final ModelCache cache;
+    private final TransactionStats txStats = new TransactionStats();
+    final PermissionCache permissionCache;      // accessed by AccessControlImpl
 
     private final Logger logger = Logger.getLogger(getClass().getName());
 
@@ -31,6 +51,8 @@ class StorageDecorator {
 
     StorageDecorator(DMXStorage storage) {
         this.storage = storage;
+        this.cache = new ModelCache(MODEL_CACHE_MAX_ENTRIES, MODEL_CACHE_MAX_WEIGHT);
+        this.permissionCache = new PermissionCache(PERMISSION_CACHE_MAX_ENTRIES);
     }
 
     // ----------------------------------------------------------------------------------------- Package Private Methods
@@ -44,7 +66,16 @@ class StorageDecorator {
      *          Note: its child topics are not fetched.
      */
     final TopicModelImpl fetchTopic(long topicId) {
-        return (TopicModelImpl) storage.fetchTopic(topicId);
+        if (!cache.isEnabled()) {
+            return (TopicModelImpl) storage.fetchTopic(topicId);
+        }
+        TopicModelImpl topic = cache.get(topicId, TopicModelImpl.class);
+        if (topic == null) {
+            long generation = cache.generation();
+            topic = (TopicModelImpl) storage.fetchTopic(topicId);
+            cache.put(topic, generation);
+        }
+        return topic;
     }
 
     final TopicModelImpl fetchTopicByUri(String uri) {
@@ -86,6 +117,14 @@ class StorageDecorator {
         return (Iterator<TopicModelImpl>) storage.fetchAllTopics();
     }
 
+    /**
+     * @return  A lazy cursor over the fetched topics.
+     *          Note: their child topics are not fetched.
+     */
+    final Iterator<TopicModelImpl> fetchTopicCursor(String key, SimpleValue value, boolean sortById) {
+        return (Iterator<TopicModelImpl>) storage.fetchTopicCursor(key, value.value(), sortById);
+    }
+
     // ---
 
     /**
@@ -107,10 +146,13 @@ class StorageDecorator {
      * Stores and indexes the topic's URI.
      */
     final void storeTopicUri(long topicId, String uri) {
+        cache.invalidate(topicId);
         storage.storeTopicUri(topicId, uri);
     }
 
     final void storeTopicTypeUri(long topicId, String topicTypeUri) {
+        cache.invalidate(topicId);
+        invalidatePermissions(topicId);
         storage.storeTopicTypeUri(topicId, topicTypeUri);
     }
 
@@ -127,6 +169,7 @@ class StorageDecorator {
      * Stores and indexes a topic value.
      */
     final void storeTopicValue(long topicId, SimpleValue value, String indexKey, SimpleValue indexValue) {
+        cache.invalidate(topicId);
         storage.storeTopicValue(topicId, value, indexKey, indexValue);
     }
 
@@ -138,6 +181,8 @@ class StorageDecorator {
      * Prerequisite: the topic has no relations.
      */
     final void _deleteTopic(long topicId) {
+        cache.invalidate(topicId);
+        invalidatePermissions(topicId);
         storage.deleteTopic(topicId);
     }
 
@@ -146,7 +191,16 @@ class StorageDecorator {
     // === Associations ===
 
     final AssociationModelImpl fetchAssociation(long assocId) {
-        return (AssociationModelImpl) storage.fetchAssociation(assocId);
+        if (!cache.isEnabled()) {
+            return (AssociationModelImpl) storage.fetchAssociation(assocId);
+        }
+        AssociationModelImpl assoc = cache.get(assocId, AssociationModelImpl.class);
+        if (assoc == null) {
+            long generation = cache.generation();
+            assoc = (AssociationModelImpl) storage.fetchAssociation(assocId);
+            cache.put(assoc, generation);
+        }
+        return assoc;
     }
 
     /**
@@ -240,6 +294,14 @@ class StorageDecorator {
         return (Iterator<AssociationModelImpl>) storage.fetchAllAssociations();
     }
 
+    /**
+     * @return  A lazy cursor over the fetched associations.
+     *          Note: their child topics are not fetched.
+     */
+    final Iterator<AssociationModelImpl> fetchAssociationCursor(String key, SimpleValue value, boolean sortById) {
+        return (Iterator<AssociationModelImpl>) storage.fetchAssociationCursor(key, value.value(), sortById);
+    }
+
     final List<RoleModel> fetchRoleModels(long assocId) {
         return storage.fetchRoleModels(assocId);
     }
@@ -250,14 +312,21 @@ class StorageDecorator {
      * Stores and indexes the association's URI.
      */
     final void storeAssociationUri(long assocId, String uri) {
+        cache.invalidate(assocId);
         storage.storeAssociationUri(assocId, uri);
     }
 
     final void storeAssociationTypeUri(long assocId, String assocTypeUri) {
+        invalidateAssociationPermissions(assocId);     // membership before
+        cache.invalidate(assocId);
+        invalidatePermissions(assocId);
         storage.storeAssociationTypeUri(assocId, assocTypeUri);
+        invalidateAssociationPermissions(assocId);     // membership after
     }
 
     final void storeRoleTypeUri(long assocId, long playerId, String roleTypeUri) {
+        invalidateAssociationPermissions(assocId);
+        cache.invalidate(assocId);
         storage.storeRoleTypeUri(assocId, playerId, roleTypeUri);
     }
 
@@ -274,6 +343,7 @@ class StorageDecorator {
      * Stores and indexes an association value.
      */
     final void storeAssociationValue(long assocId, SimpleValue value, String indexKey, SimpleValue indexValue) {
+        cache.invalidate(assocId);
         storage.storeAssociationValue(assocId, value, indexKey, indexValue);
     }
 
@@ -281,9 +351,13 @@ class StorageDecorator {
 
     final void storeAssociation(AssociationModel model) {
         storage.storeAssociation(model);
+        invalidatePermissions(model);
     }
 
     final void _deleteAssociation(long assocId) {
+        invalidateAssociationPermissions(assocId);
+        cache.invalidate(assocId);
+        invalidatePermissions(assocId);
         storage.deleteAssociation(assocId);
     }
 
@@ -292,7 +366,16 @@ class StorageDecorator {
     // === Generic Object ===
 
     final DMXObjectModelImpl fetchObject(long id) {
-        return (DMXObjectModelImpl) storage.fetchObject(id);
+        if (!cache.isEnabled()) {
+            return (DMXObjectModelImpl) storage.fetchObject(id);
+        }
+        DMXObjectModelImpl object = cache.get(id, DMXObjectModelImpl.class);
+        if (object == null) {
+            long generation = cache.generation();
+            object = (DMXObjectModelImpl) storage.fetchObject(id);
+            cache.put(object, generation);
+        }
+        return object;
     }
 
 
@@ -518,6 +601,21 @@ class StorageDecorator {
             othersRoleTypeUri, othersTopicTypeUri);
     }
 
+    /**
+     * Batch variant of {@link #fetchRelatedTopics(long,String,String,String,String)}.
+     *
+     * @param   objectIds           ids of topics or associations
+     *
+     * @return  The fetched topics of all the given objects, not grouped. A topic is assigned to its object by the
+     *          means of the relating association.
+     *          Note: their child topics are not fetched.
+     */
+    final List<RelatedTopicModelImpl> fetchRelatedTopics(List<Long> objectIds, String assocTypeUri,
+                                            String myRoleTypeUri, String othersRoleTypeUri, String othersTopicTypeUri) {
+        return (List<RelatedTopicModelImpl>) storage.fetchRelatedTopics(objectIds, assocTypeUri, myRoleTypeUri,
+            othersRoleTypeUri, othersTopicTypeUri);
+    }
+
     // ### TODO: decorator for fetchRelatedAssociations()
 
 
@@ -532,6 +630,17 @@ class StorageDecorator {
         return storage.hasProperty(id, propUri);
     }
 
+    /**
+     * Batch variant of {@link #fetchProperty}: fetches several properties of many objects in one pass.
+     *
+     * @param   ids     ids of topics and/or associations
+     *
+     * @return  per object id: the values of the properties the object has.
+     */
+    final Map<Long, Map<String, Object>> fetchProperties(List<Long> ids, List<String> propUris) {
+        return storage.fetchProperties(ids, propUris);
+    }
+
     // ---
 
     final List<TopicModelImpl> fetchTopicsByProperty(String propUri, Object propValue) {
@@ -554,10 +663,12 @@ class StorageDecorator {
 
     final void storeTopicProperty(long topicId, String propUri, Object propValue, boolean addToIndex) {
         storage.storeTopicProperty(topicId, propUri, propValue, addToIndex);
+        invalidatePermissions(topicId, propUri);
     }
 
     final void storeAssociationProperty(long assocId, String propUri, Object propValue, boolean addToIndex) {
         storage.storeAssociationProperty(assocId, propUri, propValue, addToIndex);
+        invalidatePermissions(assocId, propUri);
     }
 
     // ---
@@ -574,18 +685,90 @@ class StorageDecorator {
 
     final void removeTopicProperty(long topicId, String propUri) {
         storage.deleteTopicProperty(topicId, propUri);
+        invalidatePermissions(topicId, propUri);
     }
 
     final void removeAssociationProperty(long assocId, String propUri) {
         storage.deleteAssociationProperty(assocId, propUri);
+        invalidatePermissions(assocId, propUri);
+    }
+
+
+
+    // === Counting ===
+
+    // Note: no models are fetched. The READ permission is not checked.
+
+    final int countTopics(String key, SimpleValue value) {
+        return storage.countTopics(key, value.value());
+    }
+
+    final int countAssociations(String key, SimpleValue value) {
+        return storage.countAssociations(key, value.value());
+    }
+
+    // ---
+
+    final int countTopicsByProperty(String propUri, Object propValue) {
+        return storage.countTopicsByProperty(propUri, propValue);
+    }
+
+    final int countAssociationsByProperty(String propUri, Object propValue) {
+        return storage.countAssociationsByProperty(propUri, propValue);
+    }
+
+    // ---
+
+    /**
+     * @param   objectId            id of a topic or an association
+     * @param   assocTypeUri        may be null
+     * @param   myRoleTypeUri       may be null
+     * @param   othersRoleTypeUri   may be null
+     * @param   othersTopicTypeUri  may be null
+     */
+    final int countRelatedTopics(long objectId, String assocTypeUri, String myRoleTypeUri, String othersRoleTypeUri,
+                                                                                           String othersTopicTypeUri) {
+        return storage.countRelatedTopics(objectId, assocTypeUri, myRoleTypeUri, othersRoleTypeUri,
+            othersTopicTypeUri);
+    }
+
+    /**
+     * @param   objectId            id of a topic or an association
+     * @param   assocTypeUri        may be null
+     * @param   myRoleTypeUri       may be null
+     * @param   othersRoleTypeUri   may be null
+     * @param   othersTopicTypeUri  may be null
+     */
+    final boolean hasRelatedTopics(long objectId, String assocTypeUri, String myRoleTypeUri, String othersRoleTypeUri,
+                                                                                            String othersTopicTypeUri) {
+        return storage.hasRelatedTopics(objectId, assocTypeUri, myRoleTypeUri, othersRoleTypeUri,
+            othersTopicTypeUri);
     }
 
 
 
     // === DB ===
 
-    final DMXTransaction beginTx() {
-        return storage.beginTx();
+    /**
+     * Note: not final. The persistence layer wraps the transaction additionally (see {@link PersistenceLayer#beginTx}).
+     */
+    DMXTransaction beginTx() {
+        ReadTransaction.clearAttributes();
+        DMXTransaction tx = storage.beginTx();
+        if (permissionCache.isEnabled()) {
+            tx = permissionCache.wrap(tx);
+        }
+        if (cache.isEnabled()) {
+            tx = cache.wrap(tx);
+        }
+        return txStats.wrap(tx, false);     // readOnly=false
+    }
+
+    /**
+     * Begins a read-only transaction scope (see {@link ReadTransaction}).
+     */
+    final DMXTransaction beginReadTx() {
+        return txStats.wrap(new ReadTransaction(), true);   // readOnly=true
     }
 
     /**
@@ -604,6 +787,13 @@ class StorageDecorator {
     }
 
     final void shutdown() {
+        if (cache.isEnabled()) {
+            logger.info("Model cache statistics: " + cache.stats());
+        }
+        if (permissionCache.isEnabled()) {
+            logger.info("Permission cache statistics: " + permissionCache.stats());
+        }
+        logger.info("Transaction statistics: " + txStats.stats());
         storage.shutdown();
     }
 
@@ -626,4 +816,69 @@ class StorageDecorator {
     final Object getDatabaseVendorObject(long objectId) {
         return storage.getDatabaseVendorObject(objectId);
     }
+
+    // ---
+
+    final ModelCache getModelCache() {
+        return cache;
+    }
+
+    final TransactionStats getTransactionStats() {
+        return txStats;
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Methods
+
+    /**
+     * Invalidates the permission relevant facts of the given object (which might be a workspace).
+     */
+    private void invalidatePermissions(long objectId) {
+        if (permissionCache.isEnabled()) {
+            permissionCache.invalidateObject(objectId);
+            permissionCache.invalidateWorkspace(objectId);
+        }
+    }
+
+    /**
+     * Invalidates the permission relevant facts affected by storing/removing the given property.
+     */
+    private void invalidatePermissions(long objectId, String propUri) {
+        if (permissionCache.isEnabled()) {
+            if (propUri.equals(PROP_WORKSPACE_ID)) {
+                permissionCache.invalidateObject(objectId);
+            } else if (propUri.equals(PROP_OWNER)) {
+                permissionCache.invalidateWorkspace(objectId);
+            }
+        }
+    }
+
+    private void invalidateAssociationPermissions(long assocId) {
+        if (permissionCache.isEnabled()) {
+            invalidatePermissions(fetchAssociation(assocId));
+        }
+    }
+
+    /**
+     * Invalidates the decisions made for the workspace(s) the given association connects, provided it is a membership
+     * or a composition (possibly assigning a sharing mode to a workspace).
+     *
+     * @param   assoc   may be <code>null</code>.
+     */
+    private void invalidatePermissions(AssociationModel assoc) {
+        if (permissionCache.isEnabled() && assoc != null) {
+            String typeUri = assoc.getTypeUri();
+            if (typeUri.equals(TYPE_MEMBERSHIP) || typeUri.equals("dmx.core.composition")) {
+                long playerId1 = ((RoleModelImpl) assoc.getRoleModel1()).playerId;     // -1 if identified by URI
+                long playerId2 = ((RoleModelImpl) assoc.getRoleModel2()).playerId;
+                if (typeUri.equals(TYPE_MEMBERSHIP) && (playerId1 == -1 || playerId2 == -1)) {
+                    permissionCache.clear();
+                    return;
+                }
+                // Note: a sharing mode is assigned to a workspace by ID (the sharing mode itself is usually
+                // referred to by URI)
+                permissionCache.invalidateWorkspace(playerId1);
+                permissionCache.invalidateWorkspace(playerId2);
+            }
+        }
+    }
 }
@@ -5,6 +5,7 @@ import systems.dmx.core.model.SimpleValue;
 import systems.dmx.core.model.TopicTypeModel;
 import systems.dmx.core.service.Directive;
 
+import java.util.Iterator;
 import java.util.List;
 
 
@@ -67,6 +68,16 @@ class TopicTypeModelImpl extends TypeModelImpl implements TopicTypeModel {
         return pl.fetchTopics("typeUri", new SimpleValue(uri));
     }
 
+    @Override
+    Iterator<TopicModelImpl> getInstanceCursor(boolean sortById) {
+        return pl.fetchTopicCursor("typeUri", new SimpleValue(uri), sortById);
+    }
+
+    @Override
+    int countInstances() {
+        return pl.countTopics("typeUri", new SimpleValue(uri));
+    }
+
     // ---
 
     @Override
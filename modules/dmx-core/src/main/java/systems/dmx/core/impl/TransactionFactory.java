@@ -11,6 +11,8 @@ import com.sun.jersey.spi.container.ContainerResponseFilter;
 import com.sun.jersey.spi.container.ResourceFilter;
 import com.sun.jersey.spi.container.ResourceFilterFactory;
 
+import javax.ws.rs.GET;
+
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
@@ -40,13 +42,19 @@ class TransactionFactory implements ResourceFilterFactory {
 
     @Override
     public List<ResourceFilter> create(AbstractMethod method) {
-        if (!method.isAnnotationPresent(Transactional.class)) {
+        Transactional transactional = method.getAnnotation(Transactional.class);
+        boolean readOnly;
+        if (transactional != null) {
+            readOnly = transactional.readOnly();
+        } else if (method.isAnnotationPresent(GET.class)) {
+            readOnly = true;
+        } else {
             return null;
         }
         //
-        logger.fine("### Adding transaction support to " + info(method));
+        logger.fine("### Adding " + (readOnly ? "read-only " : "") + "transaction support to " + info(method));
         List<ResourceFilter> filters = new ArrayList();
-        filters.add(new TransactionResourceFilter(method));
+        filters.add(new TransactionResourceFilter(method, readOnly));
         return filters;
     }
 
@@ -62,9 +70,11 @@ class TransactionFactory implements ResourceFilterFactory {
     private class TransactionResourceFilter implements ResourceFilter {
 
         private AbstractMethod method;
+        private boolean readOnly;
 
-        private TransactionResourceFilter(AbstractMethod method) {
+        private TransactionResourceFilter(AbstractMethod method, boolean readOnly) {
             this.method = method;
+            this.readOnly = readOnly;
         }
 
         @Override
@@ -73,8 +83,8 @@ class TransactionFactory implements ResourceFilterFactory {
 
                 @Override
                 public ContainerRequest filter(ContainerRequest request) {
-                    logger.fine("### Begining transaction of " + info(method));
-                    DMXTransaction tx = pl.beginTx();
+                    logger.fine("### Begining " + (readOnly ? "read-only " : "") + "transaction of " + info(method));
+                    DMXTransaction tx = readOnly ? pl.beginReadTx() : pl.beginTx();
                     threadLocalTransaction.set(tx);
                     return request;
                 }
@@ -89,7 +99,9 @@ class TransactionFactory implements ResourceFilterFactory {
                 public ContainerResponse filter(ContainerRequest request, ContainerResponse response) {
                     DMXTransaction tx = threadLocalTransaction.get();
                     boolean success = response.getMappedThrowable() == null;    // ### TODO: is this criteria concise?
-                    if (success) {
+                    if (readOnly) {
+                        logger.fine("### Finishing read-only transaction of " + info(method));
+                    } else if (success) {
                         logger.fine("### Comitting transaction of " + info(method));
                         tx.success();
                     } else {
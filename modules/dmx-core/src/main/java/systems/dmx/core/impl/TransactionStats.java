@@ -0,0 +1,92 @@
+package systems.dmx.core.impl;
+
+import systems.dmx.core.storage.spi.DMXTransaction;
+
+
+
+/**
+ * Counts read and write transactions and measures their durations (from begin to finish).
+ */
+class TransactionStats {
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    private final Counter reads = new Counter();
+    private final Counter writes = new Counter();
+
+    // ----------------------------------------------------------------------------------------- Package Private Methods
+
+    DMXTransaction wrap(DMXTransaction tx, boolean readOnly) {
+        return new MeasuredTransaction(tx, readOnly ? reads : writes);
+    }
+
+    // ---
+
+    String stats() {
+        return "read: " + reads + ", write: " + writes;
+    }
+
+    long getReadCount() {
+        return reads.count();
+    }
+
+    long getWriteCount() {
+        return writes.count();
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Classes
+
+    private static class Counter {
+
+        private long count;
+        private long totalTime;     // in nanoseconds
+        private long maxTime;       // in nanoseconds
+
+        private synchronized void add(long time) {
+            count++;
+            totalTime += time;
+            maxTime = Math.max(maxTime, time);
+        }
+
+        private synchronized long count() {
+            return count;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return "count=" + count + ", total=" + totalTime / 1000000 + "ms, avg=" +
+                (count > 0 ? totalTime / count / 1000 : 0) + "us, max=" + maxTime / 1000000 + "ms";
+        }
+    }
+
+    private static class MeasuredTransaction implements DMXTransaction {
+
+        private DMXTransaction tx;
+        private Counter counter;
+        private long startTime = System.nanoTime();
+
+        private MeasuredTransaction(DMXTransaction tx, Counter counter) {
+            this.tx = tx;
+            this.counter = counter;
+        }
+
+        @Override
+        public void success() {
+            tx.success();
+        }
+
+        @Override
+        public void failure() {
+            tx.failure();
+        }
+
+        @Override
+        public void finish() {
+            try {
+                tx.finish();
+            } finally {
+                counter.add(System.nanoTime() - startTime);
+            }
+        }
+    }
+}
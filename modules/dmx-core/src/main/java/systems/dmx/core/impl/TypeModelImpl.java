@@ -214,6 +214,14 @@ class TypeModelImpl extends TopicModelImpl implements TypeModel {
         throw new UnsupportedOperationException();
     }
 
+    Iterator<? extends DMXObjectModelImpl> getInstanceCursor(boolean sortById) {
+        throw new UnsupportedOperationException();
+    }
+
+    int countInstances() {
+        throw new UnsupportedOperationException();
+    }
+
     // ---
 
     Directive getUpdateTypeDirective() {
@@ -255,7 +263,7 @@ class TypeModelImpl extends TopicModelImpl implements TypeModel {
     @Override
     void preDelete() {
         // 1) check pre-condition
-        int size = getAllInstances().size();
+        int size = countInstances();
         if (size > 0) {
             throw new RuntimeException(size + " \"" + value + "\" instances still exist");
         }
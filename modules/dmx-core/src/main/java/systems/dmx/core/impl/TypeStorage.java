@@ -684,7 +684,7 @@ class TypeStorage {
      * Creates a view config model from a bunch of config topics.
      * Loads the child topics of the given topics and updates them in-place.
      */
-    private ViewConfigurationModel viewConfigModel(Iterable<? extends TopicModelImpl> configTopics) {
+    private ViewConfigurationModel viewConfigModel(List<? extends TopicModelImpl> configTopics) {
         loadChildTopics(configTopics);
         return mf.newViewConfigurationModel(configTopics);
     }
@@ -721,10 +721,8 @@ class TypeStorage {
 
     // --- Helper ---
 
-    private void loadChildTopics(Iterable<? extends DMXObjectModelImpl> objects) {
-        for (DMXObjectModelImpl object : objects) {
-            object.loadChildTopics(true);   // deep=true
-        }
+    private void loadChildTopics(List<? extends DMXObjectModelImpl> objects) {
+        new ChildTopicsFetcher(pl).fetch(objects);
     }
 
     // ---
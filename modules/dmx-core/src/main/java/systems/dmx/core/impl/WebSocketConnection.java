@@ -18,6 +18,13 @@ import java.util.logging.Logger;
  */
 class WebSocketConnection implements WebSocket, WebSocket.OnTextMessage, WebSocket.OnBinaryMessage {
 
+    // ------------------------------------------------------------------------------------------------------- Constants
+
+    /**
+     * The session ID of a connection not associated with a session is made up from this prefix and a counter.
+     */
+    static final String ANONYMOUS_SESSION_PREFIX = "anonymous-";
+
     // ---------------------------------------------------------------------------------------------- Instance Variables
 
     String pluginUri;
@@ -28,6 +35,11 @@ class WebSocketConnection implements WebSocket, WebSocket.OnTextMessage, WebSock
      */
     private Connection connection;
 
+    /**
+     * The outbound message queue, drained by the {@link WebSocketSender}.
+     */
+    final WebSocketSender.Outbox outbox = new WebSocketSender.Outbox();
+
     private WebSocketConnectionPool pool;
     private CoreService dmx;
 
@@ -82,12 +94,33 @@ class WebSocketConnection implements WebSocket, WebSocket.OnTextMessage, WebSock
 
     // ----------------------------------------------------------------------------------------- Package Private Methods
 
-    void sendMessage(String message) {
+    /**
+     * @return  <code>true</code> if the message is sent, <code>false</code> if the connection is closed or sending
+     *          failed. In the latter case the connection is removed from the pool.
+     */
+    boolean sendMessage(String message) {
+        if (!connection.isOpen()) {
+            return false;
+        }
         try {
             connection.sendMessage(message);
+            return true;
         } catch (Exception e) {
             pool.remove(this);
             logger.log(Level.SEVERE, "Sending message via " + this + " failed -- connection removed", e);
+            return false;
         }
     }
+
+    void close(int code, String message) {
+        connection.close(code, message);
+    }
+
+    // ---
+
+    @Override
+    public String toString() {
+        return "WebSocket connection of plugin \"" + pluginUri + "\" (session " + sessionId + ", queued messages=" +
+            outbox.size() + ", dropped messages=" + outbox.getDropped() + ")";
+    }
 }
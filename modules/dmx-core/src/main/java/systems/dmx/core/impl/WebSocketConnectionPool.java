@@ -1,7 +1,11 @@
 package systems.dmx.core.impl;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 
@@ -16,6 +20,21 @@ class WebSocketConnectionPool {
      */
     private Map<String, Map<String, WebSocketConnection>> pool = new ConcurrentHashMap();
 
+    /**
+     * 1st hash: plugin URI
+     * 2nd hash: channel
+     * value: IDs of the subscribed sessions
+     */
+    private Map<String, Map<String, Set<String>>> subscriptions = new ConcurrentHashMap();
+
+    /**
+     * The open connections not associated with a session. These can't be subscribed to channels, so they receive
+     * the messages of all channels.
+     * <p>
+     * key: plugin URI
+     */
+    private Map<String, Set<WebSocketConnection>> anonymousConnections = new ConcurrentHashMap();
+
     // ----------------------------------------------------------------------------------------------------- Constructor
 
     WebSocketConnectionPool() {
@@ -52,6 +71,17 @@ class WebSocketConnectionPool {
             pool.put(pluginUri, connections);
         }
         connections.put(connection.sessionId, connection);
+        //
+        if (isAnonymous(connection)) {
+            synchronized (anonymousConnections) {
+                Set<WebSocketConnection> _connections = anonymousConnections.get(pluginUri);
+                if (_connections == null) {
+                    _connections = Collections.newSetFromMap(new ConcurrentHashMap());
+                    anonymousConnections.put(pluginUri, _connections);
+                }
+                _connections.add(connection);
+            }
+        }
     }
 
     void remove(WebSocketConnection connection) {
@@ -60,5 +90,66 @@ class WebSocketConnectionPool {
         if (!removed) {
             throw new RuntimeException("Removing a connection of plugin \"" + pluginUri + "\" failed");
         }
+        if (isAnonymous(connection)) {
+            anonymousConnections.get(pluginUri).remove(connection);
+        }
+    }
+
+    // ---
+
+    /**
+     * Returns the open WebSocket connections of the sessions subscribed to the given channel (of the given plugin),
+     * and the open connections not associated with a session. Subscribed sessions without an open connection are
+     * skipped.
+     */
+    List<WebSocketConnection> getSubscribers(String pluginUri, String channel) {
+        List<WebSocketConnection> subscribers = new ArrayList();
+        Map<String, Set<String>> channels = subscriptions.get(pluginUri);
+        Set<String> sessionIds = channels != null ? channels.get(channel) : null;
+        Map<String, WebSocketConnection> connections = pool.get(pluginUri);
+        if (sessionIds != null && connections != null) {
+            for (String sessionId : sessionIds) {
+                WebSocketConnection connection = connections.get(sessionId);
+                if (connection != null) {
+                    subscribers.add(connection);
+                }
+            }
+        }
+        Set<WebSocketConnection> _anonymousConnections = anonymousConnections.get(pluginUri);
+        if (_anonymousConnections != null) {
+            subscribers.addAll(_anonymousConnections);
+        }
+        return subscribers;
+    }
+
+    synchronized void subscribe(String pluginUri, String channel, String sessionId) {
+        Map<String, Set<String>> channels = subscriptions.get(pluginUri);
+        if (channels == null) {
+            channels = new ConcurrentHashMap();
+            subscriptions.put(pluginUri, channels);
+        }
+        Set<String> sessionIds = channels.get(channel);
+        if (sessionIds == null) {
+            sessionIds = Collections.newSetFromMap(new ConcurrentHashMap());
+            channels.put(channel, sessionIds);
+        }
+        sessionIds.add(sessionId);
+    }
+
+    synchronized void unsubscribe(String pluginUri, String channel, String sessionId) {
+        Map<String, Set<String>> channels = subscriptions.get(pluginUri);
+        Set<String> sessionIds = channels != null ? channels.get(channel) : null;
+        if (sessionIds != null) {
+            sessionIds.remove(sessionId);
+            if (sessionIds.isEmpty()) {
+                channels.remove(channel);
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Methods
+
+    private boolean isAnonymous(WebSocketConnection connection) {
+        return connection.sessionId.startsWith(WebSocketConnection.ANONYMOUS_SESSION_PREFIX);
     }
 }
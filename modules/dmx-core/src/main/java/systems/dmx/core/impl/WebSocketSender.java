@@ -0,0 +1,352 @@
+package systems.dmx.core.impl;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+
+/**
+ * Sends outbound WebSocket messages by a pool of worker threads.
+ * <p>
+ * Each connection has a bounded outbound queue of its own (see {@link Outbox}). A connection with queued messages
+ * is drained by one worker at a time, so the message order is preserved per connection, while the connections are
+ * served in parallel. A slow client occupies at most one worker and does not hold up the others. After a batch of
+ * messages a worker moves on to the next connection, even if more messages are queued.
+ * <p>
+ * When a client can't keep up and its queue is full, either the oldest queued message is dropped (policy "drop",
+ * the default) or the connection is closed (policy "close"). After the connection is closed the client is expected
+ * to reconnect and reload its state.
+ * <p>
+ * Messages queued with a coalescing key are held back for a short window. Within the window a message supersedes
+ * the held back message with the same key (e.g. the position of the same topic). Once the window elapses the held
+ * back messages are queued as one batch frame: a JSON array of the messages. Before a message without key is
+ * queued the held back messages are queued, so the message order is retained.
+ */
+class WebSocketSender {
+
+    // ------------------------------------------------------------------------------------------------------- Constants
+
+    private static final int SEND_THREADS = Integer.getInteger("dmx.websockets.send_threads", 4);
+    static final int QUEUE_SIZE = Integer.getInteger("dmx.websockets.queue_size", 1000);
+    private static final String OVERFLOW_POLICY = System.getProperty("dmx.websockets.overflow_policy", "drop");
+    private static final int COALESCING_WINDOW = Integer.getInteger("dmx.websockets.coalescing_window", 50);  // ms
+    // Note: the default values are required in case no config file is in effect. This applies when DM is started
+    // via feature:install from Karaf. The default values must match the values defined in project POM.
+
+    private static final int BATCH_SIZE = 100;      // max number of messages sent to a connection in one go
+
+    private static final int CLOSE_CODE = 1008;     // "Policy Violation"
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    private final ThreadPoolExecutor workers;
+    private final ScheduledThreadPoolExecutor flushTimer;
+    private final boolean closeSlowClients;
+    private final int coalescingWindow;         // in milliseconds, 0 disables coalescing
+
+    // statistics
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong closed = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();      // number of superseded messages
+    private final AtomicLong batches = new AtomicLong();        // number of batch frames
+    private final AtomicLong totalLatency = new AtomicLong();   // in nanoseconds, from queueing to sent
+    private final AtomicLong maxLatency = new AtomicLong();     // in nanoseconds
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    // ---------------------------------------------------------------------------------------------------- Constructors
+
+    WebSocketSender() {
+        this(OVERFLOW_POLICY, COALESCING_WINDOW);
+    }
+
+    /**
+     * @param   overflowPolicy      "drop" or "close".
+     * @param   coalescingWindow    in milliseconds, 0 disables coalescing.
+     */
+    WebSocketSender(String overflowPolicy, int coalescingWindow) {
+        if (!overflowPolicy.equals("drop") && !overflowPolicy.equals("close")) {
+            throw new RuntimeException("\"" + overflowPolicy + "\" is an invalid value for " +
+                "\"dmx.websockets.overflow_policy\" -- valid values are \"drop\" and \"close\"");
+        }
+        this.closeSlowClients = overflowPolicy.equals("close");
+        this.coalescingWindow = coalescingWindow;
+        // Note: the work queue is unbounded but holds at most one drain task per connection
+        this.workers = new ThreadPoolExecutor(SEND_THREADS, SEND_THREADS, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue(), new SenderThreadFactory("dmx-websockets-sender-"));
+        workers.allowCoreThreadTimeOut(true);
+        this.flushTimer = new ScheduledThreadPoolExecutor(1, new SenderThreadFactory("dmx-websockets-coalescer-"));
+        logger.info("WebSocket message sending: threads=" + SEND_THREADS + ", queueSize=" + QUEUE_SIZE +
+            " (per connection), overflowPolicy=" + overflowPolicy + ", coalescingWindow=" + coalescingWindow +
+            "ms");
+    }
+
+    // ----------------------------------------------------------------------------------------- Package Private Methods
+
+    /**
+     * Queues a message for the given connection. Never blocks.
+     */
+    void queueMessage(WebSocketConnection connection, String message) {
+        queueMessage(connection, message, null);
+    }
+
+    /**
+     * Queues a message for the given connection. Never blocks.
+     *
+     * @param   key     the coalescing key, or <code>null</code> if the message is not coalescable. If coalescing is
+     *                  disabled (window 0) the key is ignored.
+     */
+    void queueMessage(WebSocketConnection connection, String message, String key) {
+        Outbox outbox = connection.outbox;
+        if (key != null && coalescingWindow > 0) {
+            boolean schedule;
+            synchronized (outbox) {
+                if (outbox.heldBack.put(key, message) != null) {
+                    coalesced.incrementAndGet();
+                }
+                schedule = !outbox.flushScheduled;
+                outbox.flushScheduled = true;
+            }
+            if (schedule) {
+                scheduleFlush(connection);
+            }
+        } else {
+            synchronized (outbox) {
+                flush(connection);
+                enqueue(connection, message);
+            }
+        }
+    }
+
+    void shutdown() {
+        flushTimer.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    // ---
+
+    String stats() {
+        long count = sent.get();
+        return "sent=" + count + ", failed=" + failed.get() + ", dropped=" + dropped.get() + ", closed=" +
+            closed.get() + ", coalesced=" + coalesced.get() + ", batches=" + batches.get() + ", avgLatency=" +
+            (count > 0 ? totalLatency.get() / count / 1000 : 0) + "us, maxLatency=" + maxLatency.get() / 1000000 +
+            "ms, maxQueueDepth=" + maxQueueDepth.get() + ", queuedConnections=" + workers.getQueue().size();
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Methods
+
+    private void enqueue(WebSocketConnection connection, String message) {
+        Outbox outbox = connection.outbox;
+        QueuedMessage queuedMessage = new QueuedMessage(message);
+        if (!outbox.messages.offer(queuedMessage)) {
+            if (closeSlowClients) {
+                closeSlowClient(connection);
+                return;
+            }
+            dropMessage(connection);
+            if (!outbox.messages.offer(queuedMessage)) {
+                dropped.incrementAndGet();      // still full due to concurrent queueing -- drop the new message
+                return;
+            }
+        }
+        updateMax(maxQueueDepth, outbox.messages.size());
+        schedule(connection);
+    }
+
+    /**
+     * Queues the held back messages of a connection, as one batch frame if there are more than one.
+     * The caller must hold the connection's outbox lock.
+     */
+    private void flush(WebSocketConnection connection) {
+        Outbox outbox = connection.outbox;
+        outbox.flushScheduled = false;
+        Collection<String> messages = outbox.heldBack.values();
+        if (messages.isEmpty()) {
+            return;
+        }
+        if (messages.size() == 1) {
+            enqueue(connection, messages.iterator().next());
+        } else {
+            StringBuilder frame = new StringBuilder("[");
+            for (String message : messages) {
+                frame.append(frame.length() > 1 ? "," : "").append(message);
+            }
+            enqueue(connection, frame.append("]").toString());
+            batches.incrementAndGet();
+        }
+        outbox.heldBack.clear();
+    }
+
+    private void scheduleFlush(final WebSocketConnection connection) {
+        try {
+            flushTimer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (connection.outbox) {
+                        flush(connection);
+                    }
+                }
+            }, coalescingWindow, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // the sender is shut down -- the message is not sent
+        }
+    }
+
+    // ---
+
+    private void schedule(WebSocketConnection connection) {
+        if (connection.outbox.scheduled.compareAndSet(false, true)) {
+            try {
+                workers.execute(new Drain(connection));
+            } catch (RejectedExecutionException e) {
+                // the sender is shut down -- the message is not sent
+                connection.outbox.scheduled.set(false);
+            }
+        }
+    }
+
+    private void dropMessage(WebSocketConnection connection) {
+        if (connection.outbox.messages.poll() != null) {
+            dropped.incrementAndGet();
+            if (connection.outbox.dropped.incrementAndGet() == 1) {
+                logger.warning("Outbound queue of " + connection + " is full -- dropping the oldest messages " +
+                    "(slow client)");
+            }
+        }
+    }
+
+    private void closeSlowClient(WebSocketConnection connection) {
+        if (connection.outbox.closed.compareAndSet(false, true)) {
+            closed.incrementAndGet();
+            logger.warning("Outbound queue of " + connection + " is full -- closing the connection (slow client)");
+            connection.outbox.messages.clear();
+            connection.close(CLOSE_CODE, "Client too slow");
+        }
+    }
+
+    private void updateMax(AtomicInteger max, int value) {
+        int current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // retry
+        }
+    }
+
+    private void updateMax(AtomicLong max, long value) {
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // retry
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Classes
+
+    /**
+     * Sends a batch of the messages queued for a connection. If more messages are queued afterwards the connection
+     * is rescheduled.
+     */
+    private class Drain implements Runnable {
+
+        private WebSocketConnection connection;
+
+        private Drain(WebSocketConnection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public void run() {
+            Outbox outbox = connection.outbox;
+            try {
+                QueuedMessage message;
+                int count = 0;
+                while (count < BATCH_SIZE && (message = outbox.messages.poll()) != null) {
+                    if (connection.sendMessage(message.message)) {
+                        long latency = System.nanoTime() - message.queueTime;
+                        sent.incrementAndGet();
+                        totalLatency.addAndGet(latency);
+                        updateMax(maxLatency, latency);
+                    } else {
+                        failed.incrementAndGet();
+                        outbox.messages.clear();    // the connection is removed from the pool
+                    }
+                    count++;
+                }
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Sending messages via " + connection + " failed", e);
+            } finally {
+                outbox.scheduled.set(false);
+                // Note: messages queued meanwhile might not have been scheduled as the flag was still set
+                if (!outbox.messages.isEmpty()) {
+                    schedule(connection);
+                }
+            }
+        }
+    }
+
+    private static class SenderThreadFactory implements ThreadFactory {
+
+        private final String namePrefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        private SenderThreadFactory(String namePrefix) {
+            this.namePrefix = namePrefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, namePrefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    private static class QueuedMessage {
+
+        private String message;
+        private long queueTime = System.nanoTime();
+
+        private QueuedMessage(String message) {
+            this.message = message;
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------- Nested Classes
+
+    /**
+     * The outbound queue of a connection.
+     */
+    static class Outbox {
+
+        private final BlockingQueue<QueuedMessage> messages = new LinkedBlockingQueue(QUEUE_SIZE);
+        private final AtomicBoolean scheduled = new AtomicBoolean();   // true while a drain task is pending/running
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private final AtomicLong dropped = new AtomicLong();
+
+        // held back coalescable messages (key: coalescing key). Guarded by the outbox lock.
+        private final Map<String, String> heldBack = new LinkedHashMap();
+        private boolean flushScheduled;
+
+        int size() {
+            return messages.size();
+        }
+
+        long getDropped() {
+            return dropped.get();
+        }
+    }
+}
@@ -12,10 +12,15 @@ import org.eclipse.jetty.websocket.WebSocketHandler;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpSessionBindingEvent;
+import javax.servlet.http.HttpSessionBindingListener;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -30,11 +35,13 @@ class WebSocketsServiceImpl implements WebSocketsService {
     // Note: the default values are required in case no config file is in effect. This applies when DM is started
     // via feature:install from Karaf. The default values must match the values defined in project POM.
 
+    private static final String SUBSCRIPTIONS_ATTRIBUTE = "dmx.websockets.subscriptions";    // a session attribute
+
     // ---------------------------------------------------------------------------------------------- Instance Variables
 
     private WebSocketsServer server;
     private WebSocketConnectionPool pool = new WebSocketConnectionPool();
-    private SendMessageWorker worker = new SendMessageWorker();
+    private WebSocketSender sender = new WebSocketSender();
     private CoreService dmx;
 
     private Logger logger = Logger.getLogger(getClass().getName());
@@ -80,6 +87,59 @@ class WebSocketsServiceImpl implements WebSocketsService {
 
     // ---
 
+    @Override
+    public void subscribe(HttpServletRequest request, String pluginUri, String channel) {
+        SessionSubscriptions subscriptions = getSessionSubscriptions(request);
+        if (subscriptions != null) {
+            subscriptions.add(pluginUri, channel);
+        }
+    }
+
+    @Override
+    public void subscribeExclusively(HttpServletRequest request, String pluginUri, String channel,
+                                                                                   String channelPrefix) {
+        SessionSubscriptions subscriptions = getSessionSubscriptions(request);
+        if (subscriptions != null) {
+            subscriptions.replace(pluginUri, channel, channelPrefix);
+        }
+    }
+
+    @Override
+    public void unsubscribe(HttpServletRequest request, String pluginUri, String channel) {
+        SessionSubscriptions subscriptions = getSessionSubscriptions(request);
+        if (subscriptions != null) {
+            subscriptions.remove(pluginUri, channel);
+        }
+    }
+
+    @Override
+    public void messageToSubscribers(String pluginUri, String channel, String message) {
+        multicast(pluginUri, channel, message, null, null);     // key=null, excludeSessionId=null
+    }
+
+    @Override
+    public void messageToSubscribersButOne(HttpServletRequest request, String pluginUri, String channel,
+                                                                                          String message) {
+        if (request == null) {
+            throw new IllegalArgumentException("request must not be null");
+        }
+        multicast(pluginUri, channel, message, null, getSessionId(request));   // key=null
+    }
+
+    @Override
+    public void messageToSubscribersButOne(HttpServletRequest request, String pluginUri, String channel,
+                                                                           String message, String key) {
+        if (request == null) {
+            throw new IllegalArgumentException("request must not be null");
+        }
+        if (key == null) {
+            throw new IllegalArgumentException("key must not be null");
+        }
+        multicast(pluginUri, channel, message, key, getSessionId(request));
+    }
+
+    // ---
+
     @Override
     public String getWebSocketsURL() {
         return WEBSOCKETS_URL;
@@ -92,7 +152,6 @@ class WebSocketsServiceImpl implements WebSocketsService {
             logger.info("##### Starting Jetty WebSocket server #####");
             server = new WebSocketsServer(WEBSOCKETS_PORT);
             server.start();
-            worker.start();
             // ### server.join();
             logger.info("### Jetty WebSocket server started successfully");
         } catch (Exception e) {
@@ -104,8 +163,9 @@ class WebSocketsServiceImpl implements WebSocketsService {
         try {
             if (server != null) {
                 logger.info("##### Stopping Jetty WebSocket server #####");
-                worker.interrupt();
+                sender.shutdown();
                 server.stop();
+                logger.info("WebSocket message statistics: " + sender.stats());
             } else {
                 logger.info("Stopping Jetty WebSocket server SKIPPED -- not yet started");
             }
@@ -123,18 +183,59 @@ class WebSocketsServiceImpl implements WebSocketsService {
      * @throws  RuntimeException    if no valid session is associated with the request.
      */
     private WebSocketConnection getConnection(HttpServletRequest request, String pluginUri) {
+        String sessionId = getSessionId(request);
+        return sessionId != null ? pool.getConnection(pluginUri, sessionId) : null;
+    }
+
+    /**
+     * @return  the ID of the session associated with the given request, or null if called outside request scope.
+     *
+     * @throws  RuntimeException    if no valid session is associated with the request.
+     */
+    private String getSessionId(HttpServletRequest request) {
+        try {
+            HttpSession session = request.getSession(false);
+            if (session == null) {
+                throw new RuntimeException("No valid session is associated with the request");
+            }
+            return session.getId();
+        } catch (IllegalStateException e) {
+            // Note: this happens if "request" is accessed outside request scope, e.g. while system startup.
+            return null;
+        }
+    }
+
+    /**
+     * Returns the subscriptions of the session associated with the given request. If the session has no
+     * subscriptions yet an empty subscriptions object is attached to it.
+     *
+     * @return  the session's subscriptions, or null if called outside request scope.
+     *
+     * @throws  RuntimeException    if no valid session is associated with the request.
+     */
+    private SessionSubscriptions getSessionSubscriptions(HttpServletRequest request) {
         try {
             HttpSession session = request.getSession(false);
             if (session == null) {
                 throw new RuntimeException("No valid session is associated with the request");
             }
-            return pool.getConnection(pluginUri, session.getId());
+            synchronized (session) {
+                SessionSubscriptions subscriptions = (SessionSubscriptions) session.getAttribute(
+                    SUBSCRIPTIONS_ATTRIBUTE);
+                if (subscriptions == null) {
+                    subscriptions = new SessionSubscriptions(session.getId());
+                    session.setAttribute(SUBSCRIPTIONS_ATTRIBUTE, subscriptions);
+                }
+                return subscriptions;
+            }
         } catch (IllegalStateException e) {
             // Note: this happens if "request" is accessed outside request scope, e.g. while system startup.
             return null;
         }
     }
 
+    // ---
+
     private void broadcast(String pluginUri, String message, WebSocketConnection exclude) {
         Collection<WebSocketConnection> connections = pool.getConnections(pluginUri);
         if (connections != null) {
@@ -146,8 +247,19 @@ class WebSocketsServiceImpl implements WebSocketsService {
         }
     }
 
+    /**
+     * @param   key     the coalescing key, or null if the message is not coalescable.
+     */
+    private void multicast(String pluginUri, String channel, String message, String key, String excludeSessionId) {
+        for (WebSocketConnection connection : pool.getSubscribers(pluginUri, channel)) {
+            if (!connection.sessionId.equals(excludeSessionId)) {
+                sender.queueMessage(connection, message, key);
+            }
+        }
+    }
+
     private void queueMessage(WebSocketConnection connection, String message) {
-        worker.queueMessage(connection, message);
+        sender.queueMessage(connection, message);
     }
 
 
@@ -191,52 +303,70 @@ class WebSocketsServiceImpl implements WebSocketsService {
         private String sessionId(HttpServletRequest request) {
             String sessionId = JavaUtils.cookieValue(request, "JSESSIONID");
             // TODO: drop anonymous connections
-            return sessionId != null ? sessionId : "anonymous-" + counter++;
+            return sessionId != null ? sessionId : WebSocketConnection.ANONYMOUS_SESSION_PREFIX + counter++;
         }
     }
 
-    private class SendMessageWorker extends Thread {
+    /**
+     * The channel subscriptions of a session. Attached to the session as an attribute. Once the session ends the
+     * subscriptions are removed from the connection pool.
+     */
+    private class SessionSubscriptions implements HttpSessionBindingListener {
 
-        private BlockingQueue<QueuedMessage> messages = new LinkedBlockingQueue();
+        private String sessionId;
+        private Map<String, Set<String>> channels = new HashMap();     // key: plugin URI
 
-        private SendMessageWorker() {
-            setPriority(Thread.MIN_PRIORITY);
+        private SessionSubscriptions(String sessionId) {
+            this.sessionId = sessionId;
         }
 
-        @Override
-        public void run() {
-            try {
-                while (true) {
-                    QueuedMessage message = messages.take();
-                    yield();
-                    // logger.info("----- sending message " + Thread.currentThread().getName());
-                    message.connection.sendMessage(message.message);
-                }
-            } catch (InterruptedException e) {
-                logger.info("### SendMessageWorker thread received an InterruptedException -- terminating");
-            } catch (Exception e) {
-                logger.log(Level.WARNING, "An exception occurred in the SendMessageWorker thread -- terminating:", e);
+        private synchronized void add(String pluginUri, String channel) {
+            Set<String> _channels = channels.get(pluginUri);
+            if (_channels == null) {
+                _channels = new HashSet();
+                channels.put(pluginUri, _channels);
+            }
+            if (_channels.add(channel)) {
+                pool.subscribe(pluginUri, channel, sessionId);
+                logger.fine("Session " + sessionId + " subscribed to channel \"" + channel + "\" (plugin \"" +
+                    pluginUri + "\")");
             }
         }
 
-        private void queueMessage(WebSocketConnection connection, String message) {
-            try {
-                // logger.info("----- queueing message " + Thread.currentThread().getName());
-                messages.put(new QueuedMessage(connection, message));
-            } catch (InterruptedException e) {
-                logger.log(Level.WARNING, "Queueing a message failed:", e);
+        /**
+         * Subscribes to a channel and unsubscribes from the other channels starting with the given prefix.
+         */
+        private synchronized void replace(String pluginUri, String channel, String channelPrefix) {
+            Set<String> _channels = channels.get(pluginUri);
+            if (_channels != null) {
+                for (String _channel : new ArrayList<String>(_channels)) {
+                    if (_channel.startsWith(channelPrefix) && !_channel.equals(channel)) {
+                        remove(pluginUri, _channel);
+                    }
+                }
             }
+            add(pluginUri, channel);
         }
-    }
 
-    private static class QueuedMessage {
+        private synchronized void remove(String pluginUri, String channel) {
+            Set<String> _channels = channels.get(pluginUri);
+            if (_channels != null && _channels.remove(channel)) {
+                pool.unsubscribe(pluginUri, channel, sessionId);
+            }
+        }
 
-        private WebSocketConnection connection;
-        private String message;
+        @Override
+        public void valueBound(HttpSessionBindingEvent event) {
+        }
 
-        private QueuedMessage(WebSocketConnection connection, String message) {
-            this.connection = connection;
-            this.message = message;
+        @Override
+        public synchronized void valueUnbound(HttpSessionBindingEvent event) {
+            for (String pluginUri : channels.keySet()) {
+                for (String channel : channels.get(pluginUri)) {
+                    pool.unsubscribe(pluginUri, channel, sessionId);
+                }
+            }
+            channels.clear();
         }
     }
 }
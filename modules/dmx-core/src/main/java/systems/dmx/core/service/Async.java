@@ -0,0 +1,26 @@
+package systems.dmx.core.service;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+
+
+/**
+ * Delivers an event to the annotated listener method asynchronously, once the transaction the event was fired in
+ * is committed. If that transaction is rolled back the event is not delivered at all. An event fired outside a
+ * transaction is delivered right away, but still asynchronously.
+ * <p>
+ * Supported for the post-create, post-update, and post-delete events of topics and associations. For any other
+ * event the annotation is ignored and the event is delivered synchronously.
+ * <p>
+ * Use it for non-critical listeners whose work must not delay the response, e.g. indexing or notifications.
+ * Note: an asynchronous listener runs in a pool thread, that is outside the request scope (no cookies, no current
+ * user) and outside any transaction. For writing it must open a transaction itself (see
+ * {@link CoreService#beginTx}). Errors thrown by the listener are logged but not reported to the client.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Async {
+}
@@ -17,6 +17,7 @@ import systems.dmx.core.service.accesscontrol.AccessControl;
 import systems.dmx.core.storage.spi.DMXTransaction;
 
 import java.util.List;
+import java.util.Map;
 
 
 
@@ -83,6 +84,55 @@ public interface CoreService {
 
     List<Topic> getTopicsByType(String topicTypeUri);
 
+    /**
+     * Returns a page of the instances of the given topic type.
+     * <p>
+     * Instances the current user has no READ permission for are skipped, that is they are not counted.
+     *
+     * @param   offset      the number of instances to skip.
+     * @param   limit       the max number of instances to return. 0 means no limit.
+     * @param   sortById    if <code>true</code> the instances are ordered by ID. Otherwise the order is undefined.
+     *                      For stable paging pass <code>true</code>.
+     */
+    List<Topic> getTopicsByType(String topicTypeUri, int offset, int limit, boolean sortById);
+
+    /**
+     * Returns the instances of the given topic type as a stream. The instances are fetched from the DB while
+     * iterating. Instances the current user has no READ permission for are skipped.
+     * <p>
+     * The returned iterable must be consumed within the current transaction, and can be iterated only once.
+     *
+     * @param   sortById    if <code>true</code> the instances are iterated in ID order. Otherwise the order is
+     *                      undefined.
+     */
+    Iterable<Topic> iterateTopicsByType(String topicTypeUri, boolean sortById);
+
+    /**
+     * Counts the instances of the given topic type without fetching them.
+     * <p>
+     * Note: the READ permission is not checked. All instances are counted.
+     */
+    int countTopicsByType(String topicTypeUri);
+
+    /**
+     * Counts the instances of the given topic type the current user has READ permission for. In contrast to
+     * {@link #countTopicsByType} the instances are fetched (without their child topics) in order to be checked.
+     * <p>
+     * Note: the cost is O(n) in the number of instances (readable or not), regardless of the user's permissions.
+     * For a large type prefer {@link #countTopicsByType} where the READ permission is not an issue.
+     */
+    int countReadableTopicsByType(String topicTypeUri);
+
+    /**
+     * Counts the topics with the given exact value without fetching them.
+     * <p>
+     * Note: the READ permission is not checked. All topics are counted.
+     * <p>
+     * IMPORTANT: Counting topics this way requires the corresponding type to be indexed with indexing mode
+     * <code>dmx.core.key</code>.
+     */
+    int countTopicsByValue(String key, SimpleValue value);
+
     /**
      * Performs a fulltext search.
      * <p>
@@ -152,6 +202,55 @@ public interface CoreService {
 
     List<Association> getAssociationsByType(String assocTypeUri);
 
+    /**
+     * Returns a page of the instances of the given association type.
+     * <p>
+     * Instances the current user has no READ permission for are skipped, that is they are not counted.
+     *
+     * @param   offset      the number of instances to skip.
+     * @param   limit       the max number of instances to return. 0 means no limit.
+     * @param   sortById    if <code>true</code> the instances are ordered by ID. Otherwise the order is undefined.
+     *                      For stable paging pass <code>true</code>.
+     */
+    List<Association> getAssociationsByType(String assocTypeUri, int offset, int limit, boolean sortById);
+
+    /**
+     * Returns the instances of the given association type as a stream. The instances are fetched from the DB while
+     * iterating. Instances the current user has no READ permission for are skipped.
+     * <p>
+     * The returned iterable must be consumed within the current transaction, and can be iterated only once.
+     *
+     * @param   sortById    if <code>true</code> the instances are iterated in ID order. Otherwise the order is
+     *                      undefined.
+     */
+    Iterable<Association> iterateAssociationsByType(String assocTypeUri, boolean sortById);
+
+    /**
+     * Counts the instances of the given association type without fetching them.
+     * <p>
+     * Note: the READ permission is not checked. All instances are counted.
+     */
+    int countAssociationsByType(String assocTypeUri);
+
+    /**
+     * Counts the instances of the given association type the current user has READ permission for. In contrast to
+     * {@link #countAssociationsByType} the instances are fetched (without their child topics) in order to be checked.
+     * <p>
+     * Note: the cost is O(n) in the number of instances (readable or not), regardless of the user's permissions.
+     * For a large type prefer {@link #countAssociationsByType} where the READ permission is not an issue.
+     */
+    int countReadableAssociationsByType(String assocTypeUri);
+
+    /**
+     * Counts the associations with the given exact value without fetching them.
+     * <p>
+     * Note: the READ permission is not checked. All associations are counted.
+     * <p>
+     * IMPORTANT: Counting associations this way requires the corresponding type to be indexed with indexing mode
+     * <code>dmx.core.key</code>.
+     */
+    int countAssociationsByValue(String key, SimpleValue value);
+
     /**
      * Returns all associations between two topics. If no such association exists an empty list is returned.
      */
@@ -239,6 +338,43 @@ public interface CoreService {
 
     DMXObject getObject(long id);
 
+    /**
+     * Counts the related topics of a topic or an association without fetching them. A topic related via several
+     * associations is counted several times.
+     * <p>
+     * Note: the READ permission is not checked. All related topics are counted.
+     *
+     * @param   objectId            a topic ID, or an association ID
+     * @param   assocTypeUri        may be null
+     * @param   myRoleTypeUri       may be null
+     * @param   othersRoleTypeUri   may be null
+     * @param   othersTopicTypeUri  may be null
+     */
+    int countRelatedTopics(long objectId, String assocTypeUri, String myRoleTypeUri, String othersRoleTypeUri,
+                                                                                      String othersTopicTypeUri);
+
+    /**
+     * Counts the related topics of a topic or an association the current user has READ permission for. In contrast
+     * to {@link #countRelatedTopics} the related topics are fetched (without their child topics) in order to be
+     * checked.
+     */
+    int countReadableRelatedTopics(long objectId, String assocTypeUri, String myRoleTypeUri,
+                                   String othersRoleTypeUri, String othersTopicTypeUri);
+
+    /**
+     * Checks if a topic or an association has at least one related topic. The check stops at the first match.
+     * <p>
+     * Note: the READ permission is not checked.
+     *
+     * @param   objectId            a topic ID, or an association ID
+     * @param   assocTypeUri        may be null
+     * @param   myRoleTypeUri       may be null
+     * @param   othersRoleTypeUri   may be null
+     * @param   othersTopicTypeUri  may be null
+     */
+    boolean hasRelatedTopics(long objectId, String assocTypeUri, String myRoleTypeUri, String othersRoleTypeUri,
+                                                                                       String othersTopicTypeUri);
+
 
 
     // === Plugins ===
@@ -274,6 +410,20 @@ public interface CoreService {
      */
     boolean hasProperty(long id, String propUri);
 
+    /**
+     * Returns several property values of many topics and/or associations at once. Use it instead of repeated
+     * {@link #getProperty} calls, e.g. for fetching the view properties of all the items of a topicmap.
+     * <p>
+     * Note: the READ permission is not checked, as with {@link #getProperty}.
+     *
+     * @param   ids         topic IDs and/or association IDs
+     * @param   propUris    the URIs of the properties to return
+     *
+     * @return  the property values, per object (key: object ID) and property (key: property URI). Every given ID
+     *          is a key. A property the object has no value for is not contained in the object's map.
+     */
+    Map<Long, Map<String, Object>> getProperties(List<Long> ids, List<String> propUris);
+
     // Note: there is no setter here. If we want one we actually need 2 setters: one for topics, one for assocs.
     // This is because the storage layer maintains separate indexes for topics and assocs.
 
@@ -287,6 +437,16 @@ public interface CoreService {
 
     List<Association> getAssociationsByPropertyRange(String propUri, Number from, Number to);
 
+    /**
+     * Note: the READ permission is not checked. All topics are counted.
+     */
+    int countTopicsByProperty(String propUri, Object propValue);
+
+    /**
+     * Note: the READ permission is not checked. All associations are counted.
+     */
+    int countAssociationsByProperty(String propUri, Object propValue);
+
     // ---
 
     void addTopicPropertyIndex(String propUri);
@@ -299,6 +459,21 @@ public interface CoreService {
 
     DMXTransaction beginTx();
 
+    /**
+     * Runs a task once the current transaction is committed, e.g. for publishing a change only when it is visible
+     * to other transactions. The task is run by the committing thread (so within request scope if the transaction
+     * is a request's). If the transaction is rolled back the task is discarded. If no transaction is open the task
+     * is run right away.
+     */
+    void runAfterCommit(Runnable task);
+
+    /**
+     * Runs a task once the current transaction is finished, regardless whether it is committed or rolled back, e.g.
+     * for releasing a lock which is to be held until the transaction's changes are visible to other transactions.
+     * The task is run by the finishing thread. If no transaction is open the task is run right away.
+     */
+    void runAfterCompletion(Runnable task);
+
     // ---
 
     ModelFactory getModelFactory();
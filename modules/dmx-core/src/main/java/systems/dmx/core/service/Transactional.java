@@ -7,7 +7,19 @@ import java.lang.annotation.Target;
 
 
 
+/**
+ * Runs a resource method in a transaction. The transaction is committed if the method returns normally, and rolled
+ * back if it throws.
+ * <p>
+ * <code>GET</code> resource methods which are not annotated run in a read-only transaction scope automatically.
+ */
 @Target(ElementType.METHOD)
 @Retention(RetentionPolicy.RUNTIME)
 public @interface Transactional {
+
+    /**
+     * If <code>true</code> the method runs in a read-only transaction scope: no storage transaction is opened, so
+     * neither locks nor a commit are involved. Writing fails within a read-only scope.
+     */
+    boolean readOnly() default false;
 }
@@ -16,5 +16,56 @@ public interface WebSocketsService {
 
     // ---
 
+    /**
+     * Subscribes the client associated with the given request (based on its session) to a channel. Messages sent
+     * to a channel are delivered to the subscribed clients only, see {@link #messageToSubscribers}.
+     * <p>
+     * A channel is an arbitrary string, e.g. <code>"topicmap:1234"</code>. The subscription is bound to the
+     * session, not to the WebSocket connection: it is effective for connections opened later on as well, and ends
+     * with the session. It is up to the caller to check whether the client is allowed to receive the channel's
+     * messages.
+     * <p>
+     * Outside request scope (e.g. while system startup) nothing is performed.
+     * <p>
+     * A client without a session (not logged in) can't be subscribed. It receives the messages of all channels
+     * instead.
+     */
+    void subscribe(HttpServletRequest request, String pluginUri, String channel);
+
+    /**
+     * Like {@link #subscribe} but the client's subscriptions to the other channels starting with the given prefix
+     * end. E.g. a client which views one topicmap at a time is subscribed to the channel of the current one only.
+     */
+    void subscribeExclusively(HttpServletRequest request, String pluginUri, String channel, String channelPrefix);
+
+    void unsubscribe(HttpServletRequest request, String pluginUri, String channel);
+
+    void messageToSubscribers(String pluginUri, String channel, String message);
+
+    /**
+     * Like {@link #messageToSubscribers} but the client associated with the given request is excluded.
+     * Outside request scope the message is sent to all subscribers.
+     */
+    // ### TODO: let Core provide a root resource and drop "request" parameter?
+    void messageToSubscribersButOne(HttpServletRequest request, String pluginUri, String channel, String message);
+
+    /**
+     * Like {@link #messageToSubscribersButOne} but the message is coalescable. The message is held back for a short
+     * window (see "dmx.websockets.coalescing_window"). A message which is sent within that window with the same key
+     * supersedes it. E.g. while a topic is dragged only its latest position is sent.
+     * <p>
+     * Coalescable messages are delivered in batch frames: if a connection has more than one held back message at
+     * the end of the window they are sent in one frame, as a JSON array of the messages. The plugin's client must
+     * accept such frames.
+     *
+     * @param   key     The coalescing key. Messages with equal keys supersede each other. Should include the
+     *                  message type and the addressed object, e.g. <code>"setTopicPosition:1234:5678"</code>.
+     */
+    // ### TODO: let Core provide a root resource and drop "request" parameter?
+    void messageToSubscribersButOne(HttpServletRequest request, String pluginUri, String channel, String message,
+                                                                                                  String key);
+
+    // ---
+
     String getWebSocketsURL();
 }
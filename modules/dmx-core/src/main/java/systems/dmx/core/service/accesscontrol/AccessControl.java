@@ -8,6 +8,7 @@ import systems.dmx.core.Topic;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
 
+import java.util.List;
 import java.util.concurrent.Callable;
 
 
@@ -28,6 +29,15 @@ public interface AccessControl {
      */
     boolean hasPermission(String username, Operation operation, long objectId);
 
+    /**
+     * Removes the objects a user is not permitted to perform an operation on from the given list.
+     * The objects are grouped by workspace, so the decision for a workspace is made only once.
+     *
+     * @param   username    the logged in user, or <code>null</code> if no user is logged in.
+     * @param   objectIds   topic IDs and/or association IDs. The list is modified in-place.
+     */
+    void retainPermitted(String username, Operation operation, List<Long> objectIds);
+
     // ---
 
     boolean hasReadPermission(String username, long workspaceId);
@@ -0,0 +1,21 @@
+package systems.dmx.core.service.event;
+
+import systems.dmx.core.service.EventListener;
+
+import java.util.List;
+
+
+
+/**
+ * Batch variant of {@link CheckAssociationReadAccessListener}.
+ * Fired when a list of associations is about to be passed to the user.
+ * <p>
+ * If a plugin implements both interfaces the single-object variant is only used for single associations.
+ */
+public interface CheckAssociationsReadAccessListener extends EventListener {
+
+    /**
+     * Removes from the given list the IDs of those associations the current user has no READ permission for.
+     */
+    void checkAssociationsReadAccess(List<Long> assocIds);
+}
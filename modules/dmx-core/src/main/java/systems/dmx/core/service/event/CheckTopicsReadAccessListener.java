@@ -0,0 +1,21 @@
+package systems.dmx.core.service.event;
+
+import systems.dmx.core.service.EventListener;
+
+import java.util.List;
+
+
+
+/**
+ * Batch variant of {@link CheckTopicReadAccessListener}.
+ * Fired when a list of topics is about to be passed to the user.
+ * <p>
+ * If a plugin implements both interfaces the single-object variant is only used for single topics.
+ */
+public interface CheckTopicsReadAccessListener extends EventListener {
+
+    /**
+     * Removes from the given list the IDs of those topics the current user has no READ permission for.
+     */
+    void checkTopicsReadAccess(List<Long> topicIds);
+}
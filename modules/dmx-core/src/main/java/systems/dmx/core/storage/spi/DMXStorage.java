@@ -11,6 +11,7 @@ import systems.dmx.core.service.ModelFactory;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 
 
@@ -32,6 +33,17 @@ public interface DMXStorage {
 
     Iterator<? extends TopicModel> fetchAllTopics();
 
+    /**
+     * Returns a lazy cursor over the topics with the given exact (key-indexed) value, e.g. over the instances of a
+     * type (key="typeUri").
+     * <p>
+     * Only the topic IDs are collected upfront. The topics are fetched while iterating. Topics deleted in the
+     * meantime are skipped.
+     *
+     * @param   sortById    if <code>true</code> the topics are iterated in ID order. Otherwise the order is undefined.
+     */
+    Iterator<? extends TopicModel> fetchTopicCursor(String key, Object value, boolean sortById);
+
     // ---
 
     /**
@@ -85,6 +97,18 @@ public interface DMXStorage {
 
     Iterator<? extends AssociationModel> fetchAllAssociations();
 
+    /**
+     * Returns a lazy cursor over the associations with the given exact (key-indexed) value, e.g. over the instances
+     * of a type (key="typeUri").
+     * <p>
+     * Only the association IDs are collected upfront. The associations are fetched while iterating. Associations
+     * deleted in the meantime are skipped.
+     *
+     * @param   sortById    if <code>true</code> the associations are iterated in ID order. Otherwise the order is
+     *                      undefined.
+     */
+    Iterator<? extends AssociationModel> fetchAssociationCursor(String key, Object value, boolean sortById);
+
     List<RoleModel> fetchRoleModels(long assocId);
 
     // ---
@@ -185,6 +209,23 @@ public interface DMXStorage {
     List<? extends RelatedAssociationModel> fetchRelatedAssociations(long objectId, String assocTypeUri,
                                              String myRoleTypeUri, String othersRoleTypeUri, String othersAssocTypeUri);
 
+    // ---
+
+    /**
+     * Fetches the related topics of many objects at once.
+     * <p>
+     * The result is not grouped by object. The caller assigns a related topic to its object by the means of the
+     * relating association.
+     *
+     * @param   objectIds           ids of topics or associations
+     * @param   assocTypeUri        may be null
+     * @param   myRoleTypeUri       may be null
+     * @param   othersRoleTypeUri   may be null
+     * @param   othersTopicTypeUri  may be null
+     */
+    List<? extends RelatedTopicModel> fetchRelatedTopics(List<Long> objectIds, String assocTypeUri,
+                                             String myRoleTypeUri, String othersRoleTypeUri, String othersTopicTypeUri);
+
 
 
     // === Properties ===
@@ -199,6 +240,17 @@ public interface DMXStorage {
      */
     boolean hasProperty(long id, String propUri);
 
+    /**
+     * Fetches several properties of many topics and/or associations at once.
+     *
+     * @param   ids                 ids of topics and/or associations
+     * @param   propUris            the URIs of the properties to fetch
+     *
+     * @return  the property values, per object (key: object id) and property (key: property URI). Every given id
+     *          is a key. A property the object has no value for is not contained in the object's map.
+     */
+    Map<Long, Map<String, Object>> fetchProperties(List<Long> ids, List<String> propUris);
+
     // ---
 
     List<? extends TopicModel> fetchTopicsByProperty(String propUri, Object propValue);
@@ -229,6 +281,56 @@ public interface DMXStorage {
 
 
 
+    // === Counting ===
+
+    // Note: counting and existence checks do not fetch any models. The READ permission is not checked.
+
+    /**
+     * Counts the topics with the given exact (key-indexed) value, e.g. the instances of a type (key="typeUri").
+     */
+    int countTopics(String key, Object value);
+
+    /**
+     * Counts the associations with the given exact (key-indexed) value, e.g. the instances of a type
+     * (key="typeUri").
+     */
+    int countAssociations(String key, Object value);
+
+    // ---
+
+    int countTopicsByProperty(String propUri, Object propValue);
+
+    int countAssociationsByProperty(String propUri, Object propValue);
+
+    // ---
+
+    /**
+     * Counts the related topics of a topic or an association. A topic related via several associations is counted
+     * several times (as in {@link #fetchRelatedTopics(long,String,String,String,String)}).
+     *
+     * @param   objectId            id of a topic or an association
+     * @param   assocTypeUri        may be null
+     * @param   myRoleTypeUri       may be null
+     * @param   othersRoleTypeUri   may be null
+     * @param   othersTopicTypeUri  may be null
+     */
+    int countRelatedTopics(long objectId, String assocTypeUri, String myRoleTypeUri, String othersRoleTypeUri,
+                                                                                      String othersTopicTypeUri);
+
+    /**
+     * Checks if a topic or an association has at least one related topic.
+     *
+     * @param   objectId            id of a topic or an association
+     * @param   assocTypeUri        may be null
+     * @param   myRoleTypeUri       may be null
+     * @param   othersRoleTypeUri   may be null
+     * @param   othersTopicTypeUri  may be null
+     */
+    boolean hasRelatedTopics(long objectId, String assocTypeUri, String myRoleTypeUri, String othersRoleTypeUri,
+                                                                                       String othersTopicTypeUri);
+
+
+
     // === DB ===
 
     DMXTransaction beginTx();
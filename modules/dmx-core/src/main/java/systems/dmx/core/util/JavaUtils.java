@@ -293,6 +293,13 @@ public class JavaUtils {
         }
     }
 
+    /**
+     * Returns the hex representation of a byte array, e.g. of a message digest.
+     */
+    public static String hexString(byte[] data) {
+        return new String(encodeHex(data));
+    }
+
     private static char[] encodeHex(byte[] data) {
         final String DIGITS = "0123456789abcdef";
         int l = data.length;
@@ -1,5 +1,7 @@
 package systems.dmx.files;
 
+import systems.dmx.files.DirectoryListingCache.FileAttributes;
+
 import systems.dmx.core.JSONEnabled;
 import systems.dmx.core.util.DMXUtils;
 import systems.dmx.core.util.JavaUtils;
@@ -19,6 +21,7 @@ public class DirectoryListing implements JSONEnabled {
     private PathMapper pathMapper;
     private FileItem dirInfo;
     private List<FileItem> fileItems = new ArrayList<FileItem>();
+    private int total;      // number of directory entries (regardless of paging)
 
     // ---------------------------------------------------------------------------------------------------- Constructors
 
@@ -28,6 +31,22 @@ public class DirectoryListing implements JSONEnabled {
         for (File file : directory.listFiles()) {
             fileItems.add(new FileItem(file));
         }
+        this.total = fileItems.size();
+    }
+
+    /**
+     * Constructs a page of a directory listing.
+     *
+     * @param   page    the attributes of the directory entries contained in the page.
+     * @param   total   the number of directory entries.
+     */
+    DirectoryListing(File directory, List<FileAttributes> page, int total, PathMapper pathMapper) {
+        this.pathMapper = pathMapper;
+        this.dirInfo = new FileItem(directory);
+        for (FileAttributes attributes : page) {
+            fileItems.add(new FileItem(attributes));
+        }
+        this.total = total;
     }
 
     // -------------------------------------------------------------------------------------------------- Public Methods
@@ -36,13 +55,22 @@ public class DirectoryListing implements JSONEnabled {
         return fileItems;
     }
 
+    /**
+     * @return  the number of directory entries. If the listing is paged this might be more than the number of
+     *          file items.
+     */
+    public int getTotal() {
+        return total;
+    }
+
     // ---
 
     @Override
     public JSONObject toJSON() {
         try {
             return dirInfo.toJSON()
-                .put("items", DMXUtils.toJSONArray(fileItems));
+                .put("items", DMXUtils.toJSONArray(fileItems))
+                .put("total", total);
         } catch (Exception e) {
             throw new RuntimeException("Serialization failed", e);
         }
@@ -57,14 +85,21 @@ public class DirectoryListing implements JSONEnabled {
         String path;
         long size;      // for files only
         String type;    // for files only
+        long modified;  // for files only
 
         FileItem(File file) {
-            this.kind = file.isDirectory() ? ItemKind.DIRECTORY : ItemKind.FILE;
+            this(new FileAttributes(file));
+        }
+
+        FileItem(FileAttributes attributes) {
+            File file = attributes.file;
+            this.kind = attributes.isDirectory ? ItemKind.DIRECTORY : ItemKind.FILE;
             this.name = file.getName();
             this.path = pathMapper.repoPath(file);
             if (kind == ItemKind.FILE) {
-                this.size = file.length();
+                this.size = attributes.size;
                 this.type = JavaUtils.getFileType(name);
+                this.modified = attributes.modified;
             }
         }
 
@@ -90,6 +125,10 @@ public class DirectoryListing implements JSONEnabled {
             return type;
         }
 
+        public long getModified() {
+            return modified;
+        }
+
         // ---
 
         @Override
@@ -102,6 +141,7 @@ public class DirectoryListing implements JSONEnabled {
                 if (kind == ItemKind.FILE) {
                     item.put("size", size);
                     item.put("type", type);
+                    item.put("modified", modified);
                 }
                 return item;
             } catch (Exception e) {
@@ -0,0 +1,166 @@
+package systems.dmx.files;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+
+
+/**
+ * A size-bounded LRU cache of directory listings, keyed by directory path and modification time.
+ * <p>
+ * Per directory the entry names (sorted by name) are cached, and -- once a listing is sorted by size or
+ * modification time -- the attributes of all entries. Adding, removing, or renaming an entry changes the directory's
+ * modification time, so the cached listing is discarded. Note: modifying an existing file in place does <i>not</i>
+ * change the directory's modification time. The cached attributes (size, modification time) of that file remain
+ * outdated until the directory is modified.
+ * <p>
+ * As file systems store modification times with a coarse resolution (1 or 2 seconds) a listing is not cached if the
+ * directory was modified within the last {@link #RACY_INTERVAL} milliseconds. Otherwise a modification in the same
+ * second would remain unnoticed.
+ */
+class DirectoryListingCache {
+
+    // ------------------------------------------------------------------------------------------------------- Constants
+
+    private static final long RACY_INTERVAL = 2000;     // in milliseconds
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    private final int maxEntries;
+    private final Map<String, Listing> listings = new LinkedHashMap(16, 0.75f, true);    // accessOrder=true
+
+    // statistics
+    private long hits;
+    private long misses;
+
+    private Logger logger = Logger.getLogger(getClass().getName());
+
+    // ---------------------------------------------------------------------------------------------------- Constructors
+
+    /**
+     * @param   maxEntries  max number of cached directories. 0 disables the cache.
+     */
+    DirectoryListingCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        logger.info("Directory listing cache: " + (maxEntries > 0 ? "maxEntries=" + maxEntries : "disabled"));
+    }
+
+    // ----------------------------------------------------------------------------------------- Package Private Methods
+
+    /**
+     * Returns the listing of the given directory, either from cache, or by reading the directory.
+     *
+     * @param   directory   A canonic absolute path. Must be a directory.
+     */
+    Listing get(File directory) {
+        String path = directory.getPath();
+        long modified = directory.lastModified();
+        synchronized (this) {
+            Listing listing = listings.get(path);
+            if (listing != null && listing.modified == modified) {
+                hits++;
+                return listing;
+            }
+            misses++;
+        }
+        //
+        String[] names = directory.list();
+        if (names == null) {
+            throw new RuntimeException("\"" + directory + "\" can't be listed (not a directory or an I/O error)");
+        }
+        Arrays.sort(names);
+        Listing listing = new Listing(directory, modified, names);
+        //
+        if (maxEntries > 0 && System.currentTimeMillis() - modified > RACY_INTERVAL) {
+            synchronized (this) {
+                listings.put(path, listing);
+                while (listings.size() > maxEntries) {
+                    listings.remove(listings.keySet().iterator().next());
+                }
+            }
+        }
+        return listing;
+    }
+
+    synchronized String stats() {
+        return "directories=" + listings.size() + ", hits=" + hits + ", misses=" + misses;
+    }
+
+    // -------------------------------------------------------------------------------------------------- Nested Classes
+
+    /**
+     * An (immutable) directory listing.
+     */
+    static class Listing {
+
+        private final File directory;
+        private final long modified;
+        private final String[] names;                   // sorted by name
+        private volatile FileAttributes[] attributes;   // sorted by name, read lazily
+
+        private Listing(File directory, long modified, String[] names) {
+            this.directory = directory;
+            this.modified = modified;
+            this.names = names;
+        }
+
+        // ---
+
+        File getDirectory() {
+            return directory;
+        }
+
+        /**
+         * @return  the number of entries.
+         */
+        int size() {
+            return names.length;
+        }
+
+        /**
+         * @return  the entry names, sorted by name. Must not be modified.
+         */
+        String[] getNames() {
+            return names;
+        }
+
+        /**
+         * Returns the attributes of all entries, sorted by name. Reading them requires a stat call per entry, so they
+         * are read only once per cached listing.
+         *
+         * @return  the attributes. Must not be modified.
+         */
+        FileAttributes[] getAttributes() {
+            FileAttributes[] attributes = this.attributes;
+            if (attributes == null) {
+                attributes = new FileAttributes[names.length];
+                for (int i = 0; i < names.length; i++) {
+                    attributes[i] = new FileAttributes(new File(directory, names[i]));
+                }
+                this.attributes = attributes;
+            }
+            return attributes;
+        }
+    }
+
+    /**
+     * The attributes of a directory entry.
+     */
+    static class FileAttributes {
+
+        final File file;
+        final boolean isDirectory;
+        final long size;            // for files only
+        final long modified;
+
+        FileAttributes(File file) {
+            this.file = file;
+            this.isDirectory = file.isDirectory();
+            this.size = isDirectory ? 0 : file.length();
+            this.modified = file.lastModified();
+        }
+    }
+}
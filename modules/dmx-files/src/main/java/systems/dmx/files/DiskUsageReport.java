@@ -0,0 +1,99 @@
+package systems.dmx.files;
+
+import systems.dmx.core.JSONEnabled;
+
+import org.codehaus.jettison.json.JSONArray;
+import org.codehaus.jettison.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+
+/**
+ * The result of verifying (resp. rebuilding) the maintained per-user disk usage.
+ * Lists the users whose maintained value deviates from the value recalculated from the File topics.
+ */
+public class DiskUsageReport implements JSONEnabled {
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    private final int fileCount;
+    private final boolean rebuilt;
+    private final List<Deviation> deviations = new ArrayList();
+
+    // ---------------------------------------------------------------------------------------------------- Constructors
+
+    DiskUsageReport(int fileCount, boolean rebuilt) {
+        this.fileCount = fileCount;
+        this.rebuilt = rebuilt;
+    }
+
+    // -------------------------------------------------------------------------------------------------- Public Methods
+
+    /**
+     * @return  the number of File topics the disk usage is recalculated from.
+     */
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    /**
+     * @return  <code>true</code> if the deviating values have been replaced by the recalculated ones.
+     */
+    public boolean isRebuilt() {
+        return rebuilt;
+    }
+
+    public List<Deviation> getDeviations() {
+        return deviations;
+    }
+
+    // ---
+
+    @Override
+    public JSONObject toJSON() {
+        try {
+            JSONArray deviations = new JSONArray();
+            for (Deviation deviation : this.deviations) {
+                deviations.put(new JSONObject()
+                    .put("username", deviation.username)
+                    .put("maintained", deviation.maintained)
+                    .put("actual", deviation.actual));
+            }
+            return new JSONObject()
+                .put("fileCount", fileCount)
+                .put("rebuilt", rebuilt)
+                .put("deviations", deviations);
+        } catch (Exception e) {
+            throw new RuntimeException("Serialization failed", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "disk usage report (fileCount=" + fileCount + ", rebuilt=" + rebuilt + ", deviations=" +
+            deviations.size() + ")";
+    }
+
+    // ----------------------------------------------------------------------------------------- Package Private Methods
+
+    void addDeviation(String username, long maintained, long actual) {
+        deviations.add(new Deviation(username, maintained, actual));
+    }
+
+    // -------------------------------------------------------------------------------------------------- Nested Classes
+
+    public static class Deviation {
+
+        public final String username;
+        public final long maintained;   // in bytes
+        public final long actual;       // in bytes
+
+        private Deviation(String username, long maintained, long actual) {
+            this.username = username;
+            this.maintained = maintained;
+            this.actual = actual;
+        }
+    }
+}
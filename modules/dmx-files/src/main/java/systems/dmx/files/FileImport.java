@@ -0,0 +1,329 @@
+package systems.dmx.files;
+
+import systems.dmx.files.DirectoryListingCache.FileAttributes;
+
+import systems.dmx.core.Topic;
+import systems.dmx.core.service.CoreService;
+import systems.dmx.core.storage.spi.DMXTransaction;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+
+/**
+ * Imports a directory tree into the file repository, that is creates the File and Folder topics (and the folder
+ * associations) for all files and directories beneath a root directory.
+ * <p>
+ * The directory tree is walked by a pool of threads. The walkers stat the directory entries concurrently and put
+ * them into a bounded queue. The import thread takes the entries from the queue and creates the topics in batched
+ * transactions. As a directory is queued by the walker of its parent directory before its own entries are queued,
+ * a Folder topic is always created before the topics of its entries.
+ * <p>
+ * Files and directories whose topic exists already are skipped, so an import can be repeated. Symbolic links to
+ * directories are not followed, and the content store (see {@link FilesPlugin#CONTENT_STORE_DIRECTORY}) is skipped.
+ */
+class FileImport implements Runnable {
+
+    // ------------------------------------------------------------------------------------------------------- Constants
+
+    private static final int WALKER_THREADS = 4;
+    private static final int BATCH_SIZE = 1000;         // number of entries per transaction
+    private static final int QUEUE_SIZE = 10000;        // max number of walked but not yet imported entries
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    private final long importId;
+    private final String repoPath;
+    private final File root;                    // canonic absolute path
+    private final FilesPlugin filesPlugin;
+    private final CoreService dmx;
+
+    private final BlockingQueue<FileAttributes> queue = new LinkedBlockingQueue(QUEUE_SIZE);
+    private final ExecutorService walkers = Executors.newFixedThreadPool(WALKER_THREADS, new WalkerThreadFactory());
+    private final AtomicInteger pendingDirectories = new AtomicInteger();    // walked is finished when 0
+
+    // Folder topic IDs (key: absolute path of directory)
+    private final Map<String, Long> folderTopicIds = new HashMap();    // accessed by import thread only
+
+    // progress
+    private final AtomicLong directories = new AtomicLong();
+    private final AtomicLong files = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final long startTime = System.currentTimeMillis();
+    private volatile long endTime;
+    private volatile String state = "running";
+    private volatile String error;
+    private volatile boolean cancelled;
+
+    private Logger logger = Logger.getLogger(getClass().getName());
+
+    // ---------------------------------------------------------------------------------------------------- Constructors
+
+    /**
+     * @param   root    the directory to import. A canonic absolute path.
+     */
+    FileImport(long importId, String repoPath, File root, FilesPlugin filesPlugin, CoreService dmx) {
+        this.importId = importId;
+        this.repoPath = repoPath;
+        this.root = root;
+        this.filesPlugin = filesPlugin;
+        this.dmx = dmx;
+    }
+
+    // -------------------------------------------------------------------------------------------------- Public Methods
+
+    @Override
+    public void run() {
+        try {
+            logger.info("### Starting " + status());
+            importRoot();
+            pendingDirectories.incrementAndGet();
+            walkers.execute(new Walker(root));
+            //
+            List<FileAttributes> batch = new ArrayList();
+            while (!cancelled && nextBatch(batch)) {
+                importBatch(batch);
+                logger.info("### Progress of " + status());
+            }
+            finish(cancelled ? "cancelled" : "completed", null);
+        } catch (Throwable e) {
+            logger.log(Level.SEVERE, "Import " + importId + " of \"" + repoPath + "\" failed", e);
+            finish("failed", e.toString());
+        } finally {
+            walkers.shutdownNow();
+        }
+    }
+
+    // ----------------------------------------------------------------------------------------- Package Private Methods
+
+    long getImportId() {
+        return importId;
+    }
+
+    ImportStatus status() {
+        long elapsedTime = (endTime != 0 ? endTime : System.currentTimeMillis()) - startTime;
+        return new ImportStatus(importId, repoPath, state, directories.get(), files.get(), created.get(),
+            skipped.get(), failed.get(), elapsedTime, error);
+    }
+
+    boolean isRunning() {
+        return state.equals("running");
+    }
+
+    /**
+     * Returns the time the import finished (in milliseconds), or 0 if it is still running.
+     */
+    long getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * Stops the import after the current batch. The topics created so far remain.
+     */
+    void cancel() {
+        cancelled = true;
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Methods
+
+    private void importRoot() throws Exception {
+        DMXTransaction tx = dmx.beginTx();
+        try {
+            Topic folderTopic = filesPlugin.fetchImportedTopic(root, true);
+            if (folderTopic == null) {
+                folderTopic = filesPlugin.createImportedTopic(new FileAttributes(root));
+            }
+            folderTopicIds.put(root.getPath(), folderTopic.getId());
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+    }
+
+    /**
+     * Takes the next entries from the queue. Blocks until at least 1 entry is available or the walk is finished.
+     *
+     * @return  <code>false</code> if there are no more entries.
+     */
+    private boolean nextBatch(List<FileAttributes> batch) throws InterruptedException {
+        batch.clear();
+        while (!cancelled) {
+            FileAttributes attributes = queue.poll(100, TimeUnit.MILLISECONDS);
+            if (attributes != null) {
+                batch.add(attributes);
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                return true;
+            }
+            if (pendingDirectories.get() == 0 && queue.isEmpty()) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates the topics of a batch of entries in one transaction. If an entry fails the transaction is rolled back,
+     * so the entry's half-created state (e.g. a File topic without folder association) is not committed. The entries
+     * are then imported one per transaction. An entry which fails again is counted as failed and skipped.
+     */
+    private void importBatch(List<FileAttributes> batch) {
+        if (importEntries(batch)) {
+            return;
+        }
+        if (batch.size() == 1) {
+            failed.incrementAndGet();
+            return;
+        }
+        logger.info("### Importing the " + batch.size() + " entries of the batch one by one");
+        for (FileAttributes attributes : batch) {
+            if (!importEntries(Collections.singletonList(attributes))) {
+                failed.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Creates the topics of the given entries in one transaction. The transaction is committed only if all entries
+     * are imported.
+     *
+     * @return  <code>true</code> if the transaction is committed, <code>false</code> if it is rolled back.
+     */
+    private boolean importEntries(List<FileAttributes> entries) {
+        long _created = 0;
+        long _skipped = 0;
+        Map<String, Long> _folderTopicIds = new HashMap();
+        boolean committed = false;
+        DMXTransaction tx = dmx.beginTx();
+        try {
+            for (FileAttributes attributes : entries) {
+                File file = attributes.file;
+                Long parentTopicId = folderTopicIds.get(file.getParent());
+                if (parentTopicId == null) {
+                    parentTopicId = _folderTopicIds.get(file.getParent());
+                }
+                if (parentTopicId == null) {
+                    throw new RuntimeException("Folder topic of \"" + file.getParent() + "\" is unknown");
+                }
+                Topic topic = filesPlugin.fetchImportedTopic(file, attributes.isDirectory);
+                if (topic == null) {
+                    topic = filesPlugin.createImportedTopic(attributes);
+                    filesPlugin.createFolderAssociation(parentTopicId, topic);
+                    _created++;
+                } else {
+                    _skipped++;
+                }
+                if (attributes.isDirectory) {
+                    _folderTopicIds.put(file.getPath(), topic.getId());
+                }
+            }
+            tx.success();
+            committed = true;
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Importing " + (entries.size() == 1 ? "\"" + entries.get(0).file + "\"" :
+                "a batch of " + entries.size() + " entries") + " failed", e);
+        } finally {
+            try {
+                tx.finish();
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Committing " + entries.size() + " entries failed", e);
+                committed = false;
+            }
+        }
+        if (committed) {
+            folderTopicIds.putAll(_folderTopicIds);
+            created.addAndGet(_created);
+            skipped.addAndGet(_skipped);
+        }
+        return committed;
+    }
+
+    private void finish(String state, String error) {
+        this.endTime = System.currentTimeMillis();
+        this.error = error;
+        this.state = state;
+        logger.info("### Finished " + status());
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Classes
+
+    /**
+     * Lists a directory, stats its entries and queues them. Walks the subdirectories concurrently.
+     */
+    private class Walker implements Runnable {
+
+        private File directory;
+
+        private Walker(File directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        public void run() {
+            try {
+                File[] children = directory.listFiles();
+                if (children == null) {
+                    throw new RuntimeException("\"" + directory + "\" can't be listed");
+                }
+                for (File child : children) {
+                    if (cancelled) {
+                        return;
+                    }
+                    FileAttributes attributes = new FileAttributes(child);
+                    if (attributes.isDirectory) {
+                        // Note: the children of a canonic directory are canonic unless they are symbolic links.
+                        // The content store is not imported as its files are not named after their File topics.
+                        if (!child.getCanonicalFile().equals(child) ||
+                                child.getName().equals(FilesPlugin.CONTENT_STORE_DIRECTORY)) {
+                            skipped.incrementAndGet();
+                            continue;
+                        }
+                        directories.incrementAndGet();
+                        queue.put(attributes);
+                        pendingDirectories.incrementAndGet();
+                        walkers.execute(new Walker(child));
+                    } else {
+                        files.incrementAndGet();
+                        queue.put(attributes);
+                    }
+                }
+            } catch (InterruptedException e) {
+                // the import is stopped
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Walking \"" + directory + "\" failed", e);
+                failed.incrementAndGet();
+            } finally {
+                pendingDirectories.decrementAndGet();
+            }
+        }
+    }
+
+    private class WalkerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "dmx-file-import-" + importId + "-walker-" +
+                count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
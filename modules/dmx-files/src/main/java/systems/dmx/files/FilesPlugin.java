@@ -1,5 +1,7 @@
 package systems.dmx.files;
 
+import systems.dmx.files.DirectoryListingCache.FileAttributes;
+import systems.dmx.files.DirectoryListingCache.Listing;
 import systems.dmx.files.event.CheckDiskQuotaListener;
 import systems.dmx.config.ConfigDefinition;
 import systems.dmx.config.ConfigModificationRole;
@@ -8,6 +10,7 @@ import systems.dmx.config.ConfigTarget;
 
 import systems.dmx.core.Association;
 import systems.dmx.core.DMXObject;
+import systems.dmx.core.RelatedTopic;
 import systems.dmx.core.Topic;
 import systems.dmx.core.model.AssociationModel;
 import systems.dmx.core.model.ChildTopicsModel;
@@ -15,38 +18,82 @@ import systems.dmx.core.model.SimpleValue;
 import systems.dmx.core.model.TopicModel;
 import systems.dmx.core.model.TopicRoleModel;
 import systems.dmx.core.osgi.PluginActivator;
+import systems.dmx.core.service.Async;
 import systems.dmx.core.service.Cookies;
 import systems.dmx.core.service.DMXEvent;
 import systems.dmx.core.service.EventListener;
 import systems.dmx.core.service.Inject;
 import systems.dmx.core.service.Transactional;
 import systems.dmx.core.service.accesscontrol.AccessControl;
+import systems.dmx.core.service.accesscontrol.AccessControlException;
 import systems.dmx.core.service.accesscontrol.Operation;
+import systems.dmx.core.service.event.PostCreateTopicListener;
+import systems.dmx.core.service.event.PostDeleteTopicListener;
+import systems.dmx.core.service.event.PreDeleteTopicListener;
 import systems.dmx.core.service.event.StaticResourceFilterListener;
 import systems.dmx.core.util.DMXUtils;
 import systems.dmx.core.util.JavaUtils;
 
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.servlet.ServletFileUpload;
 import org.apache.commons.io.IOUtils;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
+import javax.ws.rs.HEAD;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.POST;
+import javax.ws.rs.PUT;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import java.awt.Desktop;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
 import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.io.IOException;
 import java.io.File;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
 import java.net.URL;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -55,13 +102,19 @@ import java.util.regex.Pattern;
 
 @Path("/files")
 @Produces("application/json")
-public class FilesPlugin extends PluginActivator implements FilesService, StaticResourceFilterListener, PathMapper {
+public class FilesPlugin extends PluginActivator implements FilesService, StaticResourceFilterListener,
+                                                                          PostCreateTopicListener,
+                                                                          PreDeleteTopicListener,
+                                                                          PostDeleteTopicListener, PathMapper {
 
     // ------------------------------------------------------------------------------------------------------- Constants
 
     public static final String FILE_REPOSITORY_PATH = System.getProperty("dmx.filerepo.path", "/");
     public static final boolean FILE_REPOSITORY_PER_WORKSPACE = Boolean.getBoolean("dmx.filerepo.per_workspace");
     public static final int DISK_QUOTA_MB = Integer.getInteger("dmx.filerepo.disk_quota", -1);
+    public static final int LISTING_CACHE_MAX_ENTRIES = Integer.getInteger("dmx.filerepo.listing_cache.max_entries",
+        100);
+    public static final boolean FILE_REPOSITORY_DEDUP = Boolean.getBoolean("dmx.filerepo.dedup");
     // Note: the default values are required in case no config file is in effect. This applies when DM is started
     // via feature:install from Karaf. The default value must match the value defined in project POM.
 
@@ -70,6 +123,31 @@ public class FilesPlugin extends PluginActivator implements FilesService, Static
     private static final String WORKSPACE_DIRECTORY_PREFIX = "/workspace-";
     private static final Pattern PER_WORKSPACE_PATH_PATTERN = Pattern.compile(WORKSPACE_DIRECTORY_PREFIX + "(\\d+).*");
 
+    // The directory where uploaded files are stored content-addressed (if "dmx.filerepo.dedup" is set).
+    // Located at the root of the file repository, or at the root of each per-workspace file repository resp.
+    static final String CONTENT_STORE_DIRECTORY = ".content";
+
+    // A single byte range, e.g. "bytes=0-499", "bytes=500-", "bytes=-500". Multiple ranges are not supported.
+    private static final Pattern BYTE_RANGE_PATTERN = Pattern.compile("bytes=(\\d{0,18})-(\\d{0,18})");
+    private static final String HTTP_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
+    private static final String DEFAULT_MEDIA_TYPE = "application/octet-stream";
+    private static final String RFC_5987_ATTR_CHARS = "!#$&+-.^_`|~";     // besides ALPHA and DIGIT
+
+    // Property URIs
+    private static final String PROP_OCCUPIED_SPACE = "dmx.files.occupied_space";   // stored at Username topics
+    private static final String PROP_CONTENT_HASH   = "dmx.files.content_hash";     // stored at File topics (indexed)
+    private static final String PROP_REF_COUNT      = "dmx.files.ref_count";        // stored at content store Path
+                                                                                    // topics
+
+    private static final int UPLOAD_BUFFER_SIZE = 65536;
+    private static final long QUOTA_CHECK_INTERVAL = 1024 * 1024;   // while streaming an upload, in bytes
+    private static final long OCCUPIED_SPACE_LOCK_TIMEOUT = 10000;  // max wait for a user's counter lock, in ms
+
+    private static final String UPLOAD_FILE_PREFIX = "upload-";     // temporary files in the content store
+    private static final int CONTENT_LOCKS = 64;                    // number of content store lock stripes
+    private static final long ABANDONED_UPLOAD_AGE = 60 * 60 * 1000;    // 1 hour, in milliseconds
+    private static final long IMPORT_STATUS_TTL = 60 * 60 * 1000;       // 1 hour, in milliseconds
+
     // Events
     public static DMXEvent CHECK_DISK_QUOTA = new DMXEvent(CheckDiskQuotaListener.class) {
         @Override
@@ -85,6 +163,34 @@ public class FilesPlugin extends PluginActivator implements FilesService, Static
     @Inject
     private ConfigService configService;
 
+    @Context
+    private HttpServletRequest request;
+
+    private DirectoryListingCache listingCache = new DirectoryListingCache(LISTING_CACHE_MAX_ENTRIES);
+
+    private Map<Long, FileImport> fileImports = new ConcurrentHashMap();    // key: import ID
+
+    // Serializes the updates of a user's occupied disk space counter (key: username). A lock is held until the
+    // updating transaction is finished.
+    private ConcurrentMap<String, ReentrantLock> occupiedSpaceLocks = new ConcurrentHashMap();
+    private AtomicLong importIdCounter = new AtomicLong();
+
+    // Content store files whose last File topic is deleted (key: File topic ID, value: Path topic ID).
+    // Deleted from disk once the deletion is committed (see postDeleteTopic()).
+    private Map<Long, Long> releasedContents = new ConcurrentHashMap();
+
+    // Content store uploads whose transaction is not yet committed (key: File topic ID). The uploaded content is kept
+    // in a temporary file until then (see postCreateTopic()).
+    private Map<Long, PendingContent> pendingContents = new ConcurrentHashMap();
+
+    // Serializes storing and deleting content store files. Striped by content file, see contentLock().
+    private Object[] contentLocks = new Object[CONTENT_LOCKS];
+    {
+        for (int i = 0; i < CONTENT_LOCKS; i++) {
+            contentLocks[i] = new Object();
+        }
+    }
+
     private Logger logger = Logger.getLogger(getClass().getName());
 
     // -------------------------------------------------------------------------------------------------- Public Methods
@@ -195,6 +301,10 @@ public class FilesPlugin extends PluginActivator implements FilesService, Static
             checkExistence(directory);                  // throws FileRepositoryException
             //
             // 2) store file
+            if (FILE_REPOSITORY_DEDUP) {
+                checkDiskQuota(file.getSize());
+                return storeContent(file.getInputStream(), fileName(file.getName()), directory);
+            }
             File repoFile = unusedPath(directory, file);
             file.write(repoFile);
             //
@@ -208,6 +318,86 @@ public class FilesPlugin extends PluginActivator implements FilesService, Static
         }
     }
 
+    /**
+     * Receives one or more uploaded files and stores them in the file repository, and creates corresponding File
+     * topics. Unlike {@link #storeFile} the request is streamed: each file part is written directly to its
+     * repository file (no temporary file, no buffering in memory). Meanwhile the size and the SHA-256 hash of the
+     * content are calculated. The hash is stored at the File topic.
+     * <p>
+     * The disk quota is checked up-front, based on the request's <code>Content-Length</code>. If the request has
+     * no <code>Content-Length</code> (chunked encoding) the quota is checked while the files are received, every
+     * {@link #QUOTA_CHECK_INTERVAL} bytes, and the upload is aborted once the quota is exceeded. The files received
+     * before are accounted for already (the occupied disk space is updated in the current transaction), so the quota
+     * applies to the request as a whole. If anything fails the files stored so far are deleted again.
+     * <p>
+     * If "dmx.filerepo.dedup" is set the files are stored in the content store instead, see {@link #storeContent}.
+     * <p>
+     * Note: this is a resource method only, it is not part of the Files service.
+     *
+     * @param   repoPath    The directory where to store the uploaded files. The directory must exist.
+     *                      See {@link #storeFile}.
+     */
+    @POST
+    @Path("/{path}/upload")
+    @Consumes("multipart/form-data")
+    @Transactional
+    public List<StoredFile> storeFiles(@PathParam("path") String repoPath) {
+        String operation = "Storing uploaded files at repository path \"" + repoPath + "\"";
+        List<File> repoFiles = new ArrayList();
+        try {
+            logger.info(operation);
+            // 1) pre-checks
+            File directory = absolutePath(repoPath);    // throws FileRepositoryException
+            checkExistence(directory);                  // throws FileRepositoryException
+            long contentLength = contentLength();
+            checkDiskQuota(contentLength != -1 ? contentLength : 0);
+            //
+            // 2) store files
+            List<StoredFile> storedFiles = new ArrayList();
+            FileItemIterator i = new ServletFileUpload().getItemIterator(request);
+            while (i.hasNext()) {
+                FileItemStream item = i.next();
+                String fieldName = item.getFieldName();
+                if (item.isFormField()) {
+                    logger.fine("Ignoring form field \"" + fieldName + "\"");
+                    continue;
+                }
+                String fileName = fileName(item.getName());
+                if (fileName.equals("")) {
+                    continue;   // the file input was left empty
+                }
+                InputStream in = contentLength != -1 ? item.openStream() :
+                    new QuotaCheckingInputStream(item.openStream());
+                if (FILE_REPOSITORY_DEDUP) {
+                    storedFiles.add(storeContent(in, fileName, directory));
+                    continue;
+                }
+                File repoFile = JavaUtils.findUnusedFile(path(directory, fileName));
+                repoFiles.add(repoFile);
+                String contentHash = writeFile(in, repoFile);
+                long size = repoFile.length();
+                //
+                // 3) create topic
+                Topic fileTopic = createFileTopic(repoFile);
+                fileTopic.setProperty(PROP_CONTENT_HASH, contentHash, true);    // addToIndex=true
+                storedFiles.add(new StoredFile(repoFile.getName(), repoPath(fileTopic), fileTopic.getId(), size,
+                    contentHash));
+                logger.info("### field \"" + fieldName + "\" => file \"" + repoFile + "\" (" + size + " bytes, " +
+                    "SHA-256 " + contentHash + ")");
+            }
+            if (storedFiles.isEmpty()) {
+                throw new RuntimeException("Request does not contain a file part");
+            }
+            return storedFiles;
+        } catch (FileRepositoryException e) {
+            deleteFiles(repoFiles);
+            throw new WebApplicationException(new RuntimeException(operation + " failed", e), e.getStatus());
+        } catch (Exception e) {
+            deleteFiles(repoFiles);
+            throw new RuntimeException(operation + " failed", e);
+        }
+    }
+
     // Note: this is not a resource method. So we don't throw a WebApplicationException here.
     @Override
     public Topic createFile(InputStream in, String repoPath) {
@@ -223,9 +413,13 @@ public class FilesPlugin extends PluginActivator implements FilesService, Static
             in.close();
             out.close();
             //
-            // 3) create topic
+            // 3) create topic, resp. update size of existing topic
             // ### TODO: think about overwriting an existing file.
-            // ### FIXME: in this case the existing file topic is not updated and might reflect e.g. the wrong size.
+            Topic fileTopic = fetchFileTopic(repoPath(file));
+            if (fileTopic != null) {
+                updateFileSize(fileTopic, file.length());
+                return fileTopic.loadChildTopics();
+            }
             return getFileTopic(repoPath);
         } catch (Exception e) {
             throw new RuntimeException(operation + " failed", e);
@@ -282,19 +476,32 @@ public class FilesPlugin extends PluginActivator implements FilesService, Static
         }
     }
 
+    @Override
+    public DirectoryListing getDirectoryListing(String repoPath) {
+        return getDirectoryListing(repoPath, 0, 0, null, false);
+    }
+
+    // Paging: "offset" (default 0) and "limit" (default 0 = no limit).
+    // Sorting: "sort" ("name" (default), "size", "modified") and "desc" (true/false).
     @GET
     @Path("/{path}")
     @Override
-    public DirectoryListing getDirectoryListing(@PathParam("path") String repoPath) {
+    public DirectoryListing getDirectoryListing(@PathParam("path") String repoPath,
+                                                @QueryParam("offset") int offset, @QueryParam("limit") int limit,
+                                                @QueryParam("sort") String sort, @QueryParam("desc") boolean desc) {
         String operation = "Getting directory listing for repository path \"" + repoPath + "\"";
         try {
-            logger.info(operation);
+            logger.info(operation + " (offset=" + offset + ", limit=" + limit + ", sort=" + sort + ", desc=" + desc +
+                ")");
             //
             File directory = absolutePath(repoPath);    // throws FileRepositoryException
             checkExistence(directory);                  // throws FileRepositoryException
+            if (!directory.isDirectory()) {
+                throw new FileRepositoryException("\"" + directory + "\" is not a directory", Status.NOT_FOUND);
+            }
             //
-            return new DirectoryListing(directory, this);
-            // ### TODO: if directory is no directory send NOT FOUND
+            Listing listing = listingCache.get(directory);
+            return new DirectoryListing(directory, page(listing, offset, limit, sort, desc), listing.size(), this);
         } catch (FileRepositoryException e) {
             throw new WebApplicationException(new RuntimeException(operation + " failed", e), e.getStatus());
         } catch (Exception e) {
@@ -420,6 +627,130 @@ public class FilesPlugin extends PluginActivator implements FilesService, Static
 
 
 
+    // === Bulk Import ===
+
+    @POST
+    @Path("/{path}/import")
+    @Override
+    public ImportStatus importDirectory(@PathParam("path") String repoPath) {
+        checkAdministrationAccess();        // throws AccessControlException
+        String operation = "Importing directory tree at repository path \"" + repoPath + "\"";
+        try {
+            logger.info(operation);
+            File directory = absolutePath(repoPath);    // throws FileRepositoryException
+            checkExistence(directory);                  // throws FileRepositoryException
+            if (!directory.isDirectory()) {
+                throw new FileRepositoryException("\"" + directory + "\" is not a directory", Status.NOT_FOUND);
+            }
+            //
+            pruneImports();
+            FileImport fileImport = new FileImport(importIdCounter.incrementAndGet(), repoPath(directory), directory,
+                this, dmx);
+            fileImports.put(fileImport.getImportId(), fileImport);
+            Thread thread = new Thread(fileImport, "dmx-file-import-" + fileImport.getImportId());
+            thread.setDaemon(true);
+            thread.start();
+            return fileImport.status();
+        } catch (FileRepositoryException e) {
+            throw new WebApplicationException(new RuntimeException(operation + " failed", e), e.getStatus());
+        } catch (Exception e) {
+            throw new RuntimeException(operation + " failed", e);
+        }
+    }
+
+    @GET
+    @Path("/import/{id}")
+    @Override
+    public ImportStatus getImportStatus(@PathParam("id") long importId) {
+        checkAdministrationAccess();        // throws AccessControlException
+        pruneImports();
+        FileImport fileImport = fileImports.get(importId);
+        if (fileImport == null) {
+            throw new WebApplicationException(new RuntimeException("Import " + importId + " is unknown"),
+                Status.NOT_FOUND);
+        }
+        return fileImport.status();
+    }
+
+
+
+    // === File Download ===
+
+    /**
+     * Downloads a file from the file repository. Supports conditional requests (<code>If-None-Match</code>,
+     * <code>If-Modified-Since</code>) and partial content (a single <code>Range</code>, optionally conditional via
+     * <code>If-Range</code>). The file content is transferred channel-to-channel (<code>FileChannel.transferTo</code>),
+     * that is without buffering the file in memory.
+     * <p>
+     * Note: this is a resource method only, it is not part of the Files service.
+     *
+     * @param   repoPath    A repository path. Must be canonic.
+     * @param   download    if present the response is marked as attachment (<code>Content-Disposition</code>).
+     */
+    @GET
+    @Path("/download/{path}")
+    @Produces("*/*")
+    public Response downloadFile(@PathParam("path") String repoPath, @QueryParam("download") String download,
+                                 @HeaderParam("Range") String range, @HeaderParam("If-Range") String ifRange,
+                                 @Context Request req) {
+        return download(repoPath, download != null, range, ifRange, req, true);
+    }
+
+    /**
+     * Like {@link #downloadFile} but sends the headers only.
+     */
+    @HEAD
+    @Path("/download/{path}")
+    @Produces("*/*")
+    public Response getFileHeaders(@PathParam("path") String repoPath, @QueryParam("download") String download,
+                                   @HeaderParam("Range") String range, @HeaderParam("If-Range") String ifRange,
+                                   @Context Request req) {
+        return download(repoPath, download != null, range, ifRange, req, false);
+    }
+
+
+
+    // === Disk Quota ===
+
+    // Note: this is not a resource method. The occupied space of a user is not revealed to other users.
+    @Override
+    public long getOccupiedSpace(String username) {
+        try {
+            Topic usernameTopic = getUsernameTopic(username);
+            return usernameTopic.hasProperty(PROP_OCCUPIED_SPACE) ?
+                (Long) usernameTopic.getProperty(PROP_OCCUPIED_SPACE) : 0;
+        } catch (Exception e) {
+            throw new RuntimeException("Getting occupied disk space of " + userInfo(username) + " failed", e);
+        }
+    }
+
+    @GET
+    @Path("/occupied_space/verify")
+    @Override
+    public DiskUsageReport verifyOccupiedSpace() {
+        checkAdministrationAccess();        // throws AccessControlException
+        try {
+            return recalculateOccupiedSpace(false);
+        } catch (Exception e) {
+            throw new RuntimeException("Verifying occupied disk space failed", e);
+        }
+    }
+
+    @PUT
+    @Path("/occupied_space/rebuild")
+    @Transactional
+    @Override
+    public DiskUsageReport rebuildOccupiedSpace() {
+        checkAdministrationAccess();        // throws AccessControlException
+        try {
+            return recalculateOccupiedSpace(true);
+        } catch (Exception e) {
+            throw new RuntimeException("Rebuilding occupied disk space failed", e);
+        }
+    }
+
+
+
     // ****************************
     // *** Hook Implementations ***
     // ****************************
@@ -438,10 +769,20 @@ public class FilesPlugin extends PluginActivator implements FilesService, Static
     @Override
     public void init() {
         publishFileSystem(FILE_REPOSITORY_URI, FILE_REPOSITORY_PATH);
+        if (FILE_REPOSITORY_DEDUP) {
+            collectOrphans();
+        }
     }
 
     @Override
     public void shutdown() {
+        logger.info("Directory listing cache: " + listingCache.stats());
+        for (FileImport fileImport : fileImports.values()) {
+            if (fileImport.isRunning()) {
+                logger.info("### Cancelling import " + fileImport.getImportId());
+                fileImport.cancel();
+            }
+        }
         // Note 1: unregistering is crucial e.g. for redeploying the Files plugin. The next register call
         // (at preInstall() time) would fail as the Config service already holds such a registration.
         // Note 2: we must check if the Config service is still available. If the Config plugin is redeployed the
@@ -474,7 +815,7 @@ public class FilesPlugin extends PluginActivator implements FilesService, Static
                 // prepare downloading
                 if (request.getParameter("download") != null) {
                     logger.info("### Downloading file \"" + path + "\"");
-                    response.setHeader("Content-Disposition", "attachment;filename=" + path.getName());
+                    response.setHeader("Content-Disposition", contentDisposition(path.getName()));
                 }
             }
         } catch (FileRepositoryException e) {
@@ -484,6 +825,44 @@ public class FilesPlugin extends PluginActivator implements FilesService, Static
 
 
 
+    /**
+     * Deleting a File topic frees the occupied disk space of its creator, and releases its content store file (if
+     * any).
+     */
+    @Override
+    public void preDeleteTopic(Topic topic) {
+        if (topic.getTypeUri().equals("dmx.files.file")) {
+            updateOccupiedSpace(topic, -fileSize(topic));
+            releaseContent(topic);
+        }
+    }
+
+    /**
+     * Completes a content store upload once the creation of its File topic is committed.
+     */
+    @Async
+    @Override
+    public void postCreateTopic(Topic topic) {
+        PendingContent content = pendingContents.remove(topic.getId());
+        if (content != null) {
+            commitContent(content);
+        }
+    }
+
+    /**
+     * Deletes a content store file once the deletion of its last File topic is committed.
+     */
+    @Async
+    @Override
+    public void postDeleteTopic(TopicModel topic) {
+        Long pathTopicId = releasedContents.remove(topic.getId());
+        if (pathTopicId != null) {
+            deleteContent(pathTopicId);
+        }
+    }
+
+
+
     // *********************************
     // *** PathMapper Implementation ***
     // *********************************
@@ -516,10 +895,84 @@ public class FilesPlugin extends PluginActivator implements FilesService, Static
         }
     }
 
+    // ----------------------------------------------------------------------------------------- Package Private Methods
+
+
+
+    // === Bulk Import ===
+
+    // Note: these methods are called by the import thread (see FileImport). There is an open transaction.
+
+    /**
+     * Fetches the File/Folder topic representing the file/directory at the given absolute path.
+     *
+     * @param   path    A canonic absolute path.
+     *
+     * @return  the File/Folder topic, or <code>null</code> if no such topic exists.
+     */
+    Topic fetchImportedTopic(File path, boolean isDirectory) {
+        String repoPath = repoPath(path);
+        return isDirectory ? fetchFolderTopic(repoPath) : fetchFileTopic(repoPath);
+    }
+
+    /**
+     * Creates the File/Folder topic representing a file/directory. The file's size is taken from the given
+     * attributes (as already read by the walker thread).
+     */
+    Topic createImportedTopic(FileAttributes attributes) throws Exception {
+        return attributes.isDirectory ? createFolderTopic(attributes.file) :
+            createFileTopic(attributes.file, attributes.size);
+    }
+
+    /**
+     * @param   topic   a File topic, or a Folder topic.
+     */
+    void createFolderAssociation(final long folderTopicId, Topic topic) {
+        try {
+            final long topicId = topic.getId();
+            boolean exists = dmx.getAssociations(folderTopicId, topicId, "dmx.core.composition").size() > 0;
+            if (!exists) {
+                // We suppress standard workspace assignment as the folder association requires a special assignment
+                Association assoc = dmx.getAccessControl().runWithoutWorkspaceAssignment(new Callable<Association>() {
+                    @Override
+                    public Association call() {
+                        return dmx.createAssociation(mf.newAssociationModel("dmx.core.composition",
+                            mf.newTopicRoleModel(folderTopicId, "dmx.core.parent"),
+                            mf.newTopicRoleModel(topicId,       "dmx.core.child")
+                        ));
+                    }
+                });
+                createWorkspaceAssignment(assoc, repoPath(topic));
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Creating association to Folder topic " + folderTopicId + " failed", e);
+        }
+    }
+
+
+
     // ------------------------------------------------------------------------------------------------- Private Methods
 
 
 
+    // === Bulk Import ===
+
+    /**
+     * Drops the imports which finished more than {@link #IMPORT_STATUS_TTL} ago. Their status is no longer available.
+     */
+    private void pruneImports() {
+        long now = System.currentTimeMillis();
+        Iterator<FileImport> i = fileImports.values().iterator();
+        while (i.hasNext()) {
+            long endTime = i.next().getEndTime();
+            if (endTime != 0 && now - endTime > IMPORT_STATUS_TTL) {
+                i.remove();
+            }
+        }
+    }
+
+
+
     // === File System Representation ===
 
     /**
@@ -554,7 +1007,11 @@ public class FilesPlugin extends PluginActivator implements FilesService, Static
     private Topic fetchFileOrFolderTopic(String repoPath, String topicTypeUri) {
         Topic pathTopic = fetchPathTopic(repoPath);
         if (pathTopic != null) {
-            return pathTopic.getRelatedTopic("dmx.core.composition", "dmx.core.child", "dmx.core.parent", topicTypeUri);
+            // Note: the Path topic of a content store file is shared by all the File topics referring to that content.
+            // The first one is returned then.
+            List<RelatedTopic> topics = pathTopic.getRelatedTopics("dmx.core.composition", "dmx.core.child",
+                "dmx.core.parent", topicTypeUri);
+            return !topics.isEmpty() ? topics.get(0) : null;
         }
         return null;
     }
@@ -576,17 +1033,34 @@ public class FilesPlugin extends PluginActivator implements FilesService, Static
      * @return  The created File topic.
      */
     private Topic createFileTopic(File path) throws Exception {
+        return createFileTopic(path, path.length());
+    }
+
+    /**
+     * @param   size    the file size as already known by the caller.
+     */
+    private Topic createFileTopic(File path, long size) throws Exception {
+        return createFileTopic(path.getName(), path, size);
+    }
+
+    /**
+     * @param   fileName    the File Name. Differs from the name of the file at the given path if the file is stored
+     *                      in the content store.
+     */
+    private Topic createFileTopic(String fileName, File path, long size) throws Exception {
         ChildTopicsModel childTopics = mf.newChildTopicsModel()
-            .put("dmx.files.file_name", path.getName())
+            .put("dmx.files.file_name", fileName)
             .put("dmx.files.path", repoPath(path))  // TODO: is repo path already known by caller? Pass it?
-            .put("dmx.files.size", path.length());
+            .put("dmx.files.size", size);
         //
-        String mediaType = JavaUtils.getFileType(path.getName());
+        String mediaType = JavaUtils.getFileType(fileName);
         if (mediaType != null) {
             childTopics.put("dmx.files.media_type", mediaType);
         }
         //
-        return createFileOrFolderTopic(mf.newTopicModel("dmx.files.file", childTopics));      // throws Exception
+        Topic fileTopic = createFileOrFolderTopic(mf.newTopicModel("dmx.files.file", childTopics));  // throws Exc.
+        updateOccupiedSpace(fileTopic, size);
+        return fileTopic;
     }
 
     /**
@@ -633,31 +1107,6 @@ public class FilesPlugin extends PluginActivator implements FilesService, Static
         return topic;
     }
 
-    /**
-     * @param   topic   a File topic, or a Folder topic.
-     */
-    private void createFolderAssociation(final long folderTopicId, Topic topic) {
-        try {
-            final long topicId = topic.getId();
-            boolean exists = dmx.getAssociations(folderTopicId, topicId, "dmx.core.composition").size() > 0;
-            if (!exists) {
-                // We suppress standard workspace assignment as the folder association requires a special assignment
-                Association assoc = dmx.getAccessControl().runWithoutWorkspaceAssignment(new Callable<Association>() {
-                    @Override
-                    public Association call() {
-                        return dmx.createAssociation(mf.newAssociationModel("dmx.core.composition",
-                            mf.newTopicRoleModel(folderTopicId, "dmx.core.parent"),
-                            mf.newTopicRoleModel(topicId,       "dmx.core.child")
-                        ));
-                    }
-                });
-                createWorkspaceAssignment(assoc, repoPath(topic));
-            }
-        } catch (Exception e) {
-            throw new RuntimeException("Creating association to Folder topic " + folderTopicId + " failed", e);
-        }
-    }
-
     // ---
 
     /**
@@ -867,6 +1316,712 @@ public class FilesPlugin extends PluginActivator implements FilesService, Static
         return repoPath;
     }
 
+    // --- Directory Listing ---
+
+    /**
+     * Returns the attributes of the entries of a directory listing page.
+     * When sorted by name only the entries of the page are stat'ed (and not cached).
+     *
+     * @throws  FileRepositoryException     400 Bad Request if the sort order is not supported.
+     */
+    static List<FileAttributes> page(Listing listing, int offset, int limit, String sort, boolean desc)
+                                                                                throws FileRepositoryException {
+        int size = listing.size();
+        int from = Math.min(Math.max(offset, 0), size);
+        int to = limit > 0 ? (int) Math.min((long) from + limit, size) : size;
+        List<FileAttributes> page = new ArrayList();
+        if (sort == null || sort.equals("name")) {
+            String[] names = listing.getNames();
+            File directory = listing.getDirectory();
+            for (int i = from; i < to; i++) {
+                page.add(new FileAttributes(new File(directory, names[desc ? size - 1 - i : i])));
+            }
+        } else {
+            List<FileAttributes> attributes = new ArrayList(Arrays.asList(listing.getAttributes()));
+            Comparator<FileAttributes> comparator = comparator(sort);
+            Collections.sort(attributes, desc ? Collections.reverseOrder(comparator) : comparator);
+            page.addAll(attributes.subList(from, to));
+        }
+        return page;
+    }
+
+    private static Comparator<FileAttributes> comparator(String sort) throws FileRepositoryException {
+        if (sort.equals("size")) {
+            return new Comparator<FileAttributes>() {
+                @Override
+                public int compare(FileAttributes a1, FileAttributes a2) {
+                    return a1.size < a2.size ? -1 : a1.size > a2.size ? 1 : 0;
+                }
+            };
+        } else if (sort.equals("modified")) {
+            return new Comparator<FileAttributes>() {
+                @Override
+                public int compare(FileAttributes a1, FileAttributes a2) {
+                    return a1.modified < a2.modified ? -1 : a1.modified > a2.modified ? 1 : 0;
+                }
+            };
+        } else {
+            throw new FileRepositoryException("\"" + sort + "\" is an unsupported sort order. Supported are " +
+                "\"name\", \"size\", and \"modified\".", Status.BAD_REQUEST);
+        }
+    }
+
+    // --- Upload ---
+
+    /**
+     * Writes a stream to a file and calculates the SHA-256 hash of the content meanwhile.
+     * The stream is closed.
+     *
+     * @return  the hash (hex).
+     */
+    private String writeFile(InputStream in, File file) throws Exception {
+        MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+        OutputStream out = new DigestOutputStream(new FileOutputStream(file), sha256);
+        try {
+            byte[] buffer = new byte[UPLOAD_BUFFER_SIZE];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+        } finally {
+            in.close();
+            out.close();
+        }
+        return JavaUtils.hexString(sha256.digest());
+    }
+
+    /**
+     * Strips path information some clients add to the file name of an uploaded file.
+     */
+    private String fileName(String name) {
+        if (name == null) {
+            return "";
+        }
+        return name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\')) + 1);
+    }
+
+    private void deleteFiles(List<File> files) {
+        for (File file : files) {
+            if (file.exists() && !file.delete()) {
+                logger.warning("Deleting file \"" + file + "\" failed");
+            }
+        }
+    }
+
+    /**
+     * @return  the request's <code>Content-Length</code>, or -1 if not known.
+     */
+    private long contentLength() {
+        String contentLength = request.getHeader("Content-Length");
+        return contentLength != null ? Long.parseLong(contentLength.trim()) : -1;
+    }
+
+    /**
+     * Checks if the current user's disk quota allows storing the given number of bytes. If not an exception is thrown
+     * (by a CHECK_DISK_QUOTA listener).
+     *
+     * @throws  FileRepositoryException     401 Unauthorized if no user is logged in.
+     */
+    private void checkDiskQuota(long size) throws FileRepositoryException {
+        String username = dmx.getAccessControl().getUsername(request);
+        if (username == null) {
+            throw new FileRepositoryException("User <anonymous> has no disk quota", Status.UNAUTHORIZED);
+        }
+        Topic usernameTopic = getUsernameTopic(username);
+        Topic configTopic = configService.getConfigTopic("dmx.files.disk_quota", usernameTopic.getId());
+        long diskQuota = 1024L * 1024 * configTopic.getSimpleValue().intValue();
+        dmx.fireEvent(CHECK_DISK_QUOTA, username, size, diskQuota);
+    }
+
+    // --- Content Store ---
+
+    /**
+     * Stores an uploaded file in the content store and creates a File topic for it. The content is written to a
+     * temporary file while its SHA-256 hash is calculated. If the content store does not contain that content yet
+     * the temporary file is moved to the content-addressed path. Either way a new File topic is created (with the
+     * uploaded file name) and the reference count of the content is incremented.
+     * <p>
+     * If the content store contains that content already the temporary file is kept until the transaction is
+     * committed. The existing content file might be deleted meanwhile (as the last File topic referring to it was
+     * deleted concurrently). It is re-created then, see {@link #commitContent}. If the transaction is rolled back a
+     * content file created here is left without reference. It is deleted at next startup, see
+     * {@link #collectOrphans}.
+     * <p>
+     * Note: the reference count is read and written in the current transaction. Concurrent uploads of the same
+     * content might lose an update. Before a content file is deleted the File topics referring to it are checked
+     * nevertheless, see {@link #deleteContent}.
+     *
+     * @param   directory   The directory the file is uploaded to. Determines the content store to use (in case of
+     *                      per-workspace file repositories). A canonic absolute path.
+     */
+    private StoredFile storeContent(InputStream in, String fileName, File directory) throws Exception {
+        dropAbandonedUploads();
+        File contentStore = contentStore(directory);
+        File tmpFile = File.createTempFile(UPLOAD_FILE_PREFIX, null, contentStore);
+        boolean pending = false;
+        try {
+            String contentHash = writeFile(in, tmpFile);
+            long size = tmpFile.length();
+            File contentFile = contentFile(contentStore, contentHash, fileName);
+            boolean exists;
+            synchronized (contentLock(contentFile)) {
+                exists = contentFile.exists();
+                if (!exists) {
+                    moveContent(tmpFile, contentFile);
+                }
+            }
+            //
+            Topic fileTopic = createFileTopic(fileName, contentFile, size);
+            fileTopic.setProperty(PROP_CONTENT_HASH, contentHash, true);    // addToIndex=true
+            Topic pathTopic = fetchPathTopic(repoPath(contentFile));
+            long refCount = refCount(pathTopic) + 1;
+            pathTopic.setProperty(PROP_REF_COUNT, refCount, false);        // addToIndex=false
+            if (exists) {
+                pendingContents.put(fileTopic.getId(), new PendingContent(tmpFile, contentFile));
+                pending = true;
+            }
+            logger.info("### File \"" + fileName + "\" => " + (exists ? "existing" : "new") + " content file \"" +
+                contentFile + "\" (" + size + " bytes, SHA-256 " + contentHash + ", " + refCount + " references)");
+            return new StoredFile(fileName, repoPath(contentFile), fileTopic.getId(), size, contentHash);
+        } finally {
+            if (!pending) {
+                deleteTmpFile(tmpFile);
+            }
+        }
+    }
+
+    /**
+     * Called once the creation of a File topic referring to a content store file is committed. Re-creates the
+     * content file from the temporary file if it was deleted meanwhile, and drops the temporary file.
+     */
+    private void commitContent(PendingContent content) {
+        try {
+            synchronized (contentLock(content.contentFile)) {
+                if (!content.contentFile.exists()) {
+                    moveContent(content.tmpFile, content.contentFile);
+                    logger.warning("Content file \"" + content.contentFile + "\" was deleted before the upload was " +
+                        "committed -- re-created");
+                }
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Completing the upload of content file \"" + content.contentFile + "\" failed",
+                e);
+        } finally {
+            deleteTmpFile(content.tmpFile);
+        }
+    }
+
+    /**
+     * Drops the temporary files of the uploads whose transaction was not committed within
+     * {@link #ABANDONED_UPLOAD_AGE}. These transactions are regarded rolled back.
+     */
+    private void dropAbandonedUploads() {
+        long now = System.currentTimeMillis();
+        Iterator<PendingContent> i = pendingContents.values().iterator();
+        while (i.hasNext()) {
+            PendingContent content = i.next();
+            if (now - content.created > ABANDONED_UPLOAD_AGE) {
+                i.remove();
+                deleteTmpFile(content.tmpFile);
+            }
+        }
+    }
+
+    /**
+     * Moves a temporary file to the given content-addressed path. The caller must hold the content file's lock.
+     */
+    private void moveContent(File tmpFile, File contentFile) {
+        File dir = contentFile.getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new RuntimeException("Directory \"" + dir + "\" not created successfully");
+        }
+        if (!tmpFile.renameTo(contentFile)) {
+            throw new RuntimeException("Moving \"" + tmpFile + "\" to \"" + contentFile + "\" failed");
+        }
+    }
+
+    private void deleteTmpFile(File tmpFile) {
+        if (tmpFile.exists() && !tmpFile.delete()) {
+            logger.warning("Deleting file \"" + tmpFile + "\" failed");
+        }
+    }
+
+    /**
+     * Returns the lock which serializes storing and deleting the given content store file.
+     */
+    private Object contentLock(File contentFile) {
+        return contentLocks[(contentFile.getName().hashCode() & Integer.MAX_VALUE) % CONTENT_LOCKS];
+    }
+
+    /**
+     * Returns the content store responsible for the given directory, and creates it if not yet exists.
+     *
+     * @param   directory   A canonic absolute path.
+     */
+    private File contentStore(File directory) throws FileRepositoryException {
+        String pathPrefix = FILE_REPOSITORY_PER_WORKSPACE ? _pathPrefix(getWorkspaceId(repoPath(directory))) : "";
+        File contentStore = absolutePath(pathPrefix + "/" + CONTENT_STORE_DIRECTORY);
+        if (!contentStore.exists() && !contentStore.mkdirs()) {
+            throw new RuntimeException("Content store \"" + contentStore + "\" not created successfully");
+        }
+        return contentStore;
+    }
+
+    /**
+     * Returns the content-addressed path of a content. The path is made up from the content hash, spread across
+     * 256 subdirectories. The file name extension is retained, so the media type can be derived as usual.
+     */
+    private File contentFile(File contentStore, String contentHash, String fileName) {
+        int i = fileName.lastIndexOf('.');
+        String extension = i > 0 ? fileName.substring(i).toLowerCase() : "";
+        return new File(new File(contentStore, contentHash.substring(0, 2)), contentHash + extension);
+    }
+
+    /**
+     * Decrements the reference count of the content store file of the given File topic. Once the count drops to 0
+     * the content file is scheduled for deletion. If the File topic refers to a regular file nothing is performed.
+     */
+    private void releaseContent(Topic fileTopic) {
+        Topic pathTopic = fileTopic.loadChildTopics("dmx.files.path").getChildTopics().getTopicOrNull(
+            "dmx.files.path");
+        if (pathTopic == null || !pathTopic.hasProperty(PROP_REF_COUNT)) {
+            return;
+        }
+        long refCount = refCount(pathTopic) - 1;
+        pathTopic.setProperty(PROP_REF_COUNT, Math.max(refCount, 0), false);  // addToIndex=false
+        if (refCount <= 0) {
+            releasedContents.put(fileTopic.getId(), pathTopic.getId());
+        }
+    }
+
+    /**
+     * Deletes a content store file, provided it is still not referred to by any File topic. Called after commit.
+     */
+    private void deleteContent(long pathTopicId) {
+        try {
+            Topic pathTopic = dmx.getTopic(pathTopicId);
+            File contentFile = absolutePath(pathTopic.getSimpleValue().toString());
+            synchronized (contentLock(contentFile)) {
+                if (isReferredTo(pathTopic)) {
+                    logger.info("### Content file \"" + contentFile + "\" is referred to again -- not deleted");
+                    return;
+                }
+                if (contentFile.exists() && !contentFile.delete()) {
+                    throw new RuntimeException("Deleting \"" + contentFile + "\" failed");
+                }
+            }
+            logger.info("### Content file \"" + contentFile + "\" deleted (no references left)");
+        } catch (Exception e) {
+            throw new RuntimeException("Deleting the content file of Path topic " + pathTopicId + " failed", e);
+        }
+    }
+
+    /**
+     * Deletes the content store files which are not referred to by any File topic, and the temporary files of
+     * uploads which were not completed. Such files are left behind when an upload is rolled back, or when the
+     * server is stopped before a deletion is carried out. Called at startup.
+     */
+    private void collectOrphans() {
+        int count = 0;
+        for (File contentStore : contentStores()) {
+            for (File file : listFiles(contentStore)) {
+                if (!file.isDirectory()) {
+                    if (file.getName().startsWith(UPLOAD_FILE_PREFIX)) {
+                        deleteTmpFile(file);
+                        count++;
+                    }
+                    continue;
+                }
+                for (File contentFile : listFiles(file)) {
+                    synchronized (contentLock(contentFile)) {
+                        Topic pathTopic = fetchPathTopic(repoPath(contentFile));
+                        if (pathTopic != null && isReferredTo(pathTopic)) {
+                            continue;
+                        }
+                        if (!contentFile.delete()) {
+                            logger.warning("Deleting orphaned content file \"" + contentFile + "\" failed");
+                            continue;
+                        }
+                    }
+                    count++;
+                }
+            }
+        }
+        logger.info("### Orphaned content store files deleted: " + count);
+    }
+
+    private List<File> contentStores() {
+        List<File> contentStores = new ArrayList();
+        File repo = new File(FILE_REPOSITORY_PATH);
+        contentStores.add(new File(repo, CONTENT_STORE_DIRECTORY));
+        if (FILE_REPOSITORY_PER_WORKSPACE) {
+            for (File dir : listFiles(repo)) {
+                if (dir.getName().startsWith(WORKSPACE_DIRECTORY_PREFIX.substring(1))) {
+                    contentStores.add(new File(dir, CONTENT_STORE_DIRECTORY));
+                }
+            }
+        }
+        return contentStores;
+    }
+
+    private List<File> listFiles(File dir) {
+        File[] files = dir.listFiles();
+        return files != null ? Arrays.asList(files) : new ArrayList<File>();
+    }
+
+    private boolean isReferredTo(Topic pathTopic) {
+        return refCount(pathTopic) > 0 || !pathTopic.getRelatedTopics("dmx.core.composition", "dmx.core.child",
+            "dmx.core.parent", "dmx.files.file").isEmpty();
+    }
+
+    private long refCount(Topic pathTopic) {
+        return pathTopic.hasProperty(PROP_REF_COUNT) ? (Long) pathTopic.getProperty(PROP_REF_COUNT) : 0;
+    }
+
+    // --- Download ---
+
+    /**
+     * @param   withContent     <code>false</code> for a HEAD request.
+     */
+    private Response download(String repoPath, boolean attachment, String range, String ifRange, Request req,
+                                                                                   boolean withContent) {
+        String operation = "Downloading file at repository path \"" + repoPath + "\"";
+        try {
+            logger.info(operation + (range != null ? " (" + range + ")" : ""));
+            //
+            // 1) pre-checks
+            File file = absolutePath(repoPath);         // throws FileRepositoryException
+            checkExistence(file);                       // throws FileRepositoryException
+            if (file.isDirectory()) {
+                throw new FileRepositoryException("\"" + file + "\" is a directory", Status.NOT_FOUND);
+            }
+            checkAuthorization(repoPath(file), request);     // throws FileRepositoryException
+            //
+            // 2) conditional request
+            long size = file.length();
+            Date lastModified = new Date(file.lastModified() / 1000 * 1000);    // HTTP dates have second precision
+            EntityTag etag = new EntityTag(Long.toHexString(size) + "-" + Long.toHexString(lastModified.getTime()));
+            ResponseBuilder builder = req.evaluatePreconditions(lastModified, etag);
+            if (builder != null) {
+                return builder.tag(etag).build();       // 304 Not Modified (resp. 412 Precondition Failed)
+            }
+            //
+            // 3) full or partial content
+            long[] byteRange = byteRange(range, ifRange, etag, lastModified, size);
+            long start = 0;
+            long length = size;
+            if (byteRange != null) {
+                start = byteRange[0];
+                length = byteRange[1] - byteRange[0] + 1;
+                builder = Response.status(206)          // Partial Content
+                    .header("Content-Range", "bytes " + byteRange[0] + "-" + byteRange[1] + "/" + size);
+            } else {
+                builder = Response.ok();
+            }
+            String mediaType = JavaUtils.getFileType(file.getName());
+            builder.type(mediaType != null ? mediaType : DEFAULT_MEDIA_TYPE)
+                .header("Content-Length", length)
+                .header("Accept-Ranges", "bytes")
+                .tag(etag)
+                .lastModified(lastModified);
+            if (attachment) {
+                builder.header("Content-Disposition", contentDisposition(file.getName()));
+            }
+            if (withContent) {
+                builder.entity(fileContent(file, start, length));
+            }
+            return builder.build();
+        } catch (FileRepositoryException e) {
+            throw new WebApplicationException(new RuntimeException(operation + " failed", e), e.getStatus());
+        } catch (WebApplicationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(operation + " failed", e);
+        }
+    }
+
+    /**
+     * Parses a <code>Range</code> header.
+     *
+     * @return  the first and last byte position (inclusive), or <code>null</code> if the whole file is to be sent.
+     *          This is the case if there is no <code>Range</code> header, if it is not a single byte range, or if the
+     *          <code>If-Range</code> condition does not match.
+     *
+     * @throws  WebApplicationException     416 Range Not Satisfiable if the range starts behind the end of the file.
+     */
+    static long[] byteRange(String range, String ifRange, EntityTag etag, Date lastModified, long size) {
+        if (range == null || !ifRangeMatches(ifRange, etag, lastModified)) {
+            return null;
+        }
+        Matcher m = BYTE_RANGE_PATTERN.matcher(range.trim());
+        if (!m.matches()) {
+            return null;
+        }
+        String first = m.group(1);
+        String last = m.group(2);
+        long start;
+        long end;
+        if (first.equals("")) {
+            if (last.equals("")) {
+                return null;
+            }
+            // suffix range: the last n bytes
+            long suffixLength = Long.parseLong(last);
+            if (suffixLength == 0) {
+                throw rangeNotSatisfiable(size);
+            }
+            start = Math.max(size - suffixLength, 0);
+            end = size - 1;
+        } else {
+            start = Long.parseLong(first);
+            end = size - 1;
+            if (!last.equals("")) {
+                long _end = Long.parseLong(last);
+                if (_end < start) {
+                    return null;    // syntactically invalid -- the Range header is ignored
+                }
+                end = Math.min(_end, end);
+            }
+        }
+        if (start >= size) {
+            throw rangeNotSatisfiable(size);
+        }
+        return new long[] {start, end};
+    }
+
+    /**
+     * Checks an <code>If-Range</code> header. It contains either an entity tag or a date. Only if the file is
+     * unchanged the range is to be served.
+     *
+     * @return  <code>true</code> if there is no <code>If-Range</code> header, or if it matches.
+     */
+    static boolean ifRangeMatches(String ifRange, EntityTag etag, Date lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // Note: a weak entity tag never matches
+            return !ifRange.startsWith("W/") && EntityTag.valueOf(ifRange).equals(etag);
+        }
+        return ifRange.equals(httpDate(lastModified));
+    }
+
+    private static WebApplicationException rangeNotSatisfiable(long size) {
+        return new WebApplicationException(Response.status(416)        // Range Not Satisfiable
+            .header("Content-Range", "bytes */" + size)
+            .build());
+    }
+
+    static String httpDate(Date date) {
+        SimpleDateFormat format = new SimpleDateFormat(HTTP_DATE_FORMAT, Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return format.format(date);
+    }
+
+    /**
+     * Builds a <code>Content-Disposition</code> header which marks the response as attachment. The file name is given
+     * twice: as quoted ASCII fallback (non-ASCII characters replaced by "_"), and UTF-8 encoded as per RFC 5987.
+     */
+    static String contentDisposition(String fileName) {
+        StringBuilder fallback = new StringBuilder();
+        StringBuilder encoded = new StringBuilder();
+        for (char c : fileName.toCharArray()) {
+            fallback.append(c == '"' || c == '\\' ? "\\" + c : c < 0x20 || c > 0x7e ? "_" : String.valueOf(c));
+        }
+        try {
+            for (byte b : fileName.getBytes("UTF-8")) {
+                char c = (char) (b & 0xff);
+                if (c < 0x80 && (Character.isLetterOrDigit(c) || RFC_5987_ATTR_CHARS.indexOf(c) != -1)) {
+                    encoded.append(c);
+                } else {
+                    encoded.append(String.format("%%%02X", b & 0xff));
+                }
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);      // UTF-8 is always supported
+        }
+        return "attachment; filename=\"" + fallback + "\"; filename*=UTF-8''" + encoded;
+    }
+
+    /**
+     * Streams a portion of a file. The bytes are transferred from the file channel to the response channel directly.
+     */
+    private StreamingOutput fileContent(final File file, final long start, final long length) {
+        return new StreamingOutput() {
+            @Override
+            public void write(OutputStream out) throws IOException {
+                FileInputStream in = new FileInputStream(file);
+                try {
+                    FileChannel channel = in.getChannel();
+                    WritableByteChannel target = Channels.newChannel(out);
+                    long position = start;
+                    long end = start + length;
+                    while (position < end) {
+                        long count = channel.transferTo(position, end - position, target);
+                        if (count <= 0) {
+                            break;      // the file has been truncated meanwhile
+                        }
+                        position += count;
+                    }
+                } finally {
+                    in.close();
+                }
+            }
+        };
+    }
+
+    // --- Disk Quota ---
+
+    /**
+     * Updates the size of a File topic after its file is overwritten, and updates the occupied disk space of its
+     * creator accordingly.
+     */
+    private void updateFileSize(Topic fileTopic, long size) {
+        long delta = size - fileSize(fileTopic);
+        fileTopic.getChildTopics().set("dmx.files.size", size);
+        updateOccupiedSpace(fileTopic, delta);
+    }
+
+    /**
+     * Adds a delta to the occupied disk space of the creator of the given File topic.
+     * If the File topic has no creator (e.g. it was created by the system) nothing is performed.
+     * <p>
+     * The counter is read and written in the current transaction. The updates of a user's counter are serialized:
+     * the user's lock is acquired before the counter is read, and held until the transaction is finished. So the
+     * counter is read only once the previous update is committed (or rolled back), and no update is lost. If the lock
+     * can't be acquired in time (e.g. a long running import holds it) the counter is updated without lock, and
+     * might lose an update then. Such deviations are corrected by {@link #rebuildOccupiedSpace}.
+     */
+    void updateOccupiedSpace(Topic fileTopic, long delta) {
+        String username = dmx.getAccessControl().getCreator(fileTopic.getId());
+        if (username == null || delta == 0) {
+            return;
+        }
+        lockOccupiedSpace(username);
+        Topic usernameTopic = getUsernameTopic(username);
+        long occupiedSpace = getOccupiedSpace(username) + delta;
+        usernameTopic.setProperty(PROP_OCCUPIED_SPACE, Math.max(occupiedSpace, 0), false);  // addToIndex=false
+        logger.fine("### Occupied disk space of " + userInfo(username) + ": " + occupiedSpace + " bytes (" +
+            (delta > 0 ? "+" : "") + delta + ")");
+    }
+
+    /**
+     * Acquires the occupied disk space lock of a user, and releases it once the current transaction is finished.
+     * If the current thread holds the lock already (in the current transaction) nothing is performed.
+     */
+    private void lockOccupiedSpace(String username) {
+        ReentrantLock lock = occupiedSpaceLocks.get(username);
+        if (lock == null) {
+            ReentrantLock newLock = new ReentrantLock();
+            lock = occupiedSpaceLocks.putIfAbsent(username, newLock);
+            if (lock == null) {
+                lock = newLock;
+            }
+        }
+        if (lock.isHeldByCurrentThread()) {
+            return;
+        }
+        try {
+            if (!lock.tryLock(OCCUPIED_SPACE_LOCK_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                logger.warning("Updating occupied disk space of " + userInfo(username) + " without lock -- " +
+                    "the lock is not released within " + OCCUPIED_SPACE_LOCK_TIMEOUT + "ms");
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        final ReentrantLock _lock = lock;
+        dmx.runAfterCompletion(new Runnable() {
+            @Override
+            public void run() {
+                _lock.unlock();
+            }
+        });
+    }
+
+    /**
+     * Recalculates the occupied disk space of all users by summing up the sizes of the File topics they created.
+     *
+     * @param   rebuild     if <code>true</code> deviating values are replaced by the recalculated ones.
+     */
+    private DiskUsageReport recalculateOccupiedSpace(boolean rebuild) {
+        Map<String, Long> occupiedSpace = new HashMap();
+        int fileCount = 0;
+        for (Topic fileTopic : dmx.iterateTopicsByType("dmx.files.file", false)) {    // sortById=false
+            String username = dmx.getAccessControl().getCreator(fileTopic.getId());
+            if (username != null) {
+                Long size = occupiedSpace.get(username);
+                occupiedSpace.put(username, (size != null ? size : 0) + fileSize(fileTopic));
+            }
+            fileCount++;
+        }
+        //
+        DiskUsageReport report = new DiskUsageReport(fileCount, rebuild);
+        for (Topic usernameTopic : dmx.getTopicsByType("dmx.accesscontrol.username")) {
+            String username = usernameTopic.getSimpleValue().toString();
+            Long actual = occupiedSpace.get(username);
+            long _actual = actual != null ? actual : 0;
+            long maintained = getOccupiedSpace(username);
+            if (maintained != _actual) {
+                report.addDeviation(username, maintained, _actual);
+                if (rebuild) {
+                    usernameTopic.setProperty(PROP_OCCUPIED_SPACE, _actual, false);     // addToIndex=false
+                }
+            }
+        }
+        logger.info("### Occupied disk space " + (rebuild ? "rebuilt" : "verified") + ": " + report);
+        return report;
+    }
+
+    /**
+     * Returns the size of a File topic (as stored in its "Size" child topic), or 0 if the File topic has no size.
+     */
+    private long fileSize(Topic fileTopic) {
+        Topic sizeTopic = fileTopic.loadChildTopics("dmx.files.size").getChildTopics().getTopicOrNull(
+            "dmx.files.size");
+        return sizeTopic != null ? ((Number) sizeTopic.getSimpleValue().value()).longValue() : 0;
+    }
+
+    private Topic getUsernameTopic(String username) {
+        Topic usernameTopic = dmx.getAccessControl().getUsernameTopic(username);
+        if (usernameTopic == null) {
+            throw new RuntimeException("User \"" + username + "\" does not exist");
+        }
+        return usernameTopic;
+    }
+
+    /**
+     * Checks if the current user is allowed to verify/rebuild the occupied disk space, that is if the user has
+     * write access to the "Administration" workspace. Calls from outside request scope (e.g. from a migration) are
+     * always allowed.
+     */
+    private void checkAdministrationAccess() {
+        if (!inRequestScope()) {
+            return;
+        }
+        AccessControl ac = dmx.getAccessControl();
+        String username = ac.getUsername(request);
+        if (!ac.hasWritePermission(username, ac.getAdministrationWorkspaceId())) {
+            throw new AccessControlException(userInfo(username) + " has no WRITE permission for the " +
+                "\"Administration\" workspace");
+        }
+    }
+
+    private boolean inRequestScope() {
+        try {
+            request.getMethod();
+            return true;
+        } catch (IllegalStateException e) {
+            // Note: this happens if a request method is called outside request scope (e.g. from a migration)
+            return false;
+        } catch (NullPointerException e) {
+            // While system startup request might be null
+            return false;
+        }
+    }
+
     // --- Per-workspace file repositories ---
 
     private void createWorkspaceFileRepository(File repo) {
@@ -908,4 +2063,71 @@ public class FilesPlugin extends PluginActivator implements FilesService, Static
     private String _pathPrefix(long workspaceId) {
         return WORKSPACE_DIRECTORY_PREFIX + workspaceId;
     }
+
+
+
+    // ------------------------------------------------------------------------------------------------- Private Classes
+
+    /**
+     * Checks the disk quota while an uploaded file is received: every {@link #QUOTA_CHECK_INTERVAL} bytes, and at the
+     * end of the file. If the quota is exceeded reading fails, so the upload is aborted.
+     */
+    private class QuotaCheckingInputStream extends FilterInputStream {
+
+        private long count;         // number of bytes read so far
+        private long checked;       // number of bytes read at the last check
+
+        private QuotaCheckingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            count(b != -1 ? 1 : -1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            count(n);
+            return n;
+        }
+
+        private void count(int n) {
+            if (n > 0) {
+                count += n;
+                if (count - checked >= QUOTA_CHECK_INTERVAL) {
+                    check();
+                }
+            } else if (n == -1 && count != checked) {
+                check();
+            }
+        }
+
+        private void check() {
+            checked = count;
+            try {
+                checkDiskQuota(count);
+            } catch (FileRepositoryException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * A content store upload whose transaction is not yet committed.
+     */
+    private static class PendingContent {
+
+        private File tmpFile;
+        private File contentFile;
+        private long created = System.currentTimeMillis();
+
+        private PendingContent(File tmpFile, File contentFile) {
+            this.tmpFile = tmpFile;
+            this.contentFile = contentFile;
+        }
+    }
 }
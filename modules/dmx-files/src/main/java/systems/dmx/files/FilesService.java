@@ -116,6 +116,10 @@ public interface FilesService {
 
     /**
      * Receives an uploaded file, stores it in the file repository, and creates a corresponding File topic.
+     * <p>
+     * If content-addressed storage is active (<code>dmx.filerepo.dedup=true</code>) the file is stored in the
+     * content store of the file repository instead of the given directory. A content is stored only once, regardless
+     * how often it is uploaded. Each upload creates a File topic of its own though.
      *
      * @param   repoPath    The directory where to store the uploaded file.
      *                      The directory must exist.
@@ -143,7 +147,8 @@ public interface FilesService {
      *
      * @param   in          The input stream the file content is read from.
      * @param   repoPath    The path and filename of the file to be created.
-     *                      If that file exists already it is overwritten. ### TODO: rethink overwriting
+     *                      If that file exists already it is overwritten, and the size of its File topic is
+     *                      updated. ### TODO: rethink overwriting
      *                      <p>
      *                      A repository path. Relative to the repository base path.
      *                      Must begin with slash, no slash at the end.
@@ -189,6 +194,21 @@ public interface FilesService {
 
     DirectoryListing getDirectoryListing(String repoPath);
 
+    /**
+     * Returns a page of the listing of a directory. The directory entries are sorted.
+     * <p>
+     * Listings are cached per directory (as long as the directory is not modified). Sorting by name requires to stat
+     * only the entries of the requested page.
+     *
+     * @param   repoPath    A repository path of a directory. See {@link #getFile(String)}.
+     * @param   offset      the index of the first entry to return.
+     * @param   limit       the max number of entries to return. 0 means no limit.
+     * @param   sort        "name" (the default if <code>null</code>), "size", or "modified".
+     *                      Directories have size 0. Another value is responded with 400 Bad Request.
+     * @param   descending  if <code>true</code> the sort order is reversed.
+     */
+    DirectoryListing getDirectoryListing(String repoPath, int offset, int limit, String sort, boolean descending);
+
     /**
      * Checks if the given URL refers to the file repository of this DMX installation.
      *
@@ -273,4 +293,55 @@ public interface FilesService {
     // ---
 
     int openFile(long fileTopicId);
+
+
+
+    // === Disk Quota ===
+
+    /**
+     * Returns the disk space occupied by the files of the given user, that is the sum of the sizes of the File
+     * topics created by that user (in bytes).
+     * <p>
+     * The value is maintained incrementally: it is updated whenever a File topic is created, overwritten (see
+     * {@link #createFile}), or deleted. So this is a constant-time lookup.
+     */
+    long getOccupiedSpace(String username);
+
+    /**
+     * Recalculates the occupied disk space of all users from the File topics and compares it with the maintained
+     * values. Only members of the "Administration" workspace are allowed to call this method.
+     *
+     * @return  the users whose maintained value deviates.
+     */
+    DiskUsageReport verifyOccupiedSpace();
+
+    /**
+     * Like {@link #verifyOccupiedSpace} but additionally replaces the deviating values by the recalculated ones.
+     * Only members of the "Administration" workspace are allowed to call this method.
+     */
+    DiskUsageReport rebuildOccupiedSpace();
+
+
+
+    // === Bulk Import ===
+
+    /**
+     * Imports the directory at the given repository path, that is creates the File and Folder topics for all files
+     * and directories beneath it (recursively). Topics which exist already are skipped, so an import can be
+     * repeated. Only members of the "Administration" workspace are allowed to call this method.
+     * <p>
+     * The import runs in the background. Its progress can be polled via {@link #getImportStatus}.
+     *
+     * @param   repoPath    A repository path. Relative to the repository base path.
+     *                      Must begin with slash, no slash at the end.
+     *
+     * @return  the status of the started import.
+     */
+    ImportStatus importDirectory(String repoPath);
+
+    /**
+     * Returns the status of an import started by {@link #importDirectory}. The status of a finished import is
+     * available for 1 hour.
+     */
+    ImportStatus getImportStatus(long importId);
 }
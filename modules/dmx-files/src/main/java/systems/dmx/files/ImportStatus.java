@@ -0,0 +1,88 @@
+package systems.dmx.files;
+
+import systems.dmx.core.JSONEnabled;
+
+import org.codehaus.jettison.json.JSONObject;
+
+
+
+/**
+ * The progress of a file system import (a snapshot).
+ */
+public class ImportStatus implements JSONEnabled {
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    private final long importId;
+    private final String repoPath;
+    private final String state;         // "running", "completed", "failed", "cancelled"
+    private final long directories;     // number of directories found so far
+    private final long files;           // number of files found so far
+    private final long created;         // number of File/Folder topics created so far
+    private final long skipped;         // number of files/directories whose topic exists already, and symlinks
+    private final long failed;          // number of files/directories which could not be imported
+    private final long elapsedTime;     // in milliseconds
+    private final String error;         // null if no error occurred
+
+    // ---------------------------------------------------------------------------------------------------- Constructors
+
+    ImportStatus(long importId, String repoPath, String state, long directories, long files, long created,
+                 long skipped, long failed, long elapsedTime, String error) {
+        this.importId = importId;
+        this.repoPath = repoPath;
+        this.state = state;
+        this.directories = directories;
+        this.files = files;
+        this.created = created;
+        this.skipped = skipped;
+        this.failed = failed;
+        this.elapsedTime = elapsedTime;
+        this.error = error;
+    }
+
+    // -------------------------------------------------------------------------------------------------- Public Methods
+
+    public long getImportId() {
+        return importId;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    // ---
+
+    @Override
+    public JSONObject toJSON() {
+        try {
+            return new JSONObject()
+                .put("importId", importId)
+                .put("repoPath", repoPath)
+                .put("state", state)
+                .put("directories", directories)
+                .put("files", files)
+                .put("created", created)
+                .put("skipped", skipped)
+                .put("failed", failed)
+                .put("elapsedTime", elapsedTime)
+                .put("error", error);
+        } catch (Exception e) {
+            throw new RuntimeException("Serialization failed", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "import " + importId + " of \"" + repoPath + "\" (" + state + "): directories=" + directories +
+            ", files=" + files + ", created=" + created + ", skipped=" + skipped + ", failed=" + failed + ", " +
+            elapsedTime / 1000 + "s";
+    }
+}
@@ -13,13 +13,21 @@ public class StoredFile implements JSONEnabled {
     private final String fileName;
     private final String repoPath;
     private final long fileTopicId;
+    private final long size;            // -1 if unknown
+    private final String contentHash;   // SHA-256 (hex), null if unknown
 
     // ---------------------------------------------------------------------------------------------------- Constructors
 
     StoredFile(String fileName, String repoPath, long fileTopicId) {
+        this(fileName, repoPath, fileTopicId, -1, null);
+    }
+
+    StoredFile(String fileName, String repoPath, long fileTopicId, long size, String contentHash) {
         this.fileName = fileName;
         this.repoPath = repoPath;
         this.fileTopicId = fileTopicId;
+        this.size = size;
+        this.contentHash = contentHash;
     }
 
     // -------------------------------------------------------------------------------------------------- Public Methods
@@ -36,15 +44,36 @@ public class StoredFile implements JSONEnabled {
         return fileTopicId;
     }
 
+    /**
+     * @return  the file size in bytes, or -1 if unknown.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return  the SHA-256 hash of the file content (hex), or <code>null</code> if unknown.
+     */
+    public String getContentHash() {
+        return contentHash;
+    }
+
     // ---
 
     @Override
     public JSONObject toJSON() {
         try {
-            return new JSONObject()
+            JSONObject o = new JSONObject()
                 .put("fileName", fileName)
                 .put("repoPath", repoPath)
                 .put("topicId", fileTopicId);
+            if (size != -1) {
+                o.put("size", size);
+            }
+            if (contentHash != null) {
+                o.put("contentHash", contentHash);
+            }
+            return o;
         } catch (Exception e) {
             throw new RuntimeException("Serialization failed", e);
         }
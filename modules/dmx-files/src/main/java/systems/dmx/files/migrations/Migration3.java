@@ -0,0 +1,29 @@
+package systems.dmx.files.migrations;
+
+import systems.dmx.files.FilesService;
+
+import systems.dmx.core.service.Inject;
+import systems.dmx.core.service.Migration;
+
+
+
+/**
+ * Initializes the per-user occupied disk space from the existing File topics.
+ * <p>
+ * Part of DMX 5.0
+ * Runs only in UPDATE mode. On a clean install there are no File topics yet.
+ */
+public class Migration3 extends Migration {
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    @Inject
+    private FilesService filesService;
+
+    // -------------------------------------------------------------------------------------------------- Public Methods
+
+    @Override
+    public void run() {
+        filesService.rebuildOccupiedSpace();
+    }
+}
@@ -0,0 +1,188 @@
+package systems.dmx.files;
+
+import systems.dmx.files.DirectoryListingCache.FileAttributes;
+import systems.dmx.files.DirectoryListingCache.Listing;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+
+
+public class DirectoryListingCacheTest {
+
+    // an old modification time, outside the racy interval
+    private static final long MODIFIED = System.currentTimeMillis() / 1000 * 1000 - 60000;
+
+    private File directory;
+
+    @Before
+    public void setup() throws IOException {
+        directory = createTempDir();
+        createFile("b.txt", 300, MODIFIED - 1000);
+        createFile("c.txt", 100, MODIFIED - 3000);
+        createFile("a.txt", 200, MODIFIED - 2000);
+        new File(directory, "d").mkdir();
+        new File(directory, "d").setLastModified(MODIFIED - 4000);
+        directory.setLastModified(MODIFIED);
+    }
+
+    @After
+    public void shutdown() {
+        delete(directory);
+    }
+
+    // --- Cache ---
+
+    @Test
+    public void listingIsCached() {
+        DirectoryListingCache cache = new DirectoryListingCache(10);
+        Listing listing = cache.get(directory);
+        assertArrayEquals(new String[] {"a.txt", "b.txt", "c.txt", "d"}, listing.getNames());
+        assertSame(listing, cache.get(directory));
+        assertEquals("directories=1, hits=1, misses=1", cache.stats());
+    }
+
+    @Test
+    public void modifiedDirectoryInvalidatesListing() throws IOException {
+        DirectoryListingCache cache = new DirectoryListingCache(10);
+        Listing listing = cache.get(directory);
+        createFile("e.txt", 10, MODIFIED);
+        directory.setLastModified(MODIFIED + 1000);
+        Listing newListing = cache.get(directory);
+        assertNotSame(listing, newListing);
+        assertArrayEquals(new String[] {"a.txt", "b.txt", "c.txt", "d", "e.txt"}, newListing.getNames());
+        assertSame(newListing, cache.get(directory));
+    }
+
+    @Test
+    public void recentlyModifiedDirectoryIsNotCached() {
+        DirectoryListingCache cache = new DirectoryListingCache(10);
+        directory.setLastModified(System.currentTimeMillis());
+        assertNotSame(cache.get(directory), cache.get(directory));
+        assertEquals("directories=0, hits=0, misses=2", cache.stats());
+    }
+
+    @Test
+    public void leastRecentlyUsedListingIsEvicted() throws IOException {
+        File directory2 = createTempDir();
+        try {
+            directory2.setLastModified(MODIFIED);
+            DirectoryListingCache cache = new DirectoryListingCache(1);
+            Listing listing = cache.get(directory);
+            cache.get(directory2);
+            assertNotSame(listing, cache.get(directory));
+            assertEquals("directories=1, hits=0, misses=3", cache.stats());
+        } finally {
+            delete(directory2);
+        }
+    }
+
+    @Test
+    public void disabledCache() {
+        DirectoryListingCache cache = new DirectoryListingCache(0);
+        assertNotSame(cache.get(directory), cache.get(directory));
+    }
+
+    // --- Paging and Sorting ---
+
+    @Test
+    public void pageSortedByName() throws Exception {
+        Listing listing = new DirectoryListingCache(10).get(directory);
+        assertEquals(list("a.txt", "b.txt", "c.txt", "d"), names(FilesPlugin.page(listing, 0, 0, null, false)));
+        assertEquals(list("b.txt", "c.txt"), names(FilesPlugin.page(listing, 1, 2, "name", false)));
+        assertEquals(list("c.txt", "b.txt"), names(FilesPlugin.page(listing, 1, 2, "name", true)));
+    }
+
+    @Test
+    public void pageSortedBySize() throws Exception {
+        Listing listing = new DirectoryListingCache(10).get(directory);
+        // directories have size 0
+        assertEquals(list("d", "c.txt", "a.txt", "b.txt"), names(FilesPlugin.page(listing, 0, 0, "size", false)));
+        assertEquals(list("b.txt", "a.txt"), names(FilesPlugin.page(listing, 0, 2, "size", true)));
+    }
+
+    @Test
+    public void pageSortedByModificationTime() throws Exception {
+        Listing listing = new DirectoryListingCache(10).get(directory);
+        assertEquals(list("d", "c.txt", "a.txt", "b.txt"), names(FilesPlugin.page(listing, 0, 0, "modified", false)));
+        assertEquals(list("a.txt", "c.txt"), names(FilesPlugin.page(listing, 1, 2, "modified", true)));
+    }
+
+    @Test
+    public void pageBeyondTheEnd() throws Exception {
+        Listing listing = new DirectoryListingCache(10).get(directory);
+        assertEquals(list("d"), names(FilesPlugin.page(listing, 3, 10, null, false)));
+        assertEquals(list(), names(FilesPlugin.page(listing, 10, 10, null, false)));
+        assertEquals(list(), names(FilesPlugin.page(listing, 10, 10, "size", false)));
+    }
+
+    @Test
+    public void unsupportedSortOrder() {
+        Listing listing = new DirectoryListingCache(10).get(directory);
+        try {
+            FilesPlugin.page(listing, 0, 0, "owner", false);
+            fail("FileRepositoryException expected");
+        } catch (FileRepositoryException e) {
+            assertEquals(400, e.getStatus().getStatusCode());
+        }
+    }
+
+    // ---
+
+    private List<String> names(List<FileAttributes> page) {
+        List<String> names = new ArrayList();
+        for (FileAttributes attributes : page) {
+            names.add(attributes.file.getName());
+        }
+        return names;
+    }
+
+    private List<String> list(String... names) {
+        List<String> list = new ArrayList();
+        for (String name : names) {
+            list.add(name);
+        }
+        return list;
+    }
+
+    private void createFile(String name, int size, long modified) throws IOException {
+        File file = new File(directory, name);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[size]);
+        } finally {
+            out.close();
+        }
+        file.setLastModified(modified);
+    }
+
+    private File createTempDir() throws IOException {
+        File dir = File.createTempFile("dmx-listing", "");
+        assertTrue(dir.delete() && dir.mkdir());
+        return dir;
+    }
+
+    private void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                delete(f);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,112 @@
+package systems.dmx.files;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.EntityTag;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Date;
+
+
+
+public class FilesPluginTest {
+
+    private static final EntityTag ETAG = new EntityTag("3e8-5f5e100");
+    private static final Date LAST_MODIFIED = new Date(1600000000000L);
+    private static final long SIZE = 1000;
+
+    // --- byteRange ---
+
+    @Test
+    public void byteRange() {
+        assertArrayEquals(new long[] {0, 99}, byteRange("bytes=0-99"));
+        assertArrayEquals(new long[] {500, 999}, byteRange("bytes=500-"));
+        // the last byte position is limited to the file size
+        assertArrayEquals(new long[] {900, 999}, byteRange("bytes=900-2000"));
+    }
+
+    @Test
+    public void suffixByteRange() {
+        assertArrayEquals(new long[] {900, 999}, byteRange("bytes=-100"));
+        // a suffix longer than the file selects the whole file
+        assertArrayEquals(new long[] {0, 999}, byteRange("bytes=-5000"));
+    }
+
+    @Test
+    public void multipleByteRangesAreServedAsWholeFile() {
+        assertNull(byteRange("bytes=0-99,200-299"));
+        assertNull(byteRange("bytes=-100,0-9"));
+    }
+
+    @Test
+    public void invalidByteRangeIsIgnored() {
+        assertNull(byteRange(null));
+        assertNull(byteRange("bytes=-"));
+        assertNull(byteRange("bytes=99-0"));
+        assertNull(byteRange("items=0-99"));
+    }
+
+    @Test
+    public void unsatisfiableByteRange() {
+        assertRangeNotSatisfiable("bytes=1000-");
+        assertRangeNotSatisfiable("bytes=5000-6000");
+        assertRangeNotSatisfiable("bytes=-0");
+    }
+
+    // --- ifRangeMatches ---
+
+    @Test
+    public void ifRange() {
+        assertTrue(FilesPlugin.ifRangeMatches(null, ETAG, LAST_MODIFIED));
+        assertTrue(FilesPlugin.ifRangeMatches("\"3e8-5f5e100\"", ETAG, LAST_MODIFIED));
+        assertTrue(FilesPlugin.ifRangeMatches(FilesPlugin.httpDate(LAST_MODIFIED), ETAG, LAST_MODIFIED));
+    }
+
+    @Test
+    public void ifRangeMismatch() {
+        assertFalse(FilesPlugin.ifRangeMatches("\"3e8-5f5e101\"", ETAG, LAST_MODIFIED));
+        assertFalse(FilesPlugin.ifRangeMatches(FilesPlugin.httpDate(new Date(LAST_MODIFIED.getTime() + 1000)), ETAG,
+            LAST_MODIFIED));
+        // a weak entity tag never matches
+        assertFalse(FilesPlugin.ifRangeMatches("W/\"3e8-5f5e100\"", ETAG, LAST_MODIFIED));
+        // on mismatch the whole file is served
+        assertNull(FilesPlugin.byteRange("bytes=0-99", "\"3e8-5f5e101\"", ETAG, LAST_MODIFIED, SIZE));
+        assertArrayEquals(new long[] {0, 99},
+            FilesPlugin.byteRange("bytes=0-99", "\"3e8-5f5e100\"", ETAG, LAST_MODIFIED, SIZE));
+    }
+
+    // --- contentDisposition ---
+
+    @Test
+    public void contentDisposition() {
+        assertEquals("attachment; filename=\"report 2020.pdf\"; filename*=UTF-8''report%202020.pdf",
+            FilesPlugin.contentDisposition("report 2020.pdf"));
+        assertEquals("attachment; filename=\"Gr__e.txt\"; filename*=UTF-8''Gr%C3%BC%C3%9Fe.txt",
+            FilesPlugin.contentDisposition("Gr\u00fc\u00dfe.txt"));
+        assertEquals("attachment; filename=\"a\\\"b;c.txt\"; filename*=UTF-8''a%22b%3Bc.txt",
+            FilesPlugin.contentDisposition("a\"b;c.txt"));
+    }
+
+    // ---
+
+    private long[] byteRange(String range) {
+        return FilesPlugin.byteRange(range, null, ETAG, LAST_MODIFIED, SIZE);
+    }
+
+    private void assertRangeNotSatisfiable(String range) {
+        try {
+            byteRange(range);
+            fail("416 expected for \"" + range + "\"");
+        } catch (WebApplicationException e) {
+            assertEquals(416, e.getResponse().getStatus());
+            assertEquals("bytes */" + SIZE, e.getResponse().getMetadata().getFirst("Content-Range"));
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package systems.dmx.files;
+
+import systems.dmx.core.ChildTopics;
+import systems.dmx.core.RelatedTopic;
+import systems.dmx.core.Topic;
+import systems.dmx.core.model.SimpleValue;
+import systems.dmx.core.service.CoreService;
+import systems.dmx.core.service.accesscontrol.AccessControl;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+
+
+public class OccupiedSpaceTest {
+
+    private static final String PROP_OCCUPIED_SPACE = "dmx.files.occupied_space";
+
+    private FilesPlugin filesPlugin;
+
+    private Map<String, Topic> usernameTopics = new HashMap();
+    private Map<String, Map<String, Object>> properties = new ConcurrentHashMap();  // key: username
+    private Map<Long, String> creators = new HashMap();                              // key: File topic ID
+    private List<Topic> fileTopics = new ArrayList();
+
+    // the tasks to be run once the current (simulated) transaction is finished
+    private ThreadLocal<List<Runnable>> completionTasks = new ThreadLocal();
+
+    private Topic alicesFile1, alicesFile2, bobsFile;
+
+    @Before
+    public void setup() {
+        filesPlugin = new FilesPlugin();
+        filesPlugin.setCoreService(coreService());
+        usernameTopic(1, "alice");
+        usernameTopic(2, "bob");
+        alicesFile1 = fileTopic(11, "alice", 100);
+        alicesFile2 = fileTopic(12, "alice", 50);
+        bobsFile = fileTopic(13, "bob", 10);
+        fileTopic(14, null, 5);     // a file without creator is not accounted
+    }
+
+    // --- Accounting ---
+
+    @Test
+    public void occupiedSpaceIsAccounted() {
+        for (Topic fileTopic : fileTopics) {
+            updateOccupiedSpace(fileTopic, fileSize(fileTopic));
+        }
+        assertEquals(150, filesPlugin.getOccupiedSpace("alice"));
+        assertEquals(10, filesPlugin.getOccupiedSpace("bob"));
+        //
+        updateOccupiedSpace(alicesFile2, -50);
+        assertEquals(100, filesPlugin.getOccupiedSpace("alice"));
+        // the counter does not get negative
+        updateOccupiedSpace(bobsFile, -20);
+        assertEquals(0, filesPlugin.getOccupiedSpace("bob"));
+    }
+
+    @Test
+    public void updatesOfSameUserAreSerialized() throws Exception {
+        CountDownLatch finish = new CountDownLatch(1);
+        Thread upload1 = upload(alicesFile1, finish);
+        CountDownLatch done2 = new CountDownLatch(1);
+        Thread upload2 = upload(alicesFile2, done2);
+        done2.countDown();
+        // the 2nd upload waits until the transaction of the 1st one is finished
+        upload2.join(300);
+        assertTrue(upload2.isAlive());
+        finish.countDown();
+        upload1.join(5000);
+        upload2.join(5000);
+        assertFalse(upload2.isAlive());
+        assertEquals(150, filesPlugin.getOccupiedSpace("alice"));
+    }
+
+    @Test
+    public void updatesOfDifferentUsersAreNotSerialized() throws Exception {
+        CountDownLatch finish = new CountDownLatch(1);
+        Thread upload1 = upload(alicesFile1, finish);
+        Thread upload2 = upload(bobsFile, new CountDownLatch(0));
+        upload2.join(5000);
+        assertFalse(upload2.isAlive());
+        assertEquals(10, filesPlugin.getOccupiedSpace("bob"));
+        finish.countDown();
+        upload1.join(5000);
+        assertEquals(100, filesPlugin.getOccupiedSpace("alice"));
+    }
+
+    @Test
+    public void lockIsReentrantWithinTransaction() throws Exception {
+        beginTx();
+        filesPlugin.updateOccupiedSpace(alicesFile1, 100);
+        filesPlugin.updateOccupiedSpace(alicesFile2, 50);
+        finishTx();
+        // the lock is released
+        Thread upload = upload(alicesFile1, new CountDownLatch(0));
+        upload.join(5000);
+        assertFalse(upload.isAlive());
+        assertEquals(250, filesPlugin.getOccupiedSpace("alice"));
+    }
+
+    // --- Verify and Rebuild ---
+
+    @Test
+    public void verifyReportsDeviations() {
+        properties.get("alice").put(PROP_OCCUPIED_SPACE, 999L);
+        DiskUsageReport report = filesPlugin.verifyOccupiedSpace();
+        assertEquals(4, report.getFileCount());
+        assertFalse(report.isRebuilt());
+        assertEquals(2, report.getDeviations().size());
+        DiskUsageReport.Deviation deviation = deviation(report, "alice");
+        assertEquals(999, deviation.maintained);
+        assertEquals(150, deviation.actual);
+        deviation = deviation(report, "bob");
+        assertEquals(0, deviation.maintained);
+        assertEquals(10, deviation.actual);
+        // the maintained values are not changed
+        assertEquals(999, filesPlugin.getOccupiedSpace("alice"));
+    }
+
+    @Test
+    public void rebuildReplacesDeviations() {
+        properties.get("alice").put(PROP_OCCUPIED_SPACE, 999L);
+        DiskUsageReport report = filesPlugin.rebuildOccupiedSpace();
+        assertTrue(report.isRebuilt());
+        assertEquals(2, report.getDeviations().size());
+        assertEquals(150, filesPlugin.getOccupiedSpace("alice"));
+        assertEquals(10, filesPlugin.getOccupiedSpace("bob"));
+        //
+        assertEquals(0, filesPlugin.verifyOccupiedSpace().getDeviations().size());
+    }
+
+    // ---
+
+    private void updateOccupiedSpace(Topic fileTopic, long delta) {
+        beginTx();
+        try {
+            filesPlugin.updateOccupiedSpace(fileTopic, delta);
+        } finally {
+            finishTx();
+        }
+    }
+
+    /**
+     * Starts a thread which adds the size of a File topic to its creator's occupied space, and finishes the
+     * transaction once the given latch is released.
+     */
+    private Thread upload(final Topic fileTopic, final CountDownLatch finish) throws InterruptedException {
+        final CountDownLatch updated = new CountDownLatch(1);
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                beginTx();
+                try {
+                    filesPlugin.updateOccupiedSpace(fileTopic, fileSize(fileTopic));
+                    updated.countDown();
+                    finish.await();
+                } catch (InterruptedException e) {
+                } finally {
+                    finishTx();
+                }
+            }
+        };
+        thread.start();
+        updated.await(100, TimeUnit.MILLISECONDS);     // the 2nd upload of a user does not get that far
+        return thread;
+    }
+
+    private void beginTx() {
+        completionTasks.set(new ArrayList());
+    }
+
+    private void finishTx() {
+        List<Runnable> tasks = completionTasks.get();
+        completionTasks.remove();
+        for (Runnable task : tasks) {
+            task.run();
+        }
+    }
+
+    private DiskUsageReport.Deviation deviation(DiskUsageReport report, String username) {
+        for (DiskUsageReport.Deviation deviation : report.getDeviations()) {
+            if (deviation.username.equals(username)) {
+                return deviation;
+            }
+        }
+        throw new AssertionError("No deviation reported for \"" + username + "\"");
+    }
+
+    private long fileSize(Topic fileTopic) {
+        return fileTopic.loadChildTopics("dmx.files.size").getChildTopics().getTopicOrNull("dmx.files.size")
+            .getSimpleValue().longValue();
+    }
+
+    // --- Fakes ---
+
+    private CoreService coreService() {
+        final AccessControl ac = fake(AccessControl.class, new Handler() {
+            @Override
+            public Object invoke(String method, Object[] args) {
+                if (method.equals("getCreator")) {
+                    return creators.get((Long) args[0]);
+                } else if (method.equals("getUsernameTopic")) {
+                    return usernameTopics.get((String) args[0]);
+                }
+                return UNSUPPORTED;
+            }
+        });
+        return fake(CoreService.class, new Handler() {
+            @Override
+            public Object invoke(String method, Object[] args) {
+                if (method.equals("getModelFactory")) {
+                    return null;
+                } else if (method.equals("getAccessControl")) {
+                    return ac;
+                } else if (method.equals("getTopicsByType")) {
+                    return new ArrayList(usernameTopics.values());
+                } else if (method.equals("iterateTopicsByType")) {
+                    return fileTopics;
+                } else if (method.equals("runAfterCompletion")) {
+                    List<Runnable> tasks = completionTasks.get();
+                    if (tasks != null) {
+                        tasks.add((Runnable) args[0]);
+                    } else {
+                        ((Runnable) args[0]).run();
+                    }
+                    return null;
+                }
+                return UNSUPPORTED;
+            }
+        });
+    }
+
+    private void usernameTopic(final long id, final String username) {
+        final Map<String, Object> props = new ConcurrentHashMap();
+        properties.put(username, props);
+        usernameTopics.put(username, fake(Topic.class, new Handler() {
+            @Override
+            public Object invoke(String method, Object[] args) {
+                if (method.equals("getId")) {
+                    return id;
+                } else if (method.equals("getSimpleValue")) {
+                    return new SimpleValue(username);
+                } else if (method.equals("hasProperty")) {
+                    return props.containsKey((String) args[0]);
+                } else if (method.equals("getProperty")) {
+                    return props.get((String) args[0]);
+                } else if (method.equals("setProperty")) {
+                    props.put((String) args[0], args[1]);
+                    return null;
+                }
+                return UNSUPPORTED;
+            }
+        }));
+    }
+
+    private Topic fileTopic(final long id, String creator, long size) {
+        final RelatedTopic sizeTopic = fake(RelatedTopic.class, value(new SimpleValue(size)));
+        final ChildTopics childTopics = fake(ChildTopics.class, new Handler() {
+            @Override
+            public Object invoke(String method, Object[] args) {
+                return method.equals("getTopicOrNull") && args[0].equals("dmx.files.size") ? sizeTopic : UNSUPPORTED;
+            }
+        });
+        final Topic[] fileTopic = new Topic[1];
+        fileTopic[0] = fake(Topic.class, new Handler() {
+            @Override
+            public Object invoke(String method, Object[] args) {
+                if (method.equals("getId")) {
+                    return id;
+                } else if (method.equals("loadChildTopics")) {
+                    return fileTopic[0];
+                } else if (method.equals("getChildTopics")) {
+                    return childTopics;
+                }
+                return UNSUPPORTED;
+            }
+        });
+        if (creator != null) {
+            creators.put(id, creator);
+        }
+        fileTopics.add(fileTopic[0]);
+        return fileTopic[0];
+    }
+
+    private Handler value(final SimpleValue value) {
+        return new Handler() {
+            @Override
+            public Object invoke(String method, Object[] args) {
+                return method.equals("getSimpleValue") ? value : UNSUPPORTED;
+            }
+        };
+    }
+
+    // ---
+
+    private static final Object UNSUPPORTED = new Object();
+
+    private interface Handler {
+        /**
+         * @return  the result, or UNSUPPORTED if the method is not supported by the fake.
+         */
+        Object invoke(String method, Object[] args);
+    }
+
+    private <T> T fake(Class<T> type, final Handler handler) {
+        return (T) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {type}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                Object result = handler.invoke(method.getName(), args);
+                if (result == UNSUPPORTED) {
+                    throw new UnsupportedOperationException(method.getName());
+                }
+                return result;
+            }
+        });
+    }
+}
@@ -0,0 +1,347 @@
+package systems.dmx.geomaps;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+
+
+/**
+ * An in-memory spatial index of Geo Coordinate topics.
+ * <p>
+ * The earth is divided into a grid of cells of {@link #CELL_SIZE} degrees. Each cell holds the geo coordinates
+ * located in it (key: Geo Coordinate topic ID). A bounding box query examines only the cells overlapping the box.
+ * A nearest neighbour search examines the cells in rings of growing size around the center's cell, and delivers a
+ * geo coordinate as soon as no unexamined cell can contain a nearer one. The rings wrap around the antimeridian.
+ * <p>
+ * The index holds IDs and coordinates only. It is not access controlled: the caller must filter the result.
+ * <p>
+ * Thread-safe.
+ */
+class GeoIndex {
+
+    // ------------------------------------------------------------------------------------------------------- Constants
+
+    static final double CELL_SIZE = 1.0;    // in degrees
+
+    private static final int COLUMNS = (int) Math.ceil(360 / CELL_SIZE);
+    private static final int ROWS    = (int) Math.ceil(180 / CELL_SIZE);
+
+    // the max column offsets west/east of a center column, so that each column is reached by exactly one offset
+    private static final int WEST_OFFSETS = (COLUMNS - 1) / 2;
+    private static final int EAST_OFFSETS = COLUMNS / 2;
+
+    private static final double EARTH_RADIUS_KM = 6371.009;
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    // key: cell key, value: (key: Geo Coordinate topic ID)
+    private Map<Integer, Map<Long, GeoCoordinate>> cells = new HashMap();
+
+    // key: Geo Coordinate topic ID
+    private Map<Long, GeoCoordinate> geoCoords = new HashMap();
+
+    private ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // ----------------------------------------------------------------------------------------- Package Private Methods
+
+    /**
+     * Adds a geo coordinate to the index, or moves it if it is indexed already.
+     */
+    void put(long geoCoordId, GeoCoordinate geoCoord) {
+        lock.writeLock().lock();
+        try {
+            _remove(geoCoordId);
+            geoCoords.put(geoCoordId, geoCoord);
+            int cellKey = cellKey(column(geoCoord.lon), row(geoCoord.lat));
+            Map<Long, GeoCoordinate> cell = cells.get(cellKey);
+            if (cell == null) {
+                cell = new HashMap();
+                cells.put(cellKey, cell);
+            }
+            cell.put(geoCoordId, geoCoord);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(long geoCoordId) {
+        lock.writeLock().lock();
+        try {
+            _remove(geoCoordId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the IDs of the geo coordinates located within a bounding box (borders included).
+     * A box whose west border is east of its east border is regarded as crossing the antimeridian.
+     */
+    List<Long> query(double west, double south, double east, double north) {
+        List<Long> geoCoordIds = new ArrayList();
+        lock.readLock().lock();
+        try {
+            if (west <= east) {
+                query(west, south, east, north, geoCoordIds);
+            } else {
+                query(west, south, 180, north, geoCoordIds);
+                query(-180, south, east, north, geoCoordIds);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return geoCoordIds;
+    }
+
+    /**
+     * Iterates the indexed geo coordinates in order of their distance from a center, nearest first.
+     * The cells are examined lazily, so the iteration can be stopped early at low cost.
+     * <p>
+     * Note: geo coordinates indexed or removed while iterating might or might not be delivered.
+     */
+    Iterator<Neighbour> nearest(GeoCoordinate center) {
+        return new NearestIterator(center);
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return geoCoords.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ---
+
+    /**
+     * Calculates the distance between 2 geo coordinates in kilometer. The shorter way around the earth is taken,
+     * so 2 coordinates on either side of the antimeridian are near to each other.
+     */
+    static double distance(GeoCoordinate coord1, GeoCoordinate coord2) {
+        // calculate distance by the flat-surface formula for a "Spherical Earth projected to a plane"
+        // http://en.wikipedia.org/wiki/Geographical_distance#Flat-surface_formulae
+        double lonDiff = Math.toRadians(wrap(coord2.lon - coord1.lon));
+        double latDiff = Math.toRadians(coord2.lat - coord1.lat);
+        double latMean = Math.toRadians((coord1.lat + coord2.lat) / 2);
+        return EARTH_RADIUS_KM * Math.sqrt(Math.pow(latDiff, 2) + Math.pow(Math.cos(latMean) * lonDiff, 2));
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Methods
+
+    private void query(double west, double south, double east, double north, List<Long> geoCoordIds) {
+        int col1 = column(west), col2 = column(east);
+        int row1 = row(south),   row2 = row(north);
+        for (int row = row1; row <= row2; row++) {
+            for (int col = col1; col <= col2; col++) {
+                Map<Long, GeoCoordinate> cell = cells.get(cellKey(col, row));
+                if (cell != null) {
+                    for (Map.Entry<Long, GeoCoordinate> entry : cell.entrySet()) {
+                        GeoCoordinate geoCoord = entry.getValue();
+                        if (geoCoord.lon >= west && geoCoord.lon <= east &&
+                            geoCoord.lat >= south && geoCoord.lat <= north) {
+                            geoCoordIds.add(entry.getKey());
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void _remove(long geoCoordId) {
+        GeoCoordinate geoCoord = geoCoords.remove(geoCoordId);
+        if (geoCoord != null) {
+            int cellKey = cellKey(column(geoCoord.lon), row(geoCoord.lat));
+            Map<Long, GeoCoordinate> cell = cells.get(cellKey);
+            cell.remove(geoCoordId);
+            if (cell.isEmpty()) {
+                cells.remove(cellKey);
+            }
+        }
+    }
+
+    // ---
+
+    private int column(double lon) {
+        return clamp((int) Math.floor((lon + 180) / CELL_SIZE), COLUMNS);
+    }
+
+    private int row(double lat) {
+        return clamp((int) Math.floor((lat + 90) / CELL_SIZE), ROWS);
+    }
+
+    private int clamp(int index, int count) {
+        return Math.max(0, Math.min(count - 1, index));
+    }
+
+    /**
+     * Returns the column at the given offset from a column, wrapped around the antimeridian.
+     */
+    private int column(int column, int offset) {
+        return ((column + offset) % COLUMNS + COLUMNS) % COLUMNS;
+    }
+
+    /**
+     * Wraps a longitude difference into the range -180 to 180.
+     */
+    private static double wrap(double lonDiff) {
+        if (lonDiff > 180) {
+            return lonDiff - 360;
+        } else if (lonDiff < -180) {
+            return lonDiff + 360;
+        }
+        return lonDiff;
+    }
+
+    private int cellKey(int column, int row) {
+        return row * COLUMNS + column;
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Classes
+
+    private class NearestIterator implements Iterator<Neighbour> {
+
+        private GeoCoordinate center;
+        private int column, row;        // the center's cell
+        private int ring = -1;          // the outermost examined ring (0 is the center's cell)
+
+        private PriorityQueue<Neighbour> candidates = new PriorityQueue();
+        private Neighbour next;
+
+        private NearestIterator(GeoCoordinate center) {
+            this.center = center;
+            this.column = column(center.lon);
+            this.row = row(center.lat);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = advance();
+            }
+            return next != null;
+        }
+
+        @Override
+        public Neighbour next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Neighbour neighbour = next;
+            next = null;
+            return neighbour;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        // ---
+
+        private Neighbour advance() {
+            while (true) {
+                Neighbour candidate = candidates.peek();
+                if (candidate != null && candidate.distance <= minUnexaminedDistance() || examinedAll()) {
+                    return candidates.poll();
+                }
+                examineRing(++ring);
+            }
+        }
+
+        /**
+         * Examines the cells of a ring. The columns are addressed by their offset from the center's column, and
+         * wrap around the antimeridian. The offsets are limited so that no column is examined twice.
+         */
+        private void examineRing(int r) {
+            lock.readLock().lock();
+            try {
+                for (int _row = Math.max(0, row - r); _row <= Math.min(ROWS - 1, row + r); _row++) {
+                    if (Math.abs(_row - row) == r) {
+                        for (int offset = -Math.min(r, WEST_OFFSETS); offset <= Math.min(r, EAST_OFFSETS); offset++) {
+                            examineCell(column(column, offset), _row);
+                        }
+                    } else {
+                        if (r <= WEST_OFFSETS) {
+                            examineCell(column(column, -r), _row);
+                        }
+                        if (r <= EAST_OFFSETS) {
+                            examineCell(column(column, r), _row);
+                        }
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private void examineCell(int col, int _row) {
+            Map<Long, GeoCoordinate> cell = cells.get(cellKey(col, _row));
+            if (cell != null) {
+                for (Map.Entry<Long, GeoCoordinate> entry : cell.entrySet()) {
+                    GeoCoordinate geoCoord = entry.getValue();
+                    candidates.add(new Neighbour(entry.getKey(), geoCoord, distance(center, geoCoord)));
+                }
+            }
+        }
+
+        /**
+         * Returns a lower bound of the distance of the geo coordinates located in the cells not yet examined.
+         * <p>
+         * A coordinate outside the examined rows is at least the latitude gap away. A coordinate within the examined
+         * rows but outside the examined columns is at least the longitude gap away, scaled by the cosine of the
+         * greatest latitude possible for the mean latitude. As the columns wrap around, the unexamined columns are
+         * reached both westwards and eastwards. So the longitude gap is the smaller one of both directions.
+         */
+        private double minUnexaminedDistance() {
+            if (ring < 0) {
+                return 0;
+            }
+            double southEdge = (row - ring) * CELL_SIZE - 90;
+            double northEdge = (row + ring + 1) * CELL_SIZE - 90;
+            double westEdge  = (column - ring) * CELL_SIZE - 180;
+            double eastEdge  = (column + ring + 1) * CELL_SIZE - 180;
+            double latGap = Math.min(row - ring > 0 ? center.lat - southEdge : Double.POSITIVE_INFINITY,
+                                     row + ring < ROWS - 1 ? northEdge - center.lat : Double.POSITIVE_INFINITY);
+            double lonGap = ring < EAST_OFFSETS ? Math.min(center.lon - westEdge, eastEdge - center.lon) :
+                                                  Double.POSITIVE_INFINITY;
+            double maxLat = Math.min(90, Math.max(Math.abs(southEdge), Math.abs(northEdge)));
+            return EARTH_RADIUS_KM * Math.min(Math.toRadians(latGap),
+                Math.cos(Math.toRadians(maxLat)) * Math.toRadians(lonGap));
+        }
+
+        private boolean examinedAll() {
+            return row - ring <= 0 && row + ring >= ROWS - 1 && ring >= EAST_OFFSETS;
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------- Nested Classes
+
+    /**
+     * A geo coordinate found by a nearest neighbour search.
+     */
+    static class Neighbour implements Comparable<Neighbour> {
+
+        final long geoCoordId;
+        final GeoCoordinate geoCoord;
+        final double distance;      // in km
+
+        private Neighbour(long geoCoordId, GeoCoordinate geoCoord, double distance) {
+            this.geoCoordId = geoCoordId;
+            this.geoCoord = geoCoord;
+            this.distance = distance;
+        }
+
+        @Override
+        public int compareTo(Neighbour neighbour) {
+            return Double.compare(distance, neighbour.distance);
+        }
+    }
+}
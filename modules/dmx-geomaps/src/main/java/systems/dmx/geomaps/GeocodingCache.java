@@ -0,0 +1,188 @@
+package systems.dmx.geomaps;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+
+/**
+ * Caches geocoding results: normalized address -> geo coordinate.
+ * <p>
+ * Addresses the geocoder could not resolve are cached as well ("negative caching"), with a shorter time-to-live.
+ * Expired entries are dropped on access.
+ * <p>
+ * The cache is persisted as a properties file. It is loaded on construction and saved by {@link #save}.
+ * <p>
+ * Thread-safe.
+ */
+class GeocodingCache {
+
+    // ------------------------------------------------------------------------------------------------------- Constants
+
+    private static final String NOT_FOUND = "-";
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    private final File file;            // null if the cache is not persisted
+    private final long ttl;             // in milliseconds
+    private final long negativeTtl;     // in milliseconds
+
+    // key: normalized address
+    private final Map<String, Entry> entries = new ConcurrentHashMap();
+    private volatile boolean modified;
+
+    private Logger logger = Logger.getLogger(getClass().getName());
+
+    // ---------------------------------------------------------------------------------------------------- Constructors
+
+    /**
+     * @param   file    the file the cache is persisted in, or <code>null</code> for a non-persistent cache.
+     */
+    GeocodingCache(File file, long ttl, long negativeTtl) {
+        this.file = file;
+        this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
+        load();
+    }
+
+    // ----------------------------------------------------------------------------------------- Package Private Methods
+
+    /**
+     * @return  the cache entry, or <code>null</code> if the address is not cached (or the entry is expired).
+     */
+    Entry get(String address) {
+        Entry entry = entries.get(address);
+        if (entry != null && isExpired(entry, System.currentTimeMillis())) {
+            entries.remove(address);
+            modified = true;
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * @param   geoCoord    the geocoding result, or <code>null</code> if the geocoder could not resolve the address.
+     */
+    void put(String address, GeoCoordinate geoCoord) {
+        entries.put(address, new Entry(geoCoord, System.currentTimeMillis()));
+        modified = true;
+    }
+
+    /**
+     * Writes the cache to its file, if modified since the last save. Expired entries are not written.
+     */
+    synchronized void save() {
+        if (file == null || !modified) {
+            return;
+        }
+        OutputStream out = null;
+        try {
+            modified = false;
+            long now = System.currentTimeMillis();
+            Properties props = new Properties();
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                if (!isExpired(entry.getValue(), now)) {
+                    props.setProperty(entry.getKey(), entry.getValue().toString());
+                }
+            }
+            out = new FileOutputStream(file);
+            props.store(out, "DMX geocoding cache");
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Saving the geocoding cache to \"" + file + "\" failed", e);
+        } finally {
+            close(out);
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    // ---
+
+    /**
+     * Normalizes an address for use as cache key: lower case, and whitespace trimmed and collapsed.
+     */
+    static String normalize(String street, String postalCode, String city, String country) {
+        return normalize(street) + "|" + normalize(postalCode) + "|" + normalize(city) + "|" + normalize(country);
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Methods
+
+    private void load() {
+        if (file == null || !file.exists()) {
+            return;
+        }
+        InputStream in = null;
+        try {
+            long now = System.currentTimeMillis();
+            Properties props = new Properties();
+            in = new FileInputStream(file);
+            props.load(in);
+            for (String address : props.stringPropertyNames()) {
+                Entry entry = Entry.parse(props.getProperty(address));
+                if (!isExpired(entry, now)) {
+                    entries.put(address, entry);
+                }
+            }
+            logger.info("Geocoding cache loaded from \"" + file + "\": " + entries.size() + " entries");
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Loading the geocoding cache from \"" + file + "\" failed", e);
+        } finally {
+            close(in);
+        }
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return now - entry.time > (entry.geoCoord != null ? ttl : negativeTtl);
+    }
+
+    private void close(Closeable stream) {
+        try {
+            if (stream != null) {
+                stream.close();
+            }
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Closing the geocoding cache file failed", e);
+        }
+    }
+
+    private static String normalize(String str) {
+        return str.trim().replaceAll("\\s+", " ").toLowerCase();
+    }
+
+    // ------------------------------------------------------------------------------------------------- Nested Classes
+
+    static class Entry {
+
+        final GeoCoordinate geoCoord;       // null if the address could not be resolved
+        final long time;                    // the time of geocoding
+
+        private Entry(GeoCoordinate geoCoord, long time) {
+            this.geoCoord = geoCoord;
+            this.time = time;
+        }
+
+        // Format: "{time}:{lon},{lat}", or "{time}:-" if the address could not be resolved
+        private static Entry parse(String value) {
+            int i = value.indexOf(':');
+            String geoCoord = value.substring(i + 1);
+            return new Entry(geoCoord.equals(NOT_FOUND) ? null : new GeoCoordinate(geoCoord),
+                Long.parseLong(value.substring(0, i)));
+        }
+
+        @Override
+        public String toString() {
+            return time + ":" + (geoCoord != null ? geoCoord.lon + "," + geoCoord.lat : NOT_FOUND);
+        }
+    }
+}
@@ -19,4 +19,8 @@ public interface GeomapsConstants {
     static final String PROP_LONGITUDE       = "dmx.geomaps.longitude";
     static final String PROP_LATITUDE        = "dmx.geomaps.latitude";
     static final String PROP_ZOOM            = "dmx.geomaps.zoom";
+
+    // geo coordinate props (source of the spatial index)
+    static final String PROP_GEO_LONGITUDE   = "dmx.geomaps.geo_longitude";
+    static final String PROP_GEO_LATITUDE    = "dmx.geomaps.geo_latitude";
 }
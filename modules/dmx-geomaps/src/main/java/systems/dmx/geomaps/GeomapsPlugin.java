@@ -4,18 +4,25 @@ import systems.dmx.topicmaps.TopicmapsService;
 import systems.dmx.facets.FacetsService;
 
 import systems.dmx.core.ChildTopics;
+import systems.dmx.core.DMXObject;
+import systems.dmx.core.RelatedTopic;
 import systems.dmx.core.Topic;
 import systems.dmx.core.model.AssociationModel;
 import systems.dmx.core.model.ChildTopicsModel;
 import systems.dmx.core.model.TopicModel;
 import systems.dmx.core.model.topicmaps.ViewProps;
 import systems.dmx.core.osgi.PluginActivator;
+import systems.dmx.core.service.Async;
 import systems.dmx.core.service.Cookies;
 import systems.dmx.core.service.Inject;
 import systems.dmx.core.service.Transactional;
+import systems.dmx.core.service.accesscontrol.AccessControl;
+import systems.dmx.core.service.accesscontrol.Operation;
 import systems.dmx.core.service.event.PostCreateTopicListener;
+import systems.dmx.core.service.event.PostDeleteTopicListener;
 import systems.dmx.core.service.event.PostUpdateTopicListener;
 import systems.dmx.core.service.event.PreSendTopicListener;
+import systems.dmx.core.storage.spi.DMXTransaction;
 import systems.dmx.core.util.ContextTracker;
 import systems.dmx.core.util.DMXUtils;
 import systems.dmx.core.util.JavaUtils;
@@ -30,12 +37,29 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Response.Status;
 
+import javax.servlet.http.HttpServletRequest;
+
+import java.io.File;
 import java.net.URL;
+import static java.util.Arrays.asList;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -47,14 +71,29 @@ import java.util.logging.Logger;
 public class GeomapsPlugin extends PluginActivator implements GeomapsService, GeomapsConstants,
                                                                               PostCreateTopicListener,
                                                                               PostUpdateTopicListener,
+                                                                              PostDeleteTopicListener,
                                                                               PreSendTopicListener {
 
-    private static final String GEOCODER_URL = "https://nominatim.openstreetmap.org/search?" +
-        "street=%s&postalcode=%s&city=%s&country=%s&format=json&limit=1";
+    // ------------------------------------------------------------------------------------------------------- Constants
+
+    // The geocoder URL template. The 4 placeholders are substituted by street, postal code, city, and country.
+    private static final String GEOCODER_URL = System.getProperty("dmx.geomaps.geocoder_url",
+        "https://nominatim.openstreetmap.org/search?street=%s&postalcode=%s&city=%s&country=%s&format=json&limit=1");
+    private static final int GEOCODING_INTERVAL = Integer.getInteger("dmx.geomaps.geocoding_interval", 1000);  // ms
+    private static final int GEOCODING_CACHE_TTL = Integer.getInteger("dmx.geomaps.geocoding_cache.ttl", 90); // days
+    private static final int GEOCODING_CACHE_NEGATIVE_TTL =
+        Integer.getInteger("dmx.geomaps.geocoding_cache.negative_ttl", 7);                                  // days
+    // Note: the default values are required in case no config file is in effect. This applies when DM is started
+    // via feature:install from Karaf. The default values must match the values defined in project POM.
+
+    private static final String GEOCODING_CACHE_FILE = "geocoding-cache.properties";
+    private static final int GEOCODING_BATCH_SIZE = 50;         // max number of coordinates stored in one transaction
+    private static final int GEOCODING_FLUSH_INTERVAL = 5000;   // max time a coordinate waits for being stored (ms)
+    private static final long DAY = 24 * 60 * 60 * 1000L;
 
     private static final String COOKIE_NO_GEOCODING = "dmx_no_geocoding";
 
-    private static final double EARTH_RADIUS_KM = 6371.009;
+    private static final int SEARCH_BATCH_SIZE = 100;      // number of geo coordinates access checked at once
 
     // ---------------------------------------------------------------------------------------------- Instance Variables
 
@@ -64,8 +103,17 @@ public class GeomapsPlugin extends PluginActivator implements GeomapsService, Ge
     // used for geocoding suppression
     private ContextTracker contextTracker = new ContextTracker();
 
+    // spatial index of all geo coordinates
+    private GeoIndex geoIndex = new GeoIndex();
+
+    private GeocodingCache geocodingCache;
+    private GeocodingWorker geocodingWorker;
+
     private Messenger me = new Messenger("systems.dmx.webclient");
 
+    @Context
+    private HttpServletRequest request;
+
     private Logger logger = Logger.getLogger(getClass().getName());
 
     // -------------------------------------------------------------------------------------------------- Public Methods
@@ -97,6 +145,26 @@ public class GeomapsPlugin extends PluginActivator implements GeomapsService, Ge
         }
     }
 
+    @GET
+    @Path("/{id}/bbox/{south_west}/{north_east}")
+    @Override
+    public Geomap getGeomap(@PathParam("id") long geomapId, @PathParam("south_west") GeoCoordinate southWest,
+                                                            @PathParam("north_east") GeoCoordinate northEast) {
+        try {
+            logger.info("Fetching geomap " + geomapId + " (southWest: " + southWest + ", northEast: " + northEast +
+                ")");
+            Topic geomapTopic = dmx.getTopic(geomapId).loadChildTopics();
+            return new Geomap(
+                geomapTopic.getModel(),
+                fetchGeomapViewProps(geomapTopic),
+                fetchGeoCoordinates(southWest, northEast)
+            );
+        } catch (Exception e) {
+            throw new RuntimeException("Fetching geomap " + geomapId + " failed (southWest: " + southWest +
+                ", northEast: " + northEast + ")", e);
+        }
+    }
+
     // Note: the "include_childs" query parameter is handled by the core's JerseyResponseFilter
     @GET
     @Path("/coord/{geo_coord_id}")
@@ -169,12 +237,40 @@ public class GeomapsPlugin extends PluginActivator implements GeomapsService, Ge
     @Override
     public double getDistance(@QueryParam("coord1") GeoCoordinate coord1,
                               @QueryParam("coord2") GeoCoordinate coord2) {
-        // calculate distance by the flat-surface formula for a "Spherical Earth projected to a plane"
-        // http://en.wikipedia.org/wiki/Geographical_distance#Flat-surface_formulae
-        double lonDiff = Math.toRadians(coord2.lon - coord1.lon);
-        double latDiff = Math.toRadians(coord2.lat - coord1.lat);
-        double latMean = Math.toRadians((coord1.lat + coord2.lat) / 2);
-        return EARTH_RADIUS_KM * Math.sqrt(Math.pow(latDiff, 2) + Math.pow(Math.cos(latMean) * lonDiff, 2));
+        checkArgument(coord1 != null && coord2 != null, "\"coord1\" and \"coord2\" are required");
+        return GeoIndex.distance(coord1, coord2);
+    }
+
+    @GET
+    @Path("/nearest")
+    @Override
+    public List<NearbyTopic> getNearestTopics(@QueryParam("coord") GeoCoordinate center,
+                                              @QueryParam("k") @DefaultValue("10") int k,
+                                              @QueryParam("type") String topicTypeUri) {
+        checkArgument(center != null, "\"coord\" is required");
+        checkArgument(k >= 1, "\"k\" must be at least 1 (got " + k + ")");
+        try {
+            return findNearbyTopics(center, k, Double.POSITIVE_INFINITY, topicTypeUri);
+        } catch (Exception e) {
+            throw new RuntimeException("Finding the " + k + " nearest topics of type \"" + topicTypeUri +
+                "\" failed (" + center + ")", e);
+        }
+    }
+
+    @GET
+    @Path("/within")
+    @Override
+    public List<NearbyTopic> getTopicsWithinRadius(@QueryParam("coord") GeoCoordinate center,
+                                                   @QueryParam("radius") double radius,
+                                                   @QueryParam("type") String topicTypeUri) {
+        checkArgument(center != null, "\"coord\" is required");
+        checkArgument(radius >= 0, "\"radius\" must not be negative (got " + radius + ")");   // false for NaN
+        try {
+            return findNearbyTopics(center, Integer.MAX_VALUE, radius, topicTypeUri);
+        } catch (Exception e) {
+            throw new RuntimeException("Finding the topics of type \"" + topicTypeUri + "\" within " + radius +
+                "km failed (" + center + ")", e);
+        }
     }
 
     // ---
@@ -195,6 +291,28 @@ public class GeomapsPlugin extends PluginActivator implements GeomapsService, Ge
     @Override
     public void init() {
         topicmapsService.registerTopicmapType(new GeomapType());
+        buildGeoIndex();
+        //
+        File cacheFile = getBundleContext().getDataFile(GEOCODING_CACHE_FILE);
+        if (cacheFile == null) {
+            logger.warning("The geocoding cache is not persisted -- the OSGi framework provides no file system " +
+                "support");
+        }
+        geocodingCache = new GeocodingCache(cacheFile, GEOCODING_CACHE_TTL * DAY, GEOCODING_CACHE_NEGATIVE_TTL * DAY);
+        geocodingWorker = new GeocodingWorker();
+        logger.info("Geocoding: url=\"" + GEOCODER_URL + "\", interval=" + GEOCODING_INTERVAL + "ms, cacheTtl=" +
+            GEOCODING_CACHE_TTL + "d, negativeCacheTtl=" + GEOCODING_CACHE_NEGATIVE_TTL + "d");
+    }
+
+    @Override
+    public void shutdown() {
+        if (geocodingWorker != null) {
+            geocodingWorker.stop();
+            logger.info("### Geocoding stats: " + geocodingWorker.stats() + ", cached=" + geocodingCache.size());
+        }
+        if (geocodingCache != null) {
+            geocodingCache.save();
+        }
     }
 
 
@@ -222,7 +340,13 @@ public class GeomapsPlugin extends PluginActivator implements GeomapsService, Ge
             }
         } else if (topic.getTypeUri().equals(GEO_COORDINATE)) {
             // logger.info("### New geo coordinate: " + topic.loadChildTopics());
-            me.newGeoCoord(topic.loadChildTopics());
+            ChildTopics childTopics = topic.loadChildTopics().getChildTopics();
+            Double lon = childTopics.getDoubleOrNull(LONGITUDE);
+            Double lat = childTopics.getDoubleOrNull(LATITUDE);
+            if (lon != null && lat != null) {
+                indexGeoCoordinate(topic, new GeoCoordinate(lon, lat));
+            }
+            me.newGeoCoord(topic);
         }
     }
 
@@ -244,6 +368,17 @@ public class GeomapsPlugin extends PluginActivator implements GeomapsService, Ge
         }
     }
 
+    /**
+     * Removes a deleted Geo Coordinate topic from the spatial index. Invoked once the deletion is committed.
+     */
+    @Async
+    @Override
+    public void postDeleteTopic(TopicModel topic) {
+        if (topic.getTypeUri().equals(GEO_COORDINATE)) {
+            geoIndex.remove(topic.getId());
+        }
+    }
+
     // ---
 
     /**
@@ -266,6 +401,25 @@ public class GeomapsPlugin extends PluginActivator implements GeomapsService, Ge
 
 
 
+    // ----------------------------------------------------------------------------------------- Package Private Methods
+
+    /**
+     * Assigns the given objects to a workspace, except those which are assigned to a workspace already (e.g. a
+     * Longitude topic reused as it is a value). If the workspace is -1 nothing is performed.
+     */
+    static void assignToWorkspace(List<? extends DMXObject> objects, long workspaceId, AccessControl ac) {
+        if (workspaceId == -1) {
+            return;
+        }
+        for (DMXObject object : objects) {
+            if (ac.getAssignedWorkspaceId(object.getId()) == -1) {
+                ac.assignToWorkspace(object, workspaceId);
+            }
+        }
+    }
+
+
+
     // ------------------------------------------------------------------------------------------------- Private Methods
 
     private ViewProps fetchGeomapViewProps(Topic geomapTopic) {
@@ -291,6 +445,181 @@ public class GeomapsPlugin extends PluginActivator implements GeomapsService, Ge
         //     ROLE_TYPE_GEOMAP, ROLE_TYPE_CONTENT, GEO_COORDINATE));
     }
 
+    /**
+     * Fetches the readable Geo Coordinate topics located within a bounding box. The spatial index is queried, so
+     * only the topics within the box are loaded.
+     */
+    private Map<Long, TopicModel> fetchGeoCoordinates(GeoCoordinate southWest, GeoCoordinate northEast) {
+        List<Long> geoCoordIds = geoIndex.query(southWest.lon, southWest.lat, northEast.lon, northEast.lat);
+        retainIndexed(geoCoordIds);
+        AccessControl ac = dmx.getAccessControl();
+        ac.retainPermitted(ac.getUsername(request), Operation.READ, geoCoordIds);
+        Map<Long, TopicModel> geoCoords = new HashMap();
+        for (long geoCoordId : geoCoordIds) {
+            geoCoords.put(geoCoordId, dmx.getTopic(geoCoordId).loadChildTopics().getModel());
+        }
+        return geoCoords;
+    }
+
+    // === Proximity Search ===
+
+    /**
+     * Responds 400 Bad Request if a request parameter is invalid.
+     */
+    private void checkArgument(boolean valid, String message) {
+        if (!valid) {
+            throw new WebApplicationException(new IllegalArgumentException(message), Status.BAD_REQUEST);
+        }
+    }
+
+    /**
+     * Finds the (readable) domain topics nearest to a center, in order of distance. The spatial index delivers the
+     * geo coordinates nearest first. They are access checked in batches, and their domain topics are collected
+     * until enough are found or the radius is exceeded. A domain topic with several geo coordinates (e.g. a
+     * Person with several addresses) is returned once, with its nearest coordinate.
+     *
+     * @param   k               the max number of topics to return.
+     * @param   radius          the max distance in km.
+     * @param   topicTypeUri    the type of the domain topics to return, e.g. "dmx.contacts.person". If
+     *                          <code>null</code> the top-level topics are returned, as by {@link #getDomainTopics}.
+     */
+    private List<NearbyTopic> findNearbyTopics(GeoCoordinate center, int k, double radius, String topicTypeUri) {
+        List<NearbyTopic> nearbyTopics = new ArrayList();
+        Set<Long> topicIds = new HashSet();
+        AccessControl ac = dmx.getAccessControl();
+        String username = ac.getUsername(request);
+        Iterator<GeoIndex.Neighbour> i = geoIndex.nearest(center);
+        List<GeoIndex.Neighbour> batch = new ArrayList();
+        List<Long> geoCoordIds = new ArrayList();
+        boolean done = false;
+        while (!done && nearbyTopics.size() < k) {
+            batch.clear();
+            geoCoordIds.clear();
+            while (batch.size() < SEARCH_BATCH_SIZE && i.hasNext()) {
+                GeoIndex.Neighbour neighbour = i.next();
+                if (neighbour.distance > radius) {
+                    done = true;
+                    break;
+                }
+                batch.add(neighbour);
+                geoCoordIds.add(neighbour.geoCoordId);
+            }
+            if (batch.isEmpty()) {
+                break;
+            }
+            retainIndexed(geoCoordIds);
+            ac.retainPermitted(username, Operation.READ, geoCoordIds);
+            Set<Long> readableIds = new HashSet(geoCoordIds);
+            for (GeoIndex.Neighbour neighbour : batch) {
+                if (nearbyTopics.size() == k) {
+                    break;
+                }
+                if (!readableIds.contains(neighbour.geoCoordId)) {
+                    continue;
+                }
+                List<Topic> domainTopics = new ArrayList();
+                findDomainTopics(dmx.getTopic(neighbour.geoCoordId), topicTypeUri, domainTopics);
+                for (Topic topic : domainTopics) {
+                    if (nearbyTopics.size() < k && topicIds.add(topic.getId())) {
+                        nearbyTopics.add(new NearbyTopic(topic, neighbour.geoCoordId, neighbour.geoCoord,
+                            neighbour.distance));
+                    }
+                }
+            }
+        }
+        return nearbyTopics;
+    }
+
+    /**
+     * Walks up the parent topics of a topic and collects the topics of the given type. If no type is given the
+     * top-level topics are collected. The parent topics are access filtered by the core.
+     */
+    private void findDomainTopics(Topic topic, String topicTypeUri, List<Topic> domainTopics) {
+        if (topicTypeUri != null && topic.getTypeUri().equals(topicTypeUri)) {
+            domainTopics.add(topic);
+            return;
+        }
+        List<RelatedTopic> parentTopics = topic.getRelatedTopics((String) null, "dmx.core.child", "dmx.core.parent",
+            null);
+        if (parentTopics.isEmpty()) {
+            if (topicTypeUri == null) {
+                domainTopics.add(topic);
+            }
+        } else {
+            for (Topic parentTopic : parentTopics) {
+                findDomainTopics(parentTopic, topicTypeUri, domainTopics);
+            }
+        }
+    }
+
+    // === Spatial Index ===
+
+    /**
+     * Builds the spatial index from the Geo Coordinate topics. The coordinates are read from the topics'
+     * properties. Topics lacking these properties (created before the index was introduced) get them stored.
+     */
+    private void buildGeoIndex() {
+        long time = System.currentTimeMillis();
+        int stored = 0;
+        DMXTransaction tx = dmx.beginTx();
+        try {
+            for (Topic geoCoordTopic : dmx.iterateTopicsByType(GEO_COORDINATE, false)) {
+                if (geoCoordTopic.hasProperty(PROP_GEO_LONGITUDE) && geoCoordTopic.hasProperty(PROP_GEO_LATITUDE)) {
+                    geoIndex.put(geoCoordTopic.getId(), new GeoCoordinate(
+                        (Double) geoCoordTopic.getProperty(PROP_GEO_LONGITUDE),
+                        (Double) geoCoordTopic.getProperty(PROP_GEO_LATITUDE)
+                    ));
+                } else {
+                    indexGeoCoordinate(geoCoordTopic, geoCoordinate(geoCoordTopic.loadChildTopics()));
+                    stored++;
+                }
+            }
+            tx.success();
+            logger.info("Spatial index built: " + geoIndex.size() + " geo coordinates (" + stored + " stored), " +
+                (System.currentTimeMillis() - time) + "ms");
+        } catch (Exception e) {
+            throw new RuntimeException("Building the spatial index failed", e);
+        } finally {
+            tx.finish();
+        }
+    }
+
+    /**
+     * Stores the coordinate as properties of the Geo Coordinate topic (from which the index is rebuilt at startup)
+     * and adds it to the spatial index.
+     */
+    private void indexGeoCoordinate(Topic geoCoordTopic, GeoCoordinate geoCoord) {
+        geoCoordTopic.setProperty(PROP_GEO_LONGITUDE, geoCoord.lon, true);     // addToIndex=true
+        geoCoordTopic.setProperty(PROP_GEO_LATITUDE,  geoCoord.lat, true);     // addToIndex=true
+        geoIndex.put(geoCoordTopic.getId(), geoCoord);
+    }
+
+    /**
+     * Removes the IDs of stale index entries from the given list, and from the spatial index.
+     * <p>
+     * A Geo Coordinate topic is indexed within the transaction which creates it. If that transaction is rolled back
+     * the index entry remains while the topic does not exist (or its ID is reused by another object later on).
+     * Likewise a deleted topic remains indexed until the deletion is processed after commit. An entry is regarded
+     * valid if its object exists and carries the stored coordinate.
+     */
+    private void retainIndexed(List<Long> geoCoordIds) {
+        Iterator<Long> i = geoCoordIds.iterator();
+        while (i.hasNext()) {
+            long geoCoordId = i.next();
+            boolean valid;
+            try {
+                valid = dmx.hasProperty(geoCoordId, PROP_GEO_LONGITUDE);
+            } catch (Exception e) {
+                valid = false;      // the object does not exist
+            }
+            if (!valid) {
+                logger.info("Removing stale geo coordinate " + geoCoordId + " from the spatial index");
+                geoIndex.remove(geoCoordId);
+                i.remove();
+            }
+        }
+    }
+
     // ---
 
     /**
@@ -305,15 +634,35 @@ public class GeomapsPlugin extends PluginActivator implements GeomapsService, Ge
     // ---
 
     /**
-     * Geocodes the given address and stores the resulting coordinate as a facet value of the given Address topic.
-     * If geocoding (or storing the coordinate) fails a warning is logged; no exception is thrown.
+     * Stores the geo coordinate of the given address as a facet value of the given Address topic.
+     * <p>
+     * A cached geocoding result is stored right away. Otherwise the address is queued for geocoding in the
+     * background, so the current transaction is not held up by the geocoder. The address is queued once the current
+     * transaction is committed, so the background worker finds the Address topic (regardless how long the transaction
+     * takes, e.g. an import). An address known to be unresolvable is not geocoded again (until its cache entry
+     * expires).
+     * <p>
+     * If looking up the cache (or storing the coordinate) fails a warning is logged; no exception is thrown.
      *
      * @param   topic   the Address topic to be facetted.
      */
-    private void geocodeAndStoreFacet(Address address, Topic topic) {
+    private void geocodeAndStoreFacet(final Address address, Topic topic) {
         try {
-            GeoCoordinate geoCoord = address.geocode();
-            storeGeoCoordinate(topic, geoCoord);
+            GeocodingCache.Entry entry = geocodingCache.get(address.cacheKey());
+            if (entry == null) {
+                final long addressTopicId = topic.getId();
+                dmx.runAfterCommit(new Runnable() {
+                    @Override
+                    public void run() {
+                        geocodingWorker.queue(address, addressTopicId);
+                    }
+                });
+            } else if (entry.geoCoord != null) {
+                logger.info("=> " + entry.geoCoord + " (cached)");
+                storeGeoCoordinate(topic, entry.geoCoord);
+            } else {
+                logger.info("Geocoding " + address + " SKIPPED -- not resolvable (cached)");
+            }
         } catch (Exception e) {
             // ### TODO: show to the user?
             logger.log(Level.WARNING, "Adding geo coordinate to " + address + " failed", e);
@@ -332,11 +681,36 @@ public class GeomapsPlugin extends PluginActivator implements GeomapsService, Ge
                     .put(LATITUDE,  geoCoord.lat)
                 )
             );
+            // Note: a new Geo Coordinate topic is indexed by postCreateTopic() already. An existing one is
+            // reused if the coordinate is known already.
+            indexGeoCoordinate(facetsService.getFacet(address, GEO_COORDINATE_FACET), geoCoord);
         } catch (Exception e) {
             throw new RuntimeException("Storing geo coordinate of address " + address.getId() + " failed", e);
         }
     }
 
+    /**
+     * Assigns the geo coordinate of an address topic to the address's workspace: the Geo Coordinate topic, its
+     * Longitude and Latitude topics, and the associations which relate them.
+     * <p>
+     * Used for a geo coordinate stored in the background. There is no request, so the standard workspace assignment
+     * (by cookie) does not apply.
+     */
+    private void assignGeoCoordinateToWorkspace(Topic address) {
+        AccessControl ac = dmx.getAccessControl();
+        RelatedTopic geoCoordTopic = facetsService.getFacet(address, GEO_COORDINATE_FACET);
+        List<DMXObject> objects = new ArrayList();
+        objects.add(geoCoordTopic);
+        objects.add(geoCoordTopic.getRelatingAssociation());
+        ChildTopics childTopics = geoCoordTopic.loadChildTopics().getChildTopics();
+        for (String childTypeUri : asList(LONGITUDE, LATITUDE)) {
+            RelatedTopic childTopic = childTopics.getTopic(childTypeUri);
+            objects.add(childTopic);
+            objects.add(childTopic.getRelatingAssociation());
+        }
+        assignToWorkspace(objects, ac.getAssignedWorkspaceId(address.getId()), ac);
+    }
+
     // ---
 
     private boolean abortGeocoding(Topic address) {
@@ -404,6 +778,9 @@ public class GeomapsPlugin extends PluginActivator implements GeomapsService, Ge
 
         // ---
 
+        /**
+         * @return  the geo coordinate, or <code>null</code> if the geocoder could not resolve this address.
+         */
         GeoCoordinate geocode() {
             URL url = null;
             try {
@@ -418,7 +795,8 @@ public class GeomapsPlugin extends PluginActivator implements GeomapsService, Ge
                 // parse response
                 JSONArray results = new JSONArray(JavaUtils.readTextURL(url));
                 if (results.length() == 0) {
-                    throw new RuntimeException("Address not found");
+                    logger.info("=> address not found");
+                    return null;
                 }
                 JSONObject result = results.getJSONObject(0);
                 // create result
@@ -433,6 +811,10 @@ public class GeomapsPlugin extends PluginActivator implements GeomapsService, Ge
             }
         }
 
+        String cacheKey() {
+            return GeocodingCache.normalize(street, postalCode, city, country);
+        }
+
         boolean isEmpty() {
             return street.equals("") && postalCode.equals("") && city.equals("") && country.equals("");
         }
@@ -478,6 +860,183 @@ public class GeomapsPlugin extends PluginActivator implements GeomapsService, Ge
         }
     }
 
+    /**
+     * Geocodes the queued addresses in the background, one at a time, and stores the resulting coordinates.
+     * <p>
+     * The geocoder requests are rate limited: at most one per {@link #GEOCODING_INTERVAL}. Addresses resolved
+     * meanwhile (e.g. repeated addresses of an import) are taken from the cache without a request. The coordinates
+     * are stored in batches, each in one transaction. If storing a batch fails its coordinates are stored one by one,
+     * each in its own transaction, so one failing coordinate (e.g. of an address deleted meanwhile) does not discard
+     * the others.
+     */
+    private class GeocodingWorker implements Runnable {
+
+        private BlockingQueue<GeocodingJob> queue = new LinkedBlockingQueue();
+        private List<GeocodingJob> resolved = new ArrayList();     // accessed by worker thread only
+        private long firstResolvedTime;
+        private long lastRequestTime;
+        private Thread thread;
+
+        // statistics
+        private AtomicLong requests = new AtomicLong();
+        private AtomicLong cacheHits = new AtomicLong();
+        private AtomicLong notFound = new AtomicLong();
+        private AtomicLong failed = new AtomicLong();
+        private AtomicLong stored = new AtomicLong();
+
+        private GeocodingWorker() {
+            thread = new Thread(this, "dmx-geocoding");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        // ---
+
+        private void queue(Address address, long addressTopicId) {
+            queue.add(new GeocodingJob(address, addressTopicId));
+        }
+
+        private void stop() {
+            thread.interrupt();
+            try {
+                thread.join(GEOCODING_FLUSH_INTERVAL);
+            } catch (InterruptedException e) {
+            }
+            if (!queue.isEmpty()) {
+                logger.warning(queue.size() + " addresses are not geocoded (shutdown)");
+            }
+        }
+
+        private String stats() {
+            return "requests=" + requests.get() + ", cacheHits=" + cacheHits.get() + ", notFound=" + notFound.get() +
+                ", failed=" + failed.get() + ", stored=" + stored.get() + ", queued=" + queue.size();
+        }
+
+        // ---
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    GeocodingJob job = queue.poll(resolved.isEmpty() ? Long.MAX_VALUE : GEOCODING_FLUSH_INTERVAL,
+                        TimeUnit.MILLISECONDS);
+                    if (job != null) {
+                        resolve(job);
+                    }
+                    if (!resolved.isEmpty() && (resolved.size() >= GEOCODING_BATCH_SIZE || queue.isEmpty() ||
+                            System.currentTimeMillis() - firstResolvedTime >= GEOCODING_FLUSH_INTERVAL)) {
+                        storeResolved();
+                    }
+                }
+            } catch (InterruptedException e) {
+                // the plugin is stopped
+            } finally {
+                if (!resolved.isEmpty()) {
+                    storeResolved();
+                }
+                geocodingCache.save();
+            }
+        }
+
+        private void resolve(GeocodingJob job) throws InterruptedException {
+            try {
+                String cacheKey = job.address.cacheKey();
+                GeocodingCache.Entry entry = geocodingCache.get(cacheKey);
+                if (entry != null) {
+                    cacheHits.incrementAndGet();
+                    job.geoCoord = entry.geoCoord;
+                } else {
+                    long wait = lastRequestTime + GEOCODING_INTERVAL - System.currentTimeMillis();
+                    if (wait > 0) {
+                        Thread.sleep(wait);
+                    }
+                    lastRequestTime = System.currentTimeMillis();
+                    requests.incrementAndGet();
+                    job.geoCoord = job.address.geocode();
+                    geocodingCache.put(cacheKey, job.geoCoord);
+                }
+                if (job.geoCoord != null) {
+                    if (resolved.isEmpty()) {
+                        firstResolvedTime = System.currentTimeMillis();
+                    }
+                    resolved.add(job);
+                } else {
+                    notFound.incrementAndGet();
+                }
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                // Note: a failed request (as opposed to an unresolvable address) is not cached
+                failed.incrementAndGet();
+                logger.log(Level.WARNING, "Geocoding " + job.address + " failed", e);
+            }
+        }
+
+        private void storeResolved() {
+            try {
+                if (!store(resolved) && resolved.size() > 1) {
+                    logger.warning("Storing a batch of " + resolved.size() + " geo coordinates failed -- storing " +
+                        "them one by one");
+                    for (GeocodingJob job : resolved) {
+                        store(Collections.singletonList(job));
+                    }
+                }
+            } finally {
+                resolved.clear();
+                geocodingCache.save();
+            }
+        }
+
+        /**
+         * Stores the coordinates of the given jobs in one transaction.
+         * <p>
+         * If storing fails the transaction is rolled back. For a single job the failure is logged and counted.
+         *
+         * @return  <code>true</code> if the coordinates are stored, <code>false</code> if storing failed.
+         */
+        private boolean store(List<GeocodingJob> jobs) {
+            DMXTransaction tx = dmx.beginTx();
+            try {
+                for (GeocodingJob job : jobs) {
+                    final Topic address = dmx.getTopic(job.addressTopicId);
+                    final GeoCoordinate geoCoord = job.geoCoord;
+                    dmx.getAccessControl().runWithoutWorkspaceAssignment(new Callable<Void>() {  // throws Exception
+                        @Override
+                        public Void call() {
+                            storeGeoCoordinate(address, geoCoord);
+                            return null;
+                        }
+                    });
+                    assignGeoCoordinateToWorkspace(address);
+                }
+                tx.success();
+            } catch (Exception e) {
+                if (jobs.size() == 1) {
+                    failed.incrementAndGet();
+                    logger.log(Level.WARNING, "Storing geo coordinate of address " + jobs.get(0).addressTopicId +
+                        " failed", e);
+                }
+                return false;
+            } finally {
+                tx.finish();
+            }
+            stored.addAndGet(jobs.size());
+            return true;
+        }
+    }
+
+    private class GeocodingJob {
+
+        private Address address;
+        private long addressTopicId;
+        private GeoCoordinate geoCoord;
+
+        private GeocodingJob(Address address, long addressTopicId) {
+            this.address = address;
+            this.addressTopicId = addressTopicId;
+        }
+    }
+
     private class Messenger {
 
         private String pluginUri;
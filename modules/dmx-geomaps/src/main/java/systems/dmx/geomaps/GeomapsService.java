@@ -9,8 +9,24 @@ import java.util.concurrent.Callable;
 
 public interface GeomapsService {
 
+    /**
+     * Returns a geomap with all its (readable) Geo Coordinate topics.
+     * <p>
+     * Note: the cost is O(n) in the number of geo coordinates. For a large geomap prefer fetching the coordinates
+     * of the map's viewport, see {@link #getGeomap(long, GeoCoordinate, GeoCoordinate)}.
+     */
     Geomap getGeomap(long geomapId);
 
+    /**
+     * Returns a geomap with only those (readable) Geo Coordinate topics located within a bounding box, e.g. the
+     * map's viewport. If the west border is east of the east border the box is regarded as crossing the
+     * antimeridian.
+     *
+     * @param   southWest   the south-west corner of the bounding box.
+     * @param   northEast   the north-east corner of the bounding box.
+     */
+    Geomap getGeomap(long geomapId, GeoCoordinate southWest, GeoCoordinate northEast);
+
     /**
      * Finds the domain topics (e.g. Persons, Organizations, Events) that correspond to a Geo Coordinate topic.
      */
@@ -38,9 +54,34 @@ public interface GeomapsService {
 
     /**
      * Calculates the distance between 2 geo coordinates in kilometer.
+     * <p>
+     * At the REST API a missing coordinate is responded with 400 Bad Request.
      */
     double getDistance(GeoCoordinate coord1, GeoCoordinate coord2);
 
+    /**
+     * Finds the k topics nearest to a geo coordinate, nearest first. Only readable topics are regarded.
+     * The topics are found via their geo-facetted child topics (e.g. the Address of a Person).
+     * <p>
+     * At the REST API a missing center or a <code>k</code> less than 1 is responded with 400 Bad Request.
+     *
+     * @param   topicTypeUri    the type of the topics to find, e.g. "dmx.contacts.person". If <code>null</code>
+     *                          the domain topics (see {@link #getDomainTopics}) are returned, regardless of type.
+     */
+    List<NearbyTopic> getNearestTopics(GeoCoordinate center, int k, String topicTypeUri);
+
+    /**
+     * Finds the topics located within a radius around a geo coordinate, nearest first. Only readable topics are
+     * regarded.
+     * <p>
+     * At the REST API a missing center or a negative radius is responded with 400 Bad Request.
+     *
+     * @param   radius          the radius in km.
+     * @param   topicTypeUri    the type of the topics to find. If <code>null</code> the domain topics are returned,
+     *                          regardless of type.
+     */
+    List<NearbyTopic> getTopicsWithinRadius(GeoCoordinate center, double radius, String topicTypeUri);
+
     // ---
 
     /**
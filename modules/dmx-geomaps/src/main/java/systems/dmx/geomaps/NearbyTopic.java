@@ -0,0 +1,73 @@
+package systems.dmx.geomaps;
+
+import systems.dmx.core.JSONEnabled;
+import systems.dmx.core.Topic;
+
+import org.codehaus.jettison.json.JSONObject;
+
+
+
+/**
+ * A result of a proximity search: a geo-facetted topic (resp. the domain topic it belongs to, e.g. a Person),
+ * together with its geo coordinate and its distance from the search center.
+ */
+public class NearbyTopic implements JSONEnabled {
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    private final Topic topic;
+    private final long geoCoordId;
+    private final GeoCoordinate geoCoord;
+    private final double distance;      // in km
+
+    // ---------------------------------------------------------------------------------------------------- Constructors
+
+    NearbyTopic(Topic topic, long geoCoordId, GeoCoordinate geoCoord, double distance) {
+        this.topic = topic;
+        this.geoCoordId = geoCoordId;
+        this.geoCoord = geoCoord;
+        this.distance = distance;
+    }
+
+    // -------------------------------------------------------------------------------------------------- Public Methods
+
+    public Topic getTopic() {
+        return topic;
+    }
+
+    public long getGeoCoordinateId() {
+        return geoCoordId;
+    }
+
+    public GeoCoordinate getGeoCoordinate() {
+        return geoCoord;
+    }
+
+    /**
+     * @return  the distance from the search center in km.
+     */
+    public double getDistance() {
+        return distance;
+    }
+
+    // ---
+
+    @Override
+    public JSONObject toJSON() {
+        try {
+            return new JSONObject()
+                .put("topic", topic.toJSON())
+                .put("geoCoordId", geoCoordId)
+                .put("lon", geoCoord.lon)
+                .put("lat", geoCoord.lat)
+                .put("distance", distance);
+        } catch (Exception e) {
+            throw new RuntimeException("Serialization failed", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "nearby topic " + topic.getId() + " (distance=" + distance + "km)";
+    }
+}
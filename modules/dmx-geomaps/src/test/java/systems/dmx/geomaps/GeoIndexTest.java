@@ -0,0 +1,125 @@
+package systems.dmx.geomaps;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import static java.util.Arrays.asList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+
+
+public class GeoIndexTest {
+
+    @Test
+    public void distance() {
+        // 1 degree of latitude is about 111 km
+        assertEquals(111.2, GeoIndex.distance(new GeoCoordinate(13.4, 52.5), new GeoCoordinate(13.4, 53.5)), 0.1);
+        assertEquals(0, GeoIndex.distance(new GeoCoordinate(13.4, 52.5), new GeoCoordinate(13.4, 52.5)), 0);
+    }
+
+    @Test
+    public void distanceAcrossAntimeridian() {
+        // 2 degrees of longitude at the equator, not 358
+        GeoCoordinate west = new GeoCoordinate(179, 0);
+        GeoCoordinate east = new GeoCoordinate(-179, 0);
+        assertEquals(222.4, GeoIndex.distance(west, east), 0.1);
+        assertEquals(GeoIndex.distance(west, east), GeoIndex.distance(east, west), 0);
+        assertEquals(GeoIndex.distance(new GeoCoordinate(0, 0), new GeoCoordinate(2, 0)),
+                     GeoIndex.distance(west, east), 1e-9);
+    }
+
+    @Test
+    public void nearestAcrossAntimeridian() {
+        GeoIndex geoIndex = new GeoIndex();
+        geoIndex.put(1, new GeoCoordinate(-179.5, 0));      // Pacific, east of the antimeridian
+        geoIndex.put(2, new GeoCoordinate(170, 0));
+        geoIndex.put(3, new GeoCoordinate(0, 0));
+        Iterator<GeoIndex.Neighbour> i = geoIndex.nearest(new GeoCoordinate(179.5, 0));
+        assertEquals(1, i.next().geoCoordId);
+        assertEquals(2, i.next().geoCoordId);
+        assertEquals(3, i.next().geoCoordId);
+        assertFalse(i.hasNext());
+    }
+
+    @Test
+    public void nearestMatchesBruteForce() {
+        Random random = new Random(4711);
+        GeoIndex geoIndex = new GeoIndex();
+        List<GeoCoordinate> geoCoords = new ArrayList();
+        for (int id = 0; id < 2000; id++) {
+            GeoCoordinate geoCoord = new GeoCoordinate(random.nextDouble() * 360 - 180, random.nextDouble() * 180 - 90);
+            geoCoords.add(geoCoord);
+            geoIndex.put(id, geoCoord);
+        }
+        List<GeoCoordinate> centers = new ArrayList(asList(
+            new GeoCoordinate(179.9, 0), new GeoCoordinate(-179.9, 45), new GeoCoordinate(0, 89.9),
+            new GeoCoordinate(180, -90), new GeoCoordinate(13.4, 52.5)
+        ));
+        for (int n = 0; n < 20; n++) {
+            centers.add(new GeoCoordinate(random.nextDouble() * 360 - 180, random.nextDouble() * 180 - 90));
+        }
+        for (GeoCoordinate center : centers) {
+            List<Double> expected = new ArrayList();
+            for (GeoCoordinate geoCoord : geoCoords) {
+                expected.add(GeoIndex.distance(center, geoCoord));
+            }
+            Collections.sort(expected);
+            //
+            Set<Long> ids = new HashSet();
+            Iterator<GeoIndex.Neighbour> i = geoIndex.nearest(center);
+            for (double distance : expected) {
+                assertTrue("too few neighbours of " + center, i.hasNext());
+                GeoIndex.Neighbour neighbour = i.next();
+                assertEquals("neighbour of " + center, distance, neighbour.distance, 1e-9);
+                assertTrue("neighbour " + neighbour.geoCoordId + " delivered twice", ids.add(neighbour.geoCoordId));
+            }
+            assertFalse("too many neighbours of " + center, i.hasNext());
+        }
+    }
+
+    @Test
+    public void query() {
+        GeoIndex geoIndex = new GeoIndex();
+        geoIndex.put(1, new GeoCoordinate(13.4, 52.5));
+        geoIndex.put(2, new GeoCoordinate(10, 53.55));
+        geoIndex.put(3, new GeoCoordinate(-0.1, 51.5));
+        geoIndex.put(4, new GeoCoordinate(14, 51));         // on the south-east corner
+        assertEquals(set(1L, 2L, 4L), set(geoIndex.query(5, 51, 14, 55)));
+        assertEquals(set(), set(geoIndex.query(20, 51, 30, 55)));
+        // moving and removing
+        geoIndex.put(1, new GeoCoordinate(2.35, 48.85));
+        geoIndex.remove(2);
+        assertEquals(set(4L), set(geoIndex.query(5, 51, 14, 55)));
+        assertEquals(3, geoIndex.size());
+    }
+
+    @Test
+    public void queryAcrossAntimeridian() {
+        GeoIndex geoIndex = new GeoIndex();
+        geoIndex.put(1, new GeoCoordinate(179.5, -17));
+        geoIndex.put(2, new GeoCoordinate(-179.5, -17));
+        geoIndex.put(3, new GeoCoordinate(0, -17));
+        assertEquals(set(1L, 2L), set(geoIndex.query(170, -20, -170, -10)));
+    }
+
+    // ---
+
+    private Set<Long> set(Long... ids) {
+        return new HashSet(asList(ids));
+    }
+
+    private Set<Long> set(List<Long> ids) {
+        Set<Long> set = new HashSet(ids);
+        assertEquals("duplicate IDs", ids.size(), set.size());
+        return set;
+    }
+}
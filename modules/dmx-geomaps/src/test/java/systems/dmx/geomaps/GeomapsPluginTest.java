@@ -0,0 +1,85 @@
+package systems.dmx.geomaps;
+
+import systems.dmx.core.DMXObject;
+import systems.dmx.core.Topic;
+import systems.dmx.core.service.accesscontrol.AccessControl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import static java.util.Arrays.asList;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+
+public class GeomapsPluginTest {
+
+    @Test
+    public void geoCoordinateIsAssignedToAddressWorkspace() {
+        Map<Long, Long> assignments = new HashMap();
+        assignments.put(4L, 2000L);                     // a Longitude topic reused from another workspace
+        AccessControl ac = accessControl(assignments);
+        List<DMXObject> objects = asList(topic(1), topic(2), topic(3), topic(4));
+        GeomapsPlugin.assignToWorkspace(objects, 1000, ac);
+        assertEquals(1000L, (long) assignments.get(1L));
+        assertEquals(1000L, (long) assignments.get(2L));
+        assertEquals(1000L, (long) assignments.get(3L));
+        assertEquals(2000L, (long) assignments.get(4L));
+    }
+
+    @Test
+    public void geoCoordinateOfUnassignedAddressIsNotAssigned() {
+        Map<Long, Long> assignments = new HashMap();
+        GeomapsPlugin.assignToWorkspace(asList(topic(1), topic(2)), -1, accessControl(assignments));
+        assertTrue(assignments.isEmpty());
+    }
+
+    // ---
+
+    /**
+     * Returns an AccessControl which keeps the workspace assignments in the given map (key: object ID,
+     * value: workspace ID).
+     */
+    private AccessControl accessControl(final Map<Long, Long> assignments) {
+        return (AccessControl) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {AccessControl.class},
+            new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    if (method.getName().equals("getAssignedWorkspaceId")) {
+                        Long workspaceId = assignments.get((Long) args[0]);
+                        return workspaceId != null ? workspaceId : -1L;
+                    } else if (method.getName().equals("assignToWorkspace")) {
+                        long objectId = ((DMXObject) args[0]).getId();
+                        if (assignments.containsKey(objectId)) {
+                            throw new RuntimeException("Object " + objectId + " is assigned already");
+                        }
+                        assignments.put(objectId, (Long) args[1]);
+                        return null;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                }
+            }
+        );
+    }
+
+    private Topic topic(final long id) {
+        return (Topic) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {Topic.class},
+            new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    if (method.getName().equals("getId")) {
+                        return id;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                }
+            }
+        );
+    }
+}
@@ -5,8 +5,11 @@ import systems.dmx.core.model.DMXObjectModel;
 import systems.dmx.core.model.TopicModel;
 
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.index.IndexHits;
 import org.neo4j.tooling.GlobalGraphOperations;
 
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -96,3 +99,123 @@ abstract class ModelIterator<E extends DMXObjectModel> implements Iterator<E> {
         return null;
     }
 }
+
+
+
+class TopicModelCursor extends ModelCursor<TopicModel> {
+
+    TopicModelCursor(Neo4jStorage storage, IndexHits<Node> hits, boolean sortById) {
+        super(storage, NodeType.TOPIC, hits, sortById);
+    }
+
+    @Override
+    TopicModel buildModel(Node node) {
+        return storage.buildTopic(node);
+    }
+}
+
+
+
+class AssociationModelCursor extends ModelCursor<AssociationModel> {
+
+    AssociationModelCursor(Neo4jStorage storage, IndexHits<Node> hits, boolean sortById) {
+        super(storage, NodeType.ASSOC, hits, sortById);
+    }
+
+    @Override
+    AssociationModel buildModel(Node node) {
+        return storage.buildAssociation(node);
+    }
+}
+
+
+
+/**
+ * A lazy cursor over index hits.
+ * <p>
+ * The node IDs are collected upfront, and the index hits are closed then. So it is safe to abandon the cursor
+ * before it is exhausted. The models are built while iterating.
+ */
+abstract class ModelCursor<E extends DMXObjectModel> implements Iterator<E> {
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    protected Neo4jStorage storage;
+
+    private NodeType nodeType;
+    private long[] ids;
+    private int size;
+    private int pos = 0;
+    private Node nextNode;
+
+    // ---------------------------------------------------------------------------------------------------- Constructors
+
+    ModelCursor(Neo4jStorage storage, NodeType nodeType, IndexHits<Node> hits, boolean sortById) {
+        this.storage = storage;
+        this.nodeType = nodeType;
+        collectIds(hits);
+        if (sortById) {
+            Arrays.sort(ids, 0, size);
+        }
+    }
+
+    // -------------------------------------------------------------------------------------------------- Public Methods
+
+    @Override
+    public boolean hasNext() {
+        if (nextNode == null) {
+            nextNode = fetchNextNode();
+        }
+        return nextNode != null;
+    }
+
+    @Override
+    public E next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("there is no next node");
+        }
+        //
+        Node node = nextNode;
+        nextNode = null;
+        return buildModel(node);
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("removal is not supported");
+    }
+
+    // ----------------------------------------------------------------------------------------- Package Private Methods
+
+    abstract E buildModel(Node node);
+
+    // ------------------------------------------------------------------------------------------------- Private Methods
+
+    private void collectIds(IndexHits<Node> hits) {
+        try {
+            ids = new long[Math.max(hits.size(), 0)];
+            for (Node node : hits) {
+                if (size == ids.length) {
+                    ids = Arrays.copyOf(ids, 2 * size + 16);
+                }
+                ids[size++] = node.getId();
+            }
+        } finally {
+            hits.close();
+        }
+    }
+
+    private Node fetchNextNode() {
+        while (pos < size) {
+            try {
+                Node node = storage.neo4j.getNodeById(ids[pos++]);
+                if (nodeType.isTypeOf(node)) {
+                    return node;
+                }
+            } catch (NotFoundException e) {
+                // the node was deleted in the meantime -- skip it
+            }
+        }
+        return null;
+    }
+}
@@ -16,6 +16,7 @@ import systems.dmx.core.storage.spi.DMXTransaction;
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.RelationshipType;
 import org.neo4j.graphdb.factory.GraphDatabaseFactory;
@@ -34,9 +35,12 @@ import org.apache.lucene.search.TermQuery;
 
 import java.util.ArrayList;
 import static java.util.Arrays.asList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
 
 
@@ -63,6 +67,16 @@ public class Neo4jStorage implements DMXStorage {
     private static final String KEY_PLAYER_ID       = "playerId";           // "1" or "2" is appended programatically
     private static final String KEY_PLAYER_TYPE_URI = "playerTypeUri";      // "1" or "2" is appended programatically
 
+    // Note: Lucene limits the number of clauses per boolean query (1024 by default).
+    // Batch queries are split in chunks of this many player IDs.
+    private static final int MAX_PLAYER_IDS_PER_QUERY = 500;
+
+    // --- Traversal ---
+    private static final String TRAVERSAL_MODE = System.getProperty("dmx.storage.traversal_mode", "native");
+    private static final int TRAVERSAL_MAX_DEGREE = Integer.getInteger("dmx.storage.traversal_max_degree", 5000);
+    // Note: the default values are required in case no config file is in effect. This applies when DM is started
+    // via feature:install from Karaf. The default values must match the values defined in project POM.
+
     // Note: URIs, type URIs, and properties are only KEY indexed.
     // Topic/assoc values are indexed using all 3 modes.
 
@@ -74,6 +88,15 @@ public class Neo4jStorage implements DMXStorage {
         IndexMode.KEY, IndexMode.FULLTEXT, IndexMode.FULLTEXT_KEY
     );
 
+    /**
+     * How the associations between a player and its related objects are found.
+     */
+    enum TraversalMode {
+        NATIVE,     // walk the player's relationships, filter in memory. Falls back to INDEX for high-degree players.
+        INDEX,      // query the association metadata index
+        COMPARE     // do both, log deviations and timings, return the INDEX result
+    }
+
     // ---------------------------------------------------------------------------------------------- Instance Variables
 
             GraphDatabaseService neo4j = null;
@@ -85,6 +108,9 @@ public class Neo4jStorage implements DMXStorage {
     private Index<Node> assocContentFulltext;   // assoc value (index modes FULLTEXT or FULLTEXT_KEY)
     private Index<Node> assocMetadata;
 
+    TraversalMode traversalMode = TraversalMode.valueOf(TRAVERSAL_MODE.toUpperCase());
+    int traversalMaxDegree = TRAVERSAL_MAX_DEGREE;  // max number of relationships walked before falling back to index
+
     private ModelFactory mf;
 
     private final Logger logger = Logger.getLogger(getClass().getName());
@@ -103,6 +129,8 @@ public class Neo4jStorage implements DMXStorage {
             this.assocMetadata = createExactIndex("assoc-metadata");
             //
             this.mf = mf;
+            //
+            logger.info("Traversal mode: " + traversalMode + " (max degree " + traversalMaxDegree + ")");
         } catch (Exception e) {
             if (neo4j != null) {
                 shutdown();
@@ -162,6 +190,11 @@ public class Neo4jStorage implements DMXStorage {
         return new TopicModelIterator(this);
     }
 
+    @Override
+    public Iterator<TopicModel> fetchTopicCursor(String key, Object value, boolean sortById) {
+        return new TopicModelCursor(this, topicContentExact.get(key, value), sortById);
+    }
+
     // ---
 
     @Override
@@ -245,9 +278,9 @@ public class Neo4jStorage implements DMXStorage {
     @Override
     public List<AssociationModel> fetchAssociations(String assocTypeUri, long topicId1, long topicId2,
                                                                          String roleTypeUri1, String roleTypeUri2) {
-        return queryAssociationIndex(
+        return fetchRelatingAssociations(
             assocTypeUri,
-            roleTypeUri1, NodeType.TOPIC, topicId1, null,
+            roleTypeUri1, NodeType.TOPIC, topicId1,
             roleTypeUri2, NodeType.TOPIC, topicId2, null
         );
     }
@@ -255,9 +288,9 @@ public class Neo4jStorage implements DMXStorage {
     @Override
     public List<AssociationModel> fetchAssociationsBetweenTopicAndAssociation(String assocTypeUri, long topicId,
                                                        long assocId, String topicRoleTypeUri, String assocRoleTypeUri) {
-        return queryAssociationIndex(
+        return fetchRelatingAssociations(
             assocTypeUri,
-            topicRoleTypeUri, NodeType.TOPIC, topicId, null,
+            topicRoleTypeUri, NodeType.TOPIC, topicId,
             assocRoleTypeUri, NodeType.ASSOC, assocId, null
         );
     }
@@ -267,6 +300,11 @@ public class Neo4jStorage implements DMXStorage {
         return new AssociationModelIterator(this);
     }
 
+    @Override
+    public Iterator<AssociationModel> fetchAssociationCursor(String key, Object value, boolean sortById) {
+        return new AssociationModelCursor(this, assocContentExact.get(key, value), sortById);
+    }
+
     @Override
     public List<RoleModel> fetchRoleModels(long assocId) {
         return buildRoleModels(fetchAssociationNode(assocId));
@@ -395,9 +433,9 @@ public class Neo4jStorage implements DMXStorage {
     @Override
     public List<RelatedTopicModel> fetchTopicRelatedTopics(long topicId, String assocTypeUri, String myRoleTypeUri,
                                                            String othersRoleTypeUri, String othersTopicTypeUri) {
-        return buildRelatedTopics(queryAssociationIndex(
+        return buildRelatedTopics(fetchRelatingAssociations(
             assocTypeUri,
-            myRoleTypeUri,     NodeType.TOPIC, topicId, null,
+            myRoleTypeUri,     NodeType.TOPIC, topicId,
             othersRoleTypeUri, NodeType.TOPIC, -1,      othersTopicTypeUri
         ), topicId);
     }
@@ -405,9 +443,9 @@ public class Neo4jStorage implements DMXStorage {
     @Override
     public List<RelatedAssociationModel> fetchTopicRelatedAssociations(long topicId, String assocTypeUri,
                                             String myRoleTypeUri, String othersRoleTypeUri, String othersAssocTypeUri) {
-        return buildRelatedAssociations(queryAssociationIndex(
+        return buildRelatedAssociations(fetchRelatingAssociations(
             assocTypeUri,
-            myRoleTypeUri,     NodeType.TOPIC, topicId, null,
+            myRoleTypeUri,     NodeType.TOPIC, topicId,
             othersRoleTypeUri, NodeType.ASSOC, -1,      othersAssocTypeUri
         ), topicId);
     }
@@ -417,9 +455,9 @@ public class Neo4jStorage implements DMXStorage {
     @Override
     public List<RelatedTopicModel> fetchAssociationRelatedTopics(long assocId, String assocTypeUri,
                                             String myRoleTypeUri, String othersRoleTypeUri, String othersTopicTypeUri) {
-        return buildRelatedTopics(queryAssociationIndex(
+        return buildRelatedTopics(fetchRelatingAssociations(
             assocTypeUri,
-            myRoleTypeUri,     NodeType.ASSOC, assocId, null,
+            myRoleTypeUri,     NodeType.ASSOC, assocId,
             othersRoleTypeUri, NodeType.TOPIC, -1,      othersTopicTypeUri
         ), assocId);
     }
@@ -427,9 +465,9 @@ public class Neo4jStorage implements DMXStorage {
     @Override
     public List<RelatedAssociationModel> fetchAssociationRelatedAssociations(long assocId, String assocTypeUri,
                                             String myRoleTypeUri, String othersRoleTypeUri, String othersAssocTypeUri) {
-        return buildRelatedAssociations(queryAssociationIndex(
+        return buildRelatedAssociations(fetchRelatingAssociations(
             assocTypeUri,
-            myRoleTypeUri,     NodeType.ASSOC, assocId, null,
+            myRoleTypeUri,     NodeType.ASSOC, assocId,
             othersRoleTypeUri, NodeType.ASSOC, -1,      othersAssocTypeUri
         ), assocId);
     }
@@ -439,9 +477,9 @@ public class Neo4jStorage implements DMXStorage {
     @Override
     public List<RelatedTopicModel> fetchRelatedTopics(long id, String assocTypeUri, String myRoleTypeUri,
                                                       String othersRoleTypeUri, String othersTopicTypeUri) {
-        return buildRelatedTopics(queryAssociationIndex(
+        return buildRelatedTopics(fetchRelatingAssociations(
             assocTypeUri,
-            myRoleTypeUri,     null,           id, null,
+            myRoleTypeUri,     null,           id,
             othersRoleTypeUri, NodeType.TOPIC, -1, othersTopicTypeUri
         ), id);
     }
@@ -449,13 +487,30 @@ public class Neo4jStorage implements DMXStorage {
     @Override
     public List<RelatedAssociationModel> fetchRelatedAssociations(long id, String assocTypeUri, String myRoleTypeUri,
                                                                   String othersRoleTypeUri, String othersAssocTypeUri) {
-        return buildRelatedAssociations(queryAssociationIndex(
+        return buildRelatedAssociations(fetchRelatingAssociations(
             assocTypeUri,
-            myRoleTypeUri,     null,           id, null,
+            myRoleTypeUri,     null,           id,
             othersRoleTypeUri, NodeType.ASSOC, -1, othersAssocTypeUri
         ), id);
     }
 
+    // ---
+
+    @Override
+    public List<RelatedTopicModel> fetchRelatedTopics(List<Long> ids, String assocTypeUri, String myRoleTypeUri,
+                                                      String othersRoleTypeUri, String othersTopicTypeUri) {
+        List<RelatedTopicModel> relTopics = new ArrayList();
+        for (int i = 0; i < ids.size(); i += MAX_PLAYER_IDS_PER_QUERY) {
+            List<Long> chunk = ids.subList(i, Math.min(i + MAX_PLAYER_IDS_PER_QUERY, ids.size()));
+            relTopics.addAll(buildRelatedTopics(buildAssociations(queryAssociationIndex(
+                assocTypeUri,
+                myRoleTypeUri,     null,           chunk, null,
+                othersRoleTypeUri, NodeType.TOPIC, null,  othersTopicTypeUri
+            )), new HashSet(chunk), myRoleTypeUri));
+        }
+        return relTopics;
+    }
+
 
 
     // === Properties ===
@@ -470,6 +525,23 @@ public class Neo4jStorage implements DMXStorage {
         return fetchNode(id).hasProperty(propUri);
     }
 
+    @Override
+    public Map<Long, Map<String, Object>> fetchProperties(List<Long> ids, List<String> propUris) {
+        Map<Long, Map<String, Object>> props = new HashMap();
+        for (long id : ids) {
+            Node node = fetchNode(id);      // each node is looked up once, regardless of the number of properties
+            Map<String, Object> nodeProps = new HashMap();
+            for (String propUri : propUris) {
+                Object value = node.getProperty(propUri, null);
+                if (value != null) {
+                    nodeProps.put(propUri, value);
+                }
+            }
+            props.put(id, nodeProps);
+        }
+        return props;
+    }
+
     // ---
 
     @Override
@@ -536,6 +608,54 @@ public class Neo4jStorage implements DMXStorage {
 
 
 
+    // === Counting ===
+
+    @Override
+    public int countTopics(String key, Object value) {
+        return count(topicContentExact.get(key, value));
+    }
+
+    @Override
+    public int countAssociations(String key, Object value) {
+        return count(assocContentExact.get(key, value));
+    }
+
+    // ---
+
+    @Override
+    public int countTopicsByProperty(String propUri, Object propValue) {
+        return count(queryIndexByProperty(topicContentExact, propUri, propValue));
+    }
+
+    @Override
+    public int countAssociationsByProperty(String propUri, Object propValue) {
+        return count(queryIndexByProperty(assocContentExact, propUri, propValue));
+    }
+
+    // ---
+
+    @Override
+    public int countRelatedTopics(long id, String assocTypeUri, String myRoleTypeUri, String othersRoleTypeUri,
+                                                                                      String othersTopicTypeUri) {
+        return countRelatingAssociations(
+            assocTypeUri,
+            myRoleTypeUri,     null,           id,
+            othersRoleTypeUri, NodeType.TOPIC, -1, othersTopicTypeUri, 0
+        );
+    }
+
+    @Override
+    public boolean hasRelatedTopics(long id, String assocTypeUri, String myRoleTypeUri, String othersRoleTypeUri,
+                                                                                       String othersTopicTypeUri) {
+        return countRelatingAssociations(
+            assocTypeUri,
+            myRoleTypeUri,     null,           id,
+            othersRoleTypeUri, NodeType.TOPIC, -1, othersTopicTypeUri, 1
+        ) > 0;
+    }
+
+
+
     // === DB ===
 
     @Override
@@ -794,13 +914,26 @@ public class Neo4jStorage implements DMXStorage {
 
     // ---
 
-    private List<AssociationModel> queryAssociationIndex(String assocTypeUri,
+    private IndexHits<Node> queryAssociationIndex(String assocTypeUri,
                                      String roleTypeUri1, NodeType playerType1, long playerId1, String playerTypeUri1,
                                      String roleTypeUri2, NodeType playerType2, long playerId2, String playerTypeUri2) {
-        return buildAssociations(assocMetadata.query(buildAssociationQuery(assocTypeUri,
-            roleTypeUri1, playerType1, playerId1, playerTypeUri1,
-            roleTypeUri2, playerType2, playerId2, playerTypeUri2
-        )));
+        return queryAssociationIndex(assocTypeUri,
+            roleTypeUri1, playerType1, playerIds(playerId1), playerTypeUri1,
+            roleTypeUri2, playerType2, playerIds(playerId2), playerTypeUri2
+        );
+    }
+
+    /**
+     * @param   playerIds1  the player at position 1 must have one of these IDs. <code>null</code> matches any player.
+     * @param   playerIds2  the player at position 2 must have one of these IDs. <code>null</code> matches any player.
+     */
+    private IndexHits<Node> queryAssociationIndex(String assocTypeUri,
+                         String roleTypeUri1, NodeType playerType1, List<Long> playerIds1, String playerTypeUri1,
+                         String roleTypeUri2, NodeType playerType2, List<Long> playerIds2, String playerTypeUri2) {
+        return assocMetadata.query(buildAssociationQuery(assocTypeUri,
+            roleTypeUri1, playerType1, playerIds1, playerTypeUri1,
+            roleTypeUri2, playerType2, playerIds2, playerTypeUri2
+        ));
     }
 
     // --- Build index queries ---
@@ -812,15 +945,15 @@ public class Neo4jStorage implements DMXStorage {
     // ---
 
     private Query buildAssociationQuery(String assocTypeUri,
-                                     String roleTypeUri1, NodeType playerType1, long playerId1, String playerTypeUri1,
-                                     String roleTypeUri2, NodeType playerType2, long playerId2, String playerTypeUri2) {
+                         String roleTypeUri1, NodeType playerType1, List<Long> playerIds1, String playerTypeUri1,
+                         String roleTypeUri2, NodeType playerType2, List<Long> playerIds2, String playerTypeUri2) {
         // query bidirectional
         BooleanQuery direction1 = new BooleanQuery();
-        addRole(direction1, 1, roleTypeUri1, playerType1, playerId1, playerTypeUri1);
-        addRole(direction1, 2, roleTypeUri2, playerType2, playerId2, playerTypeUri2);
+        addRole(direction1, 1, roleTypeUri1, playerType1, playerIds1, playerTypeUri1);
+        addRole(direction1, 2, roleTypeUri2, playerType2, playerIds2, playerTypeUri2);
         BooleanQuery direction2 = new BooleanQuery();
-        addRole(direction2, 1, roleTypeUri2, playerType2, playerId2, playerTypeUri2);
-        addRole(direction2, 2, roleTypeUri1, playerType1, playerId1, playerTypeUri1);
+        addRole(direction2, 1, roleTypeUri2, playerType2, playerIds2, playerTypeUri2);
+        addRole(direction2, 2, roleTypeUri1, playerType1, playerIds1, playerTypeUri1);
         //
         BooleanQuery roleQuery = new BooleanQuery();
         roleQuery.add(direction1, Occur.SHOULD);
@@ -835,20 +968,40 @@ public class Neo4jStorage implements DMXStorage {
         return query;
     }
 
-    private void addRole(BooleanQuery query, int pos, String roleTypeUri, NodeType playerType, long playerId,
+    private void addRole(BooleanQuery query, int pos, String roleTypeUri, NodeType playerType, List<Long> playerIds,
                                                                                                String playerTypeUri) {
         if (roleTypeUri != null)   addTermQuery(KEY_ROLE_TPYE_URI + pos,   roleTypeUri,   query);
         if (playerType != null)    addTermQuery(KEY_PLAYER_TPYE + pos,     playerType,    query);
-        if (playerId != -1)        addTermQuery(KEY_PLAYER_ID + pos,       playerId,      query);
+        if (playerIds != null)     addTermQuery(KEY_PLAYER_ID + pos,       playerIds,     query);
         if (playerTypeUri != null) addTermQuery(KEY_PLAYER_TYPE_URI + pos, playerTypeUri, query);
     }
 
+    private List<Long> playerIds(long playerId) {
+        return playerId != -1 ? asList(playerId) : null;
+    }
+
     // ---
 
     private void addTermQuery(String key, long value, BooleanQuery query) {
         addTermQuery(key, Long.toString(value), query);
     }
 
+    /**
+     * Adds a term query that matches any of the given values.
+     */
+    private void addTermQuery(String key, List<Long> values, BooleanQuery query) {
+        if (values.size() == 1) {
+            addTermQuery(key, values.get(0), query);
+            return;
+        }
+        //
+        BooleanQuery anyOf = new BooleanQuery();
+        for (long value : values) {
+            anyOf.add(new TermQuery(new Term(key, Long.toString(value))), Occur.SHOULD);
+        }
+        query.add(anyOf, Occur.MUST);
+    }
+
     private void addTermQuery(String key, NodeType nodeType, BooleanQuery query) {
         addTermQuery(key, nodeType.stringify(), query);
     }
@@ -898,6 +1051,256 @@ public class Neo4jStorage implements DMXStorage {
 
 
 
+    // === Traversal ===
+
+    /**
+     * Fetches the associations that connect the given player with other players.
+     * <p>
+     * The parameters are interpreted as in <code>queryAssociationIndex()</code>. The associations are found
+     * regardless at which position the given player is involved.
+     *
+     * @param   myPlayerType    may be null
+     * @param   othersPlayerId  the ID of the other player, or -1 to match any player.
+     */
+    private List<AssociationModel> fetchRelatingAssociations(String assocTypeUri,
+                                     String myRoleTypeUri, NodeType myPlayerType, long myPlayerId,
+                                     String othersRoleTypeUri, NodeType othersPlayerType, long othersPlayerId,
+                                     String othersPlayerTypeUri) {
+        return buildAssociations(lookupRelatingAssociations(assocTypeUri,
+            myRoleTypeUri, myPlayerType, myPlayerId,
+            othersRoleTypeUri, othersPlayerType, othersPlayerId, othersPlayerTypeUri, 0
+        ));
+    }
+
+    /**
+     * Counts the associations that connect the given player with other players. No models are built.
+     *
+     * @param   limit   stop counting after this many associations. 0 means no limit. Index lookups are not limited
+     *                  as their size is known anyway.
+     */
+    private int countRelatingAssociations(String assocTypeUri,
+                                     String myRoleTypeUri, NodeType myPlayerType, long myPlayerId,
+                                     String othersRoleTypeUri, NodeType othersPlayerType, long othersPlayerId,
+                                     String othersPlayerTypeUri, int limit) {
+        return count(lookupRelatingAssociations(assocTypeUri,
+            myRoleTypeUri, myPlayerType, myPlayerId,
+            othersRoleTypeUri, othersPlayerType, othersPlayerId, othersPlayerTypeUri, limit
+        ));
+    }
+
+    // ---
+
+    /**
+     * Looks up the relating association nodes according to the current traversal mode.
+     *
+     * @param   limit   the max number of association nodes found by traversal. 0 means no limit.
+     *
+     * @return  a list of association nodes (traversal), or the index hits (index query).
+     */
+    private Iterable<Node> lookupRelatingAssociations(String assocTypeUri,
+                                     String myRoleTypeUri, NodeType myPlayerType, long myPlayerId,
+                                     String othersRoleTypeUri, NodeType othersPlayerType, long othersPlayerId,
+                                     String othersPlayerTypeUri, int limit) {
+        switch (traversalMode) {
+        case NATIVE:
+            List<Node> assocNodes = traverseAssociations(assocTypeUri,
+                myRoleTypeUri, myPlayerType, myPlayerId,
+                othersRoleTypeUri, othersPlayerType, othersPlayerId, othersPlayerTypeUri, limit
+            );
+            if (assocNodes != null) {
+                return assocNodes;
+            }
+            logger.fine("Player " + myPlayerId + " exceeds max degree " + traversalMaxDegree +
+                " -- falling back to index query");
+            // fall through
+        case INDEX:
+            return queryAssociationIndex(assocTypeUri,
+                myRoleTypeUri, myPlayerType, myPlayerId, null,
+                othersRoleTypeUri, othersPlayerType, othersPlayerId, othersPlayerTypeUri
+            );
+        case COMPARE:
+            return compareTraversal(assocTypeUri,
+                myRoleTypeUri, myPlayerType, myPlayerId,
+                othersRoleTypeUri, othersPlayerType, othersPlayerId, othersPlayerTypeUri
+            );
+        default:
+            throw new RuntimeException("Unexpected traversal mode: " + traversalMode);
+        }
+    }
+
+    /**
+     * Finds the relating association nodes by walking the given player's relationships. Filtering is performed in
+     * memory.
+     *
+     * @param   limit   stop walking once this many association nodes are found. 0 means no limit.
+     *
+     * @return  the relating association nodes, or <code>null</code> if the player has more than
+     *          <code>traversalMaxDegree</code> (candidate) relationships.
+     *          If the player does not exist, or is not of the given player type, an empty list is returned.
+     */
+    private List<Node> traverseAssociations(String assocTypeUri,
+                                     String myRoleTypeUri, NodeType myPlayerType, long myPlayerId,
+                                     String othersRoleTypeUri, NodeType othersPlayerType, long othersPlayerId,
+                                     String othersPlayerTypeUri, int limit) {
+        List<Node> assocNodes = new ArrayList();
+        Node playerNode = lookupPlayerNode(myPlayerId, myPlayerType);
+        if (playerNode == null) {
+            return assocNodes;
+        }
+        // Note: the player relationships point from the association node to the player node.
+        // The relationship type is the role type.
+        Iterable<Relationship> rels = myRoleTypeUri != null ?
+            playerNode.getRelationships(getRelationshipType(myRoleTypeUri), Direction.INCOMING) :
+            playerNode.getRelationships(Direction.INCOMING);
+        Set<Long> assocIds = new HashSet();     // an association connecting a player with itself is found twice
+        int degree = 0;
+        for (Relationship rel : rels) {
+            if (++degree > traversalMaxDegree) {
+                return null;
+            }
+            //
+            Node assocNode = rel.getStartNode();
+            // skip non-DM nodes stored by 3rd-party components (e.g. Neo4j Spatial)
+            if (!NodeType.ASSOC.isTypeOf(assocNode)) {
+                continue;
+            }
+            if (assocTypeUri != null && !assocTypeUri.equals(typeUri(assocNode))) {
+                continue;
+            }
+            Relationship othersRel = otherRelationship(assocNode, rel);
+            if (othersRoleTypeUri != null && !othersRoleTypeUri.equals(othersRel.getType().name())) {
+                continue;
+            }
+            Node othersNode = othersRel.getEndNode();
+            if (othersPlayerId != -1 && othersPlayerId != othersNode.getId()) {
+                continue;
+            }
+            if (othersPlayerType != null && !othersPlayerType.isTypeOf(othersNode)) {
+                continue;
+            }
+            if (othersPlayerTypeUri != null && !othersPlayerTypeUri.equals(typeUri(othersNode))) {
+                continue;
+            }
+            //
+            if (assocIds.add(assocNode.getId())) {
+                assocNodes.add(assocNode);
+                if (assocNodes.size() == limit) {
+                    break;
+                }
+            }
+        }
+        return assocNodes;
+    }
+
+    /**
+     * Performs both, traversal and index query, and logs deviations and timings.
+     *
+     * @return  the result of the index query.
+     */
+    private List<Node> compareTraversal(String assocTypeUri,
+                                     String myRoleTypeUri, NodeType myPlayerType, long myPlayerId,
+                                     String othersRoleTypeUri, NodeType othersPlayerType, long othersPlayerId,
+                                     String othersPlayerTypeUri) {
+        long t0 = System.nanoTime();
+        List<Node> traversed = traverseAssociations(assocTypeUri,
+            myRoleTypeUri, myPlayerType, myPlayerId,
+            othersRoleTypeUri, othersPlayerType, othersPlayerId, othersPlayerTypeUri, 0
+        );
+        long t1 = System.nanoTime();
+        List<Node> queried = new ArrayList();
+        for (Node assocNode : queryAssociationIndex(assocTypeUri,
+                myRoleTypeUri, myPlayerType, myPlayerId, null,
+                othersRoleTypeUri, othersPlayerType, othersPlayerId, othersPlayerTypeUri)) {
+            queried.add(assocNode);
+        }
+        long t2 = System.nanoTime();
+        //
+        String query = "player " + myPlayerId + " (assocTypeUri=\"" + assocTypeUri + "\", myRoleTypeUri=\"" +
+            myRoleTypeUri + "\", othersRoleTypeUri=\"" + othersRoleTypeUri + "\", othersPlayerTypeUri=\"" +
+            othersPlayerTypeUri + "\")";
+        if (traversed == null) {
+            logger.info("### Traversal of " + query + " exceeded max degree " + traversalMaxDegree + " (" +
+                (t1 - t0) / 1000 + " us), index query: " + queried.size() + " associations (" + (t2 - t1) / 1000 +
+                " us)");
+        } else {
+            Set<Long> traversedIds = nodeIds(traversed);
+            Set<Long> queriedIds = nodeIds(queried);
+            if (!traversedIds.equals(queriedIds)) {
+                logger.warning("### Traversal and index query deviate for " + query + ": traversal=" + traversedIds +
+                    ", index=" + queriedIds);
+            }
+            logger.info("### Related query for " + query + ": traversal " + (t1 - t0) / 1000 + " us, index query " +
+                (t2 - t1) / 1000 + " us (" + queried.size() + " associations)");
+        }
+        return queried;
+    }
+
+    // ---
+
+    /**
+     * @return  the node with the given ID, or <code>null</code> if no such node exists or if it is not of the
+     *          given type.
+     *
+     * @param   nodeType    may be null
+     */
+    private Node lookupPlayerNode(long id, NodeType nodeType) {
+        try {
+            Node node = fetchNode(id);
+            if (nodeType != null ? !nodeType.isTypeOf(node) : !node.hasProperty(KEY_NODE_TYPE)) {
+                return null;
+            }
+            return node;
+        } catch (NotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the player relationship of the given association that is <i>not</i> the given one.
+     */
+    private Relationship otherRelationship(Node assocNode, Relationship rel) {
+        for (Relationship r : fetchRelationships(assocNode)) {
+            if (r.getId() != rel.getId()) {
+                return r;
+            }
+        }
+        throw new RuntimeException("Relationship " + rel.getId() + " is not a player relationship of association " +
+            assocNode.getId());
+    }
+
+    private Set<Long> nodeIds(List<Node> nodes) {
+        Set<Long> nodeIds = new HashSet();
+        for (Node node : nodes) {
+            nodeIds.add(node.getId());
+        }
+        return nodeIds;
+    }
+
+
+
+    // === Counting ===
+
+    /**
+     * Counts nodes without building models. For index hits the size is taken from the index, and the hits are
+     * closed.
+     */
+    private int count(Iterable<Node> nodes) {
+        if (nodes instanceof IndexHits) {
+            IndexHits<Node> hits = (IndexHits<Node>) nodes;
+            try {
+                return hits.size();
+            } finally {
+                hits.close();
+            }
+        } else if (nodes instanceof List) {
+            return ((List) nodes).size();
+        } else {
+            throw new RuntimeException("Unexpected node collection: " + nodes.getClass().getName());
+        }
+    }
+
+
+
     // === Helper ===
 
     // --- Neo4j -> DMX Bridge ---
@@ -1128,6 +1531,22 @@ public class Neo4jStorage implements DMXStorage {
         return relTopics;
     }
 
+    /**
+     * Batch variant: the relating associations may refer to any of the given player IDs.
+     */
+    private List<RelatedTopicModel> buildRelatedTopics(List<AssociationModel> assocs, Set<Long> playerIds,
+                                                                                      String myRoleTypeUri) {
+        List<RelatedTopicModel> relTopics = new ArrayList();
+        for (AssociationModel assoc : assocs) {
+            relTopics.add(mf.newRelatedTopicModel(
+                fetchTopic(
+                    otherPlayerId(assoc, playerIds, myRoleTypeUri)
+                ), assoc)
+            );
+        }
+        return relTopics;
+    }
+
     // ### TODO: this is a DB agnostic helper method. It could be moved e.g. to a common base class.
     private List<RelatedAssociationModel> buildRelatedAssociations(List<AssociationModel> assocs, long playerId) {
         List<RelatedAssociationModel> relAssocs = new ArrayList();
@@ -1143,6 +1562,20 @@ public class Neo4jStorage implements DMXStorage {
 
     // ---
 
+    /**
+     * Returns the ID of the player that is <i>not</i> one of the given players.
+     * If both players are among the given ones the role type decides. If still undecided player 2 is returned.
+     */
+    private long otherPlayerId(AssociationModel assoc, Set<Long> playerIds, String myRoleTypeUri) {
+        RoleModel role1 = assoc.getRoleModel1();
+        RoleModel role2 = assoc.getRoleModel2();
+        boolean isMyRole1 = playerIds.contains(role1.getPlayerId()) &&
+            (myRoleTypeUri == null || myRoleTypeUri.equals(role1.getRoleTypeUri()));
+        return isMyRole1 ? role2.getPlayerId() : role1.getPlayerId();
+    }
+
+    // ---
+
     // ### TODO: a principal copy exists in DMXObjectModel
     private void setDefaults(DMXObjectModel model) {
         if (model.getUri() == null) {
@@ -27,6 +27,7 @@ import org.junit.Test;
 import java.io.File;
 import static java.util.Arrays.asList;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 
 
@@ -109,6 +110,60 @@ public class Neo4jStorageTest {
         assertEquals(1, topics.size());
     }
 
+    @Test
+    public void traverseBatch() {
+        long topicId1 = storage.fetchTopic("uri", "dmx.core.data_type").getId();
+        long topicId2 = storage.fetchTopic("uri", "note-1").getId();
+        //
+        List<? extends RelatedTopicModel> topics = storage.fetchRelatedTopics(asList(topicId1, topicId2),
+            "dmx.core.instantiation", "dmx.core.instance", "dmx.core.type", null);
+        assertEquals(1, topics.size());
+        //
+        RelatedTopicModel type = topics.get(0);
+        assertEquals("dmx.core.topic_type", type.getUri());
+        assertEquals(topicId1, type.getRelatingAssociation().getOtherPlayerId(type.getId()));
+    }
+
+    @Test
+    public void traverseWithIndexFallback() {
+        Neo4jStorage neo4jStorage = (Neo4jStorage) storage;
+        long topicId = storage.fetchTopic("uri", "dmx.core.data_type").getId();
+        //
+        // the native traversal, the index query, and the fallback must yield the same result
+        for (Neo4jStorage.TraversalMode mode : Neo4jStorage.TraversalMode.values()) {
+            for (int maxDegree : asList(0, 1000)) {
+                neo4jStorage.traversalMode = mode;
+                neo4jStorage.traversalMaxDegree = maxDegree;
+                //
+                List<? extends RelatedTopicModel> topics = storage.fetchTopicRelatedTopics(topicId,
+                    "dmx.core.instantiation", "dmx.core.instance", "dmx.core.type", "dmx.core.meta_type");
+                assertEquals(1, topics.size());
+                assertEquals("dmx.core.topic_type", topics.get(0).getUri());
+                //
+                topics = storage.fetchTopicRelatedTopics(topicId, "dmx.core.instantiation", "dmx.core.type", null,
+                    null);
+                assertEquals(0, topics.size());
+                //
+                long typeId = storage.fetchTopic("uri", "dmx.core.topic_type").getId();
+                assertEquals(1, storage.fetchAssociations("dmx.core.instantiation", topicId, typeId, null, null)
+                    .size());
+            }
+        }
+    }
+
+    @Test
+    public void count() {
+        assertEquals(2, storage.countTopicsByProperty("score", 23L));
+        assertEquals(0, storage.countTopicsByProperty("score", 42L));
+        assertEquals(8, storage.countTopics("typeUri", "dmx.notes.note"));
+        //
+        long topicId = storage.fetchTopic("uri", "dmx.core.data_type").getId();
+        assertEquals(1, storage.countRelatedTopics(topicId, "dmx.core.instantiation", "dmx.core.instance",
+            "dmx.core.type", null));
+        assertTrue(storage.hasRelatedTopics(topicId, null, null, null, null));
+        assertTrue(!storage.hasRelatedTopics(topicId, null, "dmx.core.type", null, null));
+    }
+
     @Test
     public void deleteAssociation() {
         DMXTransaction tx = storage.beginTx();
@@ -229,6 +284,39 @@ public class Neo4jStorageTest {
         topics = storage.fetchTopicsByPropertyRange("score", 23L, 1234L); assertEquals(4, topics.size());
     }
 
+    // --- Properties ---
+
+    @Test
+    public void fetchProperties() {
+        long topicId1, topicId2, topicId3;
+        DMXTransaction tx = storage.beginTx();
+        try {
+            topicId1 = createTopic(null, "dmx.notes.note", "");
+            storage.storeTopicProperty(topicId1, "score", 1L, false);
+            storage.storeTopicProperty(topicId1, "rating", "good", false);
+            topicId2 = createTopic(null, "dmx.notes.note", "");
+            storage.storeTopicProperty(topicId2, "score", 2L, false);
+            topicId3 = createTopic(null, "dmx.notes.note", "");
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+        //
+        Map<Long, Map<String, Object>> props = storage.fetchProperties(asList(topicId1, topicId2, topicId3, assocId),
+            asList("score", "rating"));
+        assertEquals(4, props.size());
+        assertEquals(2, props.get(topicId1).size());
+        assertEquals(1L, props.get(topicId1).get("score"));
+        assertEquals("good", props.get(topicId1).get("rating"));
+        // a missing property is not contained
+        assertEquals(1, props.get(topicId2).size());
+        assertEquals(2L, props.get(topicId2).get("score"));
+        assertTrue(!props.get(topicId2).containsKey("rating"));
+        // an object without any of the properties is contained, with an empty map
+        assertTrue(props.get(topicId3).isEmpty());
+        assertTrue(props.get(assocId).isEmpty());
+    }
+
 
 
     // ------------------------------------------------------------------------------------------------- Private Methods
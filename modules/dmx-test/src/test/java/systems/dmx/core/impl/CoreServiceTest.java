@@ -11,11 +11,18 @@ import systems.dmx.core.Topic;
 import systems.dmx.core.TopicType;
 import systems.dmx.core.model.ChildTopicsModel;
 import systems.dmx.core.model.SimpleValue;
+import systems.dmx.core.service.Async;
+import systems.dmx.core.service.accesscontrol.AccessControlException;
+import systems.dmx.core.service.accesscontrol.Operation;
+import systems.dmx.core.service.event.CheckTopicReadAccessListener;
+import systems.dmx.core.service.event.CheckTopicsReadAccessListener;
+import systems.dmx.core.service.event.PostCreateTopicListener;
 import systems.dmx.core.storage.spi.DMXTransaction;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
@@ -25,9 +32,13 @@ import org.junit.Ignore;
 import org.junit.Test;
 
 import static java.util.Arrays.asList;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -715,6 +726,81 @@ public class CoreServiceTest extends CoreServiceTestEnvironment {
         assertEquals(5, topics2.size());
     }
 
+    @Test
+    public void getTopicsByTypePaged() {
+        List<Topic> topics = dmx.getTopicsByType("dmx.core.data_type", 0, 0, true);     // limit=0 (no limit)
+        assertEquals(5, topics.size());
+        for (int i = 1; i < topics.size(); i++) {
+            assertTrue(topics.get(i - 1).getId() < topics.get(i).getId());
+        }
+        //
+        List<Topic> page1 = dmx.getTopicsByType("dmx.core.data_type", 0, 2, true);
+        List<Topic> page2 = dmx.getTopicsByType("dmx.core.data_type", 2, 2, true);
+        List<Topic> page3 = dmx.getTopicsByType("dmx.core.data_type", 4, 2, true);
+        assertEquals(2, page1.size());
+        assertEquals(2, page2.size());
+        assertEquals(1, page3.size());
+        assertEquals(topics.get(2).getId(), page2.get(0).getId());
+        assertEquals(topics.get(4).getId(), page3.get(0).getId());
+        //
+        assertEquals(0, dmx.getTopicsByType("dmx.core.data_type", 5, 2, true).size());
+    }
+
+    @Test
+    public void countTopicsByType() {
+        assertEquals(5, dmx.countTopicsByType("dmx.core.data_type"));
+        assertEquals(getTopicInstances("dmx.core.data_type").size(), dmx.countTopicsByType("dmx.core.data_type"));
+        //
+        long typeId = dmx.getTopicByUri("dmx.core.data_type").getId();
+        assertEquals(5, dmx.countRelatedTopics(typeId, "dmx.core.instantiation", "dmx.core.type",
+            "dmx.core.instance", "dmx.core.data_type"));
+        assertTrue(dmx.hasRelatedTopics(typeId, "dmx.core.instantiation", "dmx.core.type", "dmx.core.instance",
+            "dmx.core.data_type"));
+        assertEquals(1, dmx.countRelatedTopics(typeId, "dmx.core.instantiation", "dmx.core.instance",
+            "dmx.core.type", null));
+        assertFalse(dmx.hasRelatedTopics(typeId, "dmx.core.instantiation", "dmx.core.type", "dmx.core.instance",
+            "dmx.core.topic_type"));
+    }
+
+    @Test
+    public void countReadablesOnly() {
+        final long textId = dmx.getTopicByUri("dmx.core.text").getId();
+        long typeId = dmx.getTopicByUri("dmx.core.data_type").getId();
+        assertEquals(5, dmx.countReadableTopicsByType("dmx.core.data_type"));
+        assertEquals(5, dmx.countReadableRelatedTopics(typeId, "dmx.core.instantiation", "dmx.core.type",
+            "dmx.core.instance", "dmx.core.data_type"));
+        //
+        // a user who is not member of the workspace of one data type
+        CheckTopicsReadAccessListener listener = new CheckTopicsReadAccessListener() {
+            @Override
+            public void checkTopicsReadAccess(List<Long> topicIds) {
+                topicIds.remove(textId);
+            }
+        };
+        dmx.em.addListener(CoreEvent.CHECK_TOPICS_READ_ACCESS, listener);
+        try {
+            assertEquals(4, dmx.countReadableTopicsByType("dmx.core.data_type"));
+            assertEquals(4, dmx.countReadableRelatedTopics(typeId, "dmx.core.instantiation", "dmx.core.type",
+                "dmx.core.instance", "dmx.core.data_type"));
+            // the unfiltered counts are unaffected
+            assertEquals(5, dmx.countTopicsByType("dmx.core.data_type"));
+            assertEquals(5, dmx.countRelatedTopics(typeId, "dmx.core.instantiation", "dmx.core.type",
+                "dmx.core.instance", "dmx.core.data_type"));
+        } finally {
+            dmx.em.removeListener(CoreEvent.CHECK_TOPICS_READ_ACCESS, listener);
+        }
+    }
+
+    @Test
+    public void iterateTopicsByType() {
+        int count = 0;
+        for (Topic topic : dmx.iterateTopicsByType("dmx.core.data_type", false)) {
+            assertEquals("dmx.core.data_type", topic.getTypeUri());
+            count++;
+        }
+        assertEquals(5, count);
+    }
+
     // Note: when the meta model changes the values might need adjustment
     @Test
     public void getAssociationsByType() {
@@ -1140,6 +1226,35 @@ public class CoreServiceTest extends CoreServiceTestEnvironment {
         assertEquals("Child 1", childs.get(0).getSimpleValue().toString());
     }
 
+    @Test
+    public void fetchChildTopicsOfSameObjectTwice() {
+        DMXTransaction tx = dmx.beginTx();
+        Topic parent1;
+        try {
+            dmx.createTopicType(mf.newTopicTypeModel("dmx.test.child", "Child", "dmx.core.text"));
+            dmx.createTopicType(mf.newTopicTypeModel("dmx.test.parent", "Parent", "dmx.core.composite")
+                .addAssocDef(mf.newAssociationDefinitionModel(
+                    "dmx.test.parent", "dmx.test.child", "dmx.core.many"
+                ))
+            );
+            parent1 = dmx.createTopic(mf.newTopicModel("dmx.test.parent"));
+            parent1.getChildTopics().add("dmx.test.child", "Child 1");
+            parent1.getChildTopics().add("dmx.test.child", "Child 2");
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+        // a list which contains the same topic twice, as 2 model instances
+        TopicModelImpl model1 = dmx.pl.fetchTopic(parent1.getId());
+        TopicModelImpl model2 = (TopicModelImpl) model1.clone();
+        new ChildTopicsFetcher(dmx.pl).fetch(asList(model1, model2));
+        //
+        assertEquals(2, model1.getChildTopicsModel().getTopics("dmx.test.child").size());
+        assertEquals(2, model2.getChildTopicsModel().getTopics("dmx.test.child").size());
+        assertNotSame(model1.getChildTopicsModel().getTopics("dmx.test.child").get(0),
+                      model2.getChildTopicsModel().getTopics("dmx.test.child").get(0));
+    }
+
     // ---
 
     @Test
@@ -1285,6 +1400,371 @@ public class CoreServiceTest extends CoreServiceTestEnvironment {
         }
     }
 
+    // ---
+
+    @Test
+    public void modelCacheIsInvalidatedOnUpdate() {
+        ModelCache cache = dmx.pl.getModelCache();
+        long topicId;
+        DMXTransaction tx = dmx.beginTx();
+        try {
+            topicId = dmx.createTopic(mf.newTopicModel("dmx.core.plugin_migration_nr", new SimpleValue(23)))
+                .getId();
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+        // Note: the cache is populated outside write transactions only
+        assertEquals(23, dmx.getTopic(topicId).getSimpleValue().intValue());
+        long hits = cache.getHits();
+        assertEquals(23, dmx.getTopic(topicId).getSimpleValue().intValue());
+        assertTrue(cache.getHits() > hits);
+        //
+        tx = dmx.beginTx();
+        try {
+            dmx.getTopic(topicId).setSimpleValue(42);
+            assertEquals(42, dmx.getTopic(topicId).getSimpleValue().intValue());
+            //
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+        assertEquals(42, dmx.getTopic(topicId).getSimpleValue().intValue());
+    }
+
+    @Test
+    public void modelCacheIsInvalidatedOnRollback() {
+        long topicId;
+        DMXTransaction tx = dmx.beginTx();
+        try {
+            topicId = dmx.createTopic(mf.newTopicModel("dmx.core.plugin_migration_nr", new SimpleValue(23)))
+                .getId();
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+        //
+        tx = dmx.beginTx();
+        try {
+            dmx.getTopic(topicId).setSimpleValue(42);
+            assertEquals(42, dmx.getTopic(topicId).getSimpleValue().intValue());
+            // rollback
+        } finally {
+            tx.finish();
+        }
+        //
+        assertEquals(23, dmx.getTopic(topicId).getSimpleValue().intValue());
+    }
+
+    @Test
+    public void modelCacheDoesNotServeUncommittedState() throws Exception {
+        final long topicId;
+        DMXTransaction tx = dmx.beginTx();
+        try {
+            topicId = dmx.createTopic(mf.newTopicModel("dmx.core.plugin_migration_nr", new SimpleValue(23)))
+                .getId();
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+        //
+        final CountDownLatch updated = new CountDownLatch(1);
+        final CountDownLatch read = new CountDownLatch(1);
+        final List<Integer> values = new CopyOnWriteArrayList();
+        Thread reader = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    updated.await();
+                    values.add(dmx.getTopic(topicId).getSimpleValue().intValue());
+                    read.countDown();
+                } catch (InterruptedException e) {
+                    // the test fails
+                }
+            }
+        };
+        reader.start();
+        //
+        tx = dmx.beginTx();
+        try {
+            dmx.getTopic(topicId).setSimpleValue(42);
+            assertEquals(42, dmx.getTopic(topicId).getSimpleValue().intValue());    // re-fetched within the tx
+            updated.countDown();
+            assertTrue(read.await(10, TimeUnit.SECONDS));
+            // rollback
+        } finally {
+            tx.finish();
+        }
+        reader.join();
+        //
+        assertEquals(asList(23), values);
+        assertEquals(23, dmx.getTopic(topicId).getSimpleValue().intValue());
+    }
+
+    // ---
+
+    @Test
+    public void permissionCacheIsInvalidatedOnWorkspaceAssignment() {
+        PermissionCache cache = dmx.pl.permissionCache;
+        Topic t1, ws;
+        DMXTransaction tx = dmx.beginTx();
+        try {
+            t1 = dmx.createTopic(mf.newTopicModel("dmx.core.plugin"));
+            ws = dmx.createTopic(mf.newTopicModel("dmx.core.plugin"));
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+        //
+        assertTrue(dmx.getAccessControl().hasPermission(null, Operation.READ, t1.getId()));
+        assertEquals(-1, cache.getObjectInfo(t1.getId()).workspaceId);
+        //
+        tx = dmx.beginTx();
+        try {
+            dmx.getAccessControl().assignToWorkspace(t1, ws.getId());
+            assertNull(cache.getObjectInfo(t1.getId()));
+            //
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+        assertNull(cache.getObjectInfo(t1.getId()));
+    }
+
+    @Test
+    public void permissionCacheIsInvalidatedOnOwnerChange() {
+        PermissionCache cache = dmx.pl.permissionCache;
+        Topic ws;
+        DMXTransaction tx = dmx.beginTx();
+        try {
+            ws = dmx.createTopic(mf.newTopicModel("dmx.core.plugin"));
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+        //
+        cache.putDecision("testuser", Operation.WRITE, ws.getId(), true, cache.generation());
+        assertTrue(cache.getDecision("testuser", Operation.WRITE, ws.getId()));
+        assertNull(cache.getDecision("testuser", Operation.READ, ws.getId()));
+        assertNull(cache.getDecision(null, Operation.WRITE, ws.getId()));
+        //
+        tx = dmx.beginTx();
+        try {
+            ws.setProperty("dmx.accesscontrol.owner", "testuser", true);    // addToIndex=true
+            assertNull(cache.getDecision("testuser", Operation.WRITE, ws.getId()));
+            //
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+        assertNull(cache.getDecision("testuser", Operation.WRITE, ws.getId()));
+    }
+
+    @Test
+    public void permissionCacheDoesNotServeUncommittedState() {
+        PermissionCache cache = dmx.pl.permissionCache;
+        Topic t1, ws;
+        DMXTransaction tx = dmx.beginTx();
+        try {
+            t1 = dmx.createTopic(mf.newTopicModel("dmx.core.plugin"));
+            ws = dmx.createTopic(mf.newTopicModel("dmx.core.plugin"));
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+        //
+        tx = dmx.beginTx();
+        try {
+            dmx.getAccessControl().assignToWorkspace(t1, ws.getId());
+            // what is computed within the transaction reflects the uncommitted assignment and must not be published
+            cache.putObjectInfo(t1.getId(), new PermissionCache.ObjectInfo("dmx.core.plugin", ws.getId()),
+                cache.generation());
+            cache.putDecision("testuser", Operation.READ, ws.getId(), true, cache.generation());
+            assertNull(cache.getObjectInfo(t1.getId()));
+            assertNull(cache.getDecision("testuser", Operation.READ, ws.getId()));
+            // rollback
+        } finally {
+            tx.finish();
+        }
+        //
+        assertTrue(dmx.getAccessControl().hasPermission(null, Operation.READ, t1.getId()));
+        assertEquals(-1, cache.getObjectInfo(t1.getId()).workspaceId);
+    }
+
+    // ---
+
+    @Test
+    public void readAccessIsCheckedInBatches() {
+        DMXTransaction tx = dmx.beginTx();
+        try {
+            final Topic t1 = dmx.createTopic(mf.newTopicModel("dmx.core.plugin"));
+            final Topic t2 = dmx.createTopic(mf.newTopicModel("dmx.core.plugin"));
+            int count = getTopicInstances("dmx.core.plugin").size();
+            //
+            // single-object listener
+            CheckTopicReadAccessListener listener = new CheckTopicReadAccessListener() {
+                @Override
+                public void checkTopicReadAccess(long topicId) {
+                    if (topicId == t1.getId()) {
+                        throw new AccessControlException("no READ permission for " + topicId);
+                    }
+                }
+            };
+            dmx.em.addListener(CoreEvent.CHECK_TOPIC_READ_ACCESS, listener);
+            try {
+                List<Topic> topics = getTopicInstances("dmx.core.plugin");
+                assertEquals(count - 1, topics.size());
+                assertFalse(topics.contains(t1));
+                assertTrue(topics.contains(t2));
+            } finally {
+                dmx.em.removeListener(CoreEvent.CHECK_TOPIC_READ_ACCESS, listener);
+            }
+            //
+            // batch listener
+            final List<Integer> calls = new ArrayList();
+            CheckTopicsReadAccessListener batchListener = new CheckTopicsReadAccessListener() {
+                @Override
+                public void checkTopicsReadAccess(List<Long> topicIds) {
+                    calls.add(topicIds.size());
+                    topicIds.remove(t2.getId());
+                }
+            };
+            dmx.em.addListener(CoreEvent.CHECK_TOPICS_READ_ACCESS, batchListener);
+            try {
+                List<Topic> topics = getTopicInstances("dmx.core.plugin");
+                assertEquals(asList(count), calls);
+                assertEquals(count - 1, topics.size());
+                assertTrue(topics.contains(t1));
+                assertFalse(topics.contains(t2));
+            } finally {
+                dmx.em.removeListener(CoreEvent.CHECK_TOPICS_READ_ACCESS, batchListener);
+            }
+            //
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+    }
+
+    // ---
+
+    @Test
+    public void readOnlyTransaction() {
+        TransactionStats stats = dmx.pl.getTransactionStats();
+        long reads = stats.getReadCount();
+        long writes = stats.getWriteCount();
+        DMXTransaction tx = dmx.pl.beginReadTx();
+        try {
+            assertNotNull(ReadTransaction.current());
+            assertEquals("Topic Type", dmx.getTopicByUri("dmx.core.topic_type").getSimpleValue().toString());
+        } finally {
+            tx.finish();
+        }
+        assertNull(ReadTransaction.current());
+        assertEquals(reads + 1, stats.getReadCount());
+        assertEquals(writes, stats.getWriteCount());
+    }
+
+    @Test
+    public void readOnlyTransactionAttributesAreDroppedOnWrite() {
+        DMXTransaction tx = dmx.pl.beginReadTx();
+        try {
+            ReadTransaction.current().setAttribute("test", 23);
+            assertEquals(23, ReadTransaction.current().getAttribute("test"));
+            //
+            DMXTransaction wtx = dmx.beginTx();
+            try {
+                assertNull(ReadTransaction.current().getAttribute("test"));
+                wtx.success();
+            } finally {
+                wtx.finish();
+            }
+        } finally {
+            tx.finish();
+        }
+    }
+
+    // ---
+
+    @Test
+    public void eventListenerCanUnregisterWhileDispatching() {
+        final List<Long> calls = new ArrayList();
+        CheckTopicReadAccessListener listener = new CheckTopicReadAccessListener() {
+            @Override
+            public void checkTopicReadAccess(long topicId) {
+                calls.add(topicId);
+                dmx.em.removeListener(CoreEvent.CHECK_TOPIC_READ_ACCESS, this);
+            }
+        };
+        assertFalse(dmx.em.hasListeners(CoreEvent.CHECK_TOPIC_READ_ACCESS));
+        dmx.em.addListener(CoreEvent.CHECK_TOPIC_READ_ACCESS, listener);
+        assertTrue(dmx.em.hasListeners(CoreEvent.CHECK_TOPIC_READ_ACCESS));
+        //
+        dmx.em.fireEvent(CoreEvent.CHECK_TOPIC_READ_ACCESS, 23L);
+        dmx.em.fireEvent(CoreEvent.CHECK_TOPIC_READ_ACCESS, 42L);
+        assertEquals(asList(23L), calls);
+        assertFalse(dmx.em.hasListeners(CoreEvent.CHECK_TOPIC_READ_ACCESS));
+    }
+
+    // ---
+
+    @Test
+    public void asyncListenerIsNotifiedAfterCommit() throws Exception {
+        final List<Long> calls = new CopyOnWriteArrayList();
+        final CountDownLatch delivered = new CountDownLatch(1);
+        PostCreateTopicListener listener = new PostCreateTopicListener() {
+            @Async
+            @Override
+            public void postCreateTopic(Topic topic) {
+                calls.add(topic.getId());
+                delivered.countDown();
+            }
+        };
+        dmx.em.addListener(CoreEvent.POST_CREATE_TOPIC, listener);
+        try {
+            Topic topic;
+            DMXTransaction tx = dmx.beginTx();
+            try {
+                topic = dmx.createTopic(mf.newTopicModel("dmx.core.plugin"));
+                Thread.sleep(100);
+                assertEquals(0, calls.size());      // not delivered before commit
+                tx.success();
+            } finally {
+                tx.finish();
+            }
+            assertTrue(delivered.await(5, TimeUnit.SECONDS));
+            assertEquals(asList(topic.getId()), calls);
+        } finally {
+            dmx.em.removeListener(CoreEvent.POST_CREATE_TOPIC, listener);
+        }
+    }
+
+    @Test
+    public void asyncListenerIsNotNotifiedOnRollback() throws Exception {
+        final List<Long> calls = new CopyOnWriteArrayList();
+        PostCreateTopicListener listener = new PostCreateTopicListener() {
+            @Async
+            @Override
+            public void postCreateTopic(Topic topic) {
+                calls.add(topic.getId());
+            }
+        };
+        dmx.em.addListener(CoreEvent.POST_CREATE_TOPIC, listener);
+        try {
+            DMXTransaction tx = dmx.beginTx();
+            try {
+                dmx.createTopic(mf.newTopicModel("dmx.core.plugin"));
+                // no tx.success() -- rollback
+            } finally {
+                tx.finish();
+            }
+            Thread.sleep(200);
+            assertEquals(0, calls.size());
+        } finally {
+            dmx.em.removeListener(CoreEvent.POST_CREATE_TOPIC, listener);
+        }
+    }
+
     // ------------------------------------------------------------------------------------------------- Private Methods
 
     private List<Topic> getTopicInstances(String topicTypeUri) {
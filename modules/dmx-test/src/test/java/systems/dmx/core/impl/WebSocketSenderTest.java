@@ -0,0 +1,190 @@
+package systems.dmx.core.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+
+
+public class WebSocketSenderTest {
+
+    private static final long TIMEOUT = 5000;   // max time to wait for a message (ms)
+
+    private WebSocketSender sender;
+
+    @After
+    public void shutdown() {
+        if (sender != null) {
+            sender.shutdown();
+        }
+    }
+
+    // --- Coalescing ---
+
+    @Test
+    public void coalescableMessagesAreSentAsOneBatch() throws Exception {
+        sender = new WebSocketSender("drop", 100);
+        TestConnection connection = new TestConnection();
+        sender.queueMessage(connection, "{\"pos\":1}", "topic-1");
+        sender.queueMessage(connection, "{\"pos\":2}", "topic-2");
+        sender.queueMessage(connection, "{\"pos\":3}", "topic-3");
+        assertEquals("[{\"pos\":1},{\"pos\":2},{\"pos\":3}]", connection.nextMessage());
+        assertNull(connection.messages.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void messageSupersedesHeldBackMessageWithSameKey() throws Exception {
+        sender = new WebSocketSender("drop", 100);
+        TestConnection connection = new TestConnection();
+        sender.queueMessage(connection, "{\"pos\":1}", "topic-1");
+        sender.queueMessage(connection, "{\"pos\":2}", "topic-2");
+        sender.queueMessage(connection, "{\"pos\":3}", "topic-1");
+        assertEquals("[{\"pos\":3},{\"pos\":2}]", connection.nextMessage());
+        assertTrue(sender.stats().contains("coalesced=1, batches=1"));
+    }
+
+    @Test
+    public void singleHeldBackMessageIsNotBatched() throws Exception {
+        sender = new WebSocketSender("drop", 100);
+        TestConnection connection = new TestConnection();
+        sender.queueMessage(connection, "{\"pos\":1}", "topic-1");
+        sender.queueMessage(connection, "{\"pos\":2}", "topic-1");
+        assertEquals("{\"pos\":2}", connection.nextMessage());
+    }
+
+    @Test
+    public void messageWithoutKeyFlushesHeldBackMessages() throws Exception {
+        sender = new WebSocketSender("drop", 60000);    // the window does not elapse during the test
+        TestConnection connection = new TestConnection();
+        sender.queueMessage(connection, "{\"pos\":1}", "topic-1");
+        sender.queueMessage(connection, "{\"pos\":2}", "topic-2");
+        sender.queueMessage(connection, "{\"deleted\":1}");
+        assertEquals("[{\"pos\":1},{\"pos\":2}]", connection.nextMessage());
+        assertEquals("{\"deleted\":1}", connection.nextMessage());
+    }
+
+    @Test
+    public void disabledCoalescingIgnoresKey() throws Exception {
+        sender = new WebSocketSender("drop", 0);
+        TestConnection connection = new TestConnection();
+        sender.queueMessage(connection, "{\"pos\":1}", "topic-1");
+        sender.queueMessage(connection, "{\"pos\":2}", "topic-1");
+        assertEquals("{\"pos\":1}", connection.nextMessage());
+        assertEquals("{\"pos\":2}", connection.nextMessage());
+    }
+
+    // --- Overflow ---
+
+    @Test
+    public void overflowDropsOldestMessages() throws Exception {
+        sender = new WebSocketSender("drop", 0);
+        TestConnection connection = blockedConnection();
+        int n = WebSocketSender.QUEUE_SIZE + 5;
+        for (int i = 1; i <= n; i++) {
+            sender.queueMessage(connection, "m" + i);
+        }
+        assertEquals(WebSocketSender.QUEUE_SIZE, connection.outbox.size());
+        assertEquals(5, connection.outbox.getDropped());
+        //
+        connection.unblock();
+        assertEquals("m0", connection.nextMessage());       // was being sent already
+        assertEquals("m6", connection.nextMessage());       // m1-m5 are dropped
+        for (int i = 7; i <= n; i++) {
+            assertEquals("m" + i, connection.nextMessage());
+        }
+        assertEquals(-1, connection.closeCode);
+    }
+
+    @Test
+    public void overflowClosesConnection() throws Exception {
+        sender = new WebSocketSender("close", 0);
+        TestConnection connection = blockedConnection();
+        for (int i = 1; i <= WebSocketSender.QUEUE_SIZE + 1; i++) {
+            sender.queueMessage(connection, "m" + i);
+        }
+        assertEquals(1008, connection.closeCode);
+        assertEquals(0, connection.outbox.size());
+        assertEquals(0, connection.outbox.getDropped());
+        assertTrue(sender.stats().contains("closed=1"));
+    }
+
+    @Test
+    public void invalidOverflowPolicy() {
+        try {
+            new WebSocketSender("block", 0);
+            fail("RuntimeException expected");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("\"block\" is an invalid value"));
+        }
+    }
+
+    // ---
+
+    /**
+     * Returns a connection whose worker is blocked in sending message "m0", so the following messages are queued.
+     */
+    private TestConnection blockedConnection() throws InterruptedException {
+        TestConnection connection = new TestConnection();
+        connection.block();
+        sender.queueMessage(connection, "m0");
+        assertTrue("m0 is not being sent", connection.sending.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        return connection;
+    }
+
+    /**
+     * A connection which records the sent messages instead of sending them.
+     */
+    private static class TestConnection extends WebSocketConnection {
+
+        private BlockingQueue<String> messages = new LinkedBlockingQueue();
+        private CountDownLatch sending = new CountDownLatch(1);
+        private volatile CountDownLatch gate = new CountDownLatch(0);
+        private volatile int closeCode = -1;
+
+        private TestConnection() {
+            super("systems.dmx.test", "session-1", null, null);    // pool=null, dmx=null
+        }
+
+        @Override
+        boolean sendMessage(String message) {
+            sending.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                return false;
+            }
+            messages.add(message);
+            return true;
+        }
+
+        @Override
+        void close(int code, String message) {
+            closeCode = code;
+        }
+
+        // ---
+
+        private void block() {
+            gate = new CountDownLatch(1);
+        }
+
+        private void unblock() {
+            gate.countDown();
+        }
+
+        private String nextMessage() throws InterruptedException {
+            String message = messages.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+            assertTrue("no message received", message != null);
+            return message;
+        }
+    }
+}
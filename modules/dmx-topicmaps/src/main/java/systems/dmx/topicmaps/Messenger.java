@@ -17,20 +17,45 @@ class Messenger {
 
     private static final String pluginUri = "systems.dmx.webclient";
 
+    private static final String CHANNEL_PREFIX = "topicmap:";
+
     // ---------------------------------------------------------------------------------------------- Instance Variables
 
     private MessengerContext context;
+    private TopicmapChangeLog changeLog;
 
     private Logger logger = Logger.getLogger(getClass().getName());
 
     // ---------------------------------------------------------------------------------------------------- Constructors
 
-    Messenger(MessengerContext context) {
+    /**
+     * @param   changeLog   the messages sent to the topicmap subscribers are logged there.
+     */
+    Messenger(MessengerContext context, TopicmapChangeLog changeLog) {
         this.context = context;
+        this.changeLog = changeLog;
     }
 
     // ----------------------------------------------------------------------------------------- Package Private Methods
 
+    /**
+     * Subscribes the client the current request originates from to the messages regarding the given topicmap.
+     * The client's subscription to the topicmap it has viewed before ends.
+     */
+    void subscribe(long topicmapId) {
+        try {
+            context.getCoreService().getWebSocketsService().subscribeExclusively(
+                context.getRequest(), pluginUri, channel(topicmapId), CHANNEL_PREFIX
+            );
+        } catch (Exception e) {
+            // Note: a client without a session (anonymous) can't be subscribed. It receives the messages regarding
+            // all topicmaps.
+            logger.log(Level.FINE, "Subscribing to topicmap " + topicmapId + " failed", e);
+        }
+    }
+
+    // ---
+
     void newTopicmap(Topic topicmapTopic) {
         try {
             messageToAllButOne(new JSONObject()
@@ -46,7 +71,7 @@ class Messenger {
 
     void addTopicToTopicmap(long topicmapId, ViewTopic topic) {
         try {
-            messageToAllButOne(new JSONObject()
+            messageToTopicmap(topicmapId, topic.getId(), new JSONObject()
                 .put("type", "addTopicToTopicmap")
                 .put("args", new JSONObject()
                     .put("topicmapId", topicmapId)
@@ -60,7 +85,7 @@ class Messenger {
 
     void addAssociationToTopicmap(long topicmapId, ViewAssoc assoc) {
         try {
-            messageToAllButOne(new JSONObject()
+            messageToTopicmap(topicmapId, assoc.getId(), new JSONObject()
                 .put("type", "addAssocToTopicmap")
                 .put("args", new JSONObject()
                     .put("topicmapId", topicmapId)
@@ -74,7 +99,9 @@ class Messenger {
 
     void setTopicPosition(long topicmapId, long topicId, int x, int y) {
         try {
-            messageToAllButOne(new JSONObject()
+            // Note: while a topic is dragged only its latest position is sent
+            String key = "setTopicPosition:" + topicmapId + ":" + topicId;
+            coalescableMessageToTopicmap(topicmapId, topicId, key, new JSONObject()
                 .put("type", "setTopicPosition")
                 .put("args", new JSONObject()
                     .put("topicmapId", topicmapId)
@@ -92,7 +119,7 @@ class Messenger {
 
     void setTopicVisibility(long topicmapId, long topicId, boolean visibility) {
         try {
-            messageToAllButOne(new JSONObject()
+            messageToTopicmap(topicmapId, topicId, new JSONObject()
                 .put("type", "setTopicVisibility")
                 .put("args", new JSONObject()
                     .put("topicmapId", topicmapId)
@@ -107,7 +134,7 @@ class Messenger {
 
     void setAssocVisibility(long topicmapId, long assocId, boolean visibility) {
         try {
-            messageToAllButOne(new JSONObject()
+            messageToTopicmap(topicmapId, assocId, new JSONObject()
                 .put("type", "setAssocVisibility")
                 .put("args", new JSONObject()
                     .put("topicmapId", topicmapId)
@@ -127,4 +154,48 @@ class Messenger {
             context.getRequest(), pluginUri, message.toString()
         );
     }
+
+    /**
+     * Sends a message to the clients viewing the given topicmap, except the client the current request originates
+     * from. The message is logged as a change of the topicmap.
+     * <p>
+     * The change is logged (and the message sent) once the current transaction is committed. So a client which
+     * fetches the topicmap at a revision has either seen the changes up to that revision or receives them later on.
+     * The changes of a transaction which is rolled back are neither logged nor sent.
+     *
+     * @param   objectId    the ID of the topic/association the message is about.
+     */
+    private void messageToTopicmap(final long topicmapId, final long objectId, final JSONObject message) {
+        context.getCoreService().runAfterCommit(new Runnable() {
+            @Override
+            public void run() {
+                changeLog.record(topicmapId, objectId, null, message);
+                context.getCoreService().getWebSocketsService().messageToSubscribersButOne(
+                    context.getRequest(), pluginUri, channel(topicmapId), message.toString()
+                );
+            }
+        });
+    }
+
+    /**
+     * Like {@link #messageToTopicmap} but the message supersedes a not yet sent message with the same key.
+     */
+    private void coalescableMessageToTopicmap(final long topicmapId, final long objectId, final String key,
+                                                                                          final JSONObject message) {
+        context.getCoreService().runAfterCommit(new Runnable() {
+            @Override
+            public void run() {
+                changeLog.record(topicmapId, objectId, key, message);
+                context.getCoreService().getWebSocketsService().messageToSubscribersButOne(
+                    context.getRequest(), pluginUri, channel(topicmapId), message.toString(), key
+                );
+            }
+        });
+    }
+
+    // ---
+
+    private String channel(long topicmapId) {
+        return CHANNEL_PREFIX + topicmapId;
+    }
 }
@@ -28,16 +28,22 @@ public class Topicmap implements JSONEnabled {
     private ViewProps viewProps;
     private Map<Long, ViewTopic> topics;
     private Map<Long, ViewAssoc> assocs;
+    private long revision;
 
     private Logger logger = Logger.getLogger(getClass().getName());
 
     // ---------------------------------------------------------------------------------------------------- Constructors
 
-    Topicmap(TopicModel topicmapTopic, ViewProps viewProps, Map<Long, ViewTopic> topics, Map<Long, ViewAssoc> assocs) {
+    /**
+     * @param   revision    the revision of the topicmap changes this topicmap reflects at least.
+     */
+    Topicmap(TopicModel topicmapTopic, ViewProps viewProps, Map<Long, ViewTopic> topics, Map<Long, ViewAssoc> assocs,
+                                                                                         long revision) {
         this.topicmapTopic = topicmapTopic;
         this.viewProps = viewProps;
         this.topics = topics;
         this.assocs = assocs;
+        this.revision = revision;
     }
 
     // -------------------------------------------------------------------------------------------------- Public Methods
@@ -46,6 +52,14 @@ public class Topicmap implements JSONEnabled {
         return topicmapTopic.getId();
     }
 
+    /**
+     * Returns the revision of the topicmap changes this topicmap reflects at least. The changes made since then can
+     * be fetched by {@link TopicmapsService#getTopicmapChanges}.
+     */
+    public long getRevision() {
+        return revision;
+    }
+
     // ---
 
     public Iterable<ViewTopic> getTopics() {
@@ -75,7 +89,8 @@ public class Topicmap implements JSONEnabled {
                 .put("topic", topicmapTopic.toJSON())
                 .put("viewProps", viewProps.toJSON())
                 .put("topics", DMXUtils.toJSONArray(topics.values()))
-                .put("assocs", DMXUtils.toJSONArray(assocs.values()));
+                .put("assocs", DMXUtils.toJSONArray(assocs.values()))
+                .put("revision", revision);
         } catch (Exception e) {
             throw new RuntimeException("Serialization failed", e);
         }
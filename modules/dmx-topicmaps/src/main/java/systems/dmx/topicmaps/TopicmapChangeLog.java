@@ -0,0 +1,191 @@
+package systems.dmx.topicmaps;
+
+import org.codehaus.jettison.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+
+/**
+ * Keeps the recent changes of topicmaps, so a client which reconnects can fetch the changes made since the revision
+ * it knows instead of reloading the whole topicmap.
+ * <p>
+ * A change is a topicmap message as sent to the topicmap's subscribers via WebSocket (e.g. "setTopicPosition").
+ * Each change is given a revision, which is put in the message as well. Revisions are numbered by one counter across
+ * all topicmaps, so the revisions of a topicmap are increasing but not contiguous. The counter starts at the time of
+ * construction (in milliseconds). So the revisions of a server run are greater than those of the runs before, as
+ * long as there was less than one change per millisecond on average.
+ * <p>
+ * Per topicmap the latest {@link #MAX_CHANGES} changes are kept. A change with a coalescing key supersedes the kept
+ * change with the same key (e.g. the position of the same topic). The logs of the {@link #MAX_TOPICMAPS} most
+ * recently used topicmaps are kept. The changes are kept in memory only. If the changes since a revision are not (or
+ * no longer) known the client must reload the topicmap.
+ * <p>
+ * Note: the caller must log a change once it is committed (see {@link Messenger}), not when it is made. Otherwise a
+ * client could fetch a topicmap at a revision which includes a change whose data is not yet visible to it, and would
+ * never receive that change.
+ * <p>
+ * Thread-safe.
+ */
+class TopicmapChangeLog {
+
+    // ------------------------------------------------------------------------------------------------------- Constants
+
+    static final int MAX_CHANGES = 1000;        // per topicmap
+    static final int MAX_TOPICMAPS = 100;
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    private final AtomicLong revision = new AtomicLong(System.currentTimeMillis());
+
+    // key: topicmap ID. Access ordered, the least recently used log is discarded.
+    private final Map<Long, Log> logs = new LinkedHashMap<Long, Log>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Log> eldest) {
+            return size() > MAX_TOPICMAPS;
+        }
+    };
+
+    // ----------------------------------------------------------------------------------------- Package Private Methods
+
+    /**
+     * Returns the current revision. From then on the changes of the given topicmap are logged (as long as its log is
+     * not discarded). So a client which loads a topicmap can fetch the changes made since this revision later on.
+     */
+    long getRevision(long topicmapId) {
+        synchronized (logs) {
+            log(topicmapId);
+            return revision.get();
+        }
+    }
+
+    /**
+     * Logs a change and puts its revision in the message.
+     *
+     * @param   objectId    the ID of the topic/association the change is about. Only clients with READ permission
+     *                      for that object will receive the change. -1 if the change is to be received by all.
+     * @param   key         the coalescing key, or <code>null</code> if the change is not coalescable.
+     *
+     * @return  the revision of the change.
+     */
+    long record(long topicmapId, long objectId, String key, JSONObject message) {
+        return record(topicmapId, objectId, null, key, message);
+    }
+
+    /**
+     * Logs a change regarding a topic/association which might be deleted once the change is fetched, e.g. its
+     * removal from the topicmap.
+     *
+     * @param   workspaceId     the workspace the object is assigned to (-1 if none). If the object is deleted only
+     *                          clients with READ permission for that workspace will receive the change.
+     *                          <code>null</code> if the change is not to be received once the object is deleted.
+     *
+     * @return  the revision of the change.
+     */
+    long record(long topicmapId, long objectId, Long workspaceId, String key, JSONObject message) {
+        Log log;
+        synchronized (logs) {
+            log = log(topicmapId);
+        }
+        return log.add(objectId, workspaceId, key, message);
+    }
+
+    /**
+     * Returns the changes of a topicmap made since a revision, in the order they were made.
+     *
+     * @return  the changes, or <code>null</code> if the changes since that revision are not known.
+     */
+    List<Change> getChanges(long topicmapId, long sinceRevision) {
+        Log log;
+        synchronized (logs) {
+            log = logs.get(topicmapId);
+        }
+        return log != null ? log.since(sinceRevision) : null;
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Methods
+
+    /**
+     * Returns the log of a topicmap. Creates it if not exists. The caller must hold the logs lock.
+     */
+    private Log log(long topicmapId) {
+        Log log = logs.get(topicmapId);
+        if (log == null) {
+            log = new Log(revision.get());
+            logs.put(topicmapId, log);
+        }
+        return log;
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Classes
+
+    /**
+     * The changes of one topicmap.
+     */
+    private class Log {
+
+        // the revision the log is complete since: all changes made after it are kept (or superseded)
+        private long base;
+
+        // key: coalescing key, or revision if the change is not coalescable. Ordered by revision.
+        private Map<Object, Change> changes = new LinkedHashMap();
+
+        private Log(long base) {
+            this.base = base;
+        }
+
+        private synchronized long add(long objectId, Long workspaceId, String key, JSONObject message) {
+            try {
+                long rev = revision.incrementAndGet();
+                message.put("revision", rev);
+                if (key != null) {
+                    changes.remove(key);    // the superseding change is put at the end
+                }
+                changes.put(key != null ? key : rev, new Change(rev, objectId, workspaceId, message));
+                if (changes.size() > MAX_CHANGES) {
+                    Iterator<Change> i = changes.values().iterator();
+                    base = i.next().revision;
+                    i.remove();
+                }
+                return rev;
+            } catch (Exception e) {
+                throw new RuntimeException("Logging a topicmap change failed (message=" + message + ")", e);
+            }
+        }
+
+        private synchronized List<Change> since(long sinceRevision) {
+            if (sinceRevision < base || sinceRevision > revision.get()) {
+                return null;
+            }
+            List<Change> result = new ArrayList();
+            for (Change change : changes.values()) {
+                if (change.revision > sinceRevision) {
+                    result.add(change);
+                }
+            }
+            return result;
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------- Nested Classes
+
+    static class Change {
+
+        final long revision;
+        final long objectId;            // -1 if the change is to be received by all
+        final Long workspaceId;         // the object's workspace (-1 if none), null if not known
+        final JSONObject message;
+
+        private Change(long revision, long objectId, Long workspaceId, JSONObject message) {
+            this.revision = revision;
+            this.objectId = objectId;
+            this.workspaceId = workspaceId;
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package systems.dmx.topicmaps;
+
+import systems.dmx.core.JSONEnabled;
+
+import org.codehaus.jettison.json.JSONArray;
+import org.codehaus.jettison.json.JSONObject;
+
+import java.util.List;
+
+
+
+/**
+ * The changes of a topicmap made since a revision: the topicmap messages (e.g. "setTopicPosition") a client would
+ * have received via WebSocket meanwhile, in the order they were made.
+ * <p>
+ * If the changes are not known (any longer) the client must reload the topicmap. This is indicated by the "reload"
+ * flag.
+ */
+public class TopicmapChanges implements JSONEnabled {
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    private final long topicmapId;
+    private final long revision;
+    private final List<JSONObject> changes;     // null if the topicmap must be reloaded
+
+    // ---------------------------------------------------------------------------------------------------- Constructors
+
+    /**
+     * @param   revision    the revision the changes bring the client to.
+     * @param   changes     the changes, or <code>null</code> if the topicmap must be reloaded.
+     */
+    TopicmapChanges(long topicmapId, long revision, List<JSONObject> changes) {
+        this.topicmapId = topicmapId;
+        this.revision = revision;
+        this.changes = changes;
+    }
+
+    // -------------------------------------------------------------------------------------------------- Public Methods
+
+    public long getTopicmapId() {
+        return topicmapId;
+    }
+
+    public long getRevision() {
+        return revision;
+    }
+
+    public boolean isReload() {
+        return changes == null;
+    }
+
+    /**
+     * @return  the changes, or <code>null</code> if the topicmap must be reloaded.
+     */
+    public List<JSONObject> getChanges() {
+        return changes;
+    }
+
+    // ---
+
+    @Override
+    public JSONObject toJSON() {
+        try {
+            return new JSONObject()
+                .put("topicmapId", topicmapId)
+                .put("revision", revision)
+                .put("reload", isReload())
+                .put("changes", isReload() ? new JSONArray() : new JSONArray(changes));
+        } catch (Exception e) {
+            throw new RuntimeException("Serialization failed", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "changes of topicmap " + topicmapId + " (revision=" + revision + ", reload=" + isReload() + ")";
+    }
+}
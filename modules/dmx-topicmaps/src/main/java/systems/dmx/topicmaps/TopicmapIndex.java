@@ -0,0 +1,307 @@
+package systems.dmx.topicmaps;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+
+
+/**
+ * An in-memory spatial index of the items of one topicmap.
+ * <p>
+ * The topicmap canvas is divided into a grid of cells of {@link #CELL_SIZE} pixels. Each cell holds the topics
+ * positioned in it, according to the x/y view properties stored at their Mapcontext associations. A viewport query
+ * examines only the cells overlapping the viewport. The topicmap's associations are indexed by their players, so the
+ * associations connected to the topics in a viewport are found without examining the others.
+ * <p>
+ * The index holds IDs and positions only. It is not access controlled: the caller must filter the result.
+ * <p>
+ * Thread-safe.
+ */
+class TopicmapIndex {
+
+    // ------------------------------------------------------------------------------------------------------- Constants
+
+    static final int CELL_SIZE = 500;       // in pixels
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    // key: cell key, value: topic IDs
+    private Map<Long, Set<Long>> cells = new HashMap();
+
+    // key: topic ID
+    private Map<Long, TopicEntry> topics = new HashMap();
+
+    // key: association ID
+    private Map<Long, AssocEntry> assocs = new HashMap();
+
+    // key: player ID (topic or association), value: IDs of the associations the player is involved in
+    private Map<Long, Set<Long>> assocsByPlayer = new HashMap();
+
+    private ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // ----------------------------------------------------------------------------------------- Package Private Methods
+
+    /**
+     * Adds a topic to the index, or moves it if it is indexed already.
+     */
+    void putTopic(long topicId, long mapcontextId, int x, int y) {
+        lock.writeLock().lock();
+        try {
+            removeTopic(topicId);
+            topics.put(topicId, new TopicEntry(mapcontextId, x, y));
+            long cellKey = cellKey(cell(x), cell(y));
+            Set<Long> cell = cells.get(cellKey);
+            if (cell == null) {
+                cell = new HashSet();
+                cells.put(cellKey, cell);
+            }
+            cell.add(topicId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Moves an indexed topic. If the topic is not indexed nothing is performed.
+     */
+    void moveTopic(long topicId, int x, int y) {
+        lock.writeLock().lock();
+        try {
+            TopicEntry topic = topics.get(topicId);
+            if (topic != null) {
+                putTopic(topicId, topic.mapcontextId, x, y);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void putAssoc(long assocId, long mapcontextId, long player1Id, long player2Id) {
+        lock.writeLock().lock();
+        try {
+            removeAssoc(assocId);
+            assocs.put(assocId, new AssocEntry(mapcontextId, player1Id, player2Id));
+            addAssocByPlayer(player1Id, assocId);
+            addAssocByPlayer(player2Id, assocId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a topic or an association from the index.
+     */
+    void remove(long objectId) {
+        lock.writeLock().lock();
+        try {
+            removeTopic(objectId);
+            removeAssoc(objectId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the items of the topicmap which lie within a viewport (borders included).
+     * <p>
+     * The result contains:
+     * - the topics positioned within the viewport,
+     * - the associations connected to these topics, and recursively the associations connected to those
+     *   associations,
+     * - the players of these associations. So a topic positioned outside the viewport is contained if it is
+     *   connected to a topic positioned inside, that is the association can be rendered.
+     * <p>
+     * The corners can be given in any order.
+     */
+    Window query(int x1, int y1, int x2, int y2) {
+        int left = Math.min(x1, x2), right = Math.max(x1, x2);
+        int top = Math.min(y1, y2), bottom = Math.max(y1, y2);
+        Window window = new Window();
+        lock.readLock().lock();
+        try {
+            Queue<Long> queue = new LinkedList();
+            // topics within the viewport
+            for (long topicId : queryCells(left, top, right, bottom)) {
+                TopicEntry topic = topics.get(topicId);
+                if (topic.x >= left && topic.x <= right && topic.y >= top && topic.y <= bottom) {
+                    window.topics.put(topicId, topic.mapcontextId);
+                    queue.add(topicId);
+                }
+            }
+            // connected associations and their players
+            Long objectId;
+            while ((objectId = queue.poll()) != null) {
+                Set<Long> assocIds = assocsByPlayer.get(objectId);
+                if (assocIds != null) {
+                    for (long assocId : assocIds) {
+                        addAssoc(assocId, window, queue);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return window;
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return topics.size() + assocs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Methods
+
+    /**
+     * Returns the IDs of the topics located in the cells overlapping the given rectangle. If the rectangle covers
+     * more cells than are occupied the occupied cells are examined instead.
+     */
+    private List<Long> queryCells(int left, int top, int right, int bottom) {
+        List<Long> topicIds = new ArrayList();
+        int col1 = cell(left), col2 = cell(right);
+        int row1 = cell(top),  row2 = cell(bottom);
+        if ((long) (col2 - col1 + 1) * (row2 - row1 + 1) > cells.size()) {
+            for (Set<Long> cell : cells.values()) {
+                topicIds.addAll(cell);
+            }
+        } else {
+            for (int row = row1; row <= row2; row++) {
+                for (int col = col1; col <= col2; col++) {
+                    Set<Long> cell = cells.get(cellKey(col, row));
+                    if (cell != null) {
+                        topicIds.addAll(cell);
+                    }
+                }
+            }
+        }
+        return topicIds;
+    }
+
+    /**
+     * Adds an association and its players to the window, if not contained already. The association and its
+     * association players are queued, so the associations connected to them are added as well.
+     */
+    private void addAssoc(long assocId, Window window, Queue<Long> queue) {
+        AssocEntry assoc = assocs.get(assocId);
+        if (assoc == null || window.assocs.containsKey(assocId)) {
+            return;
+        }
+        window.assocs.put(assocId, assoc.mapcontextId);
+        queue.add(assocId);
+        addPlayer(assoc.player1Id, window, queue);
+        addPlayer(assoc.player2Id, window, queue);
+    }
+
+    private void addPlayer(long playerId, Window window, Queue<Long> queue) {
+        TopicEntry topic = topics.get(playerId);
+        if (topic != null) {
+            if (!window.topics.containsKey(playerId)) {
+                window.topics.put(playerId, topic.mapcontextId);   // not queued: its other associations are omitted
+            }
+        } else {
+            addAssoc(playerId, window, queue);
+        }
+    }
+
+    // ---
+
+    private void removeTopic(long topicId) {
+        TopicEntry topic = topics.remove(topicId);
+        if (topic != null) {
+            long cellKey = cellKey(cell(topic.x), cell(topic.y));
+            Set<Long> cell = cells.get(cellKey);
+            cell.remove(topicId);
+            if (cell.isEmpty()) {
+                cells.remove(cellKey);
+            }
+        }
+    }
+
+    private void removeAssoc(long assocId) {
+        AssocEntry assoc = assocs.remove(assocId);
+        if (assoc != null) {
+            removeAssocByPlayer(assoc.player1Id, assocId);
+            removeAssocByPlayer(assoc.player2Id, assocId);
+        }
+    }
+
+    private void addAssocByPlayer(long playerId, long assocId) {
+        Set<Long> assocIds = assocsByPlayer.get(playerId);
+        if (assocIds == null) {
+            assocIds = new HashSet();
+            assocsByPlayer.put(playerId, assocIds);
+        }
+        assocIds.add(assocId);
+    }
+
+    private void removeAssocByPlayer(long playerId, long assocId) {
+        Set<Long> assocIds = assocsByPlayer.get(playerId);
+        if (assocIds != null) {
+            assocIds.remove(assocId);
+            if (assocIds.isEmpty()) {
+                assocsByPlayer.remove(playerId);
+            }
+        }
+    }
+
+    // ---
+
+    private int cell(int coord) {
+        return (int) Math.floor((double) coord / CELL_SIZE);
+    }
+
+    private long cellKey(int column, int row) {
+        return ((long) column << 32) | (row & 0xffffffffL);
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Classes
+
+    private static class TopicEntry {
+
+        private long mapcontextId;
+        private int x, y;
+
+        private TopicEntry(long mapcontextId, int x, int y) {
+            this.mapcontextId = mapcontextId;
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    private static class AssocEntry {
+
+        private long mapcontextId;
+        private long player1Id, player2Id;
+
+        private AssocEntry(long mapcontextId, long player1Id, long player2Id) {
+            this.mapcontextId = mapcontextId;
+            this.player1Id = player1Id;
+            this.player2Id = player2Id;
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------- Nested Classes
+
+    /**
+     * The result of a viewport query.
+     */
+    static class Window {
+
+        // key: topic ID, value: Mapcontext association ID
+        final Map<Long, Long> topics = new HashMap();
+
+        // key: association ID, value: Mapcontext association ID
+        final Map<Long, Long> assocs = new HashMap();
+    }
+}
@@ -8,12 +8,17 @@ import systems.dmx.core.RelatedTopic;
 import systems.dmx.core.Topic;
 import systems.dmx.core.model.AssociationModel;
 import systems.dmx.core.model.ChildTopicsModel;
+import systems.dmx.core.model.RoleModel;
+import systems.dmx.core.model.TopicRoleModel;
 import systems.dmx.core.model.topicmaps.ViewAssoc;
 import systems.dmx.core.model.topicmaps.ViewTopic;
 import systems.dmx.core.model.topicmaps.ViewProps;
 import systems.dmx.core.osgi.PluginActivator;
 import systems.dmx.core.service.CoreService;
 import systems.dmx.core.service.Transactional;
+import systems.dmx.core.service.accesscontrol.AccessControl;
+import systems.dmx.core.service.accesscontrol.Operation;
+import systems.dmx.core.service.event.PreDeleteAssociationListener;
 import systems.dmx.core.util.DMXUtils;
 import systems.dmx.core.util.IdList;
 
@@ -27,11 +32,17 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Response.Status;
+
+import org.codehaus.jettison.json.JSONObject;
 
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
@@ -43,7 +54,16 @@ import java.util.logging.Logger;
 @Path("/topicmap")      // TODO: rename "/topicmaps"
 @Consumes("application/json")
 @Produces("application/json")
-public class TopicmapsPlugin extends PluginActivator implements TopicmapsService, TopicmapsConstants, MessengerContext {
+public class TopicmapsPlugin extends PluginActivator implements TopicmapsService, TopicmapsConstants, MessengerContext,
+                                                                                           PreDeleteAssociationListener {
+
+    // ------------------------------------------------------------------------------------------------------- Constants
+
+    // the view properties stored at a topic's resp. an association's Mapcontext association
+    private static final List<String> TOPIC_VIEW_PROPS = Arrays.asList(PROP_X, PROP_Y, PROP_VISIBILITY, PROP_PINNED);
+    private static final List<String> ASSOC_VIEW_PROPS = Arrays.asList(PROP_VISIBILITY, PROP_PINNED);
+
+    private static final int MAX_TOPICMAP_INDEXES = 100;    // the spatial indexes of that many topicmaps are kept
 
     // ---------------------------------------------------------------------------------------------- Instance Variables
 
@@ -54,7 +74,20 @@ public class TopicmapsPlugin extends PluginActivator implements TopicmapsService
 
     private List<ViewmodelCustomizer> viewmodelCustomizers = new ArrayList();
 
-    private Messenger me = new Messenger(this);
+    /**
+     * Spatial indexes of the recently viewed topicmaps (key: topicmap ID). Access ordered, the least recently used
+     * index is discarded. An index is built when a viewport of its topicmap is fetched.
+     */
+    private Map<Long, TopicmapIndex> topicmapIndexes = new LinkedHashMap<Long, TopicmapIndex>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, TopicmapIndex> eldest) {
+            return size() > MAX_TOPICMAP_INDEXES;
+        }
+    };
+
+    private TopicmapChangeLog changeLog = new TopicmapChangeLog();
+
+    private Messenger me = new Messenger(this, changeLog);
 
     @Context
     private HttpServletRequest request;     // required by Messenger
@@ -112,17 +145,77 @@ public class TopicmapsPlugin extends PluginActivator implements TopicmapsService
             // Note: a Topicmap is not a DMXObject. So the JerseyResponseFilter's automatic
             // child topic loading is not applied. We must load the child topics manually here.
             Topic topicmapTopic = dmx.getTopic(topicmapId).loadChildTopics();
-            return new Topicmap(
+            // Note: the revision is determined before fetching. A change made meanwhile is delivered again then.
+            long revision = changeLog.getRevision(topicmapId);
+            Topicmap topicmap = new Topicmap(
                 topicmapTopic.getModel(),
                 fetchTopicmapViewProps(topicmapTopic),
                 fetchTopics(topicmapTopic, includeChilds),
-                fetchAssociations(topicmapTopic)
+                fetchAssociations(topicmapTopic),
+                revision
             );
+            // the client receives the updates of the topicmaps it has loaded
+            me.subscribe(topicmapId);
+            return topicmap;
         } catch (Exception e) {
             throw new RuntimeException("Fetching topicmap " + topicmapId + " failed", e);
         }
     }
 
+    @GET
+    @Path("/{id}/viewport")
+    @Override
+    public Topicmap getTopicmapViewport(@PathParam("id") long topicmapId, @QueryParam("x1") Integer x1,
+                                        @QueryParam("y1") Integer y1, @QueryParam("x2") Integer x2,
+                                        @QueryParam("y2") Integer y2,
+                                        @QueryParam("include_childs") boolean includeChilds) {
+        if (x1 == null || y1 == null || x2 == null || y2 == null) {
+            throw new WebApplicationException(new IllegalArgumentException("Fetching topicmap " + topicmapId +
+                " within viewport failed -- the viewport requires all of \"x1\", \"y1\", \"x2\", \"y2\""),
+                Status.BAD_REQUEST);
+        }
+        try {
+            logger.info("Fetching topicmap " + topicmapId + " within viewport (" + x1 + ", " + y1 + ") - (" + x2 +
+                ", " + y2 + ") (includeChilds=" + includeChilds + ")");
+            Topic topicmapTopic = dmx.getTopic(topicmapId).loadChildTopics();
+            long revision = changeLog.getRevision(topicmapId);
+            TopicmapIndex index = getTopicmapIndex(topicmapTopic);
+            TopicmapIndex.Window window = index.query(x1, y1, x2, y2);
+            Topicmap topicmap = new Topicmap(
+                topicmapTopic.getModel(),
+                fetchTopicmapViewProps(topicmapTopic),
+                fetchTopics(window.topics, index, includeChilds),
+                fetchAssociations(window.assocs, index),
+                revision
+            );
+            me.subscribe(topicmapId);
+            return topicmap;
+        } catch (Exception e) {
+            throw new RuntimeException("Fetching topicmap " + topicmapId + " within viewport (" + x1 + ", " + y1 +
+                ") - (" + x2 + ", " + y2 + ") failed", e);
+        }
+    }
+
+    @GET
+    @Path("/{id}/changes")
+    @Override
+    public TopicmapChanges getTopicmapChanges(@PathParam("id") long topicmapId,
+                                              @QueryParam("since") long sinceRevision) {
+        try {
+            dmx.getTopic(topicmapId);       // throws if the user has no READ permission for the topicmap
+            // Note: the revision is determined before fetching. A change made meanwhile is delivered again then.
+            long revision = changeLog.getRevision(topicmapId);
+            List<TopicmapChangeLog.Change> changes = changeLog.getChanges(topicmapId, sinceRevision);
+            logger.info("Fetching changes of topicmap " + topicmapId + " since revision " + sinceRevision + " => " +
+                (changes != null ? changes.size() + " changes" : "reload required"));
+            me.subscribe(topicmapId);
+            return new TopicmapChanges(topicmapId, revision, changes != null ? filterChanges(changes) : null);
+        } catch (Exception e) {
+            throw new RuntimeException("Fetching changes of topicmap " + topicmapId + " since revision " +
+                sinceRevision + " failed", e);
+        }
+    }
+
     @Override
     public Association getTopicMapcontext(long topicmapId, long topicId) {
         return dmx.getAssociation(TOPICMAP_CONTEXT, topicmapId, topicId,
@@ -422,6 +515,47 @@ public class TopicmapsPlugin extends PluginActivator implements TopicmapsService
 
 
 
+    // *****************
+    // *** Listeners ***
+    // *****************
+
+
+
+    /**
+     * Once a topic/association is removed from a topicmap (that is its Mapcontext association is deleted) and that is
+     * committed, removes it from the spatial index of the topicmap and logs the removal as a topicmap change.
+     * <p>
+     * The workspace of the topic/association is determined beforehand, as the object might be deleted as well. The
+     * removal is delivered only to clients with READ permission for that workspace then.
+     */
+    @Override
+    public void preDeleteAssociation(Association assoc) {
+        if (!assoc.getTypeUri().equals(TOPICMAP_CONTEXT)) {
+            return;
+        }
+        RoleModel topicmapRole = assoc.getModel().getRoleModel(ROLE_TYPE_TOPICMAP);
+        RoleModel contentRole = assoc.getModel().getRoleModel(ROLE_TYPE_CONTENT);
+        if (topicmapRole == null || contentRole == null) {
+            return;
+        }
+        final long topicmapId = topicmapRole.getPlayerId();
+        final long objectId = contentRole.getPlayerId();
+        final boolean isTopic = contentRole instanceof TopicRoleModel;
+        final long workspaceId = dmx.getAccessControl().getAssignedWorkspaceId(objectId);
+        dmx.runAfterCommit(new Runnable() {
+            @Override
+            public void run() {
+                TopicmapIndex index = getTopicmapIndexOrNull(topicmapId);
+                if (index != null) {
+                    index.remove(objectId);
+                }
+                logRemoval(topicmapId, objectId, workspaceId, isTopic);
+            }
+        });
+    }
+
+
+
     // ************************
     // *** MessengerContext ***
     // ************************
@@ -451,8 +585,9 @@ public class TopicmapsPlugin extends PluginActivator implements TopicmapsService
         if (includeChilds) {
             DMXUtils.loadChildTopics(relTopics);
         }
+        Map<Long, Map<String, Object>> viewProps = fetchViewProps(relTopics, TOPIC_VIEW_PROPS);
         for (RelatedTopic topic : relTopics) {
-            topics.put(topic.getId(), buildViewTopic(topic));
+            topics.put(topic.getId(), buildViewTopic(topic, viewProps.get(topic.getRelatingAssociation().getId())));
         }
         return topics;
     }
@@ -461,17 +596,85 @@ public class TopicmapsPlugin extends PluginActivator implements TopicmapsService
         Map<Long, ViewAssoc> assocs = new HashMap();
         List<RelatedAssociation> relAssocs = topicmapTopic.getRelatedAssociations(TOPICMAP_CONTEXT,
             ROLE_TYPE_TOPICMAP, ROLE_TYPE_CONTENT, null);       // othersAsspcTypeUri=null
+        Map<Long, Map<String, Object>> viewProps = fetchViewProps(relAssocs, ASSOC_VIEW_PROPS);
         for (RelatedAssociation assoc : relAssocs) {
-            assocs.put(assoc.getId(), buildViewAssoc(assoc));
+            assocs.put(assoc.getId(), buildViewAssoc(assoc, viewProps.get(assoc.getRelatingAssociation().getId())));
         }
         return assocs;
     }
 
+    /**
+     * @param   topicIds    the topics to fetch (key: topic ID, value: Mapcontext association ID).
+     */
+    private Map<Long, ViewTopic> fetchTopics(Map<Long, Long> topicIds, TopicmapIndex index, boolean includeChilds) {
+        Map<Long, ViewTopic> topics = new HashMap();
+        List<RelatedTopic> relTopics = new ArrayList();
+        for (RelatedObject object : fetchItems(topicIds, index)) {
+            relTopics.add((RelatedTopic) object);
+        }
+        if (includeChilds) {
+            DMXUtils.loadChildTopics(relTopics);
+        }
+        Map<Long, Map<String, Object>> viewProps = fetchViewProps(relTopics, TOPIC_VIEW_PROPS);
+        for (RelatedTopic topic : relTopics) {
+            topics.put(topic.getId(), buildViewTopic(topic, viewProps.get(topic.getRelatingAssociation().getId())));
+        }
+        return topics;
+    }
+
+    /**
+     * @param   assocIds    the associations to fetch (key: association ID, value: Mapcontext association ID).
+     */
+    private Map<Long, ViewAssoc> fetchAssociations(Map<Long, Long> assocIds, TopicmapIndex index) {
+        Map<Long, ViewAssoc> assocs = new HashMap();
+        List<RelatedAssociation> relAssocs = new ArrayList();
+        for (RelatedObject object : fetchItems(assocIds, index)) {
+            relAssocs.add((RelatedAssociation) object);
+        }
+        Map<Long, Map<String, Object>> viewProps = fetchViewProps(relAssocs, ASSOC_VIEW_PROPS);
+        for (RelatedAssociation assoc : relAssocs) {
+            assocs.put(assoc.getId(), buildViewAssoc(assoc, viewProps.get(assoc.getRelatingAssociation().getId())));
+        }
+        return assocs;
+    }
+
+    /**
+     * Fetches topicmap items via their Mapcontext associations. Items the current user has no READ permission for
+     * are skipped. Items not contained in the topicmap anymore are skipped as well, and removed from the index.
+     *
+     * @param   itemIds     key: topic/association ID, value: Mapcontext association ID.
+     *
+     * @return  the items, as related via their Mapcontext associations.
+     */
+    private List<RelatedObject> fetchItems(Map<Long, Long> itemIds, TopicmapIndex index) {
+        List<RelatedObject> items = new ArrayList();
+        AccessControl ac = dmx.getAccessControl();
+        String username = ac.getUsername(request);
+        for (Map.Entry<Long, Long> entry : itemIds.entrySet()) {
+            long itemId = entry.getKey();
+            try {
+                if (ac.hasPermission(username, Operation.READ, itemId)) {
+                    // Note: a Mapcontext association is not assigned to a workspace, so it is readable by everyone
+                    items.add(dmx.getAssociation(entry.getValue()).getPlayer(ROLE_TYPE_CONTENT));
+                }
+            } catch (Exception e) {
+                // the item is deleted meanwhile (and the index is not updated yet), or its addition was rolled back
+                logger.log(Level.FINE, "Fetching topicmap item " + itemId + " failed -- removing it from the index",
+                    e);
+                index.remove(itemId);
+            }
+        }
+        return items;
+    }
+
     // ---
 
-    private ViewTopic buildViewTopic(RelatedTopic topic) {
+    /**
+     * @param   props   the view properties as stored at the topic's Mapcontext association.
+     */
+    private ViewTopic buildViewTopic(RelatedTopic topic, Map<String, Object> props) {
         try {
-            ViewProps viewProps = fetchTopicViewProps(topic.getRelatingAssociation());
+            ViewProps viewProps = topicViewProps(props);
             invokeViewmodelCustomizers(topic, viewProps);
             return mf.newViewTopic(topic.getModel(), viewProps);
         } catch (Exception e) {
@@ -479,9 +682,12 @@ public class TopicmapsPlugin extends PluginActivator implements TopicmapsService
         }
     }
 
-    private ViewAssoc buildViewAssoc(RelatedAssociation assoc) {
+    /**
+     * @param   props   the view properties as stored at the association's Mapcontext association.
+     */
+    private ViewAssoc buildViewAssoc(RelatedAssociation assoc, Map<String, Object> props) {
         try {
-            ViewProps viewProps = fetchAssocViewProps(assoc.getRelatingAssociation());
+            ViewProps viewProps = assocViewProps(props);
             // invokeViewmodelCustomizers(assoc, viewProps);    // TODO: assoc customizers?
             return mf.newViewAssoc(assoc.getModel(), viewProps);
         } catch (Exception e) {
@@ -498,29 +704,41 @@ public class TopicmapsPlugin extends PluginActivator implements TopicmapsService
             .put(PROP_ZOOM,  topicmapTopic.getProperty(PROP_ZOOM));
     }
 
-    private ViewProps fetchTopicViewProps(Association topicmapContext) {
+    /**
+     * Fetches the view properties of many topicmap items at once.
+     *
+     * @param   items       the topics or associations of a topicmap, as related via their Mapcontext associations.
+     *
+     * @return  the view properties (key: Mapcontext association ID).
+     */
+    private Map<Long, Map<String, Object>> fetchViewProps(List<? extends RelatedObject> items,
+                                                          List<String> propUris) {
+        List<Long> mapcontextIds = new ArrayList();
+        for (RelatedObject item : items) {
+            mapcontextIds.add(item.getRelatingAssociation().getId());
+        }
+        return dmx.getProperties(mapcontextIds, propUris);
+    }
+
+    private ViewProps topicViewProps(Map<String, Object> props) {
         return mf.newViewProps(
-            (Integer) topicmapContext.getProperty(PROP_X),
-            (Integer) topicmapContext.getProperty(PROP_Y),
-            visibility(topicmapContext),
-            pinned(topicmapContext)
+            (Integer) props.get(PROP_X),
+            (Integer) props.get(PROP_Y),
+            (Boolean) props.get(PROP_VISIBILITY),
+            (Boolean) props.get(PROP_PINNED)
         );
     }
 
-    private ViewProps fetchAssocViewProps(Association topicmapContext) {
+    private ViewProps assocViewProps(Map<String, Object> props) {
         return mf.newViewProps()
-            .put(PROP_VISIBILITY, visibility(topicmapContext))
-            .put(PROP_PINNED, pinned(topicmapContext));
+            .put(PROP_VISIBILITY, props.get(PROP_VISIBILITY))
+            .put(PROP_PINNED, props.get(PROP_PINNED));
     }
 
     private boolean visibility(Association topicmapContext) {
         return (Boolean) topicmapContext.getProperty(PROP_VISIBILITY);
     }
 
-    private boolean pinned(Association topicmapContext) {
-        return (Boolean) topicmapContext.getProperty(PROP_PINNED);
-    }
-
     // --- Update Visibility ---
 
     private void _setTopicVisibility(long topicmapId, long topicId, boolean visibility, Association topicmapContext) {
@@ -609,6 +827,11 @@ public class TopicmapsPlugin extends PluginActivator implements TopicmapsService
     private void storeTopicViewProps(long topicmapId, long topicId, ViewProps viewProps) {
         try {
             viewProps.store(fetchTopicMapcontext(topicmapId, topicId));
+            //
+            TopicmapIndex index = getTopicmapIndexOrNull(topicmapId);
+            if (index != null && viewProps.get(PROP_X) != null && viewProps.get(PROP_Y) != null) {
+                index.moveTopic(topicId, intValue(viewProps.get(PROP_X)), intValue(viewProps.get(PROP_Y)));
+            }
         } catch (Exception e) {
             throw new RuntimeException("Storing view properties of topic " + topicId + " failed " +
                 "(viewProps=" + viewProps + ")", e);
@@ -653,6 +876,7 @@ public class TopicmapsPlugin extends PluginActivator implements TopicmapsService
             mf.newTopicRoleModel(topicId,    ROLE_TYPE_CONTENT)
         ));
         viewProps.store(topicMapcontext);
+        indexTopic(topicmapId, topicId, topicMapcontext.getId(), viewProps);
         //
         ViewTopic topic = mf.newViewTopic(dmx.getTopic(topicId).getModel(), viewProps);
         me.addTopicToTopicmap(topicmapId, topic);
@@ -664,11 +888,168 @@ public class TopicmapsPlugin extends PluginActivator implements TopicmapsService
             mf.newAssociationRoleModel(assocId, ROLE_TYPE_CONTENT)
         ));
         viewProps.store(assocMapcontext);
+        AssociationModel model = dmx.getAssociation(assocId).getModel();
+        indexAssoc(topicmapId, assocId, assocMapcontext.getId(), model);
         //
-        ViewAssoc assoc = mf.newViewAssoc(dmx.getAssociation(assocId).getModel(), viewProps);
+        ViewAssoc assoc = mf.newViewAssoc(model, viewProps);
         me.addAssociationToTopicmap(topicmapId, assoc);
     }
 
+    // --- Spatial Index ---
+
+    /**
+     * Returns the spatial index of a topicmap. Builds it if not exists.
+     */
+    private TopicmapIndex getTopicmapIndex(Topic topicmapTopic) {
+        long topicmapId = topicmapTopic.getId();
+        TopicmapIndex index = getTopicmapIndexOrNull(topicmapId);
+        if (index == null) {
+            // Note: the index is built outside the lock. An index built concurrently for the same topicmap is dropped.
+            index = buildTopicmapIndex(topicmapTopic);
+            synchronized (topicmapIndexes) {
+                TopicmapIndex _index = topicmapIndexes.get(topicmapId);
+                if (_index != null) {
+                    return _index;
+                }
+                topicmapIndexes.put(topicmapId, index);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return  the spatial index of a topicmap, or <code>null</code> if it is not built (or discarded).
+     */
+    private TopicmapIndex getTopicmapIndexOrNull(long topicmapId) {
+        synchronized (topicmapIndexes) {
+            return topicmapIndexes.get(topicmapId);
+        }
+    }
+
+    /**
+     * Builds the spatial index of a topicmap from its Mapcontext associations.
+     * <p>
+     * The index comprises all items of the topicmap, regardless of the current user's permissions. So the
+     * Mapcontext associations are examined instead of the (access controlled) related topics and associations.
+     * The topics are not fetched at all: their positions are fetched in one batch.
+     * <p>
+     * Note: a topicmap change made while the index is built might be missing in the index.
+     */
+    private TopicmapIndex buildTopicmapIndex(Topic topicmapTopic) {
+        long topicmapId = topicmapTopic.getId();
+        TopicmapIndex index = new TopicmapIndex();
+        Map<Long, Long> topicIds = new HashMap();      // key: Mapcontext association ID, value: topic ID
+        for (Association mapcontext : topicmapTopic.getAssociations()) {
+            AssociationModel model = mapcontext.getModel();
+            if (!model.getTypeUri().equals(TOPICMAP_CONTEXT)) {
+                continue;
+            }
+            RoleModel topicmapRole = model.getRoleModel(ROLE_TYPE_TOPICMAP);
+            RoleModel contentRole = model.getRoleModel(ROLE_TYPE_CONTENT);
+            if (topicmapRole == null || contentRole == null || topicmapRole.getPlayerId() != topicmapId) {
+                continue;
+            }
+            if (contentRole instanceof TopicRoleModel) {
+                topicIds.put(mapcontext.getId(), contentRole.getPlayerId());
+            } else {
+                // Note: the association's players are needed. getPlayer() does not check READ permission.
+                Association assoc = (Association) mapcontext.getPlayer(ROLE_TYPE_CONTENT);
+                index.putAssoc(assoc.getId(), mapcontext.getId(), assoc.getModel().getRoleModel1().getPlayerId(),
+                                                                 assoc.getModel().getRoleModel2().getPlayerId());
+            }
+        }
+        Map<Long, Map<String, Object>> positions = dmx.getProperties(new ArrayList(topicIds.keySet()),
+            Arrays.asList(PROP_X, PROP_Y));
+        for (Map.Entry<Long, Long> entry : topicIds.entrySet()) {
+            Map<String, Object> pos = positions.get(entry.getKey());
+            if (pos.get(PROP_X) != null && pos.get(PROP_Y) != null) {
+                index.putTopic(entry.getValue(), entry.getKey(), intValue(pos.get(PROP_X)), intValue(pos.get(PROP_Y)));
+            }
+        }
+        logger.info("Spatial index of topicmap " + topicmapId + " built (" + index.size() + " items)");
+        return index;
+    }
+
+    private void indexTopic(long topicmapId, long topicId, long mapcontextId, ViewProps viewProps) {
+        TopicmapIndex index = getTopicmapIndexOrNull(topicmapId);
+        if (index != null && viewProps.get(PROP_X) != null && viewProps.get(PROP_Y) != null) {
+            index.putTopic(topicId, mapcontextId, intValue(viewProps.get(PROP_X)), intValue(viewProps.get(PROP_Y)));
+        }
+    }
+
+    private void indexAssoc(long topicmapId, long assocId, long mapcontextId, AssociationModel assoc) {
+        TopicmapIndex index = getTopicmapIndexOrNull(topicmapId);
+        if (index != null) {
+            index.putAssoc(assocId, mapcontextId, assoc.getRoleModel1().getPlayerId(),
+                                                  assoc.getRoleModel2().getPlayerId());
+        }
+    }
+
+    private int intValue(Object value) {
+        return ((Number) value).intValue();
+    }
+
+    // --- Change Log ---
+
+    /**
+     * Returns the messages of the given changes. Changes regarding a topic/association the current user has no
+     * READ permission for are omitted. The removal of a topic/association deleted meanwhile is delivered if the
+     * current user has READ permission for the workspace the object was assigned to. Other changes regarding a
+     * deleted topic/association are omitted.
+     */
+    private List<JSONObject> filterChanges(List<TopicmapChangeLog.Change> changes) {
+        List<JSONObject> messages = new ArrayList();
+        Map<Long, Boolean> permissions = new HashMap();     // key: object ID, value: null if the object is deleted
+        AccessControl ac = dmx.getAccessControl();
+        String username = ac.getUsername(request);
+        for (TopicmapChangeLog.Change change : changes) {
+            if (change.objectId != -1) {
+                Boolean permission;
+                if (permissions.containsKey(change.objectId)) {
+                    permission = permissions.get(change.objectId);
+                } else {
+                    try {
+                        permission = ac.hasPermission(username, Operation.READ, change.objectId);
+                    } catch (Exception e) {
+                        permission = null;      // the object is deleted
+                    }
+                    permissions.put(change.objectId, permission);
+                }
+                if (permission == null) {
+                    permission = change.workspaceId != null && (change.workspaceId == -1 ||
+                        ac.hasReadPermission(username, change.workspaceId));
+                }
+                if (!permission) {
+                    continue;
+                }
+            }
+            messages.add(change.message);
+        }
+        return messages;
+    }
+
+    /**
+     * Logs the removal of a topic/association from a topicmap. The change is logged only: the clients viewing the
+     * topicmap are informed by the deletion message of the topic/association resp. by the "setAssocVisibility"
+     * message.
+     *
+     * @param   workspaceId     the workspace the topic/association is assigned to, or -1 if none.
+     */
+    private void logRemoval(long topicmapId, long objectId, long workspaceId, boolean isTopic) {
+        try {
+            changeLog.record(topicmapId, objectId, workspaceId, null, new JSONObject()
+                .put("type", isTopic ? "removeTopicFromTopicmap" : "removeAssocFromTopicmap")
+                .put("args", new JSONObject()
+                    .put("topicmapId", topicmapId)
+                    .put(isTopic ? "topicId" : "assocId", objectId)
+                )
+            );
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Logging the removal of " + (isTopic ? "topic " : "association ") + objectId +
+                " from topicmap " + topicmapId + " failed", e);
+        }
+    }
+
     // --- Viewmodel Customizers ---
 
     private void invokeViewmodelCustomizers(RelatedTopic topic, ViewProps viewProps) {
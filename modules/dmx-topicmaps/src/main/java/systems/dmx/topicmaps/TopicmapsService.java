@@ -28,11 +28,44 @@ public interface TopicmapsService {
 
     /**
      * Fetches a topicmap from DB.
+     * <p>
+     * If called in request scope the requesting client is subscribed to the topicmap's updates. From then on the
+     * client receives the topicmap's WebSocket messages (e.g. "setTopicPosition") for the rest of its session.
      *
      * @param   includeChilds   if true the topics contained in the topicmap will include their child topics.
      */
     Topicmap getTopicmap(long topicmapId, boolean includeChilds);
 
+    /**
+     * Fetches the part of a topicmap which lies within a viewport: the topics positioned within the given rectangle
+     * (canvas coordinates), the associations connected to them, and the topics at the other ends of these
+     * associations. So a large topicmap can be loaded progressively, viewport by viewport.
+     * <p>
+     * The topics are found by a spatial index over their positions. The index of a topicmap is built in memory
+     * when a viewport of it is fetched the first time.
+     * <p>
+     * Like {@link #getTopicmap} the requesting client is subscribed to the topicmap's updates.
+     *
+     * @param   x1, y1, x2, y2  the corners of the viewport, in any order. All are required. If one is missing (at
+     *                          the REST API) 400 Bad Request is responded.
+     * @param   includeChilds   if true the topics will include their child topics.
+     */
+    Topicmap getTopicmapViewport(long topicmapId, Integer x1, Integer y1, Integer x2, Integer y2,
+                                                                                  boolean includeChilds);
+
+    /**
+     * Fetches the changes of a topicmap made since a revision. So a client which reconnects needs to fetch only what
+     * has changed meanwhile. A client knows the revision of the topicmap it has loaded (see
+     * {@link Topicmap#getRevision}) resp. of the latest topicmap message it has received.
+     * <p>
+     * The recent changes are kept in memory. If the changes since the given revision are not known (any longer),
+     * e.g. after a restart, the result indicates the topicmap must be reloaded.
+     * <p>
+     * Changes regarding topics/associations the user has no READ permission for are omitted.
+     * The requesting client is (re-)subscribed to the topicmap's updates.
+     */
+    TopicmapChanges getTopicmapChanges(long topicmapId, long sinceRevision);
+
     Association getTopicMapcontext(long topicmapId, long topicId);
 
     Association getAssocMapcontext(long topicmapId, long assocId);
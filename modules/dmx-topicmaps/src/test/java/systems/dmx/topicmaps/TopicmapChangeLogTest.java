@@ -0,0 +1,95 @@
+package systems.dmx.topicmaps;
+
+import org.codehaus.jettison.json.JSONObject;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+
+
+public class TopicmapChangeLogTest {
+
+    @Test
+    public void changesSinceRevision() throws Exception {
+        TopicmapChangeLog changeLog = new TopicmapChangeLog();
+        long rev0 = changeLog.getRevision(1);
+        JSONObject message = new JSONObject().put("type", "addTopicToTopicmap");
+        long rev1 = changeLog.record(1, 5, null, message);
+        long rev2 = changeLog.record(1, -1, null, new JSONObject().put("type", "setTopicmapViewport"));
+        assertTrue(rev1 > rev0);
+        assertTrue(rev2 > rev1);
+        assertEquals(rev1, message.getLong("revision"));
+        //
+        List<TopicmapChangeLog.Change> changes = changeLog.getChanges(1, rev0);
+        assertEquals(2, changes.size());
+        assertEquals(rev1, changes.get(0).revision);
+        assertEquals(5, changes.get(0).objectId);
+        assertSame(message, changes.get(0).message);
+        assertEquals(rev2, changes.get(1).revision);
+        assertEquals(-1, changes.get(1).objectId);
+        //
+        assertEquals(1, changeLog.getChanges(1, rev1).size());
+        assertEquals(0, changeLog.getChanges(1, rev2).size());
+    }
+
+    @Test
+    public void coalescing() throws Exception {
+        TopicmapChangeLog changeLog = new TopicmapChangeLog();
+        long rev0 = changeLog.getRevision(1);
+        changeLog.record(1, 5, "position:5", new JSONObject().put("x", 10));
+        long rev2 = changeLog.record(1, 6, "position:6", new JSONObject().put("x", 20));
+        long rev3 = changeLog.record(1, 5, "position:5", new JSONObject().put("x", 30));
+        List<TopicmapChangeLog.Change> changes = changeLog.getChanges(1, rev0);
+        assertEquals(2, changes.size());
+        // the superseding change is put at the end
+        assertEquals(rev2, changes.get(0).revision);
+        assertEquals(rev3, changes.get(1).revision);
+        assertEquals(30, changes.get(1).message.getInt("x"));
+    }
+
+    @Test
+    public void workspaceOfRemovedObject() throws Exception {
+        TopicmapChangeLog changeLog = new TopicmapChangeLog();
+        long rev0 = changeLog.getRevision(1);
+        changeLog.record(1, 5, null, new JSONObject().put("type", "addTopicToTopicmap"));
+        changeLog.record(1, 5, 2000L, null, new JSONObject().put("type", "removeTopicFromTopicmap"));
+        List<TopicmapChangeLog.Change> changes = changeLog.getChanges(1, rev0);
+        assertNull(changes.get(0).workspaceId);
+        assertEquals(5, changes.get(1).objectId);
+        assertEquals(2000L, (long) changes.get(1).workspaceId);
+    }
+
+    @Test
+    public void unknownChanges() throws Exception {
+        TopicmapChangeLog changeLog = new TopicmapChangeLog();
+        long rev0 = changeLog.getRevision(1);
+        changeLog.record(1, 5, null, new JSONObject());
+        // an unknown topicmap
+        assertNull(changeLog.getChanges(2, rev0));
+        // a revision before the log was started
+        assertNull(changeLog.getChanges(1, rev0 - 1));
+        // a revision not yet made (e.g. of a previous server run)
+        assertNull(changeLog.getChanges(1, rev0 + 1000));
+    }
+
+    @Test
+    public void eviction() throws Exception {
+        TopicmapChangeLog changeLog = new TopicmapChangeLog();
+        long rev0 = changeLog.getRevision(1);
+        long rev1 = changeLog.record(1, 5, null, new JSONObject());
+        for (int i = 0; i < TopicmapChangeLog.MAX_CHANGES; i++) {
+            changeLog.record(1, 5, null, new JSONObject());
+        }
+        // the first change is discarded, so the changes since rev0 are no longer known
+        assertNull(changeLog.getChanges(1, rev0));
+        List<TopicmapChangeLog.Change> changes = changeLog.getChanges(1, rev1);
+        assertEquals(TopicmapChangeLog.MAX_CHANGES, changes.size());
+        assertTrue(changes.get(0).revision > rev1);
+    }
+}
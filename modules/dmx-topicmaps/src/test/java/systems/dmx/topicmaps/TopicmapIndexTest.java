@@ -0,0 +1,87 @@
+package systems.dmx.topicmaps;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import static java.util.Arrays.asList;
+import java.util.HashSet;
+import java.util.Set;
+
+
+
+public class TopicmapIndexTest {
+
+    @Test
+    public void query() {
+        TopicmapIndex index = new TopicmapIndex();
+        index.putTopic(1, 101, 100, 100);
+        index.putTopic(2, 102, 400, 300);
+        index.putTopic(3, 103, 1000, 1000);           // on the bottom-right corner
+        index.putTopic(4, 104, 5000, -5000);
+        TopicmapIndex.Window window = index.query(0, 0, 1000, 1000);
+        assertEquals(set(1L, 2L, 3L), window.topics.keySet());
+        assertEquals(101L, (long) window.topics.get(1L));
+        assertTrue(window.assocs.isEmpty());
+        // corners in any order
+        assertEquals(set(1L, 2L, 3L), index.query(1000, 1000, 0, 0).topics.keySet());
+        assertEquals(set(4L), index.query(4000, -4000, 6000, -6000).topics.keySet());
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    public void queryContainsConnectedItems() {
+        TopicmapIndex index = new TopicmapIndex();
+        index.putTopic(1, 101, 100, 100);             // inside
+        index.putTopic(2, 102, 3000, 3000);           // outside, connected to 1
+        index.putTopic(3, 103, -700, 50);             // outside, connected to the association 10
+        index.putTopic(4, 104, 9000, 9000);           // outside, connected to the outside topic 2 only
+        index.putAssoc(10, 110, 1, 2);
+        index.putAssoc(11, 111, 10, 3);               // association on association
+        index.putAssoc(12, 112, 2, 4);
+        TopicmapIndex.Window window = index.query(0, 0, 1000, 1000);
+        assertEquals(set(1L, 2L, 3L), window.topics.keySet());
+        assertEquals(set(10L, 11L), window.assocs.keySet());
+        assertEquals(110L, (long) window.assocs.get(10L));
+        assertEquals(111L, (long) window.assocs.get(11L));
+        assertEquals(7, index.size());
+    }
+
+    @Test
+    public void moveTopic() {
+        TopicmapIndex index = new TopicmapIndex();
+        index.putTopic(1, 101, 100, 100);
+        index.moveTopic(1, 2600, -900);
+        assertTrue(index.query(0, 0, 1000, 1000).topics.isEmpty());
+        TopicmapIndex.Window window = index.query(2500, -1000, 3000, 0);
+        assertEquals(set(1L), window.topics.keySet());
+        assertEquals(101L, (long) window.topics.get(1L));     // the mapcontext is kept
+        // a topic not indexed is not added
+        index.moveTopic(2, 100, 100);
+        assertTrue(index.query(0, 0, 1000, 1000).topics.isEmpty());
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void remove() {
+        TopicmapIndex index = new TopicmapIndex();
+        index.putTopic(1, 101, 100, 100);
+        index.putTopic(2, 102, 200, 200);
+        index.putTopic(3, 103, 3000, 3000);
+        index.putAssoc(10, 110, 1, 3);
+        index.remove(10);
+        TopicmapIndex.Window window = index.query(0, 0, 1000, 1000);
+        assertEquals(set(1L, 2L), window.topics.keySet());
+        assertTrue(window.assocs.isEmpty());
+        index.remove(2);
+        assertEquals(set(1L), index.query(0, 0, 1000, 1000).topics.keySet());
+        assertEquals(2, index.size());
+    }
+
+    // ---
+
+    private Set<Long> set(Long... ids) {
+        return new HashSet(asList(ids));
+    }
+}
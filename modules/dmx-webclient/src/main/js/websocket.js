@@ -6,5 +6,10 @@ import store from './store/webclient'
 new DM5WebSocket('systems.dmx.webclient', dispatch)
 
 function dispatch (message) {
-  store.dispatch('_' + message.type, message.args)
+  // coalesced messages (e.g. "setTopicPosition") arrive batched, as an array of messages
+  if (Array.isArray(message)) {
+    message.forEach(dispatch)
+  } else {
+    store.dispatch('_' + message.type, message.args)
+  }
 }
@@ -31,7 +31,9 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Response.Status;
 
 import javax.servlet.http.HttpServletRequest;
 
@@ -98,9 +100,28 @@ public class WebservicePlugin extends PluginActivator {
     // Note: the "include_childs" query parameter is handled by the core's JerseyResponseFilter
     // ### TODO: change URI template
     @GET
+    // Paging: "offset" (default 0) and "limit" (default 0 = no limit). For stable paging pass "sort=id".
     @Path("/topic/by_type/{topic_type_uri}")
-    public List<Topic> getTopicsByType(@PathParam("topic_type_uri") String topicTypeUri) {
-        return dmx.getTopicsByType(topicTypeUri);
+    public List<Topic> getTopicsByType(@PathParam("topic_type_uri") String topicTypeUri,
+                                       @QueryParam("offset") int offset, @QueryParam("limit") int limit,
+                                       @QueryParam("sort") String sort) {
+        if (offset < 0 || limit < 0) {
+            throw new WebApplicationException(new IllegalArgumentException("Illegal paging parameters (offset=" +
+                offset + ", limit=" + limit + "). Both must not be negative."), Status.BAD_REQUEST);
+        }
+        if (sort != null && !sort.equals("id")) {
+            throw new WebApplicationException(new IllegalArgumentException("\"" + sort + "\" is an unsupported " +
+                "sort order. Only \"id\" is supported."), Status.BAD_REQUEST);
+        }
+        return dmx.getTopicsByType(topicTypeUri, offset, limit, sort != null);
+    }
+
+    // Note: the instances are fetched to check the READ permission. The cost is O(n) in the number of instances.
+    @GET
+    @Path("/topic/by_type/{topic_type_uri}/count")
+    public int countTopicsByType(@PathParam("topic_type_uri") String topicTypeUri) {
+        dmx.getTopicType(topicTypeUri);     // checks READ permission for the type
+        return dmx.countReadableTopicsByType(topicTypeUri);
     }
 
     // Note: the "include_childs" query parameter is handled by the core's JerseyResponseFilter
@@ -165,6 +186,14 @@ public class WebservicePlugin extends PluginActivator {
         return dmx.getAssociationsByValue(key, value);
     }
 
+    // Note: the instances are fetched to check the READ permission. The cost is O(n) in the number of instances.
+    @GET
+    @Path("/assoc/by_type/{assoc_type_uri}/count")
+    public int countAssociationsByType(@PathParam("assoc_type_uri") String assocTypeUri) {
+        dmx.getAssociationType(assocTypeUri);   // checks READ permission for the type
+        return dmx.countReadableAssociationsByType(assocTypeUri);
+    }
+
     // Note: the "include_childs" query parameter is handled by the core's JerseyResponseFilter
     @GET
     @Path("/association/{assoc_type_uri}/{topic1_id}/{topic2_id}/{role_type1_uri}/{role_type2_uri}")
@@ -355,6 +384,18 @@ public class WebservicePlugin extends PluginActivator {
         return getRelatedTopics(topic, "topic", assocTypeUri, myRoleTypeUri, othersRoleTypeUri, othersTopicTypeUri);
     }
 
+    @GET
+    @Path("/topic/{id}/related_topics/count")
+    public int countTopicRelatedTopics(@PathParam("id")                     long topicId,
+                                       @QueryParam("assoc_type_uri")        String assocTypeUri,
+                                       @QueryParam("my_role_type_uri")      String myRoleTypeUri,
+                                       @QueryParam("others_role_type_uri")  String othersRoleTypeUri,
+                                       @QueryParam("others_topic_type_uri") String othersTopicTypeUri) {
+        dmx.getTopic(topicId);      // checks READ permission
+        return dmx.countReadableRelatedTopics(topicId, assocTypeUri, myRoleTypeUri, othersRoleTypeUri,
+            othersTopicTypeUri);
+    }
+
     // Note: the "include_childs" query parameter is handled by the core's JerseyResponseFilter
     @GET
     @Path("/topic/{id}/related_assocs")
@@ -389,6 +430,18 @@ public class WebservicePlugin extends PluginActivator {
             othersTopicTypeUri);
     }
 
+    @GET
+    @Path("/association/{id}/related_topics/count")
+    public int countAssociationRelatedTopics(@PathParam("id")                     long assocId,
+                                             @QueryParam("assoc_type_uri")        String assocTypeUri,
+                                             @QueryParam("my_role_type_uri")      String myRoleTypeUri,
+                                             @QueryParam("others_role_type_uri")  String othersRoleTypeUri,
+                                             @QueryParam("others_topic_type_uri") String othersTopicTypeUri) {
+        dmx.getAssociation(assocId);    // checks READ permission
+        return dmx.countReadableRelatedTopics(assocId, assocTypeUri, myRoleTypeUri, othersRoleTypeUri,
+            othersTopicTypeUri);
+    }
+
     // Note: the "include_childs" query parameter is handled by the core's JerseyResponseFilter
     @GET
     @Path("/association/{id}/related_assocs")